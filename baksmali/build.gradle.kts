@@ -11,4 +11,5 @@ dependencies {
     compile(project(":dexlib"))
     compile(project(":util"))
     compile(kotlin("stdlib"))
+    testCompile("junit:junit:4.12")
 }
@@ -41,7 +41,7 @@ public class AnnotationFormatter {
     public static void writeTo(IndentingWriter writer, AnnotationSetItem annotationSet) throws IOException {
         boolean first = true;
         for (AnnotationItem annotationItem : annotationSet.getAnnotations()) {
-            String typeDescriptor = annotationItem.getEncodedAnnotation().annotationType.getTypeDescriptor();
+            String typeDescriptor = annotationItem.getAnnotationType().getTypeDescriptor();
             if (typeDescriptor.equals("Ldalvik/annotation/Signature;")
                     || typeDescriptor.equals("Ldalvik/annotation/MemberClass;")
                     || typeDescriptor.equals("Ldalvik/annotation/EnclosingClass;")
@@ -67,7 +67,7 @@ public class AnnotationFormatter {
         writer.write("//.annotation ");
         writer.write(annotationItem.getVisibility().visibility);
         writer.write(' ');
-        ReferenceFormatter.writeTypeReference(writer, annotationItem.getEncodedAnnotation().annotationType);
+        ReferenceFormatter.writeTypeReference(writer, annotationItem.getAnnotationType());
         writer.write('\n');
 
         AnnotationEncodedValueAdaptor.writeElementsTo(writer, annotationItem.getEncodedAnnotation());
@@ -40,8 +40,6 @@ import org.jf.util.MemoryWriter;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class ClassDefinition {
     public static final String LJAVA_LANG_OBJECT = "Ljava/lang/Object;";
@@ -57,7 +55,7 @@ public class ClassDefinition {
     private HashMap<String, String> staticFieldInitialValues = new HashMap<String, String>();
     private ArrayList<String> staticBlock = new ArrayList<String>();
 
-    private static HashSet<String> imports = null;
+    private static ImportSet imports = new ImportSet();
     private static String dalvikClassName = "";
     private static String javaClassName = "";
     private static String superClass = "";
@@ -67,11 +65,6 @@ public class ClassDefinition {
     private static boolean isInterface;
     private static boolean isEnum;
 
-    private static final Pattern ENUM_VALUE_MATCHER = Pattern.compile("[ ]*(.+) = .+\\(\".+\", \\d+(, .+)?\\);");
-    private static final Pattern ENUM_IS_DEFAULT_CONSTRUCTOR = Pattern.compile(".+\\(String p1, int p2\\) \\{\\n[ ]*super\\(p1, p2\\);\\n[ ]*return;\\n[ ]*\\n[ ]*\\}");
-    private static final Pattern ENUM_CONSTRUCTOR_DECLARATION = Pattern.compile("(.+)\\(String p1, int p2(, .+)?\\) \\{");
-    private static final Pattern STATIC_FIELD_INITAL_VALUE = Pattern.compile("^([ ]*)([^ ]+) = ([^\n]+(\\{.+\\1\\})?);\n", Pattern.DOTALL | Pattern.MULTILINE);
-    private static final Pattern STATIC_BLOCK_CONTENTS = Pattern.compile("([^\n]*)\n");
 
 
     // Stores inner classes in memory to be added to enclosing classes
@@ -144,63 +137,49 @@ public class ClassDefinition {
             return;
         }
 
-        MemoryWriter classInit = new MemoryWriter();
         for (ClassDataItem.EncodedMethod encodedMethod : classDataItem.getDirectMethods()) {
             if (encodedMethod.method.getMethodName().getStringValue().equals("<clinit>")) {
-                try {
-                    writeMethods(new IndentingWriter(classInit), new ClassDataItem.EncodedMethod[]{encodedMethod}, null);
-                } catch (IOException ignore) {
+                if (!isHidden(encodedMethod)) {
+                    try {
+                        writeMethod(new IndentingWriter(new MemoryWriter()), encodedMethod,
+                                new StaticInitializerDefinition(encodedMethod, staticFieldInitialValues, staticBlock,
+                                        isEnum ? getEnumConstants() : null));
+                    } catch (IOException ignore) {
+                    }
                 }
                 break;
             }
         }
-        String contents = classInit.getContents();
+    }
 
-        if (isEnum) {
-            // Find enum constructor args
-            Matcher matcher = ENUM_VALUE_MATCHER.matcher(contents);
-            while (matcher.find()) {
-                String constructorArgs = matcher.group(2);
-                if (constructorArgs != null) {
-                    constructorArgs = constructorArgs.substring(2);
-                }
-                staticFieldInitialValues.put(matcher.group(1), constructorArgs);
-            }
-        } else {
-            // Find static field initializers and static block contents
-            int length = contents.length();
-            int pos = 0;
-            Matcher fieldValues = STATIC_FIELD_INITAL_VALUE.matcher(contents);
-            Matcher blockContents = STATIC_BLOCK_CONTENTS.matcher(contents);
-            while (pos < length) {
-                if (fieldValues.find(pos)) {
-                    staticFieldInitialValues.put(fieldValues.group(2), fieldValues.group(3));
-                    pos = fieldValues.end();
-                } else if (blockContents.find(pos)) {
-                    String line = blockContents.group(1);
-                    if (line == null) {
-                        continue;
-                    }
-                    line = line.trim();
-                    if (line.equals("return;")) {
-                        break;
-                    }
-                    staticBlock.add(line);
-                    pos = blockContents.end();
-                }
+    private Set<String> getEnumConstants() {
+        HashSet<String> enumConstants = new HashSet<String>();
+        for (ClassDataItem.EncodedField field : classDataItem.getStaticFields()) {
+            if (AccessFlags.hasFlag(field.accessFlags, AccessFlags.ENUM)) {
+                enumConstants.add(field.field.getFieldName().getStringValue());
             }
         }
+        return enumConstants;
     }
 
     public static void addImport(String newImport) {
         newImport = newImport.replace("[]", "");
-        if (newImport.indexOf('.') >= 0 &&
-                !(newImport.startsWith("dalvik") || newImport.startsWith(javaClassName))) {
-            imports.add(newImport);
+        if (newImport.indexOf('.') >= 0 && !newImport.startsWith("dalvik")) {
+            addImport(-1, newImport);
+        }
+    }
+
+    /**
+     * Adds an import that is already known to be a qualified name outside of dalvik, unless it's part of this class
+     * @param typeIndex the index of the imported type in the dex file, or -1 if it isn't one of its types
+     */
+    static void addImport(int typeIndex, String importName) {
+        if (!importName.startsWith(javaClassName)) {
+            imports.add(typeIndex, importName);
         }
     }
 
-    public static void addImport(HashSet<String> newImports) {
+    public static void addImport(ImportSet newImports) {
         imports.addAll(newImports);
     }
 
@@ -249,11 +228,10 @@ public class ClassDefinition {
 
         AnnotationItem[] annotations = getClassAnnotations();
         for (AnnotationItem annotation : annotations) {
-            AnnotationEncodedSubValue encodedAnnotation = annotation.getEncodedAnnotation();
-            if (encodedAnnotation.annotationType.getTypeDescriptor().equals("Ldalvik/annotation/InnerClass;")) {
+            if (annotation.getAnnotationType().getTypeDescriptor().equals("Ldalvik/annotation/InnerClass;")) {
                 isInnerClass = true;
-                innerClassAccessFlags = ((IntEncodedValue) encodedAnnotation.values[0]).value;
-                if (encodedAnnotation.values[1].getValueType().equals(ValueType.VALUE_NULL)) {
+                innerClassAccessFlags = ((IntEncodedValue) annotation.getElementValue("accessFlags")).value;
+                if (annotation.getElementValue("name").getValueType().equals(ValueType.VALUE_NULL)) {
                     isAnonymous = true;
                 }
             }
@@ -305,7 +283,7 @@ public class ClassDefinition {
        body of the file is only written at the end.
      */
     public boolean writeTo(IndentingWriter writer) throws IOException {
-        imports = new HashSet<String>();
+        imports = new ImportSet();
 
         MemoryWriter body = new MemoryWriter();
         writeBody(new IndentingWriter(body));
@@ -367,7 +345,7 @@ public class ClassDefinition {
     }
 
     private void writeImports(IndentingWriter writer) throws IOException {
-        for (String anImport : imports) {
+        for (String anImport : imports.getImports()) {
             writer.write("import ");
             writer.write(anImport);
             writer.write(";\n");
@@ -536,11 +514,12 @@ public class ClassDefinition {
         // Handle enum constructor specially
         if (isEnum && classDataItem != null) {
             for (ClassDataItem.EncodedMethod encodedMethod : classDataItem.getDirectMethods()) {
-                if (encodedMethod.method.getMethodName().getStringValue().equals("<init>")) {
-                    MemoryWriter instanceInit = new MemoryWriter();
-                    writeMethods(new IndentingWriter(instanceInit), new ClassDataItem.EncodedMethod[]{encodedMethod}, null);
-                    String constructor = instanceInit.getContents();
-                    writeEnumConstructor(writer, constructor);
+                if (encodedMethod.method.getMethodName().getStringValue().equals("<init>") &&
+                        !isHidden(encodedMethod)) {
+                    EnumConstructorDefinition constructor = new EnumConstructorDefinition(encodedMethod);
+                    if (!constructor.isDefault()) {
+                        writeMethod(writer, encodedMethod, constructor);
+                    }
                 }
             }
         }
@@ -595,9 +574,7 @@ public class ClassDefinition {
     private void writeMethods(IndentingWriter writer, ClassDataItem.EncodedMethod[] methods, String label) throws IOException {
         boolean first = true;
         for (ClassDataItem.EncodedMethod method : methods) {
-            //don't print synthetic methods or anonymous constructors
-            if (AccessFlags.hasFlag(method.accessFlags, AccessFlags.SYNTHETIC) ||
-                    (ClassDefinition.isAnonymous() && AccessFlags.hasFlag(method.accessFlags, AccessFlags.CONSTRUCTOR))) {
+            if (isHidden(method)) {
                 continue;
             }
 
@@ -611,28 +588,36 @@ public class ClassDefinition {
             }
             first = false;
 
-            AnnotationSetItem annotationSet = methodAnnotationsMap.get(method.method.getIndex());
-            AnnotationSetRefList parameterAnnotationList = parameterAnnotationsMap.get(method.method.getIndex());
+            writeMethod(writer, method, new MethodDefinition(method));
+        }
+    }
 
-            MethodDefinition methodDefinition = new MethodDefinition(method);
-            methodDefinition.writeTo(writer, annotationSet, parameterAnnotationList);
+    private static boolean isHidden(ClassDataItem.EncodedMethod method) {
+        //don't print synthetic methods or anonymous constructors
+        return AccessFlags.hasFlag(method.accessFlags, AccessFlags.SYNTHETIC) ||
+                (ClassDefinition.isAnonymous() && AccessFlags.hasFlag(method.accessFlags, AccessFlags.CONSTRUCTOR));
+    }
 
-            ValidationException validationException = methodDefinition.getValidationException();
-            if (validationException != null) {
-                System.err.println(String.format("Error while disassembling method %s. Continuing.",
-                        method.method.getMethodString()));
-                validationException.printStackTrace(System.err);
-                this.validationErrors = true;
-            }
+    private void writeMethod(IndentingWriter writer, ClassDataItem.EncodedMethod method,
+                             MethodDefinition methodDefinition) throws IOException {
+        AnnotationSetItem annotationSet = methodAnnotationsMap.get(method.method.getIndex());
+        AnnotationSetRefList parameterAnnotationList = parameterAnnotationsMap.get(method.method.getIndex());
+
+        methodDefinition.writeTo(writer, annotationSet, parameterAnnotationList);
+
+        ValidationException validationException = methodDefinition.getValidationException();
+        if (validationException != null) {
+            System.err.println(String.format("Error while disassembling method %s. Continuing.",
+                    method.method.getMethodString()));
+            validationException.printStackTrace(System.err);
+            this.validationErrors = true;
         }
     }
 
     private void writeInnerClasses(IndentingWriter writer) throws IOException {
         for (AnnotationItem annotation : getClassAnnotations()) {
-            AnnotationEncodedSubValue encodedAnnotation = annotation.getEncodedAnnotation();
-
-            if (encodedAnnotation.annotationType.getTypeDescriptor().equals("Ldalvik/annotation/MemberClasses;")) {
-                EncodedValue[] innerClassList = ((ArrayEncodedSubValue) encodedAnnotation.values[0]).values;
+            if (annotation.getAnnotationType().getTypeDescriptor().equals("Ldalvik/annotation/MemberClasses;")) {
+                EncodedValue[] innerClassList = ((ArrayEncodedSubValue) annotation.getElementValue("value")).values;
                 for (EncodedValue innerClass : innerClassList) {
                     String innerClassName = ((TypeEncodedValue) innerClass).value.getTypeDescriptor();
                     if (innerClasses.containsKey(innerClassName)) {
@@ -647,21 +632,4 @@ public class ClassDefinition {
             }
         }
     }
-
-    private void writeEnumConstructor(IndentingWriter writer, String constructor) throws IOException {
-        if (!ENUM_IS_DEFAULT_CONSTRUCTOR.matcher(constructor).find()) {
-            Matcher matcher = ENUM_CONSTRUCTOR_DECLARATION.matcher(constructor);
-            if (matcher.find()) {
-                writer.write(matcher.group(1));
-                writer.write("(");
-                String parameters = matcher.group(2);
-                if (parameters != null) {
-                    writer.write(parameters.substring(2));
-                }
-                writer.write(") {\n");
-                int secondNewLine = constructor.indexOf('\n', constructor.indexOf('\n') + 1);
-                writer.write(constructor.substring(secondNewLine + 1));
-            }
-        }
-    }
 }
@@ -62,87 +62,248 @@ private fun calculateLabelInfo(methodItems: List<MethodItem>): LabelInfo {
     return LabelInfo(returnLabel, labelUsageCounts)
 }
 
+private fun isIf(methodItem: MethodItem?): Boolean {
+    return methodItem is InstructionMethodItem<*> && methodItem.instruction.opcode.value in 0x032..0x03d
+}
+
+private fun isGoto(methodItem: MethodItem?): Boolean {
+    return methodItem is InstructionMethodItem<*> && methodItem.instruction.opcode.value in 0x028..0x02a
+}
+
+private fun isThrowOrSwitch(methodItem: MethodItem?): Boolean {
+    if (methodItem !is InstructionMethodItem<*>) {
+        return false
+    }
+    val value = methodItem.instruction.opcode.value
+    return value == Opcode.THROW.value || value in 0x02b..0x02c
+}
+
+/**
+ * The method items as a doubly linked list over their original positions. Blocks of items are only ever moved out of
+ * the list into an If that comes before them, so the items remaining in the list are always in their original order,
+ * and a block can be moved without shifting everything after it.
+ *
+ * Each position also points towards the next position that could end the block for an If: a goto, a throw or switch,
+ * or a label that still has other things going to it. Positions only ever stop being such a "stop" (when their items
+ * are moved into an If), so these pointers can be followed with path compression, and finding the end of every block
+ * takes near-linear time in total instead of a scan per If.
+ */
+private class LinkedMethodItems(methodItems: List<MethodItem>, private val labelInfo: LabelInfo) {
+    val items: Array<MethodItem> = methodItems.toTypedArray()
+    val end = items.size
+    val next = IntArray(end) { it + 1 }
+    val prev = IntArray(end) { it - 1 }
+    private val removed = BooleanArray(end)
+    private val nextStop = IntArray(end + 1) { it }
+    private val labelPositions = IdentityHashMap<LabelMethodItem, Int>()
+
+    init {
+        for (i in items.indices.reversed()) {
+            val item = items[i]
+            if (item is LabelMethodItem) {
+                labelPositions[item] = i
+            }
+            if (!isStop(i)) {
+                nextStop[i] = i + 1
+            }
+        }
+    }
+
+    private fun isStop(position: Int): Boolean {
+        if (removed[position]) {
+            return false
+        }
+        val item = items[position]
+        if (item is LabelMethodItem) {
+            return item !== labelInfo.returnLabel && labelInfo.usageCount(item) != 0
+        }
+        return isGoto(item) || isThrowOrSwitch(item)
+    }
+
+    /**
+     * @return the position of the given label, if it is still in the list after the given position, otherwise -1
+     */
+    fun findLabelAfter(label: LabelMethodItem, position: Int): Int {
+        val labelPosition = labelPositions[label] ?: return -1
+        if (labelPosition <= position || removed[labelPosition]) {
+            return -1
+        }
+        return labelPosition
+    }
+
+    /**
+     * @return the first stop at or after the given position, or end if there are none
+     */
+    fun findStop(position: Int): Int {
+        var root = position
+        while (true) {
+            while (nextStop[root] != root) {
+                root = nextStop[root]
+            }
+            if (root == end || isStop(root)) {
+                break
+            }
+            nextStop[root] = root + 1
+        }
+
+        var i = position
+        while (i != root) {
+            val following = nextStop[i]
+            nextStop[i] = root
+            i = following
+        }
+        return root
+    }
+
+    /**
+     * Removes the items from first to last inclusive from the list
+     * @return the removed items, in order
+     */
+    fun removeRange(first: Int, last: Int): ArrayList<MethodItem> {
+        val block = ArrayList<MethodItem>()
+        var i = first
+        while (true) {
+            block.add(items[i])
+            removed[i] = true
+            nextStop[i] = i + 1
+            if (i == last) {
+                break
+            }
+            i = next[i]
+        }
+
+        val before = prev[first]
+        val after = next[last]
+        if (before >= 0) {
+            next[before] = after
+        }
+        if (after < end) {
+            prev[after] = before
+        }
+        return block
+    }
+
+    fun toList(): List<MethodItem> {
+        val list = ArrayList<MethodItem>()
+        // Blocks are only removed from after an If, so the first item is never removed
+        var i = 0
+        while (i < end) {
+            list.add(items[i])
+            i = next[i]
+        }
+        return list
+    }
+}
+
 private fun transformOutAndBackIfs(methodItems: MutableList<MethodItem>, labelInfo: LabelInfo) {
-    // Work backwards so we don't have to worry about scanning the contents of an If after we create it.
-    for (i in methodItems.indices.reversed()) {
-        val methodItem = methodItems[i]
-        if (methodItem is OffsetInstructionFormatMethodItem<*>) {
+    val linkedItems = LinkedMethodItems(methodItems, labelInfo)
+
+    // Work backwards so we don't have to worry about scanning the contents of an If after we create it. Blocks are
+    // only removed from after the current item, so everything before it is still in place.
+    for (i in linkedItems.items.indices.reversed()) {
+        val methodItem = linkedItems.items[i]
+        if (methodItem is OffsetInstructionFormatMethodItem<*> && isIf(methodItem)) {
             val label = methodItem.getLabel()
-            if (methodItem.instruction.opcode.value in 0x032..0x03d && labelInfo.usageCount(label) == 1) {
-                val (labelIndex, finalGotoIndex) = findForwardIfBlockBoundaries(i, methodItems, methodItem, labelInfo)
+            if (labelInfo.usageCount(label) == 1) {
+                val (labelIndex, finalGotoIndex) = findForwardIfBlockBoundaries(i, linkedItems, label)
                 if (labelIndex != -1 && finalGotoIndex != -1) {
                     // Replace the current instruction with an If
-                    pullBlockIntoIf(
-                            methodItems,
-                            labelIndex,
-                            finalGotoIndex,
-                            i,
+                    val ifMethodItem = makeIf(
                             IfMethodItem.emptyFromOffsetInstruction(methodItem),
+                            linkedItems.removeRange(labelIndex, finalGotoIndex),
                             putInThen = true
                     )
+                    linkedItems.items[i] = ifMethodItem
+                    // Remove the redundant ending gotos
+                    if (linkedItems.next[i] < linkedItems.end) {
+                        removeRedundantEndingGotos(ifMethodItem, linkedItems.items[linkedItems.next[i]].codeAddress)
+                    }
                     // We've just consumed one usage of that label, go ahead and reduce its usage count.
                     labelInfo.decrementCount(label)
                 }
             }
         }
     }
+
+    val transformedItems = linkedItems.toList()
+    methodItems.clear()
+    methodItems.addAll(transformedItems)
 }
 
-private fun findForwardIfBlockBoundaries(startIndex: Int, methodItems: List<MethodItem>, methodItem: OffsetInstructionFormatMethodItem<*>, labelInfo: LabelInfo): Pair<Int, Int> {
+private fun findForwardIfBlockBoundaries(startIndex: Int, linkedItems: LinkedMethodItems, label: LabelMethodItem): Pair<Int, Int> {
     // Find the label this goes to and the goto that brings it back (if any)
-    var labelIndex = -1
-    var finalGotoIndex = -1
-    for (i in startIndex until methodItems.size) {
-        val forwardItem = methodItems[i]
-        if (labelIndex == -1) {
-            if (forwardItem is LabelMethodItem && forwardItem === methodItem.getLabel()) {
-                val prevItem = methodItems[i - 1]
-                // Make sure we can't fall through to this label
-                if (prevItem is InstructionMethodItem<*> && !prevItem.instruction.opcode.canContinue()) {
-                    labelIndex = i
-                } else {
-                    // We can't be sure that the only entry point to this code is from the if, so we have to bail.
-                    break
-                }
-            }
-        } else {
-            // We should either see a valid ending non-conditional goto, or we might see something that
-            // invalidates this block.
-            if (forwardItem is InstructionMethodItem<*>) {
-                val value = forwardItem.instruction.opcode.value
-                if (value in 0x028..0x02a && forwardItem !== labelInfo.returnLabel) {
-                    // This is an unconditional goto. Record the index and break
-                    finalGotoIndex = i
-                    break
-                } else if (value == Opcode.THROW.value || value in 0x02b..0x02c) {
-                    // If this is a throw or switch, then we're encountering other types of control
-                    // flow, so bail.
-                    break
-                }
-            }
-            if (forwardItem is LabelMethodItem) {
-                if (forwardItem !== labelInfo.returnLabel && labelInfo.usageCount(forwardItem) != 0) {
-                    // We've run into a label that isn't a return and still has things going to it, which
-                    // is an entry point into this code, our analysis logic may no longer be sound. Clear
-                    // the pending ifs.
-                    // TODO RIGHT NOW - don't break if all references to the label are within the section we're looking at.
-                    break
-                }
-            }
-        }
+    val labelIndex = linkedItems.findLabelAfter(label, startIndex)
+    if (labelIndex == -1) {
+        return Pair(-1, -1)
+    }
+
+    val prevItem = linkedItems.items[linkedItems.prev[labelIndex]]
+    // Make sure we can't fall through to this label
+    if (prevItem !is InstructionMethodItem<*> || prevItem.instruction.opcode.canContinue()) {
+        // We can't be sure that the only entry point to this code is from the if, so we have to bail.
+        return Pair(-1, -1)
     }
-    return Pair(labelIndex, finalGotoIndex)
+
+    // We should either see a valid ending non-conditional goto, or we might see something that invalidates this
+    // block: a throw or switch, which is another type of control flow, or a label that isn't a return and still has
+    // things going to it, which is an entry point into this code, so our analysis logic may no longer be sound.
+    // TODO RIGHT NOW - don't break if all references to the label are within the section we're looking at.
+    val stopIndex = linkedItems.findStop(labelIndex + 1)
+    if (stopIndex == linkedItems.end || !isGoto(linkedItems.items[stopIndex])) {
+        return Pair(labelIndex, -1)
+    }
+    return Pair(labelIndex, stopIndex)
 }
 
 private data class InProgressIf(val ifMethodItem: IfMethodItem, val targetAddress: Int, val startIndex: Int)
 
+/**
+ * The Ifs that are waiting for the label they jump to, along with the stack positions of the Ifs waiting for each
+ * label, so the lowest one waiting for a given label can be found without searching the stack.
+ */
+private class InProgressIfs {
+    private val stack = ArrayList<InProgressIf>()
+    private val positionsByTarget = HashMap<Int, ArrayList<Int>>()
+
+    val size: Int
+        get() = stack.size
+
+    fun add(inProgressIf: InProgressIf) {
+        positionsByTarget.getOrPut(inProgressIf.targetAddress) { ArrayList() }.add(stack.size)
+        stack.add(inProgressIf)
+    }
+
+    fun pop(): InProgressIf {
+        val inProgressIf = stack.removeAt(stack.size - 1)
+        val positions = positionsByTarget[inProgressIf.targetAddress]!!
+        positions.removeAt(positions.size - 1)
+        return inProgressIf
+    }
+
+    fun clear() {
+        stack.clear()
+        positionsByTarget.clear()
+    }
+
+    fun getLowestPositionLookingForLabel(labelMethodItem: LabelMethodItem): Int {
+        val positions = positionsByTarget[labelMethodItem.labelAddress]
+        return if (positions == null || positions.isEmpty()) {
+            stack.size
+        } else {
+            positions[0]
+        }
+    }
+}
+
 private fun transformForwardSkipIfs(
         methodItems: MutableList<MethodItem>,
         labelInfo: LabelInfo
 ) {
-    val inProgressIfs = Stack<InProgressIf>()
-    var i = 0
-    while (i < methodItems.size) {
+    // The transformed items are built up as we go. Everything pulled into an If is at the end of the transformed
+    // items, so pulling a block in never has to shift anything.
+    val transformedItems = ArrayList<MethodItem>(methodItems.size)
+    val inProgressIfs = InProgressIfs()
+    for (i in methodItems.indices) {
         val methodItem = methodItems[i]
         if (methodItem is IfMethodItem) {
             // Get the next label, if any
@@ -168,51 +329,63 @@ private fun transformForwardSkipIfs(
                 }
             }
 
+            transformedItems.add(methodItem)
             val lastItemGotoAddress = getGotoAddress(methodItem.thenItems.lastOrNull())
             if (methodItem.elseItems.isEmpty() && lastItemGotoAddress != null) {
-                inProgressIfs.add(InProgressIf(methodItem, lastItemGotoAddress, i))
+                inProgressIfs.add(InProgressIf(methodItem, lastItemGotoAddress, transformedItems.size - 1))
             }
         } else if (methodItem is InstructionMethodItem<*>) {
-            val value = methodItem.instruction.opcode.value
-            if (value in 0x032..0x03d && methodItem is OffsetInstructionFormatMethodItem<*>) {
+            if (isIf(methodItem) && methodItem is OffsetInstructionFormatMethodItem<*>) {
+                transformedItems.add(methodItem)
                 inProgressIfs.add(InProgressIf(
                         IfMethodItem.emptyFromOffsetInstruction(methodItem),
                         methodItem.getLabel().labelAddress,
-                        i
+                        transformedItems.size - 1
                 ))
-            } else if (value in 0x028..0x02a) {
+            } else if (isGoto(methodItem)) {
                 // If this is a goto, then we'll treat it as if it is that label.
                 val gotoItem = methodItem as OffsetInstructionFormatMethodItem<*>
-                i = processInProgressIfs(inProgressIfs, gotoItem.getLabel(), methodItems, i, labelInfo)
+                processInProgressIfs(inProgressIfs, gotoItem.getLabel(), gotoItem, transformedItems, labelInfo)
+                transformedItems.add(methodItem)
                 // However, for anything that wasn't going to this label, this is now an unsupported control flow, so
                 // clear the remaining If's.
                 inProgressIfs.clear()
-            } else if (value == Opcode.THROW.value || value in 0x02b..0x02c) {
-                // If this is a throw or switch, then we're encountering other types of control
-                // flow, so bail on all potential If's we've seen so far.
-                inProgressIfs.clear()
+            } else {
+                transformedItems.add(methodItem)
+                if (isThrowOrSwitch(methodItem)) {
+                    // If this is a throw or switch, then we're encountering other types of control
+                    // flow, so bail on all potential If's we've seen so far.
+                    inProgressIfs.clear()
+                }
             }
         } else if (methodItem is LabelMethodItem) {
-            i = processInProgressIfs(inProgressIfs, methodItem, methodItems, i, labelInfo)
+            processInProgressIfs(inProgressIfs, methodItem, methodItem, transformedItems, labelInfo)
 
             if (methodItem !== labelInfo.returnLabel && labelInfo.usageCount(methodItem) != 0) {
                 // We've run into a label that isn't a return and still has things going to it, which is an entry point
                 // into this code, our analysis logic may no longer be sound. Clear the pending ifs.
                 inProgressIfs.clear()
-            } else if (/*methodItem !== effectiveEndLabel && */methodItem !== labelInfo.returnLabel) {
-                // This is a label where we've already handled all things that go to it. Don't render this label,
-                // because we shouldn't be printing out out anything that goes to it.
-                methodItems.removeAt(i)
-                i--
+                transformedItems.add(methodItem)
+            } else if (/*methodItem === effectiveEndLabel || */methodItem === labelInfo.returnLabel) {
+                transformedItems.add(methodItem)
             }
+            // Otherwise this is a label where we've already handled all things that go to it. Don't render this label,
+            // because we shouldn't be printing out out anything that goes to it.
+        } else {
+            transformedItems.add(methodItem)
         }
-        i++
     }
+
+    methodItems.clear()
+    methodItems.addAll(transformedItems)
 }
 
-private fun processInProgressIfs(inProgressIfs: Stack<InProgressIf>, methodItem: LabelMethodItem, methodItems: MutableList<MethodItem>, currentIndex: Int, labelInfo: LabelInfo): Int {
-    var i = currentIndex
-    val lowestPositionLookingForLabel = getLowestPositionLookingForLabel(inProgressIfs, methodItem)
+/**
+ * Pulls everything after each If that is waiting for the given label into that If
+ * @param currentItem the item being processed, which will directly follow the Ifs
+ */
+private fun processInProgressIfs(inProgressIfs: InProgressIfs, methodItem: LabelMethodItem, currentItem: MethodItem, transformedItems: ArrayList<MethodItem>, labelInfo: LabelInfo) {
+    val lowestPositionLookingForLabel = inProgressIfs.getLowestPositionLookingForLabel(methodItem)
     while (inProgressIfs.size > lowestPositionLookingForLabel) {
         val (ifItem, targetAddress, startIndex) = inProgressIfs.pop()
 
@@ -220,57 +393,34 @@ private fun processInProgressIfs(inProgressIfs: Stack<InProgressIf>, methodItem:
             continue
         }
 
-        pullBlockIntoIf(
-                methodItems,
-                startIndex + 1,
-                i - 1,
-                startIndex,
-                ifItem,
-                putInThen = false
-        )
-        // Reset our iteration index to just after updated item, which should be the label we were just
-        // handling, so we can continue to process If's for that label and/or process the next item on our next loop.
-        i = startIndex + 1
+        val blockItems = transformedItems.subList(startIndex + 1, transformedItems.size)
+        val ifMethodItem = makeIf(ifItem, ArrayList(blockItems), putInThen = false)
+        blockItems.clear()
+        // Replace the original offset item
+        transformedItems[startIndex] = ifMethodItem
+        // Remove the redundant ending gotos
+        removeRedundantEndingGotos(ifMethodItem, currentItem.codeAddress)
         // We've just consumed one usage of that label, go ahead and reduce its usage count.
         labelInfo.decrementCount(methodItem)
     }
-    return i
 }
 
-private fun pullBlockIntoIf(
-        methodItems: MutableList<MethodItem>,
-        startIndexInclusive: Int,
-        endIndexInclusive: Int,
-        ifBlockIndex: Int,
+private fun makeIf(
         originalItem: IfMethodItem,
+        blockItems: ArrayList<MethodItem>,
         putInThen: Boolean
-) {
-    // We leave the original item in place, since we're going to replace it with an If item. Also
-    // leave the label in place.
-    val subList = methodItems.subList(startIndexInclusive, endIndexInclusive + 1)
-    // Copy the sublist, then clear it to remove these items from the main list
-    val itemsCopy = ArrayList(subList)
-    subList.clear()
-
-
+): IfMethodItem {
     val (thenItems, elseItems, existingItems) = if (putInThen) {
-        Triple(itemsCopy, originalItem.elseItems, originalItem.thenItems)
+        Triple(blockItems, originalItem.elseItems, originalItem.thenItems)
     } else {
-        Triple(originalItem.thenItems, itemsCopy, originalItem.elseItems)
+        Triple(originalItem.thenItems, blockItems, originalItem.elseItems)
     }
 
     if (existingItems.isNotEmpty()) {
         throw RuntimeException("Got non-empty existing items - putInThen=$putInThen existingItems=$existingItems")
     }
 
-    // Update the If item
-    val ifMethodItem = originalItem.withNewItems(thenItems, elseItems)
-    // Replace the original offset item
-    methodItems[ifBlockIndex] = ifMethodItem
-    // Remove the redundant ending gotos
-    if (ifBlockIndex + 1< methodItems.size) {
-        removeRedundantEndingGotos(ifMethodItem, methodItems[ifBlockIndex + 1].codeAddress)
-    }
+    return originalItem.withNewItems(thenItems, elseItems)
 }
 
 private fun removeRedundantEndingGotos(ifMethodItem: IfMethodItem, nextInstructionAddress: Int) {
@@ -284,20 +434,10 @@ private fun removeRedundantEndingGotos(ifMethodItem: IfMethodItem, nextInstructi
     }
 }
 
-private fun getLowestPositionLookingForLabel(inProgressIfs: Stack<InProgressIf>, labelMethodItem: LabelMethodItem): Int {
-    val i = inProgressIfs.indexOfFirst { e -> e.targetAddress == labelMethodItem.labelAddress }
-    return if (i == -1) {
-        inProgressIfs.size
-    } else {
-        i
-    }
-}
-
 private fun getGotoAddress(methodItem: MethodItem?): Int? {
-    val offsetItem = methodItem as? OffsetInstructionFormatMethodItem<*>
-    return if (offsetItem != null && offsetItem.instruction.opcode.value in 0x028..0x02a) {
-        offsetItem.getLabel().labelAddress
+    return if (methodItem is OffsetInstructionFormatMethodItem<*> && isGoto(methodItem)) {
+        methodItem.getLabel().labelAddress
     } else {
         null
     }
-}
\ No newline at end of file
+}
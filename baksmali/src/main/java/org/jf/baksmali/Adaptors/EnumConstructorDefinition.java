@@ -0,0 +1,101 @@
+package org.jf.baksmali.Adaptors;
+
+import org.jf.baksmali.Adaptors.Format.InstructionMethodItem;
+import org.jf.dexlib.AnnotationSetItem;
+import org.jf.dexlib.AnnotationSetRefList;
+import org.jf.dexlib.ClassDataItem;
+import org.jf.dexlib.CodeItem;
+import org.jf.dexlib.MethodIdItem;
+import org.jf.dexlib.TypeListItem;
+import org.jf.dexlib.Code.FiveRegisterInstruction;
+import org.jf.dexlib.Code.Instruction;
+import org.jf.dexlib.Code.InstructionWithReference;
+import org.jf.dexlib.Code.Opcode;
+import org.jf.dexlib.Code.RegisterRangeInstruction;
+import org.jf.util.IndentingWriter;
+import org.jf.util.MemoryWriter;
+
+import java.io.IOException;
+
+/**
+ * Decompiles a constructor of an enum. The name and ordinal that the compiler passes in to every enum constructor are
+ * left out of the parameters, along with the call to the super (or another) constructor they are passed to.
+ */
+public class EnumConstructorDefinition extends MethodDefinition {
+    private final ClassDataItem.EncodedMethod encodedMethod;
+    private final IndentingWriter hiddenWriter = new IndentingWriter(new MemoryWriter());
+    private boolean hidConstructorCall;
+
+    public EnumConstructorDefinition(ClassDataItem.EncodedMethod encodedMethod) {
+        super(encodedMethod);
+        this.encodedMethod = encodedMethod;
+    }
+
+    /**
+     * @return whether this is the constructor the compiler generates for an enum with no constructor of its own, which
+     * only passes the name and ordinal on to Enum
+     */
+    public boolean isDefault() {
+        CodeItem codeItem = encodedMethod.codeItem;
+        TypeListItem parameters = encodedMethod.method.getPrototype().getParameters();
+        if (codeItem == null || parameters == null || parameters.getTypeCount() != 2 ||
+                !parameters.getTypeIdItem(0).getTypeDescriptor().equals("Ljava/lang/String;") ||
+                !parameters.getTypeIdItem(1).getTypeDescriptor().equals("I")) {
+            return false;
+        }
+
+        Instruction[] instructions = codeItem.getInstructions();
+        if (instructions.length != 2 || instructions[1].opcode != Opcode.RETURN_VOID ||
+                !isConstructorCall(instructions[0], true)) {
+            return false;
+        }
+
+        // The super constructor has to be passed this, the name and the ordinal, in that order
+        int thisRegister = codeItem.getRegisterCount() - 3;
+        if (instructions[0] instanceof RegisterRangeInstruction) {
+            RegisterRangeInstruction invoke = (RegisterRangeInstruction) instructions[0];
+            return invoke.getRegCount() == 3 && invoke.getStartRegister() == thisRegister;
+        }
+        FiveRegisterInstruction invoke = (FiveRegisterInstruction) instructions[0];
+        return invoke.getRegCount() == 3 && invoke.getRegisterD() == thisRegister &&
+                invoke.getRegisterE() == thisRegister + 1 && invoke.getRegisterF() == thisRegister + 2;
+    }
+
+    @Override
+    public void writeTo(IndentingWriter writer, AnnotationSetItem annotationSet,
+                        AnnotationSetRefList parameterAnnotations) throws IOException {
+        hidConstructorCall = false;
+        super.writeTo(writer, annotationSet, parameterAnnotations);
+    }
+
+    @Override
+    protected int getHiddenParameterCount() {
+        return 2;
+    }
+
+    @Override
+    protected void writeStatement(IndentingWriter writer, MethodItem methodItem) throws IOException {
+        if (!hidConstructorCall && methodItem instanceof InstructionMethodItem &&
+                isConstructorCall(((InstructionMethodItem) methodItem).instruction, false)) {
+            // The call is only written once the next item is, so write it out of sight right away
+            super.writeStatement(writer, methodItem);
+            methodItem.flush(hiddenWriter);
+            hidConstructorCall = true;
+            return;
+        }
+        super.writeStatement(writer, methodItem);
+    }
+
+    private static boolean isConstructorCall(Instruction instruction, boolean superOnly) {
+        if (instruction.opcode != Opcode.INVOKE_DIRECT && instruction.opcode != Opcode.INVOKE_DIRECT_RANGE) {
+            return false;
+        }
+        MethodIdItem method = (MethodIdItem) ((InstructionWithReference) instruction).getReferencedItem();
+        if (!method.getMethodName().getStringValue().equals("<init>")) {
+            return false;
+        }
+        String containingClass = method.getContainingClass().getTypeDescriptor();
+        return ClassDefinition.isSuper(containingClass) ||
+                (!superOnly && ClassDefinition.isCurrentClass(containingClass));
+    }
+}
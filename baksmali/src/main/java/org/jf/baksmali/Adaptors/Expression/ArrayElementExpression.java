@@ -0,0 +1,45 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+/**
+ * An access of an element of an array
+ */
+public class ArrayElementExpression extends Expression {
+    private final Expression array;
+    private final Expression index;
+
+    public ArrayElementExpression(Expression array, Expression index) {
+        this.array = array;
+        this.index = index;
+        addChild(array);
+        addChild(index);
+    }
+
+    public Expression getArray() {
+        return array;
+    }
+
+    public Expression getIndex() {
+        return index;
+    }
+
+    @Override
+    protected boolean scanTopLevelSections(TopLevelSections sections) {
+        if (!sections.scan(array)) {
+            return false;
+        }
+        sections.scan("[");
+        if (!sections.scan(index)) {
+            return false;
+        }
+        sections.scan("]");
+        return true;
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        array.appendTo(builder);
+        builder.append('[');
+        index.appendTo(builder);
+        builder.append(']');
+    }
+}
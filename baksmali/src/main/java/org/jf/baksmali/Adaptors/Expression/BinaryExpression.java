@@ -0,0 +1,57 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+/**
+ * An operator applied to two operands. The operands are written as-is, so any parentheses they need must already
+ * have been added, see Parenthesizer.ensureOrderOfOperations
+ */
+public class BinaryExpression extends Expression {
+    private final String operator;
+    private final Expression left;
+    private final Expression right;
+
+    public BinaryExpression(String operator, Expression left, Expression right) {
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+        addChild(left);
+        addChild(right);
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public Expression getLeft() {
+        return left;
+    }
+
+    public Expression getRight() {
+        return right;
+    }
+
+    @Override
+    protected boolean scanTopLevelSections(TopLevelSections sections) {
+        if (!sections.scan(left)) {
+            return false;
+        }
+        sections.scan(" ");
+        sections.scan(operator);
+        sections.scan(" ");
+        return sections.scan(right);
+    }
+
+    @Override
+    protected boolean mayBeOperator() {
+        //the text always has a space in it
+        return false;
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        left.appendTo(builder);
+        builder.append(' ');
+        builder.append(operator);
+        builder.append(' ');
+        right.appendTo(builder);
+    }
+}
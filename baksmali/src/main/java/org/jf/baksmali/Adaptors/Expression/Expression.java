@@ -0,0 +1,138 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+import java.util.regex.Pattern;
+
+/**
+ * A node in the tree of expressions that is built up while decompiling a method. The contents of registers and the
+ * results of method calls are kept as expressions instead of text, so that an instruction can look at what a register
+ * holds (a new array, a call on a StringBuilder, etc.) without parsing it back out of a string.
+ *
+ * An expression is only converted to text when it is needed, and the text is kept, so an expression that is used
+ * several times is only rendered once.
+ */
+public abstract class Expression {
+    private static final Pattern THIS = Pattern.compile("^([A-Za-z]\\.)?this$");
+
+    /**
+     * Rendering or summarizing an expression recurses through all of its children that haven't been rendered or
+     * summarized yet. A child that would make that deeper than this is rendered and summarized when it's added
+     */
+    private static final int MAX_PENDING_DEPTH = 256;
+
+    private String text;
+    private TopLevelSections topLevelSections;
+    private int pendingDepth = 1;
+
+    /**
+     * Appends the text of this expression to the given builder
+     */
+    protected abstract void render(StringBuilder builder);
+
+    /**
+     * Scans the pieces of this expression, in the same order as render writes them
+     * @return false if the sections can't be worked out without scanning the whole text of this expression
+     */
+    protected boolean scanTopLevelSections(TopLevelSections sections) {
+        sections.scan(toString());
+        return true;
+    }
+
+    /**
+     * Should be called by the constructor of a compound expression for each of its children
+     */
+    protected void addChild(Expression child) {
+        if (child == null) {
+            return;
+        }
+        int childDepth = child.pendingDepth;
+        if (childDepth >= MAX_PENDING_DEPTH) {
+            child.getTopLevelSections();
+            child.toString();
+            child.pendingDepth = childDepth = 1;
+        }
+        pendingDepth = Math.max(pendingDepth, childDepth + 1);
+    }
+
+    /**
+     * Should be called by the constructor of a compound expression that has the same children as the given
+     * expression, apart from any that it adds itself
+     */
+    protected void addChildrenOf(Expression expression) {
+        pendingDepth = Math.max(pendingDepth, expression.pendingDepth);
+    }
+
+    public void appendTo(StringBuilder builder) {
+        if (text != null) {
+            builder.append(text);
+        } else {
+            render(builder);
+        }
+    }
+
+    /**
+     * @return the text of this expression, if it is a single name or literal, or null if it is a compound expression
+     */
+    public String getSimpleText() {
+        return null;
+    }
+
+    public boolean isSimpleText(String text) {
+        return text.equals(getSimpleText());
+    }
+
+    /**
+     * @return true if this expression refers to the current instance, in which case it can be left out when accessing
+     * a member of it
+     */
+    public boolean isThis() {
+        String simpleText = getSimpleText();
+        return simpleText != null && THIS.matcher(simpleText).find();
+    }
+
+    /**
+     * @return a summary of the operators in this expression that aren't enclosed in parentheses, which decides whether
+     * it needs to be parenthesized when it's combined with other expressions
+     */
+    public TopLevelSections getTopLevelSections() {
+        if (topLevelSections == null) {
+            TopLevelSections sections = new TopLevelSections();
+            if (!scanTopLevelSections(sections)) {
+                sections = new TopLevelSections();
+                sections.scan(toString());
+            }
+            topLevelSections = sections;
+        }
+        return topLevelSections;
+    }
+
+    /**
+     * @return false if the text of this expression can't be an operator or part of one
+     */
+    protected boolean mayBeOperator() {
+        return false;
+    }
+
+    /**
+     * @return true if the text of this expression spans several lines, as the body of an anonymous class does
+     */
+    public boolean isMultiline() {
+        String text = toString();
+        for (int i=0; i<text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        if (text == null) {
+            StringBuilder builder = new StringBuilder();
+            render(builder);
+            text = builder.toString();
+        }
+        return text;
+    }
+}
@@ -0,0 +1,71 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+/**
+ * An access of a field, either of an instance or, if there is no instance, of the current class
+ */
+public class FieldExpression extends Expression {
+    private final Expression instance;
+    private final String fieldName;
+
+    public FieldExpression(Expression instance, String fieldName) {
+        this.instance = instance;
+        this.fieldName = fieldName;
+        addChild(instance);
+    }
+
+    public Expression getInstance() {
+        return instance;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        if (instance != null) {
+            instance.appendTo(builder);
+            builder.append('.');
+        }
+        builder.append(fieldName);
+    }
+
+    @Override
+    protected boolean scanTopLevelSections(TopLevelSections sections) {
+        if (instance != null) {
+            if (!sections.scan(instance)) {
+                return false;
+            }
+            sections.scan(".");
+        }
+        sections.scan(fieldName);
+        return true;
+    }
+
+    @Override
+    protected boolean mayBeOperator() {
+        return instance == null && TopLevelSections.mayBeOperator(fieldName);
+    }
+
+    @Override
+    public String getSimpleText() {
+        if (instance == null) {
+            return fieldName;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isThis() {
+        if (instance == null) {
+            return super.isThis();
+        }
+        //an outer instance, X.this, where X is a single letter
+        String instanceText = instance.getSimpleText();
+        if (!fieldName.equals("this") || instanceText == null || instanceText.length() != 1) {
+            return false;
+        }
+        char c = instanceText.charAt(0);
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+}
@@ -0,0 +1,81 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+import java.util.List;
+
+/**
+ * A method call, either on an instance or, if there is no instance, a static call or a call on the current instance
+ */
+public class InvokeExpression extends Expression {
+    private final Expression instance;
+    private final String methodName;
+    private final List<Expression> arguments;
+
+    public InvokeExpression(Expression instance, String methodName, List<Expression> arguments) {
+        this.instance = instance;
+        this.methodName = methodName;
+        this.arguments = arguments;
+        addChild(instance);
+        for (Expression argument: arguments) {
+            addChild(argument);
+        }
+    }
+
+    public Expression getInstance() {
+        return instance;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public List<Expression> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        if (instance != null) {
+            instance.appendTo(builder);
+            builder.append('.');
+        }
+        builder.append(methodName);
+        renderArguments(builder, arguments);
+    }
+
+    @Override
+    protected boolean scanTopLevelSections(TopLevelSections sections) {
+        if (instance != null) {
+            if (!sections.scan(instance)) {
+                return false;
+            }
+            sections.scan(".");
+        }
+        sections.scan(methodName);
+        return scanArguments(sections, arguments);
+    }
+
+    static boolean scanArguments(TopLevelSections sections, List<Expression> arguments) {
+        sections.scan("(");
+        for (int i=0; i<arguments.size(); i++) {
+            if (i != 0) {
+                sections.scan(", ");
+            }
+            if (!sections.scan(arguments.get(i))) {
+                return false;
+            }
+        }
+        sections.scan(")");
+        return true;
+    }
+
+    static void renderArguments(StringBuilder builder, List<Expression> arguments) {
+        builder.append('(');
+        for (int i=0; i<arguments.size(); i++) {
+            if (i != 0) {
+                builder.append(", ");
+            }
+            arguments.get(i).appendTo(builder);
+        }
+        builder.append(')');
+    }
+}
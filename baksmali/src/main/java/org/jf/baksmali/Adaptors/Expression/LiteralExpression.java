@@ -0,0 +1,27 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+/**
+ * A constant, such as a number, a string or a class literal
+ */
+public class LiteralExpression extends Expression {
+    private final String literal;
+
+    public LiteralExpression(String literal) {
+        this.literal = literal;
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        builder.append(literal);
+    }
+
+    @Override
+    protected boolean mayBeOperator() {
+        return TopLevelSections.mayBeOperator(literal);
+    }
+
+    @Override
+    public String getSimpleText() {
+        return literal;
+    }
+}
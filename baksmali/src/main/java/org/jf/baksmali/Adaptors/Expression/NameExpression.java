@@ -0,0 +1,27 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+/**
+ * A name that is written as-is, such as a local variable, a register or a type
+ */
+public class NameExpression extends Expression {
+    private final String name;
+
+    public NameExpression(String name) {
+        this.name = name;
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        builder.append(name);
+    }
+
+    @Override
+    protected boolean mayBeOperator() {
+        return TopLevelSections.mayBeOperator(name);
+    }
+
+    @Override
+    public String getSimpleText() {
+        return name;
+    }
+}
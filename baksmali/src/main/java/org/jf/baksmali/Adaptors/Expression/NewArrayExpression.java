@@ -0,0 +1,215 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+import java.util.Arrays;
+
+/**
+ * The creation of a new array, either with a size (new int[size]) or with its elements (new int[] {1, 2})
+ *
+ * An array with its elements is made by setting the elements of a new array one at a time, see withElement. Each
+ * element that is set makes a new version of the array, and the versions share a single elements array, so that
+ * setting an element doesn't copy all of the others. Only the newest version holds the elements array. Each older
+ * version just keeps the element that it differs by from the next version, and works out its own elements from
+ * there if it's ever needed
+ */
+public class NewArrayExpression extends Expression {
+    private final String elementType;
+    private final Expression size;
+
+    //the elements, if this is the newest version of an array with its elements
+    private Expression[] elements;
+    //the number of elements that span several lines
+    private int multilineElementCount;
+
+    //the next version of this array, and the element of this version that was replaced in it, once there is one
+    private NewArrayExpression nextVersion;
+    private int replacedIndex;
+    private Expression replacedElement;
+
+    public NewArrayExpression(String elementType, Expression size) {
+        this.elementType = elementType;
+        this.size = size;
+        this.elements = null;
+        addChild(size);
+    }
+
+    private NewArrayExpression(String elementType, Expression[] elements, int multilineElementCount) {
+        this.elementType = elementType;
+        this.size = null;
+        this.elements = elements;
+        this.multilineElementCount = multilineElementCount;
+    }
+
+    public String getElementType() {
+        return elementType;
+    }
+
+    /**
+     * @return the size of the array, or null if the array was given its elements
+     */
+    public Expression getSize() {
+        return size;
+    }
+
+    /**
+     * @return the elements of the array, or null if the array was given a size. The returned array must not be
+     * modified
+     */
+    public Expression[] getElements() {
+        if (nextVersion == null) {
+            return elements;
+        }
+
+        //each element is the one replaced by the nearest newer version that replaced it, or else the element in the
+        //newest version
+        NewArrayExpression version = this;
+        while (version.nextVersion != null) {
+            version = version.nextVersion;
+        }
+        Expression[] elements = version.elements.clone();
+        boolean[] replaced = new boolean[elements.length];
+        for (version = this; version.nextVersion != null; version = version.nextVersion) {
+            if (!replaced[version.replacedIndex]) {
+                replaced[version.replacedIndex] = true;
+                elements[version.replacedIndex] = version.replacedElement;
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * @return whether withElement can set the element at the given index. It can't if the size of the array isn't
+     * a literal, if the index is out of range, or if an element spans several lines, since an anonymous class in an
+     * array is left to be assigned on its own
+     */
+    public boolean canSetElement(int index) {
+        if (elements != null || nextVersion != null) {
+            return multilineElementCount == 0 && index >= 0 && index < getLength();
+        }
+        int length = getLiteralSize();
+        return length > 0 && index < length && index >= 0;
+    }
+
+    /**
+     * Makes a new version of this array, with the element at the given index set to the given element. An array that
+     * was only given a size starts out with every element null. This array is unchanged.
+     *
+     * Setting an element of the newest version takes a constant time. Setting an element of an older version copies
+     * its elements
+     * @param index the index of the element to set. canSetElement must be true for it
+     * @param element the element to set
+     * @return the new version of the array
+     */
+    public NewArrayExpression withElement(int index, Expression element) {
+        Expression[] newElements;
+        if (elements != null) {
+            //this is the newest version, so the new version takes over its elements
+            newElements = elements;
+        } else if (nextVersion != null) {
+            //getElements already makes a copy for an older version
+            newElements = getElements();
+        } else {
+            newElements = new Expression[getLiteralSize()];
+            Arrays.fill(newElements, new LiteralExpression("null"));
+        }
+
+        Expression oldElement = newElements[index];
+        int newMultilineElementCount = multilineElementCount;
+        if (oldElement.isMultiline()) {
+            newMultilineElementCount--;
+        }
+        if (element.isMultiline()) {
+            newMultilineElementCount++;
+        }
+        newElements[index] = element;
+
+        NewArrayExpression newArray = new NewArrayExpression(elementType, newElements, newMultilineElementCount);
+        newArray.addChildrenOf(this);
+        newArray.addChild(element);
+
+        if (elements != null) {
+            elements = null;
+            nextVersion = newArray;
+            replacedIndex = index;
+            replacedElement = oldElement;
+        }
+        return newArray;
+    }
+
+    private int getLength() {
+        if (elements != null) {
+            return elements.length;
+        }
+        NewArrayExpression version = this;
+        while (version.nextVersion != null) {
+            version = version.nextVersion;
+        }
+        return version.elements.length;
+    }
+
+    /**
+     * @return the size of the array, if it was given a size that's a literal number, or -1
+     */
+    private int getLiteralSize() {
+        String sizeText = size.getSimpleText();
+        if (sizeText == null || sizeText.length() == 0) {
+            return -1;
+        }
+        for (int i = 0; i < sizeText.length(); i++) {
+            if (sizeText.charAt(i) < '0' || sizeText.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        try {
+            return Integer.parseInt(sizeText);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    @Override
+    protected boolean scanTopLevelSections(TopLevelSections sections) {
+        sections.scan("new ");
+        sections.scan(elementType);
+        Expression[] elements = getElements();
+        if (elements == null) {
+            sections.scan("[");
+            if (!sections.scan(size)) {
+                return false;
+            }
+            sections.scan("]");
+        } else {
+            sections.scan("[] {");
+            for (int i=0; i<elements.length; i++) {
+                if (i != 0) {
+                    sections.scan(", ");
+                }
+                if (!sections.scan(elements[i])) {
+                    return false;
+                }
+            }
+            sections.scan("}");
+        }
+        return true;
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        builder.append("new ");
+        builder.append(elementType);
+        Expression[] elements = getElements();
+        if (elements == null) {
+            builder.append('[');
+            size.appendTo(builder);
+            builder.append(']');
+        } else {
+            builder.append("[] {");
+            for (int i=0; i<elements.length; i++) {
+                if (i != 0) {
+                    builder.append(", ");
+                }
+                elements[i].appendTo(builder);
+            }
+            builder.append('}');
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+import java.util.List;
+
+/**
+ * The creation of a new object, optionally of an anonymous class with the given body
+ */
+public class NewInstanceExpression extends Expression {
+    private final String type;
+    private final List<Expression> arguments;
+    private final String anonymousClassBody;
+
+    public NewInstanceExpression(String type, List<Expression> arguments) {
+        this(type, arguments, null);
+    }
+
+    public NewInstanceExpression(String type, List<Expression> arguments, String anonymousClassBody) {
+        this.type = type;
+        this.arguments = arguments;
+        this.anonymousClassBody = anonymousClassBody;
+        for (Expression argument: arguments) {
+            addChild(argument);
+        }
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public List<Expression> getArguments() {
+        return arguments;
+    }
+
+    public boolean isAnonymousClass() {
+        return anonymousClassBody != null;
+    }
+
+    @Override
+    protected boolean scanTopLevelSections(TopLevelSections sections) {
+        sections.scan("new ");
+        sections.scan(type);
+        if (!InvokeExpression.scanArguments(sections, arguments)) {
+            return false;
+        }
+        if (anonymousClassBody != null) {
+            sections.scan(" ");
+            sections.scan(anonymousClassBody);
+        }
+        return true;
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        builder.append("new ");
+        builder.append(type);
+        InvokeExpression.renderArguments(builder, arguments);
+        if (anonymousClassBody != null) {
+            builder.append(' ');
+            builder.append(anonymousClassBody);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+/**
+ * An expression enclosed in parentheses
+ */
+public class ParenthesizedExpression extends Expression {
+    private final Expression expression;
+
+    public ParenthesizedExpression(Expression expression) {
+        this.expression = expression;
+        addChild(expression);
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    @Override
+    protected boolean scanTopLevelSections(TopLevelSections sections) {
+        sections.scan("(");
+        if (!sections.scan(expression)) {
+            return false;
+        }
+        sections.scan(")");
+        return true;
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        builder.append('(');
+        expression.appendTo(builder);
+        builder.append(')');
+    }
+}
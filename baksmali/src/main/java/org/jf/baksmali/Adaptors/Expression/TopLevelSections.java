@@ -0,0 +1,205 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+import org.jf.baksmali.Parenthesizer;
+
+/**
+ * A summary of the sections that Parenthesizer.findUnenclosedSections would find in the text of an expression, i.e.
+ * the pieces of text between each pair of spaces that aren't inside parentheses or quotes. Those are the operators
+ * that decide whether the expression needs parentheses.
+ *
+ * The summary is built by scanning the pieces of an expression in order. Literal text is scanned a character at a
+ * time, the same way findUnenclosedSections does, and a child expression is added using its own summary, without
+ * looking at its text. When the summary of a child isn't enough (e.g. a child that starts inside a quote), scan
+ * returns false, and the expression is summarized by scanning its whole text instead.
+ */
+public class TopLevelSections {
+    private static final String OPERATOR_CHARS;
+    private static final int MAX_OPERATOR_LENGTH;
+
+    static {
+        StringBuilder operatorChars = new StringBuilder();
+        int maxOperatorLength = 0;
+        for (String operator: Parenthesizer.OPERATOR_PRECEDENCE.keySet()) {
+            for (int i=0; i<operator.length(); i++) {
+                if (operatorChars.indexOf(operator.substring(i, i + 1)) < 0) {
+                    operatorChars.append(operator.charAt(i));
+                }
+            }
+            maxOperatorLength = Math.max(maxOperatorLength, operator.length());
+        }
+        OPERATOR_CHARS = operatorChars.toString();
+        MAX_OPERATOR_LENGTH = maxOperatorLength;
+    }
+
+    /**
+     * The number of finished sections, i.e. not counting a trailing unpaired space
+     */
+    private int sectionCount = 0;
+    private boolean allOperators = true;
+    private int minPrecedence = Integer.MAX_VALUE;
+
+    /**
+     * Whether there is an unpaired space, which findUnenclosedSections reports as a null section
+     */
+    private boolean unfinished = false;
+    /**
+     * The text of the unfinished section so far, or null if it can't be an operator
+     */
+    private StringBuilder unfinishedText = null;
+
+    //the scanning state at the end of the text
+    private char quote = 0;
+    private int parenDepth = 0;
+    private int minParenDepth = 0;
+    private int lastChar = -1;
+
+    private boolean empty = true;
+    private boolean startsWithNew = false;
+
+    public int getSectionCount() {
+        return sectionCount + (unfinished ? 1 : 0);
+    }
+
+    public boolean hasUnfinishedSection() {
+        return unfinished;
+    }
+
+    /**
+     * @return false if any finished section isn't an operator
+     */
+    public boolean allOperators() {
+        return allOperators;
+    }
+
+    /**
+     * @return the lowest precedence of the operators in the finished sections, or Integer.MAX_VALUE if there are none
+     */
+    public int getMinPrecedence() {
+        return minPrecedence;
+    }
+
+    public boolean startsWithNew() {
+        return startsWithNew;
+    }
+
+    void scan(String text) {
+        if (empty && text.length() > 0) {
+            startsWithNew = text.startsWith("new ");
+            empty = false;
+        }
+
+        for (int i=0; i<text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote && lastChar != '\\') {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                parenDepth++;
+            } else if (c == ')') {
+                parenDepth--;
+                minParenDepth = Math.min(minParenDepth, parenDepth);
+            } else if (c == ' ' && parenDepth == 0) {
+                if (!unfinished) {
+                    unfinished = true;
+                    unfinishedText = new StringBuilder();
+                } else {
+                    finishSection();
+                }
+                lastChar = c;
+                continue;
+            }
+
+            if (unfinished && unfinishedText != null) {
+                if (unfinishedText.length() == MAX_OPERATOR_LENGTH || OPERATOR_CHARS.indexOf(c) < 0) {
+                    unfinishedText = null;
+                } else {
+                    unfinishedText.append(c);
+                }
+            }
+            lastChar = c;
+        }
+    }
+
+    private void finishSection() {
+        sectionCount++;
+        Integer precedence = null;
+        if (unfinishedText != null) {
+            precedence = Parenthesizer.OPERATOR_PRECEDENCE.get(unfinishedText.toString());
+        }
+        if (precedence == null) {
+            allOperators = false;
+        } else {
+            minPrecedence = Math.min(minPrecedence, precedence);
+        }
+        unfinished = false;
+        unfinishedText = null;
+    }
+
+    /**
+     * Adds the sections of the given child expression
+     * @return false if the sections can't be worked out from the child's summary
+     */
+    boolean scan(Expression child) {
+        TopLevelSections childSections = child.getTopLevelSections();
+        if (childSections.empty) {
+            return true;
+        }
+        if (quote != 0 || parenDepth < 0) {
+            return false;
+        }
+
+        if (parenDepth == 0 && !unfinished) {
+            sectionCount += childSections.sectionCount;
+            allOperators &= childSections.allOperators;
+            minPrecedence = Math.min(minPrecedence, childSections.minPrecedence);
+            unfinished = childSections.unfinished;
+            if (childSections.unfinishedText != null) {
+                unfinishedText = new StringBuilder(childSections.unfinishedText);
+            }
+        } else if (parenDepth > 0) {
+            //none of the child's spaces are outside of the parentheses, as long as it doesn't close them
+            if (parenDepth + childSections.minParenDepth <= 0 || (unfinished && unfinishedText != null)) {
+                return false;
+            }
+        } else {
+            //the child continues the unfinished section
+            if (childSections.sectionCount != 0 || childSections.unfinished) {
+                return false;
+            }
+            if (unfinishedText != null) {
+                if (child.mayBeOperator()) {
+                    return false;
+                }
+                unfinishedText = null;
+            }
+        }
+
+        if (empty) {
+            startsWithNew = childSections.startsWithNew;
+            empty = false;
+        }
+        quote = childSections.quote;
+        minParenDepth = Math.min(minParenDepth, parenDepth + childSections.minParenDepth);
+        parenDepth += childSections.parenDepth;
+        lastChar = childSections.lastChar;
+        return true;
+    }
+
+    /**
+     * @return true if the given text could be an operator, or part of one
+     */
+    static boolean mayBeOperator(String text) {
+        if (text.length() > MAX_OPERATOR_LENGTH) {
+            return false;
+        }
+        for (int i=0; i<text.length(); i++) {
+            if (OPERATOR_CHARS.indexOf(text.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
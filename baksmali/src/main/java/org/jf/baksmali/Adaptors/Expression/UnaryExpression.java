@@ -0,0 +1,64 @@
+package org.jf.baksmali.Adaptors.Expression;
+
+/**
+ * An operator applied to a single operand, such as a negation, a cast (where the operator is "(type) ") or an
+ * increment
+ */
+public class UnaryExpression extends Expression {
+    private final String operator;
+    private final Expression operand;
+    private final boolean postfix;
+
+    public UnaryExpression(String operator, Expression operand) {
+        this(operator, operand, false);
+    }
+
+    public UnaryExpression(String operator, Expression operand, boolean postfix) {
+        this.operator = operator;
+        this.operand = operand;
+        this.postfix = postfix;
+        addChild(operand);
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public Expression getOperand() {
+        return operand;
+    }
+
+    public boolean isPostfix() {
+        return postfix;
+    }
+
+    @Override
+    protected boolean scanTopLevelSections(TopLevelSections sections) {
+        if (!postfix) {
+            sections.scan(operator);
+        }
+        if (!sections.scan(operand)) {
+            return false;
+        }
+        if (postfix) {
+            sections.scan(operator);
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean mayBeOperator() {
+        return TopLevelSections.mayBeOperator(operator) && operand.mayBeOperator();
+    }
+
+    @Override
+    protected void render(StringBuilder builder) {
+        if (!postfix) {
+            builder.append(operator);
+        }
+        operand.appendTo(builder);
+        if (postfix) {
+            builder.append(operator);
+        }
+    }
+}
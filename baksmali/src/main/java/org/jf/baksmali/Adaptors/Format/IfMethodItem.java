@@ -1,6 +1,8 @@
 package org.jf.baksmali.Adaptors.Format;
 
 import org.jetbrains.annotations.NotNull;
+import org.jf.baksmali.Adaptors.Expression.Expression;
+import org.jf.baksmali.Adaptors.Expression.LiteralExpression;
 import org.jf.baksmali.Adaptors.MethodItem;
 import org.jf.baksmali.Adaptors.RegisterFormatter;
 import org.jf.baksmali.Adaptors.TypeFormatter;
@@ -54,8 +56,12 @@ public class IfMethodItem extends MethodItem {
         return RegisterFormatter.getRegisterContents(((SingleRegisterInstruction) underlyingInstruction).getRegisterA(), underlyingCodeItem);
     }
 
-    private String getSecondRegisterContents() {
-        return RegisterFormatter.getRegisterContents(((TwoRegisterInstruction) underlyingInstruction).getRegisterB(), underlyingCodeItem);
+    private Expression getFirstRegisterExpression() {
+        return RegisterFormatter.getRegisterExpression(((SingleRegisterInstruction) underlyingInstruction).getRegisterA(), underlyingCodeItem);
+    }
+
+    private Expression getSecondRegisterExpression() {
+        return RegisterFormatter.getRegisterExpression(((TwoRegisterInstruction) underlyingInstruction).getRegisterB(), underlyingCodeItem);
     }
 
     private static void writeItems(IndentingWriter writer, List<MethodItem> items) throws IOException {
@@ -101,10 +107,10 @@ public class IfMethodItem extends MethodItem {
     }
 
     private void writeCondition(IndentingWriter writer, Opcode opcode) throws IOException {
-        final String other;
+        final Expression other;
         if (opcode.value >= 0x032 && opcode.value <= 0x037) {
             // Compare to register
-            other = getSecondRegisterContents();
+            other = getSecondRegisterExpression();
         } else {
             // Compare to zero
             String registerType = RegisterFormatter.getRegisterType(getFirstRegister());
@@ -120,9 +126,9 @@ public class IfMethodItem extends MethodItem {
                 }
                 return;
             }
-            other = TypeFormatter.zeroAs(registerType);
+            other = new LiteralExpression(TypeFormatter.zeroAs(registerType));
         }
-        writer.write(Parenthesizer.ensureOrderOfOperations(opcode.name, getFirstRegisterContents(), other));
+        writer.write(Parenthesizer.ensureOrderOfOperations(opcode.name, getFirstRegisterExpression(), other).toString());
     }
 
     private Opcode flipOpcode(Opcode opcode) {
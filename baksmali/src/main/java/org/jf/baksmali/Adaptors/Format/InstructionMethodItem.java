@@ -29,6 +29,7 @@
 package org.jf.baksmali.Adaptors.Format;
 
 import org.jf.baksmali.Adaptors.*;
+import org.jf.baksmali.Adaptors.Expression.*;
 import org.jf.baksmali.InnerClass;
 import org.jf.baksmali.Parenthesizer;
 import org.jf.dexlib.Code.*;
@@ -39,7 +40,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.jf.dexlib.Code.Analysis.SyntheticAccessorResolver.*;
@@ -50,8 +50,6 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
     public static final String OBJECT = "L;";
     private static final Pattern ANONYMOUS_CLASS = Pattern.compile("\\$\\d+;$");
     private static final Pattern THIS = Pattern.compile("^([A-Za-z]\\.)?this$");
-    private static final Pattern NEW_ARRAY = Pattern.compile("^new [^ ]+\\[([0-9]+)\\]$");
-    private static final Pattern LITERAL_ARRAY = Pattern.compile("^new [^ ]+\\[\\] \\{(.+)\\}$");
     protected static CodeItem codeItem;
     public final T instruction;
 
@@ -79,6 +77,29 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
         return codeItem;
     }
 
+    /**
+     * @return the name of the static field of the class being decompiled that this instruction assigns to, or null if
+     * this isn't an sput of one of its fields
+     */
+    public String getAssignedStaticField() {
+        short value = getValue();
+        if (value < 0x067 || value > 0x06d) {
+            return null;
+        }
+        FieldIdItem item = (FieldIdItem) ((InstructionWithReference) instruction).getReferencedItem();
+        if (!ClassDefinition.isCurrentClass(item.getContainingClass().getTypeDescriptor())) {
+            return null;
+        }
+        return item.getFieldName().getStringValue();
+    }
+
+    /**
+     * @return the value this sput assigns, as it would be written by writeTo
+     */
+    public Expression getAssignedStaticFieldValue() {
+        return getFirstRegisterExpression(getReferenceType());
+    }
+
     public boolean keepPreviousAssignment() throws IOException {
         short value = getValue();
         // Keep if is a cast or a goto
@@ -90,10 +111,10 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
         short value = getValue();
 
         if (value >= 0x01 && value <= 0x09) { //moves
-            return setFirstRegisterContents(getSecondRegisterContents(), RegisterFormatter.getRegisterType(getSecondRegister()));
+            return setFirstRegisterContents(getSecondRegisterExpression(), RegisterFormatter.getRegisterType(getSecondRegister()));
         } else if (value >= 0x0a && value <= 0x0c) { //move-result
             if (previousMethodCall != null) {
-                String previousMethodCall = InstructionMethodItem.previousMethodCall;
+                Expression previousMethodCall = InstructionMethodItem.previousMethodCall;
                 String previousMethodCallReturnType = InstructionMethodItem.previousMethodCallReturnType;
                 InstructionMethodItem.previousMethodCall = null;
                 InstructionMethodItem.previousMethodCallReturnType = null;
@@ -106,7 +127,7 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
                 return true;
             }
         } else if (value == 0x0d) { // move-exception
-            return setFirstRegisterContents("0", "Ljava/lang/Exception;");
+            return setFirstRegisterContents(new LiteralExpression("0"), "Ljava/lang/Exception;");
             //Todo: This is a temporary solution to produce 'valid' java code.
             //      The local variable actually stores the caught exception rather than null.
             //      This might have to wait for actual try/catch to be done properly
@@ -137,9 +158,9 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
             if (instruction.opcode.setsWideRegister()) {
                 literal += "L";
             }
-            return setFirstRegisterContents(literal, type);
+            return setFirstRegisterContents(new LiteralExpression(literal), type);
         } else if (value >= 0x01a && value <= 0x01c) { //const string, class
-            return setFirstRegisterContents(getReference(false), getReferenceType());
+            return setFirstRegisterContents(new LiteralExpression(getReference(false)), getReferenceType());
         } else if (value >= 0x01d && value <= 0x01e) { //monitor
             // Todo: Skipped monitor opcodes
             writer.write("//");
@@ -148,7 +169,7 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
             writeFirstRegister(writer);
             return true;
         } else if (value == 0x01f) { //check-cast
-            String contents = getFirstRegisterContents();
+            Expression contents = getFirstRegisterExpression();
             if (previousNonPrintingAssignment != null) {
                 if (getFirstRegister() == previousNonPrintingAssignedRegister) {
                     contents = previousNonPrintingAssignment;
@@ -157,19 +178,20 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
                 }
             }
             contents = Parenthesizer.ensureNoUnenclosedSpaces(contents);
-            return setFirstRegisterContents("(" + getReference(false) + ") " + contents, getReferenceType());
+            return setFirstRegisterContents(new UnaryExpression("(" + getReference(false) + ") ", contents), getReferenceType());
         } else if (value == 0x020) { // instanceof
-            String contents = Parenthesizer.ensureOrderOfOperations(getOpcode(), getSecondRegisterContents(), getReference(false));
+            Expression contents = Parenthesizer.ensureOrderOfOperations(getOpcode(), getSecondRegisterExpression(),
+                    new NameExpression(getReference(false)));
             return setFirstRegisterContents(contents, BOOLEAN);
         } else if (value == 0x021) { //array-length
-            String contents = Parenthesizer.ensureNoUnenclosedSpaces(getSecondRegisterContents());
-            return setFirstRegisterContents(contents + getOpcode(), NUMBER);
+            Expression contents = Parenthesizer.ensureNoUnenclosedSpaces(getSecondRegisterExpression());
+            return setFirstRegisterContents(new FieldExpression(contents, "length"), NUMBER);
         } else if (value == 0x022) { // new instance
             RegisterFormatter.clearRegisterContents(getFirstRegister());
             return false;
         } else if (value == 0x023) { // new-array
             String typeReference = getReference(false);
-            String contents = "new " + typeReference.substring(0, typeReference.length() - 2) + "[" + getSecondRegisterContents() + "]";
+            Expression contents = new NewArrayExpression(typeReference.substring(0, typeReference.length() - 2), getSecondRegisterExpression());
             return setFirstRegisterContents(contents, getReferenceType());
         } else if (value == 0x024) { // filled-new-array
             // Todo: Skipped filled-new-array opcodes
@@ -240,11 +262,11 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
             writeTargetLabel(writer);
             return true;
         } else if (value >= 0x02d && value <= 0x031) { // compare
-            String compareResult = Parenthesizer.ensureOrderOfOperations("-", getSecondRegisterContents(), getThirdRegisterContents());
+            Expression compareResult = Parenthesizer.ensureOrderOfOperations("-", getSecondRegisterExpression(), getThirdRegisterExpression());
             return setFirstRegisterContents(compareResult, NUMBER);
         } else if (value >= 0x032 && value <= 0x037) { //if compare to reg
             writer.write("if (");
-            writer.write(Parenthesizer.ensureOrderOfOperations(getOpcode(), getFirstRegisterContents(), getSecondRegisterContents()));
+            writer.write(Parenthesizer.ensureOrderOfOperations(getOpcode(), getFirstRegisterExpression(), getSecondRegisterExpression()).toString());
             writer.write(") {\n");
             writer.indent(4);
             writer.write("//goto ");
@@ -256,7 +278,7 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
         } else if (value >= 0x038 && value <= 0x03d) { //if compare to zero
             writer.write("if (");
             String zeroValue = TypeFormatter.zeroAs(RegisterFormatter.getRegisterType(getFirstRegister()));
-            writer.write(Parenthesizer.ensureOrderOfOperations(getOpcode(), getFirstRegisterContents(), zeroValue));
+            writer.write(Parenthesizer.ensureOrderOfOperations(getOpcode(), getFirstRegisterExpression(), new LiteralExpression(zeroValue)).toString());
             writer.write(") {\n");
             writer.indent(4);
             writer.write("//goto ");
@@ -266,50 +288,21 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
             writer.write("}\n");
             return false;
         } else if (value >= 0x044 && value <= 0x04a) { //aget
-            return setFirstRegisterContents(getSecondRegisterContents() + "[" + getThirdRegisterContents() + "]", getArrayElementType());
+            return setFirstRegisterContents(new ArrayElementExpression(getSecondRegisterExpression(), getThirdRegisterExpression()), getArrayElementType());
         } else if (value >= 0x04b && value <= 0x051) { //aput
-            String array = getSecondRegisterContents();
-            Matcher newArrayMatcher = NEW_ARRAY.matcher(array);
-            if (newArrayMatcher.find()) {
+            Expression array = getSecondRegisterExpression();
+            if (array instanceof NewArrayExpression) {
                 try {
-                    String arraySize = newArrayMatcher.group(1);
-                    StringBuilder newArray = new StringBuilder();
-                    newArray.append(array.substring(0, array.length() - (arraySize.length() + 1)));
-                    newArray.append("] {");
-                    int size = Integer.parseInt(arraySize);
-                    for (int i = 0; i < size; i++) {
-                        if (i != 0) {
-                            newArray.append(", ");
-                        }
-                        newArray.append("null");
-                    }
-                    newArray.append("}");
-                    array = newArray.toString();
-                } catch (NumberFormatException ignored) {
-                }
-            }
-            Matcher literalArrayMatcher = LITERAL_ARRAY.matcher(array);
-            if (literalArrayMatcher.find()) {
-                try {
-                    String literalValues = literalArrayMatcher.group(1);
-                    StringBuilder newArray = new StringBuilder();
-                    newArray.append(array.substring(0, array.length() - (literalValues.length() + 1)));
-                    String[] literalValuesArray = literalValues.split(", ");
                     int index = Integer.parseInt(getThirdRegisterContents());
-                    literalValuesArray[index] = getFirstRegisterContents(getArrayElementType());
-                    for (int i = 0, literalValuesArrayLength = literalValuesArray.length; i < literalValuesArrayLength; i++) {
-                        if (i != 0) {
-                            newArray.append(", ");
-                        }
-                        newArray.append(literalValuesArray[i]);
+                    if (((NewArrayExpression) array).canSetElement(index)) {
+                        NewArrayExpression newArray = ((NewArrayExpression) array).withElement(index,
+                                getFirstRegisterExpression(getArrayElementType()));
+                        return setRegisterContents(getSecondRegister(), newArray, getArrayType());
                     }
-                    newArray.append("}");
-                    return setRegisterContents(getSecondRegister(), newArray.toString(), getArrayType());
                 } catch (NumberFormatException ignored) {
                 }
             }
 
-
             writeSecondRegister(writer);
             writer.write('[');
             writeThirdRegister(writer);
@@ -318,19 +311,20 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
             writeFirstRegister(writer, getArrayElementType());
             return true;
         } else if (value >= 0x051 && value <= 0x058) { //iget
-            String secondRegister = getSecondRegisterContents();
-            String contents = getReference(false);
-            if (!THIS.matcher(secondRegister).find() || RegisterFormatter.isLocal(contents)) {
-                contents = secondRegister + "." + contents;
+            Expression secondRegister = getSecondRegisterExpression();
+            String fieldName = getReference(false);
+            Expression contents = new FieldExpression(null, fieldName);
+            if (!secondRegister.isThis() || RegisterFormatter.isLocal(fieldName)) {
+                contents = new FieldExpression(secondRegister, fieldName);
             }
             return setFirstRegisterContents(contents, getReferenceType());
         } else if (value >= 0x059 && value <= 0x05f) { //iput
-            String secondRegisterContents = getSecondRegisterContents();
+            Expression secondRegisterContents = getSecondRegisterExpression();
             String referencedField = getReference(false);
             if (THIS.matcher(referencedField).find()) {
                 return false;
             }
-            if (!THIS.matcher(secondRegisterContents).find() || RegisterFormatter.isLocal(referencedField)) {
+            if (!secondRegisterContents.isThis() || RegisterFormatter.isLocal(referencedField)) {
                 writeSecondRegister(writer);
                 writer.write('.');
             }
@@ -339,9 +333,10 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
             writeFirstRegister(writer, getReferenceType());
             return true;
         } else if (value >= 0x060 && value <= 0x066) { //sget
-            String contents = getReference(true);
-            if (RegisterFormatter.isLocal(contents)) {
-                contents = getFieldClass() + "." + contents;
+            String fieldName = getReference(true);
+            Expression contents = new FieldExpression(null, fieldName);
+            if (RegisterFormatter.isLocal(fieldName)) {
+                contents = new FieldExpression(new NameExpression(getFieldClass()), fieldName);
             }
             return setFirstRegisterContents(contents, getReferenceType());
         } else if (value >= 0x067 && value <= 0x06d) { //sput
@@ -351,34 +346,34 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
             }
             writer.write(fieldName);
             writer.write(" = ");
-            writeFirstRegister(writer, getReferenceType());
+            writer.write(getAssignedStaticFieldValue().toString());
             return true;
         } else if (value == 0x06f || value == 0x071 || value == 0x075 || value == 0x077) { //invoke (range) super and static
             List<TypeIdItem> parameterTypes = getMethodParameterTypes();
             boolean isStatic = false;
+            Expression instance = null;
             if (value == 0x06f || value == 0x075) { // invoke super
-                previousMethodCall = "super.";
+                instance = new NameExpression("super");
             } else { // invoke static
                 if (isAccessor()) {
                     return handleAccessor(writer, parameterTypes);
                 }
                 isStatic = true;
-                previousMethodCall = "";
             }
-            previousMethodCall += getReference(isStatic) + getInvocation(parameterTypes, isStatic);
+            previousMethodCall = new InvokeExpression(instance, getReference(isStatic), getArguments(parameterTypes, isStatic));
             previousMethodCallReturnType = getReferenceType();
             return false;
         } else if ((value >= 0x06e && value <= 0x072) || (value >= 0x074 && value <= 0x078)) { //invoke(range) non-super non-static
             return invoke();
         } else if (value >= 0x07b && value <= 0x08f) { //conversions
-            String contents = Parenthesizer.ensureNoUnenclosedSpaces(getSecondRegisterContents());
-            return setFirstRegisterContents(getOpcode() + contents, NUMBER);
+            Expression contents = Parenthesizer.ensureNoUnenclosedSpaces(getSecondRegisterExpression());
+            return setFirstRegisterContents(new UnaryExpression(getOpcode(), contents), NUMBER);
         } else if (value >= 0x090 && value <= 0x0af) { //basic arithmetic
-            return setFirstRegisterContents(Parenthesizer.ensureOrderOfOperations(getOpcode(), getSecondRegisterContents(), getThirdRegisterContents()), NUMBER);
+            return setFirstRegisterContents(Parenthesizer.ensureOrderOfOperations(getOpcode(), getSecondRegisterExpression(), getThirdRegisterExpression()), NUMBER);
         } else if (value >= 0x0b0 && value <= 0x0cf) { //arithmetic, store in first
-            return setFirstRegisterContents(Parenthesizer.ensureOrderOfOperations(getOpcode(), getFirstRegisterContents(), getSecondRegisterContents()), NUMBER);
+            return setFirstRegisterContents(Parenthesizer.ensureOrderOfOperations(getOpcode(), getFirstRegisterExpression(), getSecondRegisterExpression()), NUMBER);
         } else if (value >= 0x0d0 && value <= 0x0e2) { //literal arithmetic
-            return setFirstRegisterContents(Parenthesizer.ensureOrderOfOperations(getOpcode(), getSecondRegisterContents(), getLiteral()), NUMBER);
+            return setFirstRegisterContents(Parenthesizer.ensureOrderOfOperations(getOpcode(), getSecondRegisterExpression(), new LiteralExpression(getLiteral())), NUMBER);
         } else {
             assert false;
             return false;
@@ -388,37 +383,34 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
     private boolean invoke() {
         List<TypeIdItem> parameterTypes = getMethodParameterTypes();
         int instanceRegister = getInstanceRegister();
-        String instance = RegisterFormatter.getRegisterContents(instanceRegister, codeItem);
+        Expression instance = RegisterFormatter.getRegisterExpression(instanceRegister, codeItem);
         instance = Parenthesizer.ensureNoUnenclosedSpaces(instance);
-        String invocation = getInvocation(parameterTypes, false);
+        List<Expression> arguments = getArguments(parameterTypes, false);
 
         previousMethodCallReturnType = getReferenceType();
         if (isConstructor()) {
             if (ClassDefinition.isSuper(getCalledMethodContainingClass())) {
-                if (!invocation.equals("()")) {
-                    previousMethodCall = "super" + invocation;
+                if (arguments.size() != 0) {
+                    previousMethodCall = new InvokeExpression(null, "super", arguments);
                 }
-            } else if (instance.equals("this")) {
-                previousMethodCall = "this" + invocation;
+            } else if (instance.isSimpleText("this")) {
+                previousMethodCall = new InvokeExpression(null, "this", arguments);
             } else {
                 previousMethodCallReturnType = null;
                 String dalvikClassName = getReference(false);
-                String contents = getAnonymousMethod(dalvikClassName);
+                Expression contents = getAnonymousMethod(dalvikClassName);
                 if (contents == null) {
-                    contents = "new " + TypeFormatter.getType(dalvikClassName) + invocation;
+                    contents = new NewInstanceExpression(TypeFormatter.getType(dalvikClassName), arguments);
                 }
                 return setRegisterContents(instanceRegister, contents, getReferenceType());
             }
         } else {
-            previousMethodCall = getReference(false) + invocation;
-            if (!THIS.matcher(instance).find()) {
-                previousMethodCall = instance + "." + previousMethodCall;
-            }
+            previousMethodCall = new InvokeExpression(instance.isThis() ? null : instance, getReference(false), arguments);
         }
         return false;
     }
 
-    private String getAnonymousMethod(String dalvikClassName) {
+    private Expression getAnonymousMethod(String dalvikClassName) {
         if (ANONYMOUS_CLASS.matcher(dalvikClassName).find()) {
             HashMap<String, InnerClass> innerClasses = ClassDefinition.getInnerClasses();
             InnerClass innerClass = innerClasses.get(dalvikClassName);
@@ -428,7 +420,7 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
                 ClassDefinition.addImport(innerClass.getImports());
 
                 String prettyBaseName = TypeFormatter.getType(innerClass.getSuperClass());
-                return "new " + prettyBaseName + "() " + innerClass.getBody();
+                return new NewInstanceExpression(prettyBaseName, new ArrayList<Expression>(), innerClass.getBody());
             }
         }
         return null;
@@ -477,14 +469,14 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
         writer.write(getReference(isStatic));
     }
 
-    private boolean setRegisterContents(int register, String contents, String type) {
+    private boolean setRegisterContents(int register, Expression contents, String type) {
         RegisterFormatter.setRegisterContents(register, contents, type);
         previousNonPrintingAssignment = contents;
         previousNonPrintingAssignedRegister = register;
         return false;
     }
 
-    private boolean setFirstRegisterContents(String contents, String type) {
+    private boolean setFirstRegisterContents(Expression contents, String type) {
         return setRegisterContents(getFirstRegister(), contents, type);
     }
 
@@ -496,12 +488,24 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
         return ((TwoRegisterInstruction) instruction).getRegisterB();
     }
 
-    private String getFirstRegisterContents() {
-        return RegisterFormatter.getRegisterContents(((SingleRegisterInstruction) instruction).getRegisterA(), codeItem);
+    private Expression getFirstRegisterExpression() {
+        return RegisterFormatter.getRegisterExpression(((SingleRegisterInstruction) instruction).getRegisterA(), codeItem);
     }
 
-    private String getFirstRegisterContents(String registerType) {
-        return RegisterFormatter.getRegisterContents(((SingleRegisterInstruction) instruction).getRegisterA(), codeItem, registerType);
+    private Expression getFirstRegisterExpression(String registerType) {
+        return RegisterFormatter.getRegisterExpression(((SingleRegisterInstruction) instruction).getRegisterA(), codeItem, registerType);
+    }
+
+    private Expression getSecondRegisterExpression() {
+        return RegisterFormatter.getRegisterExpression(((TwoRegisterInstruction) instruction).getRegisterB(), codeItem);
+    }
+
+    private Expression getThirdRegisterExpression() {
+        return RegisterFormatter.getRegisterExpression(((ThreeRegisterInstruction) instruction).getRegisterC(), codeItem);
+    }
+
+    private String getFirstRegisterContents() {
+        return RegisterFormatter.getRegisterContents(((SingleRegisterInstruction) instruction).getRegisterA(), codeItem);
     }
 
     private String getSecondRegisterContents() {
@@ -535,29 +539,35 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
     }
 
     protected String getInvocation(List<TypeIdItem> parameterTypes, boolean isStatic) {
-        InvokeInstruction instruction = (InvokeInstruction) this.instruction;
-        int parameterSize = parameterTypes.size();
-        int staticOffset = isStatic ? 0 : 1;
-
         StringBuilder invocation = new StringBuilder("(");
         boolean first = true;
-        for (int i = 0; i < parameterSize; i++) {
+        for (Expression argument : getArguments(parameterTypes, isStatic)) {
             if (!first) {
                 invocation.append(", ");
             }
             first = false;
+            argument.appendTo(invocation);
+        }
+        invocation.append(")");
 
+        return invocation.toString();
+    }
+
+    protected List<Expression> getArguments(List<TypeIdItem> parameterTypes, boolean isStatic) {
+        InvokeInstruction instruction = (InvokeInstruction) this.instruction;
+        int parameterSize = parameterTypes.size();
+        int staticOffset = isStatic ? 0 : 1;
+
+        List<Expression> arguments = new ArrayList<Expression>(parameterSize);
+        for (int i = 0; i < parameterSize; i++) {
             String dalvikType = null;
             TypeIdItem typeIdItem = parameterTypes.get(i);
             if (typeIdItem != null) {
                 dalvikType = typeIdItem.toShorty();
             }
-            String registerContents = getRegisterFromInstruction(instruction, i + staticOffset, dalvikType);
-            invocation.append(registerContents);
+            arguments.add(getRegisterFromInstruction(instruction, i + staticOffset, dalvikType));
         }
-        invocation.append(")");
-
-        return invocation.toString();
+        return arguments;
     }
 
     private int getInstanceRegister() {
@@ -607,7 +617,7 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
         return arrayType.substring(1);
     }
 
-    private String getRegisterFromInstruction(InvokeInstruction instruction, int register, String dalvikType) {
+    private Expression getRegisterFromInstruction(InvokeInstruction instruction, int register, String dalvikType) {
         int registerNumber;
 
         if (instruction instanceof FiveRegisterInstruction) {
@@ -630,7 +640,7 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
                     break;
                 default:
                     System.err.println("Register number must be a value between 0 and 4");
-                    return "";
+                    return new NameExpression("");
             }
         } else if (instruction instanceof RegisterRangeInstruction) {
             RegisterRangeInstruction rangeReg = (RegisterRangeInstruction) instruction;
@@ -638,7 +648,7 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
         } else {
             throw new RuntimeException("Method must be called with either a FiveRegisterInstruction or RangeRegisterInstruction");
         }
-        return RegisterFormatter.getRegisterContents(registerNumber, codeItem, dalvikType);
+        return RegisterFormatter.getRegisterExpression(registerNumber, codeItem, dalvikType);
     }
 
     private String getFieldClass() {
@@ -657,17 +667,15 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
     private boolean handleAccessor(IndentingWriter writer, List<TypeIdItem> parameterTypes) throws IOException {
         AccessedMember member = getAccessedMember();
         int accessorType = member.getAccessedMemberType();
-        String firstReg = getRegisterFromInstruction((InvokeInstruction) instruction, 0, NUMBER);
+        Expression firstReg = getRegisterFromInstruction((InvokeInstruction) instruction, 0, NUMBER);
         String memberName = ReferenceFormatter.getReference(member.getAccessedMember(), false);
         String memberType = ReferenceFormatter.getReferenceType(member.getAccessedMember());
 
-        if (THIS.matcher(firstReg).find()) {
-            firstReg = "";
-        } else {
-            firstReg += ".";
+        if (firstReg.isThis()) {
+            firstReg = null;
         }
 
-        String secondReg = null;
+        Expression secondReg = null;
         if (accessorType == SETTER || accessorType == INCREMENTER_BY_VALUE) {
             secondReg = getRegisterFromInstruction((InvokeInstruction) instruction, 1, memberType);
         }
@@ -675,15 +683,14 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
         switch (accessorType) {
             case GETTER:
 //              Getter: Instance: first arg, Field: member -> PrevMethod = first.member
-                previousMethodCall = firstReg + memberName;
+                previousMethodCall = new FieldExpression(firstReg, memberName);
                 previousMethodCallReturnType = memberType;
                 return false;
             case SETTER:
 //              Setter: Instance: first arg, Field: member, Value: second arg -> print: first.member = second, PrevMethod(Type) = null
-                writer.write(firstReg);
-                writer.write(memberName);
+                writer.write(new FieldExpression(firstReg, memberName).toString());
                 writer.write(" = ");
-                writer.write(secondReg);
+                writer.write(secondReg.toString());
                 return true;
             case METHOD:
 //              Calls: Instance: first arg, Method: member, Args, rest of args -> PrevMethod = first.member(rest)
@@ -697,24 +704,23 @@ public class InstructionMethodItem<T extends Instruction> extends MethodItem {
                     }
                     shortenedParameterTypes.add(parameterType);
                 }
-                previousMethodCall = firstReg + memberName + getInvocation(shortenedParameterTypes, false);
+                previousMethodCall = new InvokeExpression(firstReg, memberName, getArguments(shortenedParameterTypes, false));
                 previousMethodCallReturnType = memberType;
                 return false;
             case INCREMENTER_BY_VALUE:
 //              +=: Instance: first arg, Field: member, Value: second arg -> first.member += second
-                writer.write(firstReg);
-                writer.write(memberName);
+                writer.write(new FieldExpression(firstReg, memberName).toString());
                 writer.write(" += ");
-                writer.write(secondReg);
+                writer.write(secondReg.toString());
                 return true;
             case INCREMENTER_BY_ONE:
 //              ++: Instance: first arg, Field: member -> PrevMethod = first.member++
-                previousMethodCall = firstReg + memberName + "++";
+                previousMethodCall = new UnaryExpression("++", new FieldExpression(firstReg, memberName), true);
                 previousMethodCallReturnType = memberType;
                 return false;
             case DECREMENTER_BY_ONE:
 //              --: Instance: first arg, Field: member -> PrevMethod = first.member--
-                previousMethodCall = firstReg + memberName + "--";
+                previousMethodCall = new UnaryExpression("--", new FieldExpression(firstReg, memberName), true);
                 previousMethodCallReturnType = memberType;
                 return false;
         }
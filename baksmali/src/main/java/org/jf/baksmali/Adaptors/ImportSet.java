@@ -0,0 +1,41 @@
+package org.jf.baksmali.Adaptors;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The imports needed by a class. Imports of the types in the dex file are kept as the indexes of those types, and are
+ * only turned into sorted names once they are written out, see TypeFormatter.getImportName
+ */
+public class ImportSet {
+    //left to grow as types are added, rather than sized for every type in the dex file up front
+    private final BitSet typeIndexes = new BitSet();
+    private final HashSet<String> otherImports = new HashSet<String>();
+
+    /**
+     * @param typeIndex the index of the type to import in the dex file, or -1 if it isn't one of its types
+     */
+    public void add(int typeIndex, String importName) {
+        if (typeIndex >= 0) {
+            typeIndexes.set(typeIndex);
+        } else {
+            otherImports.add(importName);
+        }
+    }
+
+    public void addAll(ImportSet imports) {
+        typeIndexes.or(imports.typeIndexes);
+        otherImports.addAll(imports.otherImports);
+    }
+
+    public List<String> getImports() {
+        TreeSet<String> imports = new TreeSet<String>(otherImports);
+        for (int i = typeIndexes.nextSetBit(0); i >= 0; i = typeIndexes.nextSetBit(i + 1)) {
+            imports.add(TypeFormatter.getImportName(i));
+        }
+        return new ArrayList<String>(imports);
+    }
+}
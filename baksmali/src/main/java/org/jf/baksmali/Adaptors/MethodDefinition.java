@@ -28,27 +28,28 @@
 
 package org.jf.baksmali.Adaptors;
 
+import org.jf.baksmali.Adaptors.Expression.NameExpression;
 import org.jf.baksmali.Adaptors.Format.IfMethodItem;
 import org.jf.baksmali.Adaptors.Format.InstructionMethodItem;
 import org.jf.baksmali.Adaptors.Format.InstructionMethodItemFactory;
 import org.jf.baksmali.Adaptors.Format.OffsetInstructionFormatMethodItem;
 import org.jf.baksmali.baksmali;
+import org.jf.baksmali.Profiler;
 import org.jf.dexlib.*;
 import org.jf.dexlib.Code.Analysis.AnalyzedInstruction;
+import org.jf.dexlib.Code.Analysis.CodeItemInfo;
 import org.jf.dexlib.Code.Analysis.MethodAnalyzer;
 import org.jf.dexlib.Code.Analysis.SyntheticAccessorResolver;
 import org.jf.dexlib.Code.Analysis.ValidationException;
 import org.jf.dexlib.Code.Format.Format;
 import org.jf.dexlib.Code.Instruction;
 import org.jf.dexlib.Code.InstructionWithReference;
-import org.jf.dexlib.Code.OffsetInstruction;
 import org.jf.dexlib.Code.Opcode;
-import org.jf.dexlib.Debug.DebugInstructionIterator;
+import org.jf.dexlib.Debug.DebugInfoTable;
 import org.jf.dexlib.EncodedValue.*;
 import org.jf.dexlib.Util.AccessFlags;
 import org.jf.dexlib.Util.ExceptionWithContext;
 import org.jf.dexlib.Util.Pair;
-import org.jf.dexlib.Util.SparseIntArray;
 import org.jf.util.IndentingWriter;
 
 import java.io.IOException;
@@ -66,9 +67,7 @@ public class MethodDefinition {
 
     private final LabelCache labelCache = new LabelCache();
 
-    private final SparseIntArray packedSwitchMap;
-    private final SparseIntArray sparseSwitchMap;
-    private final SparseIntArray instructionMap;
+    private final CodeItemInfo codeItemInfo;
 
     public MethodDefinition(ClassDataItem.EncodedMethod encodedMethod) {
 
@@ -79,33 +78,9 @@ public class MethodDefinition {
             //TODO: what about try/catch blocks inside the dead code? those will need to be commented out too. ugh.
 
             if (encodedMethod.codeItem != null) {
-                Instruction[] instructions = encodedMethod.codeItem.getInstructions();
-
-                packedSwitchMap = new SparseIntArray(1);
-                sparseSwitchMap = new SparseIntArray(1);
-                instructionMap = new SparseIntArray(instructions.length);
-
-                int currentCodeAddress = 0;
-                for (int i = 0; i < instructions.length; i++) {
-                    Instruction instruction = instructions[i];
-                    if (instruction.opcode == Opcode.PACKED_SWITCH) {
-                        packedSwitchMap.append(
-                                currentCodeAddress +
-                                        ((OffsetInstruction) instruction).getTargetAddressOffset(),
-                                currentCodeAddress);
-                    } else if (instruction.opcode == Opcode.SPARSE_SWITCH) {
-                        sparseSwitchMap.append(
-                                currentCodeAddress +
-                                        ((OffsetInstruction) instruction).getTargetAddressOffset(),
-                                currentCodeAddress);
-                    }
-                    instructionMap.append(currentCodeAddress, i);
-                    currentCodeAddress += instruction.getSize(currentCodeAddress);
-                }
+                codeItemInfo = encodedMethod.codeItem.getCodeItemInfo();
             } else {
-                packedSwitchMap = null;
-                sparseSwitchMap = null;
-                instructionMap = null;
+                codeItemInfo = null;
                 methodAnalyzer = null;
             }
         } catch (Exception ex) {
@@ -148,6 +123,16 @@ public class MethodDefinition {
 
     public void writeTo(IndentingWriter writer, AnnotationSetItem annotationSet,
                         AnnotationSetRefList parameterAnnotations) throws IOException {
+        long startTime = Profiler.startTimer();
+        try {
+            writeMethod(writer, annotationSet, parameterAnnotations);
+        } finally {
+            Profiler.endMethod(encodedMethod.method, startTime);
+        }
+    }
+
+    private void writeMethod(IndentingWriter writer, AnnotationSetItem annotationSet,
+                             AnnotationSetRefList parameterAnnotations) throws IOException {
         final CodeItem codeItem = encodedMethod.codeItem;
 
         name = encodedMethod.method.getMethodName().getStringValue();
@@ -193,12 +178,15 @@ public class MethodDefinition {
 
                 writer.write('\n');
 
-                List<MethodItem> methodItems = getMethodItems();
-                recoverControlFlow(methodItems);
-                for (MethodItem methodItem : methodItems) {
-                    if (methodItem.write(writer)) {
-                        writer.write(";\n");
+                MethodItemBuffer buffer = MethodItemBuffer.acquire();
+                try {
+                    List<MethodItem> methodItems = getMethodItems(buffer);
+                    recoverControlFlow(methodItems);
+                    for (MethodItem methodItem : methodItems) {
+                        writeStatement(writer, methodItem);
                     }
+                } finally {
+                    buffer.release();
                 }
             } else {
                 if (annotationSet != null) {
@@ -210,6 +198,22 @@ public class MethodDefinition {
         }
     }
 
+    /**
+     * @return the number of leading parameters that are passed in by the compiler and shouldn't be declared
+     */
+    protected int getHiddenParameterCount() {
+        return 0;
+    }
+
+    /**
+     * Writes a single top level item of the method body
+     */
+    protected void writeStatement(IndentingWriter writer, MethodItem methodItem) throws IOException {
+        if (methodItem.write(writer)) {
+            writer.write(";\n");
+        }
+    }
+
     private static void writeAccessFlags(IndentingWriter writer, ClassDataItem.EncodedMethod encodedMethod)
             throws IOException {
         boolean isInterface = ClassDefinition.isInterface();
@@ -241,20 +245,17 @@ public class MethodDefinition {
         }
 
         if (firstParameter >= 0 && "this".equals(parameterNames.peekFirst())) {
-            RegisterFormatter.setRegisterContents(firstParameter - 1, parameterNames.removeFirst(), ClassDefinition.getDalvikClassName());
+            RegisterFormatter.setRegisterContents(firstParameter - 1, new NameExpression(parameterNames.removeFirst()),
+                    ClassDefinition.getDalvikClassName());
         }
 
         if (parameterNames.size() != signatureParameterTypes.size()) {
             parameterNames = null;
         }
 
+        int hiddenParameterCount = getHiddenParameterCount();
         boolean first = true;
         for (int i = 0; i < signatureParameterTypes.size(); i++) {
-            if (!first) {
-                writer.write(", ");
-            }
-            first = false;
-
             String type = signatureParameterTypes.get(i);
             String name = null;
             if (parameterNames != null) {
@@ -264,11 +265,19 @@ public class MethodDefinition {
                 // If name is null we want to go ahead and set the contents as null
                 RegisterFormatter.startLocal(firstParameter + i, name, dalvikParameterTypes.get(i)); //Todo: should vars with null names be set as local?
             }
+            if (i < hiddenParameterCount) {
+                continue;
+            }
             if (name == null) {
                 // But we want to print it's 'name'
                 name = "p" + (i + 1);
             }
 
+            if (!first) {
+                writer.write(", ");
+            }
+            first = false;
+
             writer.write(type);
             writer.write(' ');
             writer.write(name);
@@ -280,7 +289,7 @@ public class MethodDefinition {
     private void writeThrownExceptions(IndentingWriter writer, AnnotationSetItem annotationSet) throws IOException {
         if (annotationSet != null) {
             for (AnnotationItem annotation : annotationSet.getAnnotations()) {
-                if (annotation.getEncodedAnnotation().annotationType.getTypeDescriptor().equals("Ldalvik/annotation/Throws;")) {
+                if (annotation.getAnnotationType().getTypeDescriptor().equals("Ldalvik/annotation/Throws;")) {
                     EncodedValue[] values = annotation.getEncodedAnnotation().values;
                     if (values.length != 1) {
                         System.err.println("Throws annotation does not have exactly one value!");
@@ -374,14 +383,14 @@ public class MethodDefinition {
     }
 
     public int getPackedSwitchBaseAddress(int packedSwitchDataAddress) {
-        int packedSwitchBaseAddress = this.packedSwitchMap.get(packedSwitchDataAddress, -1);
+        int packedSwitchBaseAddress = codeItemInfo.getPackedSwitchAddress(packedSwitchDataAddress);
 
         if (packedSwitchBaseAddress == -1) {
             Instruction[] instructions = encodedMethod.codeItem.getInstructions();
-            int index = instructionMap.get(packedSwitchDataAddress);
+            int index = codeItemInfo.getInstructionIndex(packedSwitchDataAddress);
 
-            if (instructions[index].opcode == Opcode.NOP) {
-                packedSwitchBaseAddress = this.packedSwitchMap.get(packedSwitchDataAddress + 2, -1);
+            if (index != -1 && instructions[index].opcode == Opcode.NOP) {
+                packedSwitchBaseAddress = codeItemInfo.getPackedSwitchAddress(packedSwitchDataAddress + 2);
             }
         }
 
@@ -389,14 +398,14 @@ public class MethodDefinition {
     }
 
     public int getSparseSwitchBaseAddress(int sparseSwitchDataAddress) {
-        int sparseSwitchBaseAddress = this.sparseSwitchMap.get(sparseSwitchDataAddress, -1);
+        int sparseSwitchBaseAddress = codeItemInfo.getSparseSwitchAddress(sparseSwitchDataAddress);
 
         if (sparseSwitchBaseAddress == -1) {
             Instruction[] instructions = encodedMethod.codeItem.getInstructions();
-            int index = instructionMap.get(sparseSwitchDataAddress);
+            int index = codeItemInfo.getInstructionIndex(sparseSwitchDataAddress);
 
-            if (instructions[index].opcode == Opcode.NOP) {
-                sparseSwitchBaseAddress = this.packedSwitchMap.get(sparseSwitchDataAddress + 2, -1);
+            if (index != -1 && instructions[index].opcode == Opcode.NOP) {
+                sparseSwitchBaseAddress = codeItemInfo.getPackedSwitchAddress(sparseSwitchDataAddress + 2);
             }
         }
 
@@ -427,35 +436,33 @@ public class MethodDefinition {
         return false;
     }
 
-    private List<MethodItem> getMethodItems() {
-        ArrayList<MethodItem> methodItems = new ArrayList<MethodItem>();
-
+    private List<MethodItem> getMethodItems(MethodItemBuffer buffer) {
         if (encodedMethod.codeItem == null) {
-            return methodItems;
+            return buffer.merge();
         }
 
+        // Each source adds its items (mostly) in address order, so they only need to be merged rather than sorted
         if (baksmali.registerInfo != 0 || baksmali.deodex || baksmali.verify) {
-            addAnalyzedInstructionMethodItems(methodItems);
+            addAnalyzedInstructionMethodItems(buffer.startSource());
         } else {
-            addInstructionMethodItems(methodItems);
+            addInstructionMethodItems(buffer.startSource());
         }
 
-        addTries(methodItems);
+        addTries(buffer.startSource());
         if (baksmali.outputDebugInfo) {
-            addDebugInfo(methodItems);
+            addDebugInfo(buffer.startSource());
         }
 
         if (baksmali.useSequentialLabels) {
             setLabelSequentialNumbers();
         }
 
+        List<MethodItem> labels = buffer.startSource();
         for (LabelMethodItem labelMethodItem : labelCache.getLabels()) {
-            methodItems.add(labelMethodItem);
+            labels.add(labelMethodItem);
         }
 
-        Collections.sort(methodItems);
-
-        return methodItems;
+        return buffer.merge();
     }
 
     private void addInstructionMethodItems(List<MethodItem> methodItems) {
@@ -465,28 +472,16 @@ public class MethodDefinition {
         for (int i = 0; i < instructions.length; i++) {
             Instruction instruction = instructions[i];
 
+            //the code offset sorts before the instruction, so add it first to keep the items in order
+            if (baksmali.addCodeOffsets) {
+                addCodeOffset(methodItems, currentCodeAddress);
+            }
+
             MethodItem methodItem = InstructionMethodItemFactory.makeInstructionFormatMethodItem(this,
                     encodedMethod.codeItem, currentCodeAddress, instruction);
 
             methodItems.add(methodItem);
 
-            if (baksmali.addCodeOffsets) {
-                methodItems.add(new MethodItem(currentCodeAddress) {
-
-                    @Override
-                    public double getSortOrder() {
-                        return -1000;
-                    }
-
-                    @Override
-                    public boolean writeTo(IndentingWriter writer) throws IOException {
-                        writer.write("#@");
-                        writer.printUnsignedLongAsHex(codeAddress & 0xFFFFFFFF);
-                        return true;
-                    }
-                });
-            }
-
             if (!baksmali.noAccessorComments && (instruction instanceof InstructionWithReference)) {
                 if (instruction.opcode == Opcode.INVOKE_STATIC || instruction.opcode == Opcode.INVOKE_STATIC_RANGE) {
                     MethodIdItem methodIdItem =
@@ -506,10 +501,33 @@ public class MethodDefinition {
         }
     }
 
+    private static void addCodeOffset(List<MethodItem> methodItems, int codeAddress) {
+        methodItems.add(new MethodItem(codeAddress) {
+
+            @Override
+            public double getSortOrder() {
+                return -1000;
+            }
+
+            @Override
+            public boolean writeTo(IndentingWriter writer) throws IOException {
+                writer.write("#@");
+                writer.printUnsignedLongAsHex(codeAddress & 0xFFFFFFFF);
+                return true;
+            }
+        });
+    }
+
     private void addAnalyzedInstructionMethodItems(List<MethodItem> methodItems) {
         methodAnalyzer = new MethodAnalyzer(encodedMethod, baksmali.deodex, baksmali.inlineResolver);
 
-        methodAnalyzer.analyze();
+        Profiler.Phase previousPhase = Profiler.enterPhase(Profiler.Phase.ANALYSIS);
+        try {
+            methodAnalyzer.analyze();
+        } finally {
+            Profiler.exitPhase(previousPhase);
+        }
+        Profiler.addAnalyzedInstructions(methodAnalyzer.getInstructions().size());
 
         ValidationException validationException = methodAnalyzer.getValidationException();
         if (validationException != null) {
@@ -533,6 +551,11 @@ public class MethodDefinition {
         for (int i = 0; i < instructions.size(); i++) {
             AnalyzedInstruction instruction = instructions.get(i);
 
+            //the code offset sorts before the instruction, so add it first to keep the items in order
+            if (baksmali.addCodeOffsets) {
+                addCodeOffset(methodItems, currentCodeAddress);
+            }
+
             MethodItem methodItem = InstructionMethodItemFactory.makeInstructionFormatMethodItem(this,
                     encodedMethod.codeItem, currentCodeAddress, instruction.getInstruction());
 
@@ -544,23 +567,6 @@ public class MethodDefinition {
                                 encodedMethod.codeItem, currentCodeAddress, instruction.getOriginalInstruction())));
             }
 
-            if (baksmali.addCodeOffsets) {
-                methodItems.add(new MethodItem(currentCodeAddress) {
-
-                    @Override
-                    public double getSortOrder() {
-                        return -1000;
-                    }
-
-                    @Override
-                    public boolean writeTo(IndentingWriter writer) throws IOException {
-                        writer.write("#@");
-                        writer.printUnsignedLongAsHex(codeAddress & 0xFFFFFFFF);
-                        return true;
-                    }
-                });
-            }
-
 //            if (baksmali.registerInfo != 0 && !instruction.getInstruction().getFormat().variableSizeFormat) {
 //                methodItems.add(
 //                        new PreInstructionRegisterInfoMethodItem(instruction, methodAnalyzer, currentCodeAddress));
@@ -591,7 +597,7 @@ public class MethodDefinition {
              * the address for that instruction
              */
 
-            int index = instructionMap.get(endAddress, -1);
+            int index = codeItemInfo.getInstructionIndex(endAddress);
             int lastInstructionAddress;
 
             /**
@@ -601,7 +607,7 @@ public class MethodDefinition {
              */
             if (index == -1) {
                 Instruction lastInstruction = instructions[instructions.length - 1];
-                lastInstructionAddress = instructionMap.keyAt(instructionMap.size() - 1);
+                lastInstructionAddress = codeItemInfo.getInstructionAddress(codeItemInfo.getInstructionCount() - 1);
 
                 if (endAddress != lastInstructionAddress + lastInstruction.getSize(lastInstructionAddress)) {
                     throw new RuntimeException("Invalid code offset " + endAddress + " for the try block end address");
@@ -639,83 +645,49 @@ public class MethodDefinition {
         }
     }
 
-    private void addDebugInfo(final List<MethodItem> methodItems) {
+    private void addDebugInfo(List<MethodItem> methodItems) {
         if (encodedMethod.codeItem == null || encodedMethod.codeItem.getDebugInfo() == null) {
             return;
         }
 
         final CodeItem codeItem = encodedMethod.codeItem;
-        DebugInfoItem debugInfoItem = codeItem.getDebugInfo();
-
-        DebugInstructionIterator.DecodeInstructions(debugInfoItem, codeItem.getRegisterCount(),
-                new DebugInstructionIterator.ProcessDecodedDebugInstructionDelegate() {
-                    @Override
-                    public void ProcessStartLocal(final int codeAddress, final int length, final int registerNum,
-                                                  final StringIdItem name, final TypeIdItem type) {
-                        methodItems.add(new DebugMethodItem(codeAddress, -1) {
-                            @Override
-                            public boolean writeTo(IndentingWriter writer) throws IOException {
-                                writeStartLocal(writer, codeItem, registerNum, name, type, null);
-                                return true;
-                            }
-                        });
-                    }
-
-                    @Override
-                    public void ProcessStartLocalExtended(final int codeAddress, final int length,
-                                                          final int registerNum, final StringIdItem name,
-                                                          final TypeIdItem type, final StringIdItem signature) {
-                        methodItems.add(new DebugMethodItem(codeAddress, -1) {
-                            @Override
-                            public boolean writeTo(IndentingWriter writer) throws IOException {
-                                writeStartLocal(writer, codeItem, registerNum, name, type, signature);
-                                return true;
-                            }
-                        });
-                    }
-
-                    @Override
-                    public void ProcessEndLocal(final int codeAddress, final int length, final int registerNum,
-                                                final StringIdItem name, final TypeIdItem type,
-                                                final StringIdItem signature) {
-                        methodItems.add(new DebugMethodItem(codeAddress, -1) {
-                            @Override
-                            public boolean writeTo(IndentingWriter writer) throws IOException {
-                                RegisterFormatter.endLocal(registerNum);
-                                return false;
-                            }
-                        });
-                    }
-
-                    @Override
-                    public void ProcessRestartLocal(final int codeAddress, final int length, final int registerNum,
-                                                    final StringIdItem name, final TypeIdItem type,
-                                                    final StringIdItem signature) {
-                        methodItems.add(new DebugMethodItem(codeAddress, -1) {
-                            @Override
-                            public boolean writeTo(IndentingWriter writer) throws IOException {
-                                RegisterFormatter.restartLocal(registerNum);
-                                return false;
-                            }
-                        });
-                    }
-
-                    @Override
-                    public void ProcessSetPrologueEnd(int codeAddress) {
-                    }
-
-                    @Override
-                    public void ProcessSetEpilogueBegin(int codeAddress) {
-                    }
-
-                    @Override
-                    public void ProcessSetFile(int codeAddress, int length, final StringIdItem name) {
-                    }
-
-                    @Override
-                    public void ProcessLineEmit(int codeAddress, final int line) {
-                    }
-                });
+        final DebugInfoTable debugInfoTable = codeItem.getDebugInfo().getDebugInfoTable();
+
+        for (int i = 0; i < debugInfoTable.getCount(); i++) {
+            final int entry = i;
+            final int registerNum = debugInfoTable.getRegister(entry);
+            switch (debugInfoTable.getOpcode(entry)) {
+                case DBG_START_LOCAL:
+                case DBG_START_LOCAL_EXTENDED:
+                    methodItems.add(new DebugMethodItem(debugInfoTable.getCodeAddress(entry), -1) {
+                        @Override
+                        public boolean writeTo(IndentingWriter writer) throws IOException {
+                            writeStartLocal(writer, codeItem, registerNum, debugInfoTable.getName(entry),
+                                    debugInfoTable.getType(entry), debugInfoTable.getSignature(entry));
+                            return true;
+                        }
+                    });
+                    break;
+                case DBG_END_LOCAL:
+                    methodItems.add(new DebugMethodItem(debugInfoTable.getCodeAddress(entry), -1) {
+                        @Override
+                        public boolean writeTo(IndentingWriter writer) throws IOException {
+                            RegisterFormatter.endLocal(registerNum);
+                            return false;
+                        }
+                    });
+                    break;
+                case DBG_RESTART_LOCAL:
+                    methodItems.add(new DebugMethodItem(debugInfoTable.getCodeAddress(entry), -1) {
+                        @Override
+                        public boolean writeTo(IndentingWriter writer) throws IOException {
+                            RegisterFormatter.restartLocal(registerNum);
+                            return false;
+                        }
+                    });
+                    break;
+            }
+        }
     }
 
     private void setLabelSequentialNumbers() {
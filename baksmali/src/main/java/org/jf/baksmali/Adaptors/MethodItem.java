@@ -28,6 +28,8 @@
 
 package org.jf.baksmali.Adaptors;
 
+import org.jf.baksmali.Adaptors.Expression.Expression;
+import org.jf.baksmali.Adaptors.Expression.LiteralExpression;
 import org.jf.baksmali.Adaptors.Format.InstructionMethodItem;
 import org.jf.dexlib.CodeItem;
 import org.jf.util.IndentingWriter;
@@ -37,9 +39,9 @@ import java.io.IOException;
 public abstract class MethodItem implements Comparable<MethodItem> {
     protected final int codeAddress;
 
-    protected static String previousMethodCall = null;
+    protected static Expression previousMethodCall = null;
     protected static String previousMethodCallReturnType = null;
-    protected static String previousNonPrintingAssignment;
+    protected static Expression previousNonPrintingAssignment;
     protected static int previousNonPrintingAssignedRegister;
 
     protected MethodItem(int codeAddress) {
@@ -67,9 +69,16 @@ public abstract class MethodItem implements Comparable<MethodItem> {
     public abstract boolean writeTo(IndentingWriter writer) throws IOException;
 
     public boolean write(IndentingWriter writer) throws IOException {
+        flush(writer);
+        return writeTo(writer);
+    }
+
+    /**
+     * Writes out any method call or assignment that was held back to see whether this item would use it
+     */
+    public void flush(IndentingWriter writer) throws IOException {
         flushMethodCall(writer);
         flushAssignment(writer);
-        return writeTo(writer);
     }
 
     private void flushMethodCall(IndentingWriter writer) throws IOException {
@@ -82,7 +91,7 @@ public abstract class MethodItem implements Comparable<MethodItem> {
                 return;
             }
         }
-        writer.write(previousMethodCall);
+        writer.write(previousMethodCall.toString());
         writer.write(";\n");
         previousMethodCall = null;
         previousMethodCallReturnType = null;
@@ -102,16 +111,16 @@ public abstract class MethodItem implements Comparable<MethodItem> {
 
     protected void writePreviousNonPrintingAssignment(IndentingWriter writer) throws IOException {
         String type = RegisterFormatter.getRegisterType(previousNonPrintingAssignedRegister);
-        if (previousNonPrintingAssignment.equals("0")) {
-            previousNonPrintingAssignment = TypeFormatter.zeroAs(type);
-        } else if (previousNonPrintingAssignment.equals("1")) {
-            previousNonPrintingAssignment = TypeFormatter.oneAs(type);
+        if (previousNonPrintingAssignment.isSimpleText("0")) {
+            previousNonPrintingAssignment = new LiteralExpression(TypeFormatter.zeroAs(type));
+        } else if (previousNonPrintingAssignment.isSimpleText("1")) {
+            previousNonPrintingAssignment = new LiteralExpression(TypeFormatter.oneAs(type));
         }
 
         CodeItem codeItem = InstructionMethodItem.getCodeItem();
         writer.write(RegisterFormatter.getRegisterName(previousNonPrintingAssignedRegister, codeItem));
         writer.write(" = ");
-        writer.write(previousNonPrintingAssignment);
+        writer.write(previousNonPrintingAssignment.toString());
         writer.write(";\n");
         clearAssignment();
     }
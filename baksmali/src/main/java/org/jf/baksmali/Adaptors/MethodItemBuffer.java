@@ -0,0 +1,115 @@
+package org.jf.baksmali.Adaptors;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the items of a method from each of their sources (instructions, tries, debug info, labels) and merges them
+ * into address order. The lists are kept for the next method written on the same thread, see acquire and release
+ */
+public class MethodItemBuffer {
+    private static final ThreadLocal<MethodItemBuffer> buffers = new ThreadLocal<MethodItemBuffer>();
+
+    private final ArrayList<MethodItem> sourceItems = new ArrayList<MethodItem>();
+    private final ArrayList<Integer> sourceStarts = new ArrayList<Integer>();
+    private final ArrayList<MethodItem> methodItems = new ArrayList<MethodItem>();
+
+    private final SourceList sourceList = new SourceList();
+
+    private MethodItemBuffer() {
+    }
+
+    /**
+     * @return an empty buffer, which is this thread's buffer unless it's already in use
+     */
+    public static MethodItemBuffer acquire() {
+        MethodItemBuffer buffer = buffers.get();
+        if (buffer == null) {
+            return new MethodItemBuffer();
+        }
+        buffers.set(null);
+        return buffer;
+    }
+
+    /**
+     * Empties the buffer and makes it available to the next call to acquire on this thread. The list returned by merge
+     * can't be used after this
+     */
+    public void release() {
+        sourceItems.clear();
+        sourceStarts.clear();
+        methodItems.clear();
+        buffers.set(this);
+    }
+
+    /**
+     * @return the list to add the items of the next source to. The items of a source should already be in order, they
+     * are sorted if they aren't
+     */
+    public List<MethodItem> startSource() {
+        sourceStarts.add(sourceItems.size());
+        return sourceList;
+    }
+
+    /**
+     * @return the items of all of the sources in order. Items that are equal keep the order of their sources, and
+     * then the order they were added in, just as a stable sort of all of the items would
+     */
+    public List<MethodItem> merge() {
+        int sourceCount = sourceStarts.size();
+        int[] positions = new int[sourceCount];
+        int[] ends = new int[sourceCount];
+        for (int i = 0; i < sourceCount; i++) {
+            positions[i] = sourceStarts.get(i);
+            ends[i] = i + 1 < sourceCount ? sourceStarts.get(i + 1) : sourceItems.size();
+            sortIfNeeded(positions[i], ends[i]);
+        }
+
+        methodItems.ensureCapacity(sourceItems.size());
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < sourceCount; i++) {
+                if (positions[i] < ends[i] && (next == -1 ||
+                        sourceItems.get(positions[i]).compareTo(sourceItems.get(positions[next])) < 0)) {
+                    next = i;
+                }
+            }
+            if (next == -1) {
+                break;
+            }
+            methodItems.add(sourceItems.get(positions[next]++));
+        }
+        return methodItems;
+    }
+
+    private void sortIfNeeded(int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            if (sourceItems.get(i - 1).compareTo(sourceItems.get(i)) > 0) {
+                Collections.sort(sourceItems.subList(start, end));
+                return;
+            }
+        }
+    }
+
+    /**
+     * The items of the current source, which are added to the end of sourceItems
+     */
+    private class SourceList extends AbstractList<MethodItem> {
+        @Override
+        public boolean add(MethodItem methodItem) {
+            return sourceItems.add(methodItem);
+        }
+
+        @Override
+        public MethodItem get(int index) {
+            return sourceItems.get(sourceStarts.get(sourceStarts.size() - 1) + index);
+        }
+
+        @Override
+        public int size() {
+            return sourceItems.size() - sourceStarts.get(sourceStarts.size() - 1);
+        }
+    }
+}
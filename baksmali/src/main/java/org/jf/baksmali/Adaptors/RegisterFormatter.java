@@ -28,6 +28,7 @@
 
 package org.jf.baksmali.Adaptors;
 
+import org.jf.baksmali.Adaptors.Expression.*;
 import org.jf.baksmali.Parenthesizer;
 import org.jf.baksmali.baksmali;
 import org.jf.dexlib.CodeItem;
@@ -35,23 +36,22 @@ import org.jf.dexlib.Util.AccessFlags;
 import org.jf.util.IndentingWriter;
 
 import java.io.IOException;
-import java.util.regex.Matcher;
+import java.util.LinkedList;
 import java.util.regex.Pattern;
 
 /**
  * This class contains the logic used for formatting registers
  */
 public class RegisterFormatter {
-    private static String[] registerContents;
+    private static Expression[] registerContents;
     private static String[] registerTypes;
     private static boolean[] locals;
     private static String[] localName;
     private static String[] localType;
-    private static final Pattern STRING_BUILDER_PATTERN = Pattern.compile("^new StringBuilder\\(\\)\\.append\\((.*)\\)\\.toString\\(\\)$");
     private static final Pattern INNER_THIS = Pattern.compile("^this\\$[0-9]$");
 
     public static void newRegisterSet(int registers) {
-        registerContents = new String[registers];
+        registerContents = new Expression[registers];
         registerTypes = new String[registers];
         locals = new boolean[registers];
         localName = new String[registers];
@@ -67,43 +67,95 @@ public class RegisterFormatter {
     }
 
     public static String getRegisterContents(int register, CodeItem codeItem) {
-        return getRegisterContents(register, codeItem, getRegisterType(register));
+        return getRegisterExpression(register, codeItem).toString();
     }
 
     public static String getRegisterContents(int register, CodeItem codeItem, String suggestedDalvikType) {
+        return getRegisterExpression(register, codeItem, suggestedDalvikType).toString();
+    }
+
+    public static Expression getRegisterExpression(int register, CodeItem codeItem) {
+        return getRegisterExpression(register, codeItem, getRegisterType(register));
+    }
+
+    public static Expression getRegisterExpression(int register, CodeItem codeItem, String suggestedDalvikType) {
         if (isLocal(register) && localName[register] != null) {
-            return localName[register];
+            return new NameExpression(localName[register]);
         }
         if (registerContents == null || registerContents[register] == null) {
-            return getRegisterName(register, codeItem);
-        }
-
-        String registerContent = registerContents[register];
-        Matcher stringBuilderMatcher = STRING_BUILDER_PATTERN.matcher(registerContent);
-        if (stringBuilderMatcher.find()) {
-            String[] subStrings = stringBuilderMatcher.group(1).split("\\)\\.append\\(");
-            StringBuilder prettyString = new StringBuilder();
-            boolean first = true;
-            for (String subString : subStrings) {
-                if (!first) {
-                    prettyString.append(" + ");
-                }
-                first = false;
-                prettyString.append(Parenthesizer.ensureNoUnenclosedSpaces(subString));
-            }
-            return prettyString.toString();
+            return new NameExpression(getRegisterName(register, codeItem));
         }
 
-        if (registerContent.equals("0")) {
-            return TypeFormatter.zeroAs(suggestedDalvikType);
-        } else if (registerContent.equals("1")) {
-            return TypeFormatter.oneAs(suggestedDalvikType);
-        } else if (INNER_THIS.matcher(registerContent).find()) {
-            return TypeFormatter.getType(registerTypes[register]) + ".this";
+        Expression registerContent = registerContents[register];
+        Expression concatenation = getStringConcatenation(registerContent);
+        if (concatenation != null) {
+            return concatenation;
+        }
+
+        String simpleText = registerContent.getSimpleText();
+        if (simpleText != null) {
+            if (simpleText.equals("0")) {
+                return new LiteralExpression(TypeFormatter.zeroAs(suggestedDalvikType));
+            } else if (simpleText.equals("1")) {
+                return new LiteralExpression(TypeFormatter.oneAs(suggestedDalvikType));
+            } else if (INNER_THIS.matcher(simpleText).find()) {
+                return new FieldExpression(new NameExpression(TypeFormatter.getType(registerTypes[register])), "this");
+            }
         }
         return registerContent;
     }
 
+    /**
+     * Turns the StringBuilder calls that are generated for a string concatenation, i.e.
+     * new StringBuilder().append(a).append(b).toString(), back into a + b
+     * @return the concatenation, or null if the given expression isn't such a call
+     */
+    private static Expression getStringConcatenation(Expression contents) {
+        if (!(contents instanceof InvokeExpression)) {
+            return null;
+        }
+        InvokeExpression toStringCall = (InvokeExpression) contents;
+        if (!toStringCall.getMethodName().equals("toString") || toStringCall.getArguments().size() != 0) {
+            return null;
+        }
+
+        //walk back along the chain of appends to find the StringBuilder they're made on
+        LinkedList<Expression> parts = new LinkedList<Expression>();
+        Expression target = toStringCall.getInstance();
+        while (target instanceof InvokeExpression) {
+            InvokeExpression call = (InvokeExpression) target;
+            if (!call.getMethodName().equals("append") || call.getArguments().size() != 1) {
+                return null;
+            }
+            parts.addFirst(call.getArguments().get(0));
+            target = call.getInstance();
+        }
+
+        if (!(target instanceof NewInstanceExpression)) {
+            return null;
+        }
+        NewInstanceExpression stringBuilder = (NewInstanceExpression) target;
+        if (!stringBuilder.getType().equals("StringBuilder") || stringBuilder.getArguments().size() != 0 ||
+                stringBuilder.isAnonymousClass()) {
+            return null;
+        }
+
+        if (parts.size() == 0) {
+            return null;
+        }
+
+        Expression concatenation = null;
+        for (Expression part: parts) {
+            if (part.isMultiline()) {
+                //an anonymous class is left inside the StringBuilder calls, rather than being split across a +
+                return null;
+            }
+            part = Parenthesizer.ensureNoUnenclosedSpaces(part);
+            concatenation = concatenation == null ? part : new BinaryExpression("+", concatenation, part);
+        }
+        return concatenation;
+    }
+
     public static String getRegisterType(int register) {
         if (isLocal(register)) {
             return localType[register];
@@ -111,7 +163,7 @@ public class RegisterFormatter {
         return registerTypes[register];
     }
 
-    public static void setRegisterContents(int register, String contents, String dalvikType) {
+    public static void setRegisterContents(int register, Expression contents, String dalvikType) {
         registerContents[register] = contents;
         registerTypes[register] = dalvikType;
     }
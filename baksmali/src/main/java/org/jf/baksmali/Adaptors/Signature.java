@@ -3,34 +3,37 @@ package org.jf.baksmali.Adaptors;
 import org.jf.dexlib.EncodedValue.EncodedValue;
 import org.jf.dexlib.EncodedValue.StringEncodedValue;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Signature {
-    private String signature;
-    private String foundValue;
-    private int nextCharIndex = 0;
-    private Token next;
+    // The same signatures are used by many classes and members, so each distinct signature is only split up into its
+    // parts once. The types in it are still formatted each time it is read, since that adds them to the imports of the
+    // class being written
+    private static final ConcurrentHashMap<String, ParsedSignature> parsedSignatures =
+            new ConcurrentHashMap<String, ParsedSignature>();
 
-    private static final Pattern DEFINITION = Pattern.compile("[a-zA-Z]+::?" + "\\[*[LT][^;^<^>^\\(^\\)]+;?");
-    private static final Pattern LONG_TYPE = Pattern.compile("\\[*[LT][^;^<^>^\\(^\\)]+;?");
-    private static final Pattern SHORT_TYPE = Pattern.compile("\\[*[VZBSCIJFD]");
-    private static final Pattern SPECIAL_CHARACTER = Pattern.compile("[\\+\\-\\*]");
-    private static final Pattern LITERAL_CHARACTER = Pattern.compile("[<>\\(\\)\\:]");
-    private static final Pattern LITERAL_INNER_CLASS = Pattern.compile("\\.[^;^<^>^\\(^\\)^/]+;?");
-    private static final Pattern IGNORED_CHARACTER = Pattern.compile(";");
+    private final ParsedSignature parsedSignature;
+    private int nextPartIndex = 0;
+    private Token next;
 
     public Signature(EncodedValue[] values) {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (EncodedValue encodedValue : values) {
-            stringBuilder.append(((StringEncodedValue) encodedValue).value.getStringValue());
+        String signature;
+        if (values.length == 1) {
+            signature = ((StringEncodedValue) values[0]).value.getStringValue();
+        } else {
+            StringBuilder stringBuilder = new StringBuilder();
+            for (EncodedValue encodedValue : values) {
+                stringBuilder.append(((StringEncodedValue) encodedValue).value.getStringValue());
+            }
+            signature = stringBuilder.toString();
         }
-        signature = stringBuilder.toString();
+        parsedSignature = getParsedSignature(signature);
         next = findNext();
     }
 
     public Signature(String signature) {
-        this.signature = signature;
+        parsedSignature = getParsedSignature(signature);
         next = findNext();
     }
 
@@ -48,76 +51,82 @@ public class Signature {
         return next;
     }
 
-    private Token findNext() {
-        if (nextCharIndex >= signature.length()) {
-            return new Token();
-        } else if (isNext(DEFINITION)) {
-            return new Token(TokenType.Definition, getGenericTypeDefinition());
-        } else if (isNext(LONG_TYPE) || isNext(SHORT_TYPE)) {
-            return new Token(TokenType.Type, TypeFormatter.getType(foundValue));
-        } else if (isNext(SPECIAL_CHARACTER)) {
-            Token special = new Token(TokenType.Type, getSpecial());
-            if (!special.value.equals("?")) {
-                Token referencedType = findNext();
-                if (!referencedType.type.equals(TokenType.Type)) {
-                    System.err.println("Non-type found after generic wildcard! '" + special + "' '" + referencedType.value);
-                    return new Token();
-                }
-                special.value += referencedType.value;
+    /**
+     * Forgets the signatures that have been parsed so far. This is done at the start of each run, so that the parsed
+     * signatures of one dex file aren't kept around while the next one is disassembled
+     */
+    public static void clearCache() {
+        parsedSignatures.clear();
+    }
+
+    private static ParsedSignature getParsedSignature(String signature) {
+        ParsedSignature parsedSignature = parsedSignatures.get(signature);
+        if (parsedSignature == null) {
+            parsedSignature = new ParsedSignature(signature);
+            ParsedSignature existing = parsedSignatures.putIfAbsent(signature, parsedSignature);
+            if (existing != null) {
+                parsedSignature = existing;
             }
-            return special;
-        } else if (isNext(LITERAL_CHARACTER) || isNext(LITERAL_INNER_CLASS)) {
-            return new Token(TokenType.Literal, getLiteral());
-        } else if (isNext(IGNORED_CHARACTER)) {
-            return findNext();
-        } else {
-            System.err.println("Unknown signature value: " + signature.charAt(nextCharIndex) + " at index " + nextCharIndex + " in " + signature);
-            nextCharIndex++;
-            return new Token();
         }
+        return parsedSignature;
     }
 
-    private boolean isNext(Pattern pattern) {
-        Matcher matcher = pattern.matcher(signature);
-        if (matcher.find(nextCharIndex) && matcher.start() == nextCharIndex) {
-            foundValue = matcher.group();
-            nextCharIndex = matcher.end();
-            return true;
+    private Token findNext() {
+        if (nextPartIndex >= parsedSignature.partTypes.length) {
+            return new Token();
+        }
+        PartType partType = parsedSignature.partTypes[nextPartIndex];
+        String part = parsedSignature.parts[nextPartIndex];
+        nextPartIndex++;
+
+        switch (partType) {
+            case Definition:
+                return new Token(TokenType.Definition, getGenericTypeDefinition(part));
+            case Type:
+                return new Token(TokenType.Type, TypeFormatter.getType(part));
+            case Special:
+                Token special = new Token(TokenType.Type, getSpecial(part));
+                if (!special.value.equals("?")) {
+                    Token referencedType = findNext();
+                    if (!referencedType.type.equals(TokenType.Type)) {
+                        System.err.println("Non-type found after generic wildcard! '" + special + "' '" + referencedType.value);
+                        return new Token();
+                    }
+                    special.value += referencedType.value;
+                }
+                return special;
+            case Literal:
+                return new Token(TokenType.Literal, part);
+            default:
+                System.err.println(part);
+                return new Token();
         }
-        return false;
     }
 
-    private String getGenericTypeDefinition() {
-        String[] split = foundValue.split(":");
+    private static String getGenericTypeDefinition(String definition) {
+        String[] split = definition.split(":");
         if (split.length == 3) {
             return split[0] + " extends " + TypeFormatter.getType(split[2]);
         } else if (split.length == 2) {
             return split[0];
         }
-        System.err.println("Unknown generic type definition format: " + foundValue);
+        System.err.println("Unknown generic type definition format: " + definition);
         return null;
     }
 
-    private String getSpecial() {
-        if (foundValue.equals("*")) {
+    private static String getSpecial(String special) {
+        if (special.equals("*")) {
             return "?";
-        } else if (foundValue.equals("+")) {
+        } else if (special.equals("+")) {
             return "? extends ";
-        } else if (foundValue.equals("-")) {
+        } else if (special.equals("-")) {
             return "? super ";
         } else {
-            System.err.println("Unknown special character in signature: " + foundValue);
+            System.err.println("Unknown special character in signature: " + special);
             return "";
         }
     }
 
-    private String getLiteral() {
-        if (foundValue.equals(":")) {
-            return " & ";
-        }
-        return foundValue;
-    }
-
     enum TokenType {
         Definition,
         Type,
@@ -139,4 +148,166 @@ public class Signature {
             value = "";
         }
     }
+
+    private enum PartType {
+        // A generic type definition, like T::Ljava/lang/Comparable
+        Definition,
+        // A type descriptor, like Ljava/util/List or [I, without any generic arguments
+        Type,
+        // A wildcard, one of * + or -
+        Special,
+        // One of < > ( ) or a literal inner class, like .Inner; The : between bounds is kept as " & "
+        Literal,
+        // A character that isn't part of any of the above. The part is the error message for it
+        Unknown
+    }
+
+    /**
+     * A signature split up into its parts, in a single pass over it. The ;s after types are dropped
+     */
+    private static class ParsedSignature {
+        public final PartType[] partTypes;
+        public final String[] parts;
+
+        public ParsedSignature(String signature) {
+            ArrayList<PartType> partTypes = new ArrayList<PartType>();
+            ArrayList<String> parts = new ArrayList<String>();
+
+            int index = 0;
+            int length = signature.length();
+            while (index < length) {
+                char c = signature.charAt(index);
+                int end;
+                if ((end = matchDefinition(signature, index)) >= 0) {
+                    partTypes.add(PartType.Definition);
+                } else if ((end = matchType(signature, index)) >= 0) {
+                    partTypes.add(PartType.Type);
+                } else if (c == '+' || c == '-' || c == '*') {
+                    end = index + 1;
+                    partTypes.add(PartType.Special);
+                } else if (c == '<' || c == '>' || c == '(' || c == ')' || c == ':') {
+                    end = index + 1;
+                    partTypes.add(PartType.Literal);
+                    if (c == ':') {
+                        parts.add(" & ");
+                        index = end;
+                        continue;
+                    }
+                } else if ((end = matchInnerClass(signature, index)) >= 0) {
+                    partTypes.add(PartType.Literal);
+                } else if (c == ';') {
+                    index++;
+                    continue;
+                } else {
+                    partTypes.add(PartType.Unknown);
+                    parts.add("Unknown signature value: " + c + " at index " + index + " in " + signature);
+                    index++;
+                    continue;
+                }
+                parts.add(signature.substring(index, end));
+                index = end;
+            }
+
+            this.partTypes = partTypes.toArray(new PartType[partTypes.size()]);
+            this.parts = parts.toArray(new String[parts.size()]);
+        }
+
+        /**
+         * @return whether the character can't be part of a class name in a signature
+         */
+        private static boolean isTypeTerminator(char c) {
+            return c == ';' || c == '^' || c == '<' || c == '>' || c == '(' || c == ')';
+        }
+
+        private static boolean isLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        /**
+         * Matches a class type (or a type variable), with any array dimensions before it, like [Ljava/lang/Object;
+         * @return the index just after the type, or -1 if there isn't one at the given index
+         */
+        private static int matchClassType(String signature, int index) {
+            int length = signature.length();
+            while (index < length && signature.charAt(index) == '[') {
+                index++;
+            }
+            if (index >= length || (signature.charAt(index) != 'L' && signature.charAt(index) != 'T')) {
+                return -1;
+            }
+            int nameStart = ++index;
+            while (index < length && !isTypeTerminator(signature.charAt(index))) {
+                index++;
+            }
+            if (index == nameStart) {
+                return -1;
+            }
+            if (index < length && signature.charAt(index) == ';') {
+                index++;
+            }
+            return index;
+        }
+
+        /**
+         * Matches a generic type definition, like T:Ljava/lang/Object; or T::Ljava/lang/Comparable
+         * @return the index just after the definition, or -1 if there isn't one at the given index
+         */
+        private static int matchDefinition(String signature, int index) {
+            int length = signature.length();
+            int nameStart = index;
+            while (index < length && isLetter(signature.charAt(index))) {
+                index++;
+            }
+            if (index == nameStart || index >= length || signature.charAt(index) != ':') {
+                return -1;
+            }
+            index++;
+            if (index < length && signature.charAt(index) == ':') {
+                index++;
+            }
+            return matchClassType(signature, index);
+        }
+
+        /**
+         * Matches a class type or a primitive type, with any array dimensions before it
+         * @return the index just after the type, or -1 if there isn't one at the given index
+         */
+        private static int matchType(String signature, int index) {
+            int end = matchClassType(signature, index);
+            if (end >= 0) {
+                return end;
+            }
+
+            int length = signature.length();
+            while (index < length && signature.charAt(index) == '[') {
+                index++;
+            }
+            if (index < length && "VZBSCIJFD".indexOf(signature.charAt(index)) >= 0) {
+                return index + 1;
+            }
+            return -1;
+        }
+
+        /**
+         * Matches the name of an inner class of a generic class, like .Inner; in Lfoo/Outer<TT;>.Inner;
+         * @return the index just after the name, or -1 if there isn't one at the given index
+         */
+        private static int matchInnerClass(String signature, int index) {
+            int length = signature.length();
+            if (signature.charAt(index) != '.') {
+                return -1;
+            }
+            int nameStart = ++index;
+            while (index < length && !isTypeTerminator(signature.charAt(index)) && signature.charAt(index) != '/') {
+                index++;
+            }
+            if (index == nameStart) {
+                return -1;
+            }
+            if (index < length && signature.charAt(index) == ';') {
+                index++;
+            }
+            return index;
+        }
+    }
 }
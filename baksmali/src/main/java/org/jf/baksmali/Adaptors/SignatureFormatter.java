@@ -14,7 +14,7 @@ public class SignatureFormatter {
     public static boolean writeSignature(IndentingWriter writer, AnnotationSetItem annotationSet, Origin origin) throws IOException {
         if (annotationSet != null) {
             for (AnnotationItem annotation : annotationSet.getAnnotations()) {
-                if (annotation.getEncodedAnnotation().annotationType.getTypeDescriptor().equals("Ldalvik/annotation/Signature;")) {
+                if (annotation.getAnnotationType().getTypeDescriptor().equals("Ldalvik/annotation/Signature;")) {
                     EncodedValue[] values = annotation.getEncodedAnnotation().values;
                     if (values.length != 1) {
                         System.err.println("Signature annotation does not have exactly one value!");
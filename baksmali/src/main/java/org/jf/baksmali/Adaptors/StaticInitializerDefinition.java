@@ -0,0 +1,155 @@
+package org.jf.baksmali.Adaptors;
+
+import org.jf.baksmali.Adaptors.Expression.Expression;
+import org.jf.baksmali.Adaptors.Expression.NewInstanceExpression;
+import org.jf.baksmali.Adaptors.Format.InstructionMethodItem;
+import org.jf.dexlib.AnnotationSetItem;
+import org.jf.dexlib.AnnotationSetRefList;
+import org.jf.dexlib.ClassDataItem;
+import org.jf.util.IndentingWriter;
+import org.jf.util.MemoryWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decompiles the static constructor of a class, pulling the assignments to the static fields of the class out of it
+ * as field initializers instead of writing them. Whatever follows the last of those assignments, up to the final
+ * return, is kept as the contents of the static block. Anything before it is most likely how the value of one of the
+ * fields was built (such as filling in an array), so it's dropped.
+ *
+ * For an enum, only the constants are picked out, and their initial value is the arguments they were constructed with
+ * other than the name and ordinal.
+ */
+public class StaticInitializerDefinition extends MethodDefinition {
+    private final Map<String, String> staticFieldInitialValues;
+    private final List<String> staticBlock;
+    private final Set<String> enumConstants;
+
+    private MemoryWriter staticBlockContents;
+    private IndentingWriter staticBlockWriter;
+    private boolean returned;
+
+    /**
+     * @param enumConstants the names of the constants of the enum being decompiled, or null if the class isn't an enum
+     */
+    public StaticInitializerDefinition(ClassDataItem.EncodedMethod encodedMethod,
+                                       Map<String, String> staticFieldInitialValues, List<String> staticBlock,
+                                       Set<String> enumConstants) {
+        super(encodedMethod);
+        this.staticFieldInitialValues = staticFieldInitialValues;
+        this.staticBlock = staticBlock;
+        this.enumConstants = enumConstants;
+    }
+
+    @Override
+    public void writeTo(IndentingWriter writer, AnnotationSetItem annotationSet,
+                        AnnotationSetRefList parameterAnnotations) throws IOException {
+        startStaticBlock();
+        returned = false;
+
+        super.writeTo(writer, annotationSet, parameterAnnotations);
+
+        if (enumConstants == null) {
+            String contents = staticBlockContents.getContents();
+            int start = 0;
+            while (start < contents.length()) {
+                int end = contents.indexOf('\n', start);
+                if (end < 0) {
+                    end = contents.length();
+                }
+                staticBlock.add(contents.substring(start, end).trim());
+                start = end + 1;
+            }
+        }
+    }
+
+    @Override
+    protected void writeStatement(IndentingWriter writer, MethodItem methodItem) throws IOException {
+        // Anything after the return is only written to keep the register state consistent
+        if (returned || !(methodItem instanceof InstructionMethodItem)) {
+            super.writeStatement(returned ? writer : staticBlockWriter, methodItem);
+            return;
+        }
+
+        InstructionMethodItem instructionMethodItem = (InstructionMethodItem) methodItem;
+        String fieldName = instructionMethodItem.getAssignedStaticField();
+        if (fieldName != null) {
+            methodItem.flush(writer);
+            addInitialValue(fieldName, instructionMethodItem.getAssignedStaticFieldValue());
+            startStaticBlock();
+        } else if (instructionMethodItem.getValue() == 0x0e) { // return-void
+            methodItem.flush(staticBlockWriter);
+            returned = true;
+            super.writeStatement(writer, methodItem);
+        } else {
+            super.writeStatement(staticBlockWriter, methodItem);
+        }
+    }
+
+    private void addInitialValue(String fieldName, Expression value) throws IOException {
+        if (enumConstants != null) {
+            if (enumConstants.contains(fieldName)) {
+                addEnumConstant(fieldName, value);
+            }
+            return;
+        }
+
+        // Write the value the way it would have been written in the method, so that any lines after the first one
+        // are indented to match
+        MemoryWriter initialValue = new MemoryWriter();
+        IndentingWriter initialValueWriter = new IndentingWriter(initialValue);
+        initialValueWriter.indent(4);
+        initialValueWriter.write(value.toString());
+        staticFieldInitialValues.put(fieldName, initialValue.getContents());
+    }
+
+    private void addEnumConstant(String fieldName, Expression value) {
+        if (!(value instanceof NewInstanceExpression)) {
+            return;
+        }
+        // The first two arguments are the name and ordinal that every enum constant gets
+        List<Expression> arguments = ((NewInstanceExpression) value).getArguments();
+        if (arguments.size() < 2 || !isName(arguments.get(0)) || !isOrdinal(arguments.get(1))) {
+            return;
+        }
+
+        String constructorArgs = null;
+        if (arguments.size() > 2) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 2; i < arguments.size(); i++) {
+                if (i != 2) {
+                    builder.append(", ");
+                }
+                arguments.get(i).appendTo(builder);
+            }
+            constructorArgs = builder.toString();
+        }
+        staticFieldInitialValues.put(fieldName, constructorArgs);
+    }
+
+    private static boolean isName(Expression argument) {
+        String name = argument.getSimpleText();
+        return name != null && name.length() > 2 && name.charAt(0) == '"' && name.charAt(name.length() - 1) == '"';
+    }
+
+    private static boolean isOrdinal(Expression argument) {
+        String ordinal = argument.getSimpleText();
+        if (ordinal == null || ordinal.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < ordinal.length(); i++) {
+            if (ordinal.charAt(i) < '0' || ordinal.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startStaticBlock() {
+        staticBlockContents = new MemoryWriter();
+        staticBlockWriter = new IndentingWriter(staticBlockContents);
+    }
+}
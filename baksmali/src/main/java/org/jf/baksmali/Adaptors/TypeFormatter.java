@@ -1,26 +1,81 @@
 package org.jf.baksmali.Adaptors;
 
+import org.jf.dexlib.DexFile;
 import org.jf.dexlib.TypeIdItem;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 public class TypeFormatter {
+    // The same handful of types are formatted over and over again, so the results are kept around for each dex file
+    private static final ConcurrentHashMap<String, FormattedType> formattedTypes =
+            new ConcurrentHashMap<String, FormattedType>();
+
+    // The index of each type in the dex file, and its formatted version once there is one. These are only replaced as a
+    // whole, by setDexFile
+    private static volatile HashMap<String, Integer> typeIndexes = new HashMap<String, Integer>();
+    private static volatile AtomicReferenceArray<FormattedType> formattedTypesByIndex =
+            new AtomicReferenceArray<FormattedType>(0);
+
     public static String getType(TypeIdItem typeIdItem) {
         return getType(typeIdItem.getTypeDescriptor());
     }
 
     public static String getType(String unformattedType) {
-        String formattedType = parseType(unformattedType);
-        String toImport = formattedType;
-        int innerClassBoundry = formattedType.indexOf('$');
-        if (innerClassBoundry > 0) {
-            toImport = formattedType.substring(0, innerClassBoundry);
+        FormattedType formattedType = getFormattedType(unformattedType);
+        if (formattedType.importName != null) {
+            ClassDefinition.addImport(formattedType.typeIndex, formattedType.importName);
         }
-        ClassDefinition.addImport(toImport);
-
-        return shortenType(formattedType);
+        return formattedType.shortType;
     }
 
     public static String getFullType(TypeIdItem typeIdItem) {
-        return parseType(typeIdItem.getTypeDescriptor());
+        return getFormattedType(typeIdItem.getTypeDescriptor()).fullType;
+    }
+
+    /**
+     * Starts formatting the types of a new dex file, forgetting the types of the previous one
+     */
+    public static void setDexFile(DexFile dexFile) {
+        List<TypeIdItem> typeIdItems = dexFile.TypeIdsSection.getItems();
+        HashMap<String, Integer> typeIndexes = new HashMap<String, Integer>(typeIdItems.size() * 2);
+        for (TypeIdItem typeIdItem : typeIdItems) {
+            typeIndexes.put(typeIdItem.getTypeDescriptor(), typeIdItem.getIndex());
+        }
+
+        formattedTypes.clear();
+        TypeFormatter.typeIndexes = typeIndexes;
+        formattedTypesByIndex = new AtomicReferenceArray<FormattedType>(typeIdItems.size());
+    }
+
+    /**
+     * @return the name to import for the type with the given index in the current dex file. The type must already have
+     * been formatted
+     */
+    public static String getImportName(int typeIndex) {
+        return formattedTypesByIndex.get(typeIndex).importName;
+    }
+
+    private static FormattedType getFormattedType(String unformattedType) {
+        FormattedType formattedType = formattedTypes.get(unformattedType);
+        if (formattedType == null) {
+            Integer typeIndex = typeIndexes.get(unformattedType);
+            AtomicReferenceArray<FormattedType> formattedTypesByIndex = TypeFormatter.formattedTypesByIndex;
+            if (typeIndex != null && typeIndex >= formattedTypesByIndex.length()) {
+                typeIndex = null;
+            }
+
+            formattedType = new FormattedType(unformattedType, typeIndex == null ? -1 : typeIndex);
+            FormattedType existing = formattedTypes.putIfAbsent(unformattedType, formattedType);
+            if (existing != null) {
+                formattedType = existing;
+            } else if (typeIndex != null) {
+                formattedTypesByIndex.set(typeIndex, formattedType);
+            }
+        }
+        return formattedType;
     }
 
     private static String shortenType(String javaType) {
@@ -62,6 +117,38 @@ public class TypeFormatter {
         return typeString;
     }
 
+    private static class FormattedType {
+        public final String fullType;
+        public final String shortType;
+        /**
+         * The name to import when the type is used, or null if it never needs an import. Whether it does still depends
+         * on the class being written, see ClassDefinition.addImport(int, String)
+         */
+        public final String importName;
+        /**
+         * The index of the type in the dex file, or -1 if it isn't one of its types
+         */
+        public final int typeIndex;
+
+        public FormattedType(String unformattedType, int typeIndex) {
+            this.typeIndex = typeIndex;
+            fullType = parseType(unformattedType);
+            shortType = shortenType(fullType);
+
+            String toImport = fullType;
+            int innerClassBoundry = toImport.indexOf('$');
+            if (innerClassBoundry > 0) {
+                toImport = toImport.substring(0, innerClassBoundry);
+            }
+            toImport = toImport.replace("[]", "");
+            if (toImport.indexOf('.') >= 0 && !toImport.startsWith("dalvik")) {
+                importName = toImport;
+            } else {
+                importName = null;
+            }
+        }
+    }
+
     //Todo: Possibly remove this method
     public static boolean looksLikeDalvikType(String type) {
         if (type == null) {
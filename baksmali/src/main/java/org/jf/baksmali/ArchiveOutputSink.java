@@ -0,0 +1,269 @@
+package org.jf.baksmali;
+
+import org.jf.util.ClassFileNameHandler;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes all of the source files into a single zip, jar or tar archive, chosen by the extension of the archive.
+ *
+ * Each source file is written to memory, and then queued up for a thread that writes the entries to the archive one
+ * after another, in the order the files were committed. The queue only holds a few files, so if the archive can't be
+ * written as quickly as the classes are disassembled, committing a file waits for there to be room in the queue.
+ *
+ * The entries are named the same way that the files would be in an output directory, with names that only differ by
+ * case made unique, so that the archive can be extracted on a case-insensitive file system.
+ */
+class ArchiveOutputSink implements OutputSink {
+    private static final int QUEUE_CAPACITY = 64;
+
+    //the entry that tells the writer thread that there are no more entries
+    private static final Entry END = new Entry(null, null);
+
+    private final File archiveFile;
+    private final ClassFileNameHandler fileNameHandler;
+    private final boolean tar;
+    private final OutputStream outputStream;
+    private final long modificationTime = System.currentTimeMillis();
+
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+    private volatile IOException writeException;
+
+    public ArchiveOutputSink(File archiveFile) throws IOException {
+        this.archiveFile = archiveFile;
+        fileNameHandler = new ClassFileNameHandler(archiveFile, ".java", false);
+
+        File parent = archiveFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Can't create the directory " + parent);
+        }
+
+        String name = archiveFile.getName().toLowerCase();
+        tar = !name.endsWith(".zip") && !name.endsWith(".jar");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(archiveFile), 64 * 1024);
+        if (name.endsWith(".gz") || name.endsWith(".tgz")) {
+            out = new GZIPOutputStream(out, 64 * 1024);
+        }
+        outputStream = tar ? out : new ZipOutputStream(out);
+
+        writerThread = new Thread("baksmali archive writer") {
+            @Override
+            public void run() {
+                writeEntries();
+            }
+        };
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @return whether the given output path names an archive, instead of a directory
+     */
+    public static boolean isArchive(String outputPath) {
+        String name = outputPath.toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".jar") || name.endsWith(".tar") ||
+                name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    public void nameSourceFiles(Collection<String> classDescriptors) {
+        fileNameHandler.nameClasses(classDescriptors);
+    }
+
+    public SourceFile createSourceFile(String classDescriptor) throws IOException {
+        checkWriteException();
+
+        final String entryName = getEntryName(fileNameHandler.getUniqueFilenameForClass(classDescriptor));
+        final ByteArrayOutputStream contents = new ByteArrayOutputStream(8 * 1024);
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(contents, "UTF8"));
+
+        return new SourceFile() {
+            public Writer getWriter() {
+                return writer;
+            }
+
+            public void commit() throws IOException {
+                writer.close();
+                enqueue(new Entry(entryName, contents.toByteArray()));
+            }
+
+            public void discard() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    public void close() throws IOException {
+        enqueue(END);
+        try {
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing " + archiveFile);
+        }
+        checkWriteException();
+    }
+
+    private String getEntryName(File file) {
+        //the files are named as if the archive were a directory
+        String path = file.getPath().substring(archiveFile.getPath().length() + 1);
+        if (File.separatorChar != '/') {
+            path = path.replace(File.separatorChar, '/');
+        }
+        return path;
+    }
+
+    private void enqueue(Entry entry) throws IOException {
+        checkWriteException();
+        try {
+            queue.put(entry);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing " + archiveFile);
+        }
+    }
+
+    private void checkWriteException() throws IOException {
+        IOException ex = writeException;
+        if (ex != null) {
+            throw ex;
+        }
+    }
+
+    private void writeEntries() {
+        boolean failed = false;
+        boolean ended = false;
+        try {
+            while (true) {
+                Entry entry;
+                try {
+                    entry = queue.take();
+                } catch (InterruptedException ex) {
+                    writeException = new InterruptedIOException("Interrupted while writing " + archiveFile);
+                    failed = true;
+                    return;
+                }
+
+                if (entry == END) {
+                    ended = true;
+                    break;
+                }
+                //once writing fails, keep taking entries so that nothing waits on the queue forever
+                if (failed) {
+                    continue;
+                }
+                try {
+                    if (tar) {
+                        writeTarEntry(entry);
+                    } else {
+                        writeZipEntry(entry);
+                    }
+                } catch (IOException ex) {
+                    writeException = ex;
+                    failed = true;
+                } catch (RuntimeException ex) {
+                    writeException = new IOException(ex);
+                    failed = true;
+                }
+            }
+        } finally {
+            //the stream is closed however the thread finishes, so that the entries written so far are flushed
+            try {
+                if (ended && !failed && tar) {
+                    //the end of a tar archive is marked by two empty blocks
+                    outputStream.write(new byte[2 * 512]);
+                }
+                outputStream.close();
+            } catch (IOException ex) {
+                if (!failed) {
+                    writeException = ex;
+                }
+            }
+        }
+    }
+
+    private void writeZipEntry(Entry entry) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(entry.name);
+        zipEntry.setTime(modificationTime);
+        ZipOutputStream zipOutputStream = (ZipOutputStream)outputStream;
+        zipOutputStream.putNextEntry(zipEntry);
+        zipOutputStream.write(entry.contents);
+        zipOutputStream.closeEntry();
+    }
+
+    private void writeTarEntry(Entry entry) throws IOException {
+        byte[] name = entry.name.getBytes("UTF-8");
+        if (name.length > 100) {
+            //the name doesn't fit in the header, so it goes in a GNU long name entry before it
+            byte[] longName = new byte[name.length + 1];
+            System.arraycopy(name, 0, longName, 0, name.length);
+            writeTarHeader("././@LongLink".getBytes("UTF-8"), longName.length, 'L');
+            writeTarContents(longName);
+            byte[] truncatedName = new byte[100];
+            System.arraycopy(name, 0, truncatedName, 0, 100);
+            name = truncatedName;
+        }
+        writeTarHeader(name, entry.contents.length, '0');
+        writeTarContents(entry.contents);
+    }
+
+    private void writeTarHeader(byte[] name, int size, char type) throws IOException {
+        byte[] header = new byte[512];
+        System.arraycopy(name, 0, header, 0, name.length);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, modificationTime / 1000);
+        header[156] = (byte)type;
+        System.arraycopy("ustar\u000000".getBytes("US-ASCII"), 0, header, 257, 8);
+
+        //the checksum is calculated with the checksum field itself set to spaces
+        for (int i=148; i<156; i++) {
+            header[i] = ' ';
+        }
+        int checksum = 0;
+        for (byte b: header) {
+            checksum += b & 0xFF;
+        }
+        putOctal(header, 148, 7, checksum);
+
+        outputStream.write(header);
+    }
+
+    private void writeTarContents(byte[] contents) throws IOException {
+        outputStream.write(contents);
+        int padding = (512 - contents.length % 512) % 512;
+        if (padding > 0) {
+            outputStream.write(new byte[padding]);
+        }
+    }
+
+    /**
+     * Writes the value as a zero padded octal number, followed by a NUL
+     */
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        int position = offset + length - 1;
+        header[position--] = 0;
+        while (position >= offset) {
+            header[position--] = (byte)('0' + (value & 7));
+            value >>>= 3;
+        }
+    }
+
+    private static class Entry {
+        public final String name;
+        public final byte[] contents;
+
+        public Entry(String name, byte[] contents) {
+            this.name = name;
+            this.contents = contents;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.jf.baksmali;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Picks which classes to disassemble, from a set of include and exclude patterns. A class is disassembled if it
+ * matches any of the include patterns (or there aren't any), and none of the exclude patterns.
+ *
+ * The patterns are matched against the name of the top level class that a class is in, so an inner class is always
+ * disassembled along with its outer class, which is what it is written into. A pattern can be:
+ * <ul>
+ * <li>a class name, like com.example.Foo. Either . or / can be used to separate the package names, and a type
+ * descriptor like Lcom/example/Foo; works too</li>
+ * <li>a glob, like com.example.* or com.example.**, where * matches any part of a single package or class name, **
+ * matches any number of package names as well, and ? matches a single character</li>
+ * <li>a regular expression, prefixed with regex:, that has to match the whole class name, like
+ * regex:com\.example\..*Activity</li>
+ * <li>a file, prefixed with @, that contains a pattern on each line. Empty lines and lines starting with # are
+ * ignored</li>
+ * </ul>
+ */
+public class ClassFilter {
+    private final Patterns includes = new Patterns();
+    private final Patterns excludes = new Patterns();
+
+    public void addInclude(String pattern) throws IOException {
+        includes.add(pattern);
+    }
+
+    public void addExclude(String pattern) throws IOException {
+        excludes.add(pattern);
+    }
+
+    /**
+     * @return whether all classes pass the filter, in which case there is no need to check them
+     */
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * @param classDescriptor the class, in the normal dalvik style, i.e. Lsome/package/ClassName;
+     * @return whether the given class should be disassembled
+     */
+    public boolean matches(String classDescriptor) {
+        String topLevelClass = getTopLevelClass(classDescriptor);
+        return (includes.isEmpty() || includes.matches(topLevelClass)) && !excludes.matches(topLevelClass);
+    }
+
+    /**
+     * @return the java style name of the top level class that the given class is in, i.e. some.package.ClassName
+     */
+    private static String getTopLevelClass(String classDescriptor) {
+        int start = 0;
+        int end = classDescriptor.length();
+        if (classDescriptor.charAt(0) == 'L' && classDescriptor.charAt(end - 1) == ';') {
+            start = 1;
+            end--;
+        }
+        int simpleNameStart = Math.max(classDescriptor.lastIndexOf('/'), classDescriptor.lastIndexOf('.')) + 1;
+        int innerClassStart = classDescriptor.indexOf('$', simpleNameStart);
+        if (innerClassStart >= 0 && innerClassStart < end) {
+            end = innerClassStart;
+        }
+        return classDescriptor.substring(start, end).replace('/', '.');
+    }
+
+    private static class Patterns {
+        //plain class names are looked up directly, so that long lists of classes are cheap to check
+        private final HashSet<String> classNames = new HashSet<String>();
+        private final ArrayList<Pattern> patterns = new ArrayList<Pattern>();
+
+        public boolean isEmpty() {
+            return classNames.isEmpty() && patterns.isEmpty();
+        }
+
+        public void add(String pattern) throws IOException {
+            pattern = pattern.trim();
+            if (pattern.length() == 0) {
+                return;
+            }
+
+            if (pattern.startsWith("@")) {
+                BufferedReader reader = new BufferedReader(new FileReader(pattern.substring(1)));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.trim().startsWith("#")) {
+                            add(line);
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } else if (pattern.startsWith("regex:")) {
+                try {
+                    patterns.add(Pattern.compile(pattern.substring("regex:".length())));
+                } catch (PatternSyntaxException ex) {
+                    throw new IllegalArgumentException("Invalid class filter pattern: " + pattern, ex);
+                }
+            } else if (pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0) {
+                patterns.add(globToPattern(getTopLevelClass(pattern)));
+            } else {
+                classNames.add(getTopLevelClass(pattern));
+            }
+        }
+
+        public boolean matches(String className) {
+            if (classNames.contains(className)) {
+                return true;
+            }
+            for (Pattern pattern: patterns) {
+                if (pattern.matcher(className).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Pattern globToPattern(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int literalStart = 0;
+            for (int i=0; i<glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c != '*' && c != '?') {
+                    continue;
+                }
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                if (c == '?') {
+                    regex.append("[^.]");
+                } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^.]*");
+                }
+                literalStart = i + 1;
+            }
+            if (literalStart < glob.length()) {
+                regex.append(Pattern.quote(glob.substring(literalStart)));
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.jf.baksmali;
+
+import org.jf.util.ClassFileNameHandler;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Writes each source file to its own file in an output directory, in a directory for its package.
+ *
+ * Each package directory is only checked for and created the first time a class in it is written, and the files are
+ * simply opened for writing, which creates them, instead of checking for them and creating them first.
+ */
+class DirectoryOutputSink implements OutputSink {
+    private final ClassFileNameHandler fileNameHandler;
+    private final HashSet<File> createdDirectories = new HashSet<File>();
+
+    public DirectoryOutputSink(File outputDirectory) {
+        fileNameHandler = new ClassFileNameHandler(outputDirectory, ".java");
+    }
+
+    public void nameSourceFiles(Collection<String> classDescriptors) {
+        fileNameHandler.nameClasses(classDescriptors);
+    }
+
+    public SourceFile createSourceFile(String classDescriptor) throws IOException {
+        final File javaFile = fileNameHandler.getUniqueFilenameForClass(classDescriptor);
+
+        File javaParent = javaFile.getParentFile();
+        if (!createdDirectories.contains(javaParent)) {
+            if (!javaParent.mkdirs() && !javaParent.isDirectory()) {
+                System.err.println("Unable to create directory " + javaParent.toString() + " - skipping class");
+                return null;
+            }
+            createdDirectories.add(javaParent);
+        }
+
+        final Writer writer;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(javaFile), "UTF8"));
+        } catch (FileNotFoundException ex) {
+            System.err.println("Unable to create file " + javaFile.toString() + " - skipping class");
+            return null;
+        }
+
+        return new SourceFile() {
+            public Writer getWriter() {
+                return writer;
+            }
+
+            public void commit() throws IOException {
+                writer.close();
+            }
+
+            public void discard() throws IOException {
+                writer.close();
+                javaFile.delete();
+            }
+        };
+    }
+
+    public void close() {
+    }
+}
@@ -1,20 +1,19 @@
 package org.jf.baksmali;
 
+import org.jf.baksmali.Adaptors.ImportSet;
 import org.jf.util.MemoryWriter;
 
-import java.util.HashSet;
-
 public class InnerClass {
     private final String body;
     private final String superClass;
-    private final HashSet<String> imports;
+    private final ImportSet imports;
     private final boolean isAnonymous;
 
-    public InnerClass(MemoryWriter body, HashSet<String> imports) {
+    public InnerClass(MemoryWriter body, ImportSet imports) {
         this(body, null, imports);
     }
 
-    public InnerClass(MemoryWriter body, String superClass, HashSet<String> imports) {
+    public InnerClass(MemoryWriter body, String superClass, ImportSet imports) {
         this.body = body.getContents();
         this.superClass = superClass;
         this.imports = imports;
@@ -26,7 +25,7 @@ public class InnerClass {
         return body;
     }
 
-    public HashSet<String> getImports() {
+    public ImportSet getImports() {
         return imports;
     }
 
@@ -0,0 +1,103 @@
+package org.jf.baksmali;
+
+import org.jf.dexlib.Code.Analysis.BootClassPathCache;
+import org.jf.dexlib.Code.Analysis.SharedDexFile;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+
+/**
+ * A copy of baksmali loaded in a class loader of its own.
+ *
+ * The disassembler keeps the state for the class and method being written, along with the options for the current
+ * run, in static fields. Each IsolatedBaksmali has its own copy of those fields, so separate instances can
+ * disassemble different dex files on different threads at the same time. An instance can be reused for any number of
+ * runs, but only for one run at a time.
+ *
+ * Only baksmali's own classes, and those of commons-cli (which builds the options in static fields), are loaded
+ * again for each instance. Everything else, dexlib included, is shared with the caller, so that the instances can
+ * share a BootClassPathCache, and the partitions of a dex file can share a SharedDexFile. dexlib keeps the class
+ * path for each thread separately (see ClassPath.setClassPath).
+ */
+class IsolatedBaksmali {
+    private final Method runMethod;
+
+    public IsolatedBaksmali() {
+        ClassLoader classLoader = new IsolatingClassLoader(getClassPath(), IsolatedBaksmali.class.getClassLoader());
+        try {
+            runMethod = classLoader.loadClass(main.class.getName()).getMethod("run", String[].class, File.class,
+                    BootClassPathCache.class, SharedDexFile.class);
+        } catch (ClassNotFoundException ex) {
+            throw new RuntimeException("Could not load baksmali from the class path", ex);
+        } catch (NoSuchMethodException ex) {
+            throw new RuntimeException("Could not load baksmali from the class path", ex);
+        }
+    }
+
+    /**
+     * Runs baksmali with the given arguments
+     * @see main#run
+     */
+    public int run(String[] args, File workingDirectory, BootClassPathCache bootClassPathCache,
+                   SharedDexFile sharedDexFile) {
+        try {
+            return (Integer)runMethod.invoke(null, args, workingDirectory, bootClassPathCache, sharedDexFile);
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static URL[] getClassPath() {
+        ArrayList<URL> urls = new ArrayList<URL>();
+        for (String entry: System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.length() == 0) {
+                continue;
+            }
+            try {
+                urls.add(new File(entry).toURI().toURL());
+            } catch (MalformedURLException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    private static class IsolatingClassLoader extends URLClassLoader {
+        public IsolatingClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith("org.jf.baksmali.") && !name.startsWith("org.apache.commons.cli.")) {
+                return super.loadClass(name, resolve);
+            }
+
+            //the isolated classes are loaded from the class path before asking the parent, so that they aren't shared
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass == null) {
+                    loadedClass = findClass(name);
+                }
+                if (resolve) {
+                    resolveClass(loadedClass);
+                }
+                return loadedClass;
+            }
+        }
+    }
+}
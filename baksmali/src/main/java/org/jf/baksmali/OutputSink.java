@@ -0,0 +1,44 @@
+package org.jf.baksmali;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+
+/**
+ * Where the source files of the disassembled classes are written to, see DirectoryOutputSink and ArchiveOutputSink
+ */
+interface OutputSink {
+    /**
+     * Names the source files for all of the given classes up front, so that the names don't depend on the order
+     * the classes are written in. See ClassFileNameHandler.nameClasses
+     * @param classDescriptors the classes, in the normal dalvik style, i.e. Lsome/package/ClassName;
+     */
+    void nameSourceFiles(Collection<String> classDescriptors);
+
+    /**
+     * Starts the source file for the given class. Either commit or discard has to be called on the file once the class
+     * has been written to it
+     * @param classDescriptor the class, in the normal dalvik style, i.e. Lsome/package/ClassName;
+     * @return the file, or null if it couldn't be created, in which case the problem has already been reported
+     */
+    SourceFile createSourceFile(String classDescriptor) throws IOException;
+
+    /**
+     * Finishes writing all of the files. Nothing else can be written afterwards
+     */
+    void close() throws IOException;
+
+    interface SourceFile {
+        Writer getWriter();
+
+        /**
+         * Closes the writer, and keeps what was written
+         */
+        void commit() throws IOException;
+
+        /**
+         * Closes the writer, and drops the file
+         */
+        void discard() throws IOException;
+    }
+}
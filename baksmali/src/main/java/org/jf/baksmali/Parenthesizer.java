@@ -1,5 +1,11 @@
 package org.jf.baksmali;
 
+import org.jf.baksmali.Adaptors.Expression.BinaryExpression;
+import org.jf.baksmali.Adaptors.Expression.Expression;
+import org.jf.baksmali.Adaptors.Expression.LiteralExpression;
+import org.jf.baksmali.Adaptors.Expression.ParenthesizedExpression;
+import org.jf.baksmali.Adaptors.Expression.TopLevelSections;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -50,6 +56,57 @@ public class Parenthesizer {
         return expression;
     }
 
+    /**
+     * The same as ensureNoUnenclosedSpaces(String), but decided from the summary of the expression's sections instead
+     * of by scanning its text
+     */
+    public static Expression ensureNoUnenclosedSpaces(Expression expression) {
+        TopLevelSections sections = expression.getTopLevelSections();
+        if (sections.getSectionCount() > 0 &&
+                !(sections.getSectionCount() == 1 && sections.hasUnfinishedSection() && sections.startsWithNew())) {
+            return new ParenthesizedExpression(expression);
+        }
+        return expression;
+    }
+
+    /**
+     * The same as ensureOrderOfOperations(String, String, String), but decided from the summaries of the operands'
+     * sections instead of by scanning their text
+     */
+    public static Expression ensureOrderOfOperations(String operation, Expression left, Expression right) {
+        Boolean leftObeys = obeysOrderOfOperations(operation, left.getTopLevelSections());
+        Boolean rightObeys = obeysOrderOfOperations(operation, right.getTopLevelSections());
+        if (leftObeys == null || rightObeys == null) {
+            // Go through the text, so that the same details of the error are printed
+            return new LiteralExpression(ensureOrderOfOperations(operation, left.toString(), right.toString()));
+        }
+        if (!leftObeys) {
+            left = new ParenthesizedExpression(left);
+        }
+        if (!rightObeys) {
+            right = new ParenthesizedExpression(right);
+        }
+        return new BinaryExpression(operation, left, right);
+    }
+
+    /**
+     * @return whether the sections obey the order of operations, or null if obeysOrderOfOperations(String, ArrayList)
+     * would throw a NullPointerException because an operator isn't known
+     */
+    private static Boolean obeysOrderOfOperations(String operation, TopLevelSections sections) {
+        if (!sections.allOperators()) {
+            return null;
+        }
+        if (sections.hasUnfinishedSection()) {
+            return false; // Most likely a cast, should be contained in parens
+        }
+        Integer precedence = OPERATOR_PRECEDENCE.get(operation);
+        if (precedence == null) {
+            return null;
+        }
+        return sections.getMinPrecedence() >= precedence;
+    }
+
     public static String ensureOrderOfOperations(String operation, String left, String right) {
         try {
             if (!obeysOrderOfOperations(operation, findUnenclosedSections(left))) {
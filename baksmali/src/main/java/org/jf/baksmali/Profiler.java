@@ -0,0 +1,336 @@
+package org.jf.baksmali;
+
+import org.jf.dexlib.MethodIdItem;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * Collects timing and allocation statistics for a baksmali run, when enabled with the --profile option.
+ *
+ * The run is divided into phases. Time and allocations are charged to whichever phase is current, so a phase entered
+ * from inside another (e.g. method analysis while decompiling a class) isn't counted twice, and the phases add up to
+ * the whole run. The time spent on each class and each method is recorded as well, including anything nested inside
+ * it.
+ *
+ * Only the thread that called start() is measured, which covers everything a run does. When profiling isn't enabled,
+ * every method returns immediately after checking a single static field.
+ */
+public class Profiler {
+    public enum Phase {
+        OTHER("other"),
+        LOAD("load"),
+        CLASS_PATH("class_path"),
+        DECOMPILE("decompile"),
+        ANALYSIS("analysis"),
+        IO("io"),
+        DUMP("dump");
+
+        public final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final int TOP_COUNT = 20;
+
+    private static boolean enabled = false;
+
+    private static ThreadMXBean threadMXBean;
+    private static com.sun.management.ThreadMXBean allocationMXBean;
+    private static long threadId;
+
+    private static Phase currentPhase;
+    private static long phaseStartTime;
+    private static long phaseStartCpuTime;
+    private static long phaseStartAllocated;
+    private static long[] phaseTimes;
+    private static long[] phaseCpuTimes;
+    private static long[] phaseAllocated;
+
+    private static long runStartTime;
+    private static HashMap<String, long[]> classTimes;
+    private static HashMap<String, long[]> methodTimes;
+    private static long analyzedInstructionCount;
+
+    /**
+     * This class is uninstantiable.
+     */
+    private Profiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables profiling for the current thread, discarding anything recorded previously
+     */
+    public static void start() {
+        threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean.isCurrentThreadCpuTimeSupported() && !threadMXBean.isThreadCpuTimeEnabled()) {
+            threadMXBean.setThreadCpuTimeEnabled(true);
+        }
+        allocationMXBean = null;
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            allocationMXBean = (com.sun.management.ThreadMXBean)threadMXBean;
+            if (allocationMXBean.isThreadAllocatedMemorySupported() &&
+                    !allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+                allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        threadId = Thread.currentThread().getId();
+
+        int phaseCount = Phase.values().length;
+        phaseTimes = new long[phaseCount];
+        phaseCpuTimes = new long[phaseCount];
+        phaseAllocated = new long[phaseCount];
+        classTimes = new HashMap<String, long[]>();
+        methodTimes = new HashMap<String, long[]>();
+        analyzedInstructionCount = 0;
+
+        currentPhase = Phase.OTHER;
+        runStartTime = phaseStartTime = System.nanoTime();
+        phaseStartCpuTime = getCpuTime();
+        phaseStartAllocated = getAllocatedBytes();
+        enabled = true;
+    }
+
+    /**
+     * Makes the given phase the current phase
+     * @return the phase that was current, which should be passed to exitPhase when the given phase ends
+     */
+    public static Phase enterPhase(Phase phase) {
+        if (!enabled) {
+            return null;
+        }
+        Phase previousPhase = currentPhase;
+        switchPhase(phase);
+        return previousPhase;
+    }
+
+    /**
+     * Returns to the phase that was current before the matching enterPhase call
+     * @param previousPhase the value returned by enterPhase
+     */
+    public static void exitPhase(Phase previousPhase) {
+        if (!enabled) {
+            return;
+        }
+        switchPhase(previousPhase);
+    }
+
+    private static void switchPhase(Phase phase) {
+        long time = System.nanoTime();
+        long cpuTime = getCpuTime();
+        long allocated = getAllocatedBytes();
+
+        int index = currentPhase.ordinal();
+        phaseTimes[index] += time - phaseStartTime;
+        phaseCpuTimes[index] += cpuTime - phaseStartCpuTime;
+        phaseAllocated[index] += allocated - phaseStartAllocated;
+
+        currentPhase = phase;
+        phaseStartTime = time;
+        phaseStartCpuTime = cpuTime;
+        phaseStartAllocated = allocated;
+    }
+
+    /**
+     * @return the start time to pass to endClass or endMethod, or 0 if profiling isn't enabled
+     */
+    public static long startTimer() {
+        if (!enabled) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time spent on a class
+     * @param classDescriptor the type descriptor of the class
+     * @param startTime the value returned by startTimer when work on the class began
+     */
+    public static void endClass(String classDescriptor, long startTime) {
+        if (!enabled) {
+            return;
+        }
+        addTime(classTimes, classDescriptor, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Records the time spent on a method. A method that is written more than once (e.g. a static initializer, which
+     * is also examined for field initial values) has the times added together
+     * @param method the method
+     * @param startTime the value returned by startTimer when work on the method began
+     */
+    public static void endMethod(MethodIdItem method, long startTime) {
+        if (!enabled) {
+            return;
+        }
+        addTime(methodTimes, method.getMethodString(), System.nanoTime() - startTime);
+    }
+
+    private static void addTime(HashMap<String, long[]> times, String key, long time) {
+        long[] total = times.get(key);
+        if (total == null) {
+            times.put(key, new long[] {time});
+        } else {
+            total[0] += time;
+        }
+    }
+
+    public static void addAnalyzedInstructions(int count) {
+        if (!enabled) {
+            return;
+        }
+        analyzedInstructionCount += count;
+    }
+
+    private static long getCpuTime() {
+        if (!threadMXBean.isCurrentThreadCpuTimeSupported()) {
+            return 0;
+        }
+        return threadMXBean.getCurrentThreadCpuTime();
+    }
+
+    private static long getAllocatedBytes() {
+        if (allocationMXBean == null || !allocationMXBean.isThreadAllocatedMemorySupported()) {
+            return 0;
+        }
+        return allocationMXBean.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * Stops profiling, writes a JSON summary of the run to the given file, and prints a table of the slowest classes
+     * and methods
+     * @param jsonFile the file to write the summary to
+     * @throws IOException if an IOException occurs
+     */
+    public static void finish(File jsonFile) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        switchPhase(currentPhase);
+        enabled = false;
+
+        long totalTime = phaseStartTime - runStartTime;
+        List<Map.Entry<String, long[]>> slowestClasses = getSlowest(classTimes);
+        List<Map.Entry<String, long[]>> slowestMethods = getSlowest(methodTimes);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(jsonFile), "UTF-8"));
+        try {
+            writeJson(writer, totalTime, slowestClasses, slowestMethods);
+        } finally {
+            writer.close();
+        }
+
+        printTable(totalTime, slowestClasses, slowestMethods);
+    }
+
+    private static List<Map.Entry<String, long[]>> getSlowest(HashMap<String, long[]> times) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(times.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            public int compare(Map.Entry<String, long[]> entry1, Map.Entry<String, long[]> entry2) {
+                long time1 = entry1.getValue()[0];
+                long time2 = entry2.getValue()[0];
+                if (time1 != time2) {
+                    return time1 < time2 ? 1 : -1;
+                }
+                return entry1.getKey().compareTo(entry2.getKey());
+            }
+        });
+        if (entries.size() > TOP_COUNT) {
+            return entries.subList(0, TOP_COUNT);
+        }
+        return entries;
+    }
+
+    private static void writeJson(Writer writer, long totalTime, List<Map.Entry<String, long[]>> slowestClasses,
+                                  List<Map.Entry<String, long[]>> slowestMethods) throws IOException {
+        long totalCpuTime = 0;
+        long totalAllocated = 0;
+        for (Phase phase: Phase.values()) {
+            totalCpuTime += phaseCpuTimes[phase.ordinal()];
+            totalAllocated += phaseAllocated[phase.ordinal()];
+        }
+
+        writer.write("{\n");
+        writer.write("  \"total\": ");
+        writeJsonTimes(writer, totalTime, totalCpuTime, totalAllocated);
+        writer.write(",\n  \"phases\": {");
+        Phase[] phases = Phase.values();
+        for (int i=0; i<phases.length; i++) {
+            int index = phases[i].ordinal();
+            writer.write(i == 0 ? "\n    " : ",\n    ");
+            writeJsonString(writer, phases[i].name);
+            writer.write(": ");
+            writeJsonTimes(writer, phaseTimes[index], phaseCpuTimes[index], phaseAllocated[index]);
+        }
+        writer.write("\n  },\n");
+        writer.write("  \"counts\": {\"classes\": " + classTimes.size() + ", \"methods\": " + methodTimes.size() +
+                ", \"analyzed_instructions\": " + analyzedInstructionCount + "},\n");
+        writer.write("  \"slowest_classes\": ");
+        writeJsonEntries(writer, slowestClasses);
+        writer.write(",\n  \"slowest_methods\": ");
+        writeJsonEntries(writer, slowestMethods);
+        writer.write("\n}\n");
+    }
+
+    private static void writeJsonTimes(Writer writer, long time, long cpuTime, long allocated) throws IOException {
+        writer.write(String.format("{\"wall_ms\": %.3f, \"cpu_ms\": %.3f, \"allocated_bytes\": %d}",
+                time / 1e6, cpuTime / 1e6, allocated));
+    }
+
+    private static void writeJsonEntries(Writer writer, List<Map.Entry<String, long[]>> entries) throws IOException {
+        writer.write('[');
+        for (int i=0; i<entries.size(); i++) {
+            writer.write(i == 0 ? "\n    {\"name\": " : ",\n    {\"name\": ");
+            writeJsonString(writer, entries.get(i).getKey());
+            writer.write(String.format(", \"wall_ms\": %.3f}", entries.get(i).getValue()[0] / 1e6));
+        }
+        writer.write(entries.size() == 0 ? "]" : "\n  ]");
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i=0; i<value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int)c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    private static void printTable(long totalTime, List<Map.Entry<String, long[]>> slowestClasses,
+                                   List<Map.Entry<String, long[]>> slowestMethods) {
+        System.out.println(String.format("Total: %.1f ms", totalTime / 1e6));
+        for (Phase phase: Phase.values()) {
+            int index = phase.ordinal();
+            System.out.println(String.format("  %-12s %10.1f ms wall %10.1f ms cpu %14d bytes", phase.name,
+                    phaseTimes[index] / 1e6, phaseCpuTimes[index] / 1e6, phaseAllocated[index]));
+        }
+        System.out.println(String.format("Analyzed instructions: %d", analyzedInstructionCount));
+
+        System.out.println();
+        System.out.println("Slowest classes:");
+        for (Map.Entry<String, long[]> entry: slowestClasses) {
+            System.out.println(String.format("  %10.1f ms  %s", entry.getValue()[0] / 1e6, entry.getKey()));
+        }
+
+        System.out.println();
+        System.out.println("Slowest methods:");
+        for (Map.Entry<String, long[]> entry: slowestMethods) {
+            System.out.println(String.format("  %10.1f ms  %s", entry.getValue()[0] / 1e6, entry.getKey()));
+        }
+    }
+}
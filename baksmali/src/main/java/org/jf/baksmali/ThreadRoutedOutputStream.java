@@ -0,0 +1,53 @@
+package org.jf.baksmali;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An OutputStream that forwards everything written to it to a stream chosen by the writing thread.
+ *
+ * Installed as System.out/System.err, this lets several concurrent runs each have their messages sent to their own
+ * destination, even though they all write to the same global streams.
+ */
+class ThreadRoutedOutputStream extends OutputStream {
+    private final OutputStream defaultTarget;
+    private final ThreadLocal<OutputStream> target = new ThreadLocal<OutputStream>();
+
+    public ThreadRoutedOutputStream(OutputStream defaultTarget) {
+        this.defaultTarget = defaultTarget;
+    }
+
+    /**
+     * Sends anything written by the current thread to the given stream, or to the default stream if null
+     */
+    public void setTarget(OutputStream outputStream) {
+        if (outputStream == null) {
+            target.remove();
+        } else {
+            target.set(outputStream);
+        }
+    }
+
+    private OutputStream getTarget() {
+        OutputStream outputStream = target.get();
+        if (outputStream == null) {
+            return defaultTarget;
+        }
+        return outputStream;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        getTarget().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        getTarget().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        getTarget().flush();
+    }
+}
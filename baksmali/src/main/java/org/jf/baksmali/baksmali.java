@@ -29,20 +29,26 @@
 package org.jf.baksmali;
 
 import org.jf.baksmali.Adaptors.ClassDefinition;
+import org.jf.baksmali.Adaptors.Signature;
+import org.jf.baksmali.Adaptors.TypeFormatter;
+import org.jf.dexlib.ClassDataItem;
 import org.jf.dexlib.ClassDefItem;
+import org.jf.dexlib.Code.Analysis.BootClassPathCache;
 import org.jf.dexlib.Code.Analysis.ClassPath;
 import org.jf.dexlib.Code.Analysis.CustomInlineMethodResolver;
 import org.jf.dexlib.Code.Analysis.InlineMethodResolver;
+import org.jf.dexlib.Code.Analysis.SharedDexFile;
 import org.jf.dexlib.Code.Analysis.SyntheticAccessorResolver;
+import org.jf.dexlib.CodeItem;
 import org.jf.dexlib.DexFile;
 import org.jf.dexlib.Util.AccessFlags;
-import org.jf.util.ClassFileNameHandler;
 import org.jf.util.IndentingWriter;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,12 +67,66 @@ public class baksmali {
 
     public static SyntheticAccessorResolver syntheticAccessorResolver = null;
 
-    public static void disassembleDexFile(String dexFilePath, DexFile dexFile, boolean deodex, String outputDirectory,
+    /**
+     * Disassembles the given dex file into java source files in the given output directory
+     * @return false if a fatal error occured and the disassembly was aborted, true otherwise
+     */
+    public static boolean disassembleDexFile(String dexFilePath, DexFile dexFile, boolean deodex, String outputDirectory,
                                           String[] classPathDirs, String bootClassPath, String extraBootClassPath,
                                           boolean noParameterRegisters, boolean useLocalsDirective,
                                           boolean useSequentialLabels, boolean outputDebugInfo, boolean addCodeOffsets,
                                           boolean noAccessorComments, int registerInfo, boolean verify,
                                           boolean ignoreErrors, String inlineTable) {
+        return disassembleDexFile(dexFilePath, dexFile, deodex, outputDirectory, classPathDirs, bootClassPath,
+                extraBootClassPath, noParameterRegisters, useLocalsDirective, useSequentialLabels, outputDebugInfo,
+                addCodeOffsets, noAccessorComments, registerInfo, verify, ignoreErrors, inlineTable, 0, 1);
+    }
+
+    /**
+     * Disassembles one partition of the classes in the given dex file. The classes are partitioned by their
+     * top level class, ignoring case, so a class is always in the same partition as its inner classes. Each partition
+     * names the files for all of the classes in the dex file before writing its own, so that names that collide on a
+     * case-insensitive file system are made unique the same way in every partition. Disassembling every partition into
+     * the same output directory produces the same files as disassembling the whole dex file at once.
+     * @param partitionIndex the partition to disassemble, from 0 to partitionCount - 1
+     * @param partitionCount the number of partitions to divide the classes into
+     * @return false if a fatal error occured and the disassembly was aborted, true otherwise
+     */
+    public static boolean disassembleDexFile(String dexFilePath, DexFile dexFile, boolean deodex, String outputDirectory,
+                                          String[] classPathDirs, String bootClassPath, String extraBootClassPath,
+                                          boolean noParameterRegisters, boolean useLocalsDirective,
+                                          boolean useSequentialLabels, boolean outputDebugInfo, boolean addCodeOffsets,
+                                          boolean noAccessorComments, int registerInfo, boolean verify,
+                                          boolean ignoreErrors, String inlineTable, int partitionIndex,
+                                          int partitionCount) {
+        return disassembleDexFile(dexFilePath, dexFile, deodex, outputDirectory, classPathDirs, bootClassPath,
+                extraBootClassPath, noParameterRegisters, useLocalsDirective, useSequentialLabels, outputDebugInfo,
+                addCodeOffsets, noAccessorComments, registerInfo, verify, ignoreErrors, inlineTable, partitionIndex,
+                partitionCount, null, null, null);
+    }
+
+    /**
+     * Disassembles the classes in one partition of the given dex file that pass the given filter. The filter is
+     * checked before anything else is done with a class, and when it is used, the classes needed for analysis are
+     * only loaded into the ClassPath as they are needed, rather than all of them up front
+     * @param classFilter the classes to disassemble, or null to disassemble all of them
+     * @param bootClassPathCache the cache to read the boot class path files from, or null to read them directly
+     * @param sharedDexFile the SharedDexFile that the dex file was read from, if it is shared with the other
+     * partitions, so that they share its class path as well, or null
+     * @return false if a fatal error occured and the disassembly was aborted, true otherwise
+     */
+    public static boolean disassembleDexFile(String dexFilePath, DexFile dexFile, boolean deodex, String outputDirectory,
+                                          String[] classPathDirs, String bootClassPath, String extraBootClassPath,
+                                          boolean noParameterRegisters, boolean useLocalsDirective,
+                                          boolean useSequentialLabels, boolean outputDebugInfo, boolean addCodeOffsets,
+                                          boolean noAccessorComments, int registerInfo, boolean verify,
+                                          boolean ignoreErrors, String inlineTable, int partitionIndex,
+                                          int partitionCount, ClassFilter classFilter,
+                                          BootClassPathCache bootClassPathCache, SharedDexFile sharedDexFile) {
+        if (classFilter != null && classFilter.isEmpty()) {
+            classFilter = null;
+        }
+
         baksmali.noParameterRegisters = noParameterRegisters;
         baksmali.useLocalsDirective = useLocalsDirective;
         baksmali.useSequentialLabels = useSequentialLabels;
@@ -77,6 +137,11 @@ public class baksmali {
         baksmali.registerInfo = registerInfo;
         baksmali.bootClassPath = bootClassPath;
         baksmali.verify = verify;
+        baksmali.inlineResolver = null;
+        baksmali.syntheticAccessorResolver = null;
+        ClassDefinition.getInnerClasses().clear();
+        TypeFormatter.setDexFile(dexFile);
+        Signature.clearCache();
 
         ClassPath.ClassPathErrorHandler classPathErrorHandler = null;
         if (ignoreErrors) {
@@ -89,30 +154,27 @@ public class baksmali {
         }
 
         if (registerInfo != 0 || deodex || verify) {
-            try {
-                String[] extraBootClassPathArray = null;
-                if (extraBootClassPath != null && extraBootClassPath.length() > 0) {
-                    assert extraBootClassPath.charAt(0) == ':';
-                    extraBootClassPathArray = extraBootClassPath.substring(1).split(":");
-                }
+            //the class path from a previous disassembly in this VM is specific to that dex file
+            ClassPath.clearClassPath();
 
-                if (dexFile.isOdex() && bootClassPath == null) {
-                    //ext.jar is a special case - it is typically the 2nd jar in the boot class path, but it also
-                    //depends on classes in framework.jar (typically the 3rd jar in the BCP). If the user didn't
-                    //specify a -c option, we should add framework.jar to the boot class path by default, so that it
-                    //"just works"
-                    if (extraBootClassPathArray == null && isExtJar(dexFilePath)) {
-                        extraBootClassPathArray = new String[]{"framework.jar"};
-                    }
-                    ClassPath.InitializeClassPathFromOdex(classPathDirs, extraBootClassPathArray, dexFilePath, dexFile,
-                            classPathErrorHandler);
+            Profiler.Phase previousPhase = Profiler.enterPhase(Profiler.Phase.CLASS_PATH);
+            try {
+                if (sharedDexFile == null) {
+                    initializeClassPath(dexFilePath, dexFile, classPathDirs, bootClassPath, extraBootClassPath,
+                            classPathErrorHandler, classFilter != null, bootClassPathCache);
                 } else {
-                    String[] bootClassPathArray = null;
-                    if (bootClassPath != null) {
-                        bootClassPathArray = bootClassPath.split(":");
+                    //the first partition to get here initializes the class path, and the others wait and then use it
+                    synchronized (sharedDexFile) {
+                        ClassPath classPath = sharedDexFile.getClassPath();
+                        if (classPath == null) {
+                            initializeClassPath(dexFilePath, dexFile, classPathDirs, bootClassPath,
+                                    extraBootClassPath, classPathErrorHandler, classFilter != null,
+                                    bootClassPathCache);
+                            sharedDexFile.setClassPath(ClassPath.getClassPath());
+                        } else {
+                            ClassPath.setClassPath(classPath);
+                        }
                     }
-                    ClassPath.InitializeClassPath(classPathDirs, bootClassPathArray, extraBootClassPathArray,
-                            dexFilePath, dexFile, classPathErrorHandler);
                 }
 
                 if (inlineTable != null) {
@@ -121,18 +183,83 @@ public class baksmali {
             } catch (Exception ex) {
                 System.err.println("\n\nError occured while loading boot class path files. Aborting.");
                 ex.printStackTrace(System.err);
-                System.exit(1);
+                return false;
+            } finally {
+                Profiler.exitPhase(previousPhase);
             }
         }
 
-        File outputDirectoryFile = new File(outputDirectory);
-        if (!outputDirectoryFile.exists()) {
-            if (!outputDirectoryFile.mkdirs()) {
-                System.err.println("Can't create the output directory " + outputDirectory);
-                System.exit(1);
+        OutputSink outputSink;
+        if (ArchiveOutputSink.isArchive(outputDirectory)) {
+            try {
+                outputSink = new ArchiveOutputSink(new File(outputDirectory));
+            } catch (IOException ex) {
+                System.err.println("Can't create the output archive " + outputDirectory);
+                ex.printStackTrace(System.err);
+                return false;
             }
+        } else {
+            File outputDirectoryFile = new File(outputDirectory);
+            if (!outputDirectoryFile.exists()) {
+                //another process may be writing a different partition to the same directory, and could create it first
+                if (!outputDirectoryFile.mkdirs() && !outputDirectoryFile.isDirectory()) {
+                    System.err.println("Can't create the output directory " + outputDirectory);
+                    return false;
+                }
+            }
+            outputSink = new DirectoryOutputSink(outputDirectoryFile);
         }
 
+        boolean succeeded = false;
+        try {
+            succeeded = disassembleClasses(dexFile, outputSink, partitionIndex, partitionCount, classFilter,
+                    ignoreErrors);
+        } finally {
+            //close the sink even if disassembling fails, so that whatever was written is flushed out, and an archive's
+            //writer thread isn't left waiting for more entries
+            try {
+                outputSink.close();
+            } catch (IOException ex) {
+                System.err.println("\n\nError occured while writing the output to " + outputDirectory);
+                ex.printStackTrace();
+                succeeded = false;
+            }
+        }
+        return succeeded;
+    }
+
+    private static void initializeClassPath(String dexFilePath, DexFile dexFile, String[] classPathDirs,
+                                            String bootClassPath, String extraBootClassPath,
+                                            ClassPath.ClassPathErrorHandler classPathErrorHandler,
+                                            boolean loadClassesLazily, BootClassPathCache bootClassPathCache) {
+        String[] extraBootClassPathArray = null;
+        if (extraBootClassPath != null && extraBootClassPath.length() > 0) {
+            assert extraBootClassPath.charAt(0) == ':';
+            extraBootClassPathArray = extraBootClassPath.substring(1).split(":");
+        }
+
+        if (dexFile.isOdex() && bootClassPath == null) {
+            //ext.jar is a special case - it is typically the 2nd jar in the boot class path, but it also
+            //depends on classes in framework.jar (typically the 3rd jar in the BCP). If the user didn't
+            //specify a -c option, we should add framework.jar to the boot class path by default, so that it
+            //"just works"
+            if (extraBootClassPathArray == null && isExtJar(dexFilePath)) {
+                extraBootClassPathArray = new String[]{"framework.jar"};
+            }
+            ClassPath.InitializeClassPathFromOdex(classPathDirs, extraBootClassPathArray, dexFilePath, dexFile,
+                    classPathErrorHandler, loadClassesLazily, bootClassPathCache);
+        } else {
+            String[] bootClassPathArray = null;
+            if (bootClassPath != null) {
+                bootClassPathArray = bootClassPath.split(":");
+            }
+            ClassPath.InitializeClassPath(classPathDirs, bootClassPathArray, extraBootClassPathArray,
+                    dexFilePath, dexFile, classPathErrorHandler, loadClassesLazily, bootClassPathCache);
+        }
+    }
+
+    private static boolean disassembleClasses(DexFile dexFile, OutputSink outputSink, int partitionIndex,
+                                              int partitionCount, ClassFilter classFilter, boolean ignoreErrors) {
         if (!noAccessorComments) {
             syntheticAccessorResolver = new SyntheticAccessorResolver(dexFile);
         }
@@ -148,9 +275,10 @@ public class baksmali {
             }
         });
 
-        // Java output file finder
-        ClassFileNameHandler fileNameHandler = new ClassFileNameHandler(outputDirectoryFile, ".java");
-
+        //pick out the classes to write, and name all of their files before writing any of them. The files are named for
+        //the classes of every partition, so that each partition resolves file name collisions the same way
+        ArrayList<ClassDefItem> classesToWrite = new ArrayList<ClassDefItem>(classDefItems.size());
+        ArrayList<String> classDescriptors = new ArrayList<String>(classDefItems.size());
         for (ClassDefItem classDefItem : classDefItems) {
             /**
              * The path for the disassembly file is based on the package name
@@ -160,6 +288,21 @@ public class baksmali {
              * package name are separated by '/'
              */
 
+            String classDescriptor = classDefItem.getClassType().getTypeDescriptor();
+
+            //check the filter before the ClassPath, so that nothing is loaded for the classes that aren't wanted
+            if (classFilter != null && !classFilter.matches(classDescriptor)) {
+                continue;
+            }
+
+            boolean inPartition = partitionCount <= 1 ||
+                    getPartition(classDescriptor, partitionCount) == partitionIndex;
+
+            //don't print synthetic classes
+            if (AccessFlags.hasFlag(classDefItem.getAccessFlags(), AccessFlags.SYNTHETIC)) {
+                continue;
+            }
+
             if (registerInfo != 0 || deodex || verify) {
                 //If we are analyzing the bytecode, make sure that this class is loaded into the ClassPath. If it isn't
                 //then there was some error while loading it, and we should skip it
@@ -169,70 +312,125 @@ public class baksmali {
                 }
             }
 
-            String classDescriptor = classDefItem.getClassType().getTypeDescriptor();
-
-            //don't print synthetic classes
-            if (AccessFlags.hasFlag(classDefItem.getAccessFlags(), AccessFlags.SYNTHETIC)) {
-                continue;
-            }
-
             //validate that the descriptor is formatted like we expect
             if (classDescriptor.charAt(0) != 'L' ||
                     classDescriptor.charAt(classDescriptor.length() - 1) != ';') {
-                System.err.println("Unrecognized class descriptor - " + classDescriptor + " - skipping class");
+                if (inPartition) {
+                    System.err.println("Unrecognized class descriptor - " + classDescriptor + " - skipping class");
+                }
                 continue;
             }
 
-            File javaFile = fileNameHandler.getUniqueFilenameForClass(classDescriptor);
+            if (inPartition) {
+                classesToWrite.add(classDefItem);
+            }
+            classDescriptors.add(classDescriptor);
+        }
+        outputSink.nameSourceFiles(classDescriptors);
+
+        for (ClassDefItem classDefItem : classesToWrite) {
+            String classDescriptor = classDefItem.getClassType().getTypeDescriptor();
+
+            long startTime = Profiler.startTimer();
+            Profiler.Phase previousPhase = Profiler.enterPhase(Profiler.Phase.DECOMPILE);
 
             //create and initialize the top level string template
             ClassDefinition classDefinition = new ClassDefinition(classDefItem);
 
             //write the decompiled code
-            Writer writer = null;
+            Profiler.enterPhase(Profiler.Phase.IO);
+            OutputSink.SourceFile sourceFile = null;
+            //what was written before an error is kept, only a class that chose not to write anything is dropped
+            boolean didWrite = true;
             try {
-                File javaParent = javaFile.getParentFile();
-                if (!javaParent.exists()) {
-                    if (!javaParent.mkdirs()) {
-                        System.err.println("Unable to create directory " + javaParent.toString() + " - skipping class");
-                        continue;
-                    }
-                }
-
-                if (!javaFile.exists()) {
-                    if (!javaFile.createNewFile()) {
-                        System.err.println("Unable to create file " + javaFile.toString() + " - skipping class");
-                        continue;
-                    }
+                sourceFile = outputSink.createSourceFile(classDescriptor);
+                if (sourceFile == null) {
+                    continue;
                 }
 
-                BufferedWriter baseBufWriter = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(javaFile), "UTF8"));
-                writer = new IndentingWriter(baseBufWriter);
-
-                boolean didWrite = classDefinition.writeTo((IndentingWriter) writer);
+                IndentingWriter writer = new IndentingWriter(sourceFile.getWriter());
 
-                if (!didWrite) {
-                    javaFile.delete();
-                }
+                Profiler.enterPhase(Profiler.Phase.DECOMPILE);
+                didWrite = classDefinition.writeTo(writer);
+                Profiler.enterPhase(Profiler.Phase.IO);
             } catch (Exception ex) {
                 System.err.println("\n\nError occured while disassembling class " + classDescriptor.replace('/', '.') + " - skipping class");
                 ex.printStackTrace();
             } finally {
-                if (writer != null) {
+                if (sourceFile != null) {
                     try {
-                        writer.close();
+                        if (didWrite) {
+                            sourceFile.commit();
+                        } else {
+                            sourceFile.discard();
+                        }
                     } catch (Throwable ex) {
-                        System.err.println("\n\nError occured while closing file " + writer.toString());
+                        System.err.println("\n\nError occured while closing the file for " + classDescriptor.replace('/', '.'));
                         ex.printStackTrace();
                     }
                 }
+                Profiler.exitPhase(previousPhase);
+                Profiler.endClass(classDescriptor, startTime);
+            }
+
+            if (dexFile.decodesInstructionsLazily()) {
+                releaseClass(classDefItem, didWrite);
             }
 
             if (!ignoreErrors && classDefinition.hadValidationErrors()) {
-                System.exit(1);
+                return false;
             }
         }
+        return true;
+    }
+
+    /**
+     * Drops what was decoded for the given class while writing it, once it has been written, so that memory use
+     * doesn't grow with the number of classes that have been written. This is only done when the dex file decodes its
+     * instructions lazily, so that they can be decoded again if anything needs them later on
+     * @param wroteClass whether the class was written to its own file, rather than being kept to be written into its
+     * outer class
+     */
+    private static void releaseClass(ClassDefItem classDefItem, boolean wroteClass) {
+        ClassDataItem classDataItem = classDefItem.getClassData();
+        if (classDataItem != null) {
+            releaseMethods(classDataItem.getDirectMethods());
+            releaseMethods(classDataItem.getVirtualMethods());
+        }
+
+        //the inner classes of a class are written before it, so any of them that weren't written into this class
+        //won't be written anywhere
+        String classDescriptor = classDefItem.getClassType().getTypeDescriptor();
+        if (wroteClass && !ClassDefinition.getInnerClasses().isEmpty()) {
+            String innerClassPrefix = classDescriptor.substring(0, classDescriptor.length() - 1) + '$';
+            Iterator<String> innerClasses = ClassDefinition.getInnerClasses().keySet().iterator();
+            while (innerClasses.hasNext()) {
+                if (innerClasses.next().startsWith(innerClassPrefix)) {
+                    innerClasses.remove();
+                }
+            }
+        }
+    }
+
+    private static void releaseMethods(ClassDataItem.EncodedMethod[] encodedMethods) {
+        for (ClassDataItem.EncodedMethod encodedMethod: encodedMethods) {
+            CodeItem codeItem = encodedMethod.codeItem;
+            if (codeItem != null) {
+                codeItem.releaseInstructions();
+                if (codeItem.getDebugInfo() != null) {
+                    codeItem.getDebugInfo().releaseDebugInfoTable();
+                }
+            }
+        }
+    }
+
+    private static int getPartition(String classDescriptor, int partitionCount) {
+        int end = classDescriptor.indexOf('$', classDescriptor.lastIndexOf('/') + 1);
+        if (end < 0) {
+            end = classDescriptor.length() - 1;
+        }
+        String topLevelClass = classDescriptor.substring(0, end);
+        return (topLevelClass.toLowerCase().hashCode() & 0x7FFFFFFF) % partitionCount;
     }
 
     private static final Pattern extJarPattern = Pattern.compile("(?:^|\\\\|/)ext.(?:jar|odex)$");
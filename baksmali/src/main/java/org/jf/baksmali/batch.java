@@ -0,0 +1,404 @@
+package org.jf.baksmali;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.jf.dexlib.Code.Analysis.BootClassPathCache;
+import org.jf.dexlib.Code.Analysis.SharedDexFile;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disassembles many dex/apk files in a single VM.
+ *
+ * Each input is split into partitions of its classes (see baksmali.disassembleDexFile), and the partitions of all
+ * inputs go into one shared queue, largest inputs first. Each worker thread owns an IsolatedBaksmali and takes the
+ * next partition whenever it finishes one, so the workers stay busy until the last partition is done, instead of
+ * idling while a few large inputs finish. The partitions of an input share a single copy of its dex file and class
+ * path, which is loaded by whichever partition starts first. The boot class path files are read once, into a cache
+ * that all of the workers share.
+ *
+ * The output for each input goes to its own directory under the output directory, along with a log of everything
+ * printed while disassembling it. A summary of the time spent on each input is printed at the end and written to
+ * batch-summary.tsv in the output directory.
+ */
+public class batch {
+    /**
+     * Inputs are split into roughly one partition per this many bytes, up to one partition per worker
+     */
+    private static final long BYTES_PER_PARTITION = 512 * 1024;
+
+    /**
+     * The total length of the boot class path files to keep cached. The inputs in a batch usually share a single boot
+     * class path, which then only has to be read once
+     */
+    private static final long BOOT_CLASS_PATH_CACHE_SIZE = 128 * 1024 * 1024;
+
+    private static final String[] INPUT_EXTENSIONS = new String[] {".dex", ".odex", ".apk", ".jar", ".zip"};
+
+    /**
+     * The baksmali options that can't be given for the whole batch. -o and -P are set by batch for each partition, and
+     * the others name a single file, which every input and partition would write at the same time
+     */
+    private static final List<String> SINGLE_RUN_OPTIONS = Arrays.asList("o", "P", "J", "D", "W", "O");
+
+    private static final ThreadRoutedOutputStream routedOut = new ThreadRoutedOutputStream(System.out);
+    private static final ThreadRoutedOutputStream routedErr = new ThreadRoutedOutputStream(System.err);
+
+    private static final ThreadLocal<IsolatedBaksmali> workerBaksmali = new ThreadLocal<IsolatedBaksmali>() {
+        @Override
+        protected IsolatedBaksmali initialValue() {
+            return new IsolatedBaksmali();
+        }
+    };
+
+    /**
+     * This class is uninstantiable.
+     */
+    private batch() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int workers = Runtime.getRuntime().availableProcessors();
+        String outputDirectory = null;
+        List<String> inputArgs = new ArrayList<String>();
+        List<String> baksmaliArgs = new ArrayList<String>();
+
+        for (int i=0; i<args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--")) {
+                baksmaliArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            } else if (arg.equals("-o") && i + 1 < args.length) {
+                outputDirectory = args[++i];
+            } else if (arg.equals("-j") && i + 1 < args.length) {
+                try {
+                    workers = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException ex) {
+                    workers = 0;
+                }
+            } else {
+                inputArgs.add(arg);
+            }
+        }
+
+        if (outputDirectory == null || inputArgs.size() == 0 || workers < 1) {
+            usage();
+            return;
+        }
+
+        String invalidOption = checkBaksmaliArgs(baksmaliArgs);
+        if (invalidOption != null) {
+            System.err.println(invalidOption);
+            System.exit(1);
+        }
+
+        List<File> inputFiles = new ArrayList<File>();
+        for (String inputArg: inputArgs) {
+            if (inputArg.startsWith("@")) {
+                readInputList(new File(inputArg.substring(1)), inputFiles);
+            } else {
+                addInput(new File(inputArg), inputFiles);
+            }
+        }
+
+        if (inputFiles.size() == 0) {
+            System.err.println("No input files were found");
+            System.exit(1);
+        }
+
+        boolean succeeded = run(inputFiles, new File(outputDirectory), baksmaliArgs, workers);
+        if (!succeeded) {
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("usage: java -cp baksmali.jar org.jf.baksmali.batch -o <dir> [-j <workers>] <input>... " +
+                "[-- <baksmali options>]");
+        System.out.println();
+        System.out.println("Each <input> is a dex/odex/apk/jar/zip file, a directory to search for such files, or");
+        System.out.println("@<file> to read a list of inputs from <file>, one per line. The output for each input");
+        System.out.println("is placed in a separate directory under <dir>. The baksmali options are used for every");
+        System.out.println("input, and must not include an input file, or any of -o, -P, -J, -D, -W or -O.");
+    }
+
+    /**
+     * @return a message saying what's wrong with the given baksmali options, or null if they can be used for every
+     * input and partition
+     */
+    private static String checkBaksmaliArgs(List<String> baksmaliArgs) {
+        //the options are parsed the same way baksmali parses them, so that -oDIR, --output=DIR, etc. are all caught
+        CommandLine commandLine;
+        try {
+            commandLine = new PosixParser().parse(main.getOptions(),
+                    baksmaliArgs.toArray(new String[baksmaliArgs.size()]));
+        } catch (ParseException ex) {
+            return "Invalid baksmali options: " + ex.getMessage();
+        }
+
+        for (Option option: commandLine.getOptions()) {
+            if (SINGLE_RUN_OPTIONS.contains(option.getOpt())) {
+                return "The baksmali option -" + option.getOpt() + " (--" + option.getLongOpt() + ") can't be " +
+                        "used in batch mode";
+            }
+        }
+        if (commandLine.getArgs().length > 0) {
+            return "The baksmali options can't include an input file: " + commandLine.getArgs()[0];
+        }
+        return null;
+    }
+
+    private static void readInputList(File listFile, List<File> inputFiles) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(listFile), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0) {
+                    addInput(new File(line), inputFiles);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void addInput(File file, List<File> inputFiles) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                return;
+            }
+            Arrays.sort(children);
+            for (File child: children) {
+                if (child.isDirectory() || hasInputExtension(child.getName())) {
+                    addInput(child, inputFiles);
+                }
+            }
+        } else if (file.exists()) {
+            inputFiles.add(file);
+        } else {
+            System.err.println("Can't find the file " + file.getPath() + " - skipping");
+        }
+    }
+
+    private static boolean hasInputExtension(String fileName) {
+        String lowerCaseName = fileName.toLowerCase();
+        for (String extension: INPUT_EXTENSIONS) {
+            if (lowerCaseName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Disassembles each of the given input files into its own directory under outputDirectory
+     * @return true if every input was disassembled successfully
+     */
+    public static boolean run(List<File> inputFiles, File outputDirectory, final List<String> baksmaliArgs,
+                              int workers)
+            throws IOException, InterruptedException {
+        if (!outputDirectory.exists() && !outputDirectory.mkdirs()) {
+            System.err.println("Can't create the output directory " + outputDirectory);
+            return false;
+        }
+
+        System.setOut(new PrintStream(routedOut, true));
+        System.setErr(new PrintStream(routedErr, true));
+
+        List<Input> inputs = new ArrayList<Input>();
+        HashSet<String> usedNames = new HashSet<String>();
+        for (File inputFile: inputFiles) {
+            int partitionCount = (int)Math.min(workers, 1 + inputFile.length() / BYTES_PER_PARTITION);
+            inputs.add(new Input(inputFile, new File(outputDirectory, getUniqueName(inputFile, usedNames)),
+                    partitionCount));
+        }
+
+        //queue the partitions of the largest inputs first, so that the last partitions to finish are small ones
+        List<Input> sortedInputs = new ArrayList<Input>(inputs);
+        Collections.sort(sortedInputs, new Comparator<Input>() {
+            public int compare(Input input1, Input input2) {
+                long length1 = input1.file.length() / input1.partitionCount;
+                long length2 = input2.file.length() / input2.partitionCount;
+                return length1 < length2 ? 1 : (length1 > length2 ? -1 : 0);
+            }
+        });
+
+        final BootClassPathCache bootClassPathCache = new BootClassPathCache(BOOT_CLASS_PATH_CACHE_SIZE);
+
+        long startTime = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            for (final Input input: sortedInputs) {
+                for (int i=0; i<input.partitionCount; i++) {
+                    final int partitionIndex = i;
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            input.runPartition(partitionIndex, baksmaliArgs, bootClassPathCache);
+                        }
+                    });
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long totalTime = System.nanoTime() - startTime;
+
+        return writeSummary(inputs, new File(outputDirectory, "batch-summary.tsv"), totalTime);
+    }
+
+    private static String getUniqueName(File inputFile, HashSet<String> usedNames) {
+        String name = inputFile.getName();
+        int extIndex = name.lastIndexOf('.');
+        if (extIndex > 0) {
+            name = name.substring(0, extIndex);
+        }
+
+        String uniqueName = name;
+        for (int i=2; !usedNames.add(uniqueName.toLowerCase()); i++) {
+            uniqueName = name + "_" + i;
+        }
+        return uniqueName;
+    }
+
+    private static boolean writeSummary(List<Input> inputs, File summaryFile, long totalTime) throws IOException {
+        boolean succeeded = true;
+
+        StringBuilder summary = new StringBuilder();
+        summary.append("input\toutput\tpartitions\twall_ms\tworker_ms\tstatus\n");
+        for (Input input: inputs) {
+            summary.append(input.file.getPath()).append('\t');
+            summary.append(input.outputDirectory.getPath()).append('\t');
+            summary.append(input.partitionCount).append('\t');
+            summary.append(input.getWallTime() / 1000000).append('\t');
+            summary.append(input.workerTime / 1000000).append('\t');
+            summary.append(input.failed ? "failed" : "ok").append('\n');
+            succeeded &= !input.failed;
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(summaryFile), "UTF-8");
+        try {
+            writer.write(summary.toString());
+        } finally {
+            writer.close();
+        }
+
+        System.out.print(summary);
+        System.out.println(String.format("Disassembled %d inputs in %d ms", inputs.size(), totalTime / 1000000));
+        return succeeded;
+    }
+
+    private static class Input {
+        public final File file;
+        public final File outputDirectory;
+        public final int partitionCount;
+
+        private final File logFile;
+        private OutputStream log;
+        //this is dropped once the last partition is done, so that only the inputs being worked on are kept in memory
+        private SharedDexFile sharedDexFile = new SharedDexFile();
+        private int partitionsRemaining;
+        private long firstStartTime = Long.MAX_VALUE;
+        private long lastEndTime = Long.MIN_VALUE;
+        public long workerTime = 0;
+        public boolean failed = false;
+
+        public Input(File file, File outputDirectory, int partitionCount) {
+            this.file = file;
+            this.outputDirectory = outputDirectory;
+            this.partitionCount = partitionCount;
+            this.partitionsRemaining = partitionCount;
+            this.logFile = new File(outputDirectory.getPath() + ".log");
+        }
+
+        public long getWallTime() {
+            return lastEndTime - firstStartTime;
+        }
+
+        public void runPartition(int partitionIndex, List<String> baksmaliArgs,
+                                 BootClassPathCache bootClassPathCache) {
+            List<String> args = new ArrayList<String>(baksmaliArgs);
+            args.add("-o");
+            args.add(outputDirectory.getPath());
+            args.add("-P");
+            args.add(partitionIndex + "/" + partitionCount);
+            args.add(file.getPath());
+
+            long startTime = System.nanoTime();
+            OutputStream log = openLog();
+            routedOut.setTarget(log);
+            routedErr.setTarget(log);
+
+            int exitCode;
+            try {
+                exitCode = workerBaksmali.get().run(args.toArray(new String[args.size()]), null, bootClassPathCache,
+                        getSharedDexFile());
+            } catch (Throwable ex) {
+                System.err.println("\n\nUNEXPECTED TOP-LEVEL ERROR:");
+                ex.printStackTrace();
+                exitCode = 1;
+            } finally {
+                routedOut.setTarget(null);
+                routedErr.setTarget(null);
+            }
+
+            finishPartition(startTime, System.nanoTime(), exitCode);
+        }
+
+        private synchronized SharedDexFile getSharedDexFile() {
+            return sharedDexFile;
+        }
+
+        private synchronized OutputStream openLog() {
+            if (log == null) {
+                try {
+                    log = new FileOutputStream(logFile);
+                } catch (IOException ex) {
+                    System.err.println("Can't create the log file " + logFile + " - discarding its output");
+                    log = new ByteArrayOutputStream();
+                }
+            }
+            //partitions of this input may be running on several workers at once
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    synchronized (Input.this) {
+                        log.write(b);
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    synchronized (Input.this) {
+                        log.write(b, off, len);
+                    }
+                }
+            };
+        }
+
+        private synchronized void finishPartition(long startTime, long endTime, int exitCode) {
+            firstStartTime = Math.min(firstStartTime, startTime);
+            lastEndTime = Math.max(lastEndTime, endTime);
+            workerTime += endTime - startTime;
+            failed |= exitCode != 0;
+
+            if (--partitionsRemaining == 0) {
+                sharedDexFile = null;
+                try {
+                    log.close();
+                } catch (IOException ex) {
+                }
+                System.out.println(String.format("%s: %s in %d ms", file.getPath(), failed ? "failed" : "done",
+                        getWallTime() / 1000000));
+            }
+        }
+    }
+}
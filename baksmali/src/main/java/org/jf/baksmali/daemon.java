@@ -0,0 +1,330 @@
+package org.jf.baksmali;
+
+import org.jf.dexlib.Code.Analysis.BootClassPathCache;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long running baksmali process that accepts disassembly jobs over a local socket.
+ *
+ * Starting a new VM for every dex file means paying for VM startup, class loading and JIT warmup, and re-reading
+ * the boot class path, each time. The daemon pays those once. Each worker thread owns an IsolatedBaksmali, so jobs
+ * on different workers run concurrently, and each worker keeps its copy of baksmali warm between jobs. The boot class
+ * path files are kept in a single cache that all of the workers read from.
+ *
+ * A job is sent as the daemon's token on the first line, the client's working directory on the second, followed by
+ * the baksmali arguments, one per line, and then an empty line. The daemon replies with everything the job printed to
+ * stdout and stderr, followed by a line with EXIT_MARKER and the job's exit code.
+ *
+ * The daemon only listens on the loopback interface, but any local user can connect to it there, and a job reads and
+ * writes files with the daemon's permissions. So when it starts, the daemon makes up a random token and writes it to
+ * a file in the home directory that only its owner can read (see getTokenFile), and a job that doesn't start with
+ * the token is refused. Anyone who can read that file can have the daemon read or write anything its owner can.
+ *
+ * A client that hasn't sent the token within TOKEN_TIMEOUT, or that sends a first line longer than the token, is
+ * disconnected, so that clients without the token can't hold on to the workers.
+ */
+public class daemon {
+    public static final int DEFAULT_PORT = 5865;
+    private static final String EXIT_MARKER = "\0baksmali-exit ";
+
+    /**
+     * How long a client that hasn't sent the token yet can keep a worker waiting, in milliseconds
+     */
+    private static final int TOKEN_TIMEOUT = 10 * 1000;
+
+    /**
+     * The total length of the boot class path files to keep cached between jobs. This is enough for the boot class
+     * paths of a few different devices
+     */
+    private static final long BOOT_CLASS_PATH_CACHE_SIZE = 128 * 1024 * 1024;
+    private static final BootClassPathCache bootClassPathCache = new BootClassPathCache(BOOT_CLASS_PATH_CACHE_SIZE);
+
+    private static byte[] token;
+
+    private static ThreadRoutedOutputStream routedOut;
+    private static ThreadRoutedOutputStream routedErr;
+
+    private static final ThreadLocal<IsolatedBaksmali> workerBaksmali = new ThreadLocal<IsolatedBaksmali>() {
+        @Override
+        protected IsolatedBaksmali initialValue() {
+            return new IsolatedBaksmali();
+        }
+    };
+
+    /**
+     * This class is uninstantiable.
+     */
+    private daemon() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 1 && args[0].equals("serve") && args.length <= 3) {
+            int port = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+            int workers = args.length >= 3 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            serve(port, workers);
+        } else if (args.length >= 2 && args[0].equals("run")) {
+            String[] baksmaliArgs = new String[args.length - 2];
+            System.arraycopy(args, 2, baksmaliArgs, 0, baksmaliArgs.length);
+            System.exit(submit(Integer.parseInt(args[1]), baksmaliArgs));
+        } else {
+            usage();
+        }
+    }
+
+    private static void usage() {
+        System.out.println("usage: java -cp baksmali.jar org.jf.baksmali.daemon serve [<port> [<workers>]]");
+        System.out.println("       java -cp baksmali.jar org.jf.baksmali.daemon run <port> [baksmali options] <dex-file>");
+        System.out.println();
+        System.out.println("serve starts a daemon listening on the given local port (" + DEFAULT_PORT + " by default)");
+        System.out.println("that runs up to <workers> jobs at once (the number of processors by default). run sends");
+        System.out.println("a job to a daemon and prints its output, exiting with the job's exit code. Jobs can only");
+        System.out.println("be sent by a user that can read the daemon's token file, " + getTokenFile(DEFAULT_PORT));
+    }
+
+    /**
+     * @return the file that the token of the daemon on the given port is written to
+     */
+    public static File getTokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".baksmali-daemon-" + port + ".token");
+    }
+
+    /**
+     * Makes up a new token and writes it to the token file for the given port, which is only readable by its owner
+     */
+    private static byte[] createToken(int port) throws IOException {
+        byte[] randomBytes = new byte[32];
+        new SecureRandom().nextBytes(randomBytes);
+        StringBuilder tokenText = new StringBuilder();
+        for (byte b: randomBytes) {
+            tokenText.append(String.format("%02x", b & 0xFF));
+        }
+        byte[] token = tokenText.toString().getBytes("UTF-8");
+
+        //the file is created from scratch with its permissions, so there's no moment where another user could read it
+        final File tokenFile = getTokenFile(port);
+        if (tokenFile.exists() && !tokenFile.delete()) {
+            throw new IOException("Can't replace the token file " + tokenFile);
+        }
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(tokenFile.toPath(), PosixFilePermissions.asFileAttribute(
+                    EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+        } else if (!tokenFile.createNewFile() || !tokenFile.setReadable(false, false) ||
+                !tokenFile.setReadable(true, true) || !tokenFile.setWritable(false, false) ||
+                !tokenFile.setWritable(true, true)) {
+            throw new IOException("Can't make the token file " + tokenFile + " readable only by its owner");
+        }
+        FileOutputStream out = new FileOutputStream(tokenFile);
+        try {
+            out.write(token);
+        } finally {
+            out.close();
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                tokenFile.delete();
+            }
+        });
+        return token;
+    }
+
+    /**
+     * Listens for jobs on the given port of the loopback interface. This method does not return.
+     * @param port the port to listen on
+     * @param workers the maximum number of jobs to run at once
+     */
+    public static void serve(int port, int workers) throws IOException {
+        token = createToken(port);
+
+        routedOut = new ThreadRoutedOutputStream(System.out);
+        routedErr = new ThreadRoutedOutputStream(System.err);
+        System.setOut(new PrintStream(routedOut, true));
+        System.setErr(new PrintStream(routedErr, true));
+
+        ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+
+        System.out.println(String.format("baksmali daemon listening on port %d with %d workers", port, workers));
+
+        while (true) {
+            final Socket socket = serverSocket.accept();
+            //until the token has been read, a silent client only holds a worker for TOKEN_TIMEOUT
+            socket.setSoTimeout(TOKEN_TIMEOUT);
+            executor.execute(new Runnable() {
+                public void run() {
+                    handleJob(socket);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads a job from the given connection, runs it and sends back its output. Nothing that goes wrong with one job
+     * is allowed to escape, so that the worker thread, and the warm copy of baksmali it owns, survive to run the next
+     */
+    private static void handleJob(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String tokenLine;
+            try {
+                tokenLine = readToken(reader);
+            } catch (SocketTimeoutException ex) {
+                //the client connected and never sent the token
+                return;
+            }
+            if (tokenLine != null && tokenLine.trim().length() == 0) {
+                //the client connected and went away without sending a job
+                return;
+            }
+            if (tokenLine == null || !MessageDigest.isEqual(token, tokenLine.getBytes("UTF-8"))) {
+                OutputStream out = socket.getOutputStream();
+                out.write(("The job was refused, since it didn't start with the daemon's token\n" + EXIT_MARKER + "1\n")
+                        .getBytes("UTF-8"));
+                out.flush();
+                return;
+            }
+            //the client is trusted now, and can take as long as it likes to send the rest of the job
+            socket.setSoTimeout(0);
+
+            String workingDirectoryLine = reader.readLine();
+            if (workingDirectoryLine == null || workingDirectoryLine.trim().length() == 0) {
+                //the client connected and went away without sending a job
+                return;
+            }
+            File workingDirectory = new File(workingDirectoryLine);
+            List<String> args = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                args.add(line);
+            }
+
+            OutputStream jobOutput = new BufferedOutputStream(socket.getOutputStream());
+            routedOut.setTarget(jobOutput);
+            routedErr.setTarget(jobOutput);
+
+            int exitCode;
+            try {
+                exitCode = workerBaksmali.get().run(args.toArray(new String[args.size()]), workingDirectory,
+                        bootClassPathCache, null);
+            } catch (Throwable ex) {
+                System.err.println("\n\nUNEXPECTED TOP-LEVEL ERROR:");
+                ex.printStackTrace();
+                exitCode = 1;
+            } finally {
+                System.out.flush();
+                System.err.flush();
+                routedOut.setTarget(null);
+                routedErr.setTarget(null);
+            }
+
+            jobOutput.write(("\n" + EXIT_MARKER + exitCode + "\n").getBytes("UTF-8"));
+            jobOutput.flush();
+        } catch (IOException ex) {
+            System.err.println("Error while communicating with a client");
+            ex.printStackTrace();
+        } catch (RuntimeException ex) {
+            System.err.println("Error while handling a job");
+            ex.printStackTrace();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    /**
+     * Reads the first line of a job, which should be the token. At most one character more than the token is read, so
+     * that a client without the token can't make the daemon hold on to an arbitrarily long line
+     * @return the line, an empty string if the connection was closed before anything was sent, or null if the line is
+     * longer than the token
+     */
+    private static String readToken(Reader reader) throws IOException {
+        StringBuilder line = new StringBuilder(token.length);
+        while (line.length() <= token.length) {
+            int c = reader.read();
+            if (c == -1 || c == '\n') {
+                return line.toString();
+            }
+            line.append((char)c);
+        }
+        return null;
+    }
+
+    /**
+     * Sends a job to a running daemon, and copies its output to stdout
+     * @param port the port the daemon is listening on
+     * @param args the baksmali arguments for the job
+     * @return the exit code of the job
+     */
+    public static int submit(int port, String[] args) throws IOException {
+        File tokenFile = getTokenFile(port);
+        if (!tokenFile.exists()) {
+            System.err.println("Can't find the token file " + tokenFile + ". Is a daemon running on port " + port +
+                    " as this user?");
+            return 1;
+        }
+        BufferedReader tokenReader = new BufferedReader(new InputStreamReader(new FileInputStream(tokenFile),
+                "UTF-8"));
+        String token;
+        try {
+            token = tokenReader.readLine();
+        } finally {
+            tokenReader.close();
+        }
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            writer.write(token == null ? "" : token);
+            writer.write('\n');
+            writer.write(System.getProperty("user.dir"));
+            writer.write('\n');
+            for (String arg: args) {
+                writer.write(arg);
+                writer.write('\n');
+            }
+            writer.write('\n');
+            writer.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String previousLine = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(EXIT_MARKER)) {
+                    //the daemon adds a newline before the exit marker, so drop the resulting empty line
+                    if (previousLine != null && previousLine.length() > 0) {
+                        System.out.println(previousLine);
+                    }
+                    return Integer.parseInt(line.substring(EXIT_MARKER.length()));
+                }
+                if (previousLine != null) {
+                    System.out.println(previousLine);
+                }
+                previousLine = line;
+            }
+
+            System.err.println("The daemon closed the connection before the job finished");
+            return 1;
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -29,7 +29,9 @@
 package org.jf.baksmali;
 
 import org.apache.commons.cli.*;
-import org.jf.dexlib.Code.Opcode;
+import org.jf.dexlib.Code.Analysis.BootClassPathCache;
+import org.jf.dexlib.Code.Analysis.SharedDexFile;
+import org.jf.dexlib.Code.OpcodeTable;
 import org.jf.dexlib.DexFile;
 import org.jf.util.ConsoleUtil;
 import org.jf.util.smaliHelpFormatter;
@@ -86,6 +88,36 @@ public class main {
      * Run!
      */
     public static void main(String[] args) {
+        int exitCode = run(args, null);
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * Parses the given command line arguments and performs the requested disassembly/dump, without exiting the VM
+     * @param args the command line arguments, as would be passed to main
+     * @param workingDirectory the directory to resolve relative file arguments against, or null to use the
+     * current directory of the process
+     * @return the exit code that main would exit with
+     */
+    public static int run(String[] args, File workingDirectory) {
+        return run(args, workingDirectory, null, null);
+    }
+
+    /**
+     * Parses the given command line arguments and performs the requested disassembly/dump, without exiting the VM
+     * @param args the command line arguments, as would be passed to main
+     * @param workingDirectory the directory to resolve relative file arguments against, or null to use the
+     * current directory of the process
+     * @param bootClassPathCache the cache to read the boot class path files from, or null to read them directly
+     * @param sharedDexFile the dex file and class path to share with runs of the other partitions of the same dex file
+     * on other threads, or null to read the dex file for just this run. It isn't used when the dex file is dumped or
+     * written, since that changes it
+     * @return the exit code that main would exit with
+     */
+    public static int run(String[] args, File workingDirectory, BootClassPathCache bootClassPathCache,
+                          SharedDexFile sharedDexFile) {
         CommandLineParser parser = new PosixParser();
         CommandLine commandLine;
 
@@ -93,7 +125,7 @@ public class main {
             commandLine = parser.parse(options, args);
         } catch (ParseException ex) {
             usage();
-            return;
+            return 0;
         }
 
         boolean disassemble = true;
@@ -110,20 +142,26 @@ public class main {
         boolean deodex = false;
         boolean verify = false;
         boolean ignoreErrors = false;
+        boolean lowMemory = false;
 
         int apiLevel = 14;
 
         int registerInfo = 0;
 
-        String outputDirectory = "out";
+        String outputDirectory = resolvePath(workingDirectory, "out");
         String dumpFileName = null;
         String outputDexFileName = null;
         String inputDexFileName = null;
         String bootClassPath = null;
         StringBuffer extraBootClassPathEntries = new StringBuffer();
         List<String> bootClassPathDirs = new ArrayList<String>();
-        bootClassPathDirs.add(".");
+        bootClassPathDirs.add(resolvePath(workingDirectory, "."));
         String inlineTable = null;
+        int partitionIndex = 0;
+        int partitionCount = 1;
+        String profileFileName = null;
+        String offsetIndexFileName = null;
+        ClassFilter classFilter = new ClassFilter();
 
         String[] remainingArgs = commandLine.getArgs();
 
@@ -136,18 +174,18 @@ public class main {
             switch (opt.charAt(0)) {
                 case 'v':
                     version();
-                    return;
+                    return 0;
                 case '?':
                     while (++i < options.length) {
                         if (options[i].getOpt().charAt(0) == '?') {
                             usage(true);
-                            return;
+                            return 0;
                         }
                     }
                     usage(false);
-                    return;
+                    return 0;
                 case 'o':
-                    outputDirectory = commandLine.getOptionValue("o");
+                    outputDirectory = resolvePath(workingDirectory, commandLine.getOptionValue("o"));
                     break;
                 case 'p':
                     noParameterRegisters = true;
@@ -162,7 +200,7 @@ public class main {
                     outputDebugInfo = false;
                     break;
                 case 'd':
-                    bootClassPathDirs.add(option.getValue());
+                    bootClassPathDirs.add(resolvePath(workingDirectory, option.getValue()));
                     break;
                 case 'f':
                     addCodeOffsets = true;
@@ -190,7 +228,7 @@ public class main {
                                 registerInfo |= FULLMERGE;
                             } else {
                                 usage();
-                                return;
+                                return 0;
                             }
                         }
 
@@ -221,14 +259,15 @@ public class main {
                     break;
                 case 'D':
                     doDump = true;
-                    dumpFileName = commandLine.getOptionValue("D", inputDexFileName + ".dump");
+                    dumpFileName = resolvePath(workingDirectory,
+                            commandLine.getOptionValue("D", inputDexFileName + ".dump"));
                     break;
                 case 'I':
                     ignoreErrors = true;
                     break;
                 case 'W':
                     write = true;
-                    outputDexFileName = commandLine.getOptionValue("W");
+                    outputDexFileName = resolvePath(workingDirectory, commandLine.getOptionValue("W"));
                     break;
                 case 'S':
                     sort = true;
@@ -240,7 +279,50 @@ public class main {
                     verify = true;
                     break;
                 case 'T':
-                    inlineTable = commandLine.getOptionValue("T");
+                    inlineTable = resolvePath(workingDirectory, commandLine.getOptionValue("T"));
+                    break;
+                case 'P':
+                    String[] partition = commandLine.getOptionValue("P").split("/");
+                    try {
+                        partitionIndex = Integer.parseInt(partition[0]);
+                        partitionCount = Integer.parseInt(partition[1]);
+                    } catch (RuntimeException ex) {
+                        usage();
+                        return 0;
+                    }
+                    if (partitionCount < 1 || partitionIndex < 0 || partitionIndex >= partitionCount) {
+                        usage();
+                        return 0;
+                    }
+                    break;
+                case 'J':
+                    profileFileName = resolvePath(workingDirectory, commandLine.getOptionValue("J"));
+                    break;
+                case 'L':
+                    lowMemory = true;
+                    break;
+                case 'O':
+                    offsetIndexFileName = resolvePath(workingDirectory, commandLine.getOptionValue("O"));
+                    break;
+                case 'i':
+                case 'e':
+                    String pattern = option.getValue();
+                    if (pattern.startsWith("@")) {
+                        pattern = "@" + resolvePath(workingDirectory, pattern.substring(1));
+                    }
+                    try {
+                        if (opt.charAt(0) == 'i') {
+                            classFilter.addInclude(pattern);
+                        } else {
+                            classFilter.addExclude(pattern);
+                        }
+                    } catch (IOException ex) {
+                        System.err.println("Can't read the class list " + pattern.substring(1));
+                        return 1;
+                    } catch (IllegalArgumentException ex) {
+                        System.err.println(ex.getMessage());
+                        return 1;
+                    }
                     break;
                 default:
                     assert false;
@@ -249,22 +331,44 @@ public class main {
 
         if (remainingArgs.length != 1) {
             usage();
-            return;
+            return 0;
         }
 
-        inputDexFileName = remainingArgs[0];
+        if (partitionCount > 1 && ArchiveOutputSink.isArchive(outputDirectory)) {
+            System.err.println("-P can't be used when writing to an archive");
+            return 1;
+        }
+
+        inputDexFileName = resolvePath(workingDirectory, remainingArgs[0]);
+
+        if (profileFileName != null) {
+            Profiler.start();
+        }
 
         try {
             File dexFileFile = new File(inputDexFileName);
             if (!dexFileFile.exists()) {
                 System.err.println("Can't find the file " + inputDexFileName);
-                System.exit(1);
+                return 1;
             }
 
-            Opcode.updateMapsForApiLevel(apiLevel);
-
             //Read in and parse the dex file
-            DexFile dexFile = new DexFile(dexFileFile, !fixRegisters, false);
+            Profiler.Phase previousPhase = Profiler.enterPhase(Profiler.Phase.LOAD);
+            DexFile.Options dexFileOptions = new DexFile.Options()
+                    .setOpcodeTable(OpcodeTable.forApiLevel(apiLevel))
+                    .setPreserveSignedRegisters(!fixRegisters)
+                    .setDecodeInstructionsLazily(lowMemory)
+                    .setOffsetIndexFile(offsetIndexFileName == null ? null : new File(offsetIndexFileName));
+            if (doDump || write) {
+                sharedDexFile = null;
+            }
+            DexFile dexFile;
+            if (sharedDexFile != null) {
+                dexFile = sharedDexFile.getDexFile(dexFileFile, dexFileOptions);
+            } else {
+                dexFile = new DexFile(dexFileFile, dexFileOptions);
+            }
+            Profiler.exitPhase(previousPhase);
 
             if (dexFile.isOdex()) {
                 if (doDump) {
@@ -292,13 +396,17 @@ public class main {
                     bootClassPathDirsArray[i] = bootClassPathDirs.get(i);
                 }
 
-                baksmali.disassembleDexFile(dexFileFile.getPath(), dexFile, deodex, outputDirectory,
+                if (!baksmali.disassembleDexFile(dexFileFile.getPath(), dexFile, deodex, outputDirectory,
                         bootClassPathDirsArray, bootClassPath, extraBootClassPathEntries.toString(),
                         noParameterRegisters, useLocalsDirective, useSequentialLabels, outputDebugInfo, addCodeOffsets,
-                        noAccessorComments, registerInfo, verify, ignoreErrors, inlineTable);
+                        noAccessorComments, registerInfo, verify, ignoreErrors, inlineTable, partitionIndex,
+                        partitionCount, classFilter, bootClassPathCache, sharedDexFile)) {
+                    return 1;
+                }
             }
 
             if ((doDump || write) && !dexFile.isOdex()) {
+                previousPhase = Profiler.enterPhase(Profiler.Phase.DUMP);
                 try
                 {
                     dump.dump(dexFile, dumpFileName, outputDexFileName, sort);
@@ -306,16 +414,35 @@ public class main {
                     System.err.println("Error occured while writing dump file");
                     ex.printStackTrace();
                 }
+                Profiler.exitPhase(previousPhase);
             }
         } catch (RuntimeException ex) {
             System.err.println("\n\nUNEXPECTED TOP-LEVEL EXCEPTION:");
             ex.printStackTrace();
-            System.exit(1);
+            return 1;
         } catch (Throwable ex) {
             System.err.println("\n\nUNEXPECTED TOP-LEVEL ERROR:");
             ex.printStackTrace();
-            System.exit(1);
+            return 1;
+        } finally {
+            if (profileFileName != null) {
+                try {
+                    Profiler.finish(new File(profileFileName));
+                } catch (IOException ex) {
+                    System.err.println("Error occured while writing profile file");
+                    ex.printStackTrace();
+                }
+            }
         }
+
+        return 0;
+    }
+
+    private static String resolvePath(File workingDirectory, String path) {
+        if (workingDirectory == null || path == null || new File(path).isAbsolute()) {
+            return path;
+        }
+        return new File(workingDirectory, path).getPath();
     }
 
     /**
@@ -349,7 +476,13 @@ public class main {
         System.out.println("baksmali " + VERSION + " (http://smali.googlecode.com)");
         System.out.println("Copyright (C) 2010 Ben Gruver (JesusFreke@JesusFreke.com)");
         System.out.println("BSD license (http://www.opensource.org/licenses/bsd-license.php)");
-        System.exit(0);
+    }
+
+    /**
+     * @return all of the options that baksmali accepts
+     */
+    static Options getOptions() {
+        return options;
     }
 
     private static void buildOptions() {
@@ -362,7 +495,9 @@ public class main {
                 .create("?");
 
         Option outputDirOption = OptionBuilder.withLongOpt("output")
-                .withDescription("the directory where the disassembled files will be placed. The default is out")
+                .withDescription("the directory where the disassembled files will be placed. The default is out. " +
+                        "If DIR ends in .zip, .jar, .tar, .tar.gz or .tgz, the files are written into an archive " +
+                        "with that name instead")
                 .hasArg()
                 .withArgName("DIR")
                 .create("o");
@@ -435,6 +570,37 @@ public class main {
                 .withArgName("API_LEVEL")
                 .create("a");
 
+        Option includeOption = OptionBuilder.withLongOpt("include")
+                .withDescription("only disassemble the classes matching PATTERN, along with their inner classes. " +
+                        "PATTERN can be a class name (com.example.Foo), a glob (com.example.* for a package, " +
+                        "com.example.** for a package and its subpackages), a regular expression prefixed with " +
+                        "regex:, or @FILE to read a pattern from each line of FILE. Can be given more than once")
+                .hasArg()
+                .withArgName("PATTERN")
+                .create("i");
+
+        Option excludeOption = OptionBuilder.withLongOpt("exclude")
+                .withDescription("don't disassemble the classes matching PATTERN, or their inner classes, even if " +
+                        "they match an --include pattern. PATTERN is the same as for --include. Can be given more " +
+                        "than once")
+                .hasArg()
+                .withArgName("PATTERN")
+                .create("e");
+
+        Option lowMemoryOption = OptionBuilder.withLongOpt("low-memory")
+                .withDescription("keep the instructions of each method encoded until the method is disassembled, and " +
+                        "drop the decoded instructions and debug info of each class once it has been written, so " +
+                        "that memory use doesn't grow with the size of the dex file")
+                .create("L");
+
+        Option offsetIndexOption = OptionBuilder.withLongOpt("offset-index")
+                .withDescription("save the offsets of the items in the dex file to FILE, and use them to read the " +
+                        "same dex file faster the next time. FILE is rewritten if it was saved from a different dex " +
+                        "file, so use a separate FILE for each dex file")
+                .hasArg()
+                .withArgName("FILE")
+                .create("O");
+
         Option dumpOption = OptionBuilder.withLongOpt("dump-to")
                 .withDescription("dumps the given dex file into a single annotated dump file named FILE" +
                         " (<dexfile>.dump by default), along with the normal disassembly")
@@ -478,6 +644,22 @@ public class main {
                 .withArgName("FILE")
                 .create("T");
 
+        Option partitionOption = OptionBuilder.withLongOpt("partition")
+                .withDescription("only disassemble the INDEX'th of COUNT partitions of the classes in the dex file. " +
+                        "Disassembling every partition into the same directory produces the same output as a " +
+                        "single run. This is used by batch mode to split large dex files between workers")
+                .hasArg()
+                .withArgName("INDEX/COUNT")
+                .create("P");
+
+        Option profileOption = OptionBuilder.withLongOpt("profile")
+                .withDescription("record the time and memory allocated in each phase of the run, and the time spent " +
+                        "on each class and method. A JSON summary is written to FILE, and the slowest classes and " +
+                        "methods are printed")
+                .hasArg()
+                .withArgName("FILE")
+                .create("J");
+
         basicOptions.addOption(versionOption);
         basicOptions.addOption(helpOption);
         basicOptions.addOption(outputDirOption);
@@ -492,6 +674,10 @@ public class main {
         basicOptions.addOption(codeOffsetOption);
         basicOptions.addOption(noAccessorCommentsOption);
         basicOptions.addOption(apiLevelOption);
+        basicOptions.addOption(includeOption);
+        basicOptions.addOption(excludeOption);
+        basicOptions.addOption(lowMemoryOption);
+        basicOptions.addOption(offsetIndexOption);
 
         debugOptions.addOption(dumpOption);
         debugOptions.addOption(ignoreErrorsOption);
@@ -501,6 +687,8 @@ public class main {
         debugOptions.addOption(fixSignedRegisterOption);
         debugOptions.addOption(verifyDexOption);
         debugOptions.addOption(inlineTableOption);
+        debugOptions.addOption(partitionOption);
+        debugOptions.addOption(profileOption);
 
         for (Object option: basicOptions.getOptions()) {
             options.addOption((Option)option);
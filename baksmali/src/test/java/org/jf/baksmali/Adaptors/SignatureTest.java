@@ -0,0 +1,161 @@
+package org.jf.baksmali.Adaptors;
+
+import org.junit.*;
+
+public class SignatureTest {
+
+    @After
+    public void clearCache() {
+        Signature.clearCache();
+    }
+
+    @Test
+    public void simpleTypeTest() {
+        Assert.assertEquals("String", parseType("Ljava/lang/String;"));
+        Assert.assertEquals("int", parseType("I"));
+        Assert.assertEquals("T", parseType("TT;"));
+        Assert.assertEquals("Map.Entry", parseType("Ljava/util/Map$Entry;"));
+    }
+
+    @Test
+    public void arrayTypeTest() {
+        Assert.assertEquals("String[]", parseType("[Ljava/lang/String;"));
+        Assert.assertEquals("int[][]", parseType("[[I"));
+        Assert.assertEquals("T[]", parseType("[TT;"));
+        Assert.assertEquals("List<String[]>", parseType("Ljava/util/List<[Ljava/lang/String;>;"));
+        Assert.assertEquals("List<int[]>", parseType("Ljava/util/List<[I>;"));
+    }
+
+    @Test
+    public void genericTypeTest() {
+        Assert.assertEquals("List<String>", parseType("Ljava/util/List<Ljava/lang/String;>;"));
+        Assert.assertEquals("Map<String, Integer>", parseType("Ljava/util/Map<Ljava/lang/String;Ljava/lang/Integer;>;"));
+        Assert.assertEquals("Map<K, V>", parseType("Ljava/util/Map<TK;TV;>;"));
+    }
+
+    @Test
+    public void nestedGenericTypeTest() {
+        Assert.assertEquals("List<List<String>>", parseType("Ljava/util/List<Ljava/util/List<Ljava/lang/String;>;>;"));
+        Assert.assertEquals("Map<String, List<Map.Entry<K, V[]>>>",
+                parseType("Ljava/util/Map<Ljava/lang/String;Ljava/util/List<Ljava/util/Map$Entry<TK;[TV;>;>;>;"));
+        Assert.assertEquals("Map<Map<K, V>, Set<K>>",
+                parseType("Ljava/util/Map<Ljava/util/Map<TK;TV;>;Ljava/util/Set<TK;>;>;"));
+    }
+
+    @Test
+    public void wildcardTest() {
+        Assert.assertEquals("List<?>", parseType("Ljava/util/List<*>;"));
+        Assert.assertEquals("List<? extends Number>", parseType("Ljava/util/List<+Ljava/lang/Number;>;"));
+        Assert.assertEquals("Comparator<? super T>", parseType("Ljava/util/Comparator<-TT;>;"));
+        Assert.assertEquals("Map<?, ? extends List<? super T>>",
+                parseType("Ljava/util/Map<*+Ljava/util/List<-TT;>;>;"));
+    }
+
+    @Test
+    public void tokensTest() {
+        Signature signature = new Signature("Ljava/util/Map<Ljava/lang/String;[TV;>;");
+        checkToken(signature.getNext(), Signature.TokenType.Type, "Map");
+        Assert.assertEquals("<", signature.peek().value);
+        checkToken(signature.getNext(), Signature.TokenType.Literal, "<");
+        checkToken(signature.getNext(), Signature.TokenType.Type, "String");
+        checkToken(signature.getNext(), Signature.TokenType.Type, "V[]");
+        checkToken(signature.getNext(), Signature.TokenType.Literal, ">");
+        Assert.assertFalse(signature.hasNext());
+        checkToken(signature.getNext(), Signature.TokenType.None, "");
+    }
+
+    @Test
+    public void innerClassOfGenericClassTest() {
+        Signature signature = new Signature("Lfoo/Outer<TT;>.Inner<Ljava/lang/String;>;");
+        checkToken(signature.getNext(), Signature.TokenType.Type, "Outer");
+        checkToken(signature.getNext(), Signature.TokenType.Literal, "<");
+        checkToken(signature.getNext(), Signature.TokenType.Type, "T");
+        checkToken(signature.getNext(), Signature.TokenType.Literal, ">");
+        checkToken(signature.getNext(), Signature.TokenType.Literal, ".Inner");
+        checkToken(signature.getNext(), Signature.TokenType.Literal, "<");
+        checkToken(signature.getNext(), Signature.TokenType.Type, "String");
+        checkToken(signature.getNext(), Signature.TokenType.Literal, ">");
+        Assert.assertFalse(signature.hasNext());
+    }
+
+    @Test
+    public void classSignatureTest() {
+        //the type parameters, the superclass and then the interfaces, as parseClassSignature reads them
+        Signature signature = new Signature(
+                "<T::Ljava/lang/Comparable<-TT;>;>Ljava/util/AbstractList<TT;>;Ljava/util/RandomAccess;");
+        Assert.assertEquals("<T extends Comparable<? super T>>", SignatureFormatter.parseGeneric(signature));
+        Assert.assertEquals("AbstractList<T>", SignatureFormatter.parseType(signature));
+        Assert.assertEquals("RandomAccess", SignatureFormatter.parseType(signature));
+        Assert.assertFalse(signature.hasNext());
+    }
+
+    @Test
+    public void typeParametersTest() {
+        Signature signature = new Signature(
+                "<K:Ljava/lang/Object;V::Ljava/lang/Comparable<TV;>;:Ljava/io/Serializable;>Ljava/lang/Object;");
+        Assert.assertEquals("<K, V extends Comparable<V> & Serializable>", SignatureFormatter.parseGeneric(signature));
+        checkToken(signature.getNext(), Signature.TokenType.Type, "Object");
+        Assert.assertFalse(signature.hasNext());
+    }
+
+    @Test
+    public void methodSignatureTest() {
+        //the tokens of a method signature, as parseMethodSignature reads them
+        Signature signature = new Signature(
+                "<T:Ljava/lang/Object;>(TT;[ILjava/util/List<+TT;>;)Ljava/util/Map<TT;Ljava/util/List<TT;>;>;");
+        Assert.assertEquals("<T>", SignatureFormatter.parseGeneric(signature));
+        checkToken(signature.getNext(), Signature.TokenType.Literal, "(");
+
+        checkToken(signature.getNext(), Signature.TokenType.Type, "T");
+        Assert.assertEquals("", SignatureFormatter.parseGeneric(signature));
+        checkToken(signature.getNext(), Signature.TokenType.Type, "int[]");
+        Assert.assertEquals("", SignatureFormatter.parseGeneric(signature));
+        checkToken(signature.getNext(), Signature.TokenType.Type, "List");
+        Assert.assertEquals("<? extends T>", SignatureFormatter.parseGeneric(signature));
+
+        checkToken(signature.getNext(), Signature.TokenType.Literal, ")");
+        Assert.assertEquals("Map<T, List<T>>", SignatureFormatter.parseType(signature));
+        Assert.assertFalse(signature.hasNext());
+    }
+
+    @Test
+    public void noArgumentMethodSignatureTest() {
+        Signature signature = new Signature("()V");
+        Assert.assertEquals("", SignatureFormatter.parseGeneric(signature));
+        checkToken(signature.getNext(), Signature.TokenType.Literal, "(");
+        checkToken(signature.getNext(), Signature.TokenType.Literal, ")");
+        Assert.assertEquals("void", SignatureFormatter.parseType(signature));
+        Assert.assertFalse(signature.hasNext());
+    }
+
+    @Test
+    public void cachedSignatureTest() {
+        //a signature that has already been parsed is read the same way again, from the start
+        String signatureString = "Ljava/util/Map<Ljava/lang/String;Ljava/util/List<*>;>;";
+        Assert.assertEquals("Map<String, List<?>>", parseType(signatureString));
+
+        Signature first = new Signature(signatureString);
+        Signature second = new Signature(signatureString);
+        checkToken(first.getNext(), Signature.TokenType.Type, "Map");
+        checkToken(first.getNext(), Signature.TokenType.Literal, "<");
+        Assert.assertEquals("Map<String, List<?>>", SignatureFormatter.parseType(second));
+        checkToken(first.getNext(), Signature.TokenType.Type, "String");
+
+        Signature.clearCache();
+        Assert.assertEquals("Map<String, List<?>>", parseType(signatureString));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notATypeTest() {
+        parseType("<T:Ljava/lang/Object;>Ljava/lang/Object;");
+    }
+
+    private static String parseType(String signature) {
+        return SignatureFormatter.parseType(new Signature(signature));
+    }
+
+    private static void checkToken(Signature.Token token, Signature.TokenType type, String value) {
+        Assert.assertEquals(type, token.type);
+        Assert.assertEquals(value, token.value);
+    }
+}
@@ -0,0 +1,236 @@
+package org.jf.baksmali;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+public class ClassFilterTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void emptyFilterTest() {
+        ClassFilter filter = new ClassFilter();
+
+        Assert.assertTrue(filter.isEmpty());
+        Assert.assertTrue(filter.matches("Lcom/example/Foo;"));
+        Assert.assertTrue(filter.matches("LFoo;"));
+    }
+
+    @Test
+    public void blankPatternTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("");
+        filter.addExclude("   ");
+
+        Assert.assertTrue(filter.isEmpty());
+    }
+
+    @Test
+    public void classNameTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("com.example.Foo");
+
+        Assert.assertFalse(filter.isEmpty());
+        Assert.assertTrue(filter.matches("Lcom/example/Foo;"));
+        Assert.assertFalse(filter.matches("Lcom/example/Foo2;"));
+        Assert.assertFalse(filter.matches("Lcom/example/Bar;"));
+        Assert.assertFalse(filter.matches("Lcom/example/sub/Foo;"));
+        Assert.assertFalse(filter.matches("LFoo;"));
+    }
+
+    @Test
+    public void classNameFormsTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("com/example/Foo");
+        filter.addInclude("Lcom/example/Bar;");
+        filter.addInclude("  com.example.Baz  ");
+
+        Assert.assertTrue(filter.matches("Lcom/example/Foo;"));
+        Assert.assertTrue(filter.matches("Lcom/example/Bar;"));
+        Assert.assertTrue(filter.matches("Lcom/example/Baz;"));
+        Assert.assertFalse(filter.matches("Lcom/example/Qux;"));
+    }
+
+    @Test
+    public void innerClassTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("com.example.Foo");
+
+        //inner classes are written into their outer class, so they go along with it
+        Assert.assertTrue(filter.matches("Lcom/example/Foo$Inner;"));
+        Assert.assertTrue(filter.matches("Lcom/example/Foo$1;"));
+        Assert.assertTrue(filter.matches("Lcom/example/Foo$Inner$Deeper;"));
+        Assert.assertFalse(filter.matches("Lcom/example/Bar$Inner;"));
+
+        //and an inner class given as a pattern stands for its outer class
+        filter = new ClassFilter();
+        filter.addInclude("com.example.Bar$Inner");
+        Assert.assertTrue(filter.matches("Lcom/example/Bar;"));
+        Assert.assertTrue(filter.matches("Lcom/example/Bar$Other;"));
+    }
+
+    @Test
+    public void singleStarTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("java.util.*");
+
+        Assert.assertTrue(filter.matches("Ljava/util/List;"));
+        Assert.assertTrue(filter.matches("Ljava/util/HashMap$Entry;"));
+        Assert.assertFalse(filter.matches("Ljava/util/concurrent/ConcurrentHashMap;"));
+        Assert.assertFalse(filter.matches("Ljava/utility/Foo;"));
+        Assert.assertFalse(filter.matches("Ljava/lang/Object;"));
+    }
+
+    @Test
+    public void doubleStarTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("java.util.**");
+
+        Assert.assertTrue(filter.matches("Ljava/util/List;"));
+        Assert.assertTrue(filter.matches("Ljava/util/concurrent/ConcurrentHashMap;"));
+        Assert.assertTrue(filter.matches("Ljava/util/concurrent/atomic/AtomicInteger;"));
+        Assert.assertFalse(filter.matches("Ljava/utility/Foo;"));
+        Assert.assertFalse(filter.matches("Ljava/lang/Object;"));
+    }
+
+    @Test
+    public void partialNameGlobTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("com.example.*Activity");
+        filter.addInclude("com.example.R?");
+
+        Assert.assertTrue(filter.matches("Lcom/example/MainActivity;"));
+        Assert.assertTrue(filter.matches("Lcom/example/Activity;"));
+        Assert.assertFalse(filter.matches("Lcom/example/ActivityHelper;"));
+        Assert.assertFalse(filter.matches("Lcom/example/ui/MainActivity;"));
+
+        Assert.assertTrue(filter.matches("Lcom/example/R1;"));
+        Assert.assertFalse(filter.matches("Lcom/example/R;"));
+        Assert.assertFalse(filter.matches("Lcom/example/R12;"));
+    }
+
+    @Test
+    public void globQuotingTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("a.b.*");
+
+        //the dots in a glob are only dots, not any character
+        Assert.assertTrue(filter.matches("La/b/C;"));
+        Assert.assertFalse(filter.matches("Laxb/C;"));
+    }
+
+    @Test
+    public void regexTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("regex:com\\.example\\..*Activity");
+
+        Assert.assertTrue(filter.matches("Lcom/example/MainActivity;"));
+        Assert.assertTrue(filter.matches("Lcom/example/ui/MainActivity;"));
+        Assert.assertTrue(filter.matches("Lcom/example/MainActivity$1;"));
+        //the whole class name has to match
+        Assert.assertFalse(filter.matches("Lcom/example/ActivityHelper;"));
+        Assert.assertFalse(filter.matches("Lorg/com/example/MainActivity;"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRegexTest() throws IOException {
+        new ClassFilter().addInclude("regex:com.(example");
+    }
+
+    @Test
+    public void excludeTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addExclude("android.**");
+        filter.addExclude("com.example.Generated");
+
+        Assert.assertFalse(filter.isEmpty());
+        Assert.assertTrue(filter.matches("Lcom/example/Foo;"));
+        Assert.assertFalse(filter.matches("Landroid/app/Activity;"));
+        Assert.assertFalse(filter.matches("Landroid/support/v4/app/Fragment;"));
+        Assert.assertFalse(filter.matches("Lcom/example/Generated;"));
+        Assert.assertFalse(filter.matches("Lcom/example/Generated$Inner;"));
+    }
+
+    @Test
+    public void includeAndExcludeTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("com.example.**");
+        filter.addExclude("com.example.internal.**");
+
+        Assert.assertTrue(filter.matches("Lcom/example/Foo;"));
+        Assert.assertTrue(filter.matches("Lcom/example/ui/Bar;"));
+        Assert.assertFalse(filter.matches("Lcom/example/internal/Baz;"));
+        Assert.assertFalse(filter.matches("Lcom/other/Foo;"));
+    }
+
+    @Test
+    public void fileTest() throws IOException {
+        File file = temporaryFolder.newFile("classes.txt");
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write("# the classes to disassemble\n");
+            writer.write("com.example.Foo\n");
+            writer.write("\n");
+            writer.write("  # an indented comment\n");
+            writer.write("Lcom/example/Bar;\n");
+            writer.write("org.example.**\n");
+        } finally {
+            writer.close();
+        }
+
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("@" + file.getPath());
+
+        Assert.assertTrue(filter.matches("Lcom/example/Foo;"));
+        Assert.assertTrue(filter.matches("Lcom/example/Bar;"));
+        Assert.assertTrue(filter.matches("Lorg/example/sub/Baz;"));
+        Assert.assertFalse(filter.matches("Lcom/example/Baz;"));
+        Assert.assertFalse(filter.matches("L#;"));
+    }
+
+    @Test
+    public void nestedFileTest() throws IOException {
+        File inner = temporaryFolder.newFile("inner.txt");
+        Writer writer = new FileWriter(inner);
+        try {
+            writer.write("com.example.Inner\n");
+        } finally {
+            writer.close();
+        }
+        File outer = temporaryFolder.newFile("outer.txt");
+        writer = new FileWriter(outer);
+        try {
+            writer.write("com.example.Outer\n");
+            writer.write("@" + inner.getPath() + "\n");
+        } finally {
+            writer.close();
+        }
+
+        ClassFilter filter = new ClassFilter();
+        filter.addExclude("@" + outer.getPath());
+
+        Assert.assertFalse(filter.matches("Lcom/example/Outer;"));
+        Assert.assertFalse(filter.matches("Lcom/example/Inner;"));
+        Assert.assertTrue(filter.matches("Lcom/example/Other;"));
+    }
+
+    @Test(expected = IOException.class)
+    public void missingFileTest() throws IOException {
+        new ClassFilter().addInclude("@" + new File(temporaryFolder.getRoot(), "missing.txt").getPath());
+    }
+
+    @Test
+    public void defaultPackageTest() throws IOException {
+        ClassFilter filter = new ClassFilter();
+        filter.addInclude("Foo");
+
+        Assert.assertTrue(filter.matches("LFoo;"));
+        Assert.assertTrue(filter.matches("LFoo$Bar;"));
+        Assert.assertFalse(filter.matches("Lcom/Foo;"));
+    }
+}
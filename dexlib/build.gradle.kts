@@ -3,6 +3,7 @@ plugins {
 }
 dependencies {
     compile(kotlin("stdlib"))
+    testCompile("junit:junit:4.12")
 }
 repositories {
     mavenCentral()
@@ -29,14 +29,25 @@
 package org.jf.dexlib;
 
 import org.jf.dexlib.EncodedValue.AnnotationEncodedSubValue;
+import org.jf.dexlib.EncodedValue.EncodedValue;
 import org.jf.dexlib.Util.AnnotatedOutput;
+import org.jf.dexlib.Util.ByteArrayInput;
 import org.jf.dexlib.Util.Input;
 
+/**
+ * An annotation that is read from a dex file keeps its encoded_annotation bytes, and only decodes them into an
+ * <code>AnnotationEncodedSubValue</code> the first time the value is asked for. The type of the annotation and the
+ * values of single elements can be looked up without decoding the rest of it, so that looking for one kind of
+ * annotation doesn't decode every annotation that is passed over.
+ */
 public class AnnotationItem extends Item<AnnotationItem> {
     private int hashCode = 0;
 
     private AnnotationVisibility visibility;
-    private AnnotationEncodedSubValue annotationValue;
+    private TypeIdItem annotationType;
+    private volatile AnnotationEncodedSubValue annotationValue;
+    //the encoded_annotation bytes that the annotation was read from, until they are decoded
+    private volatile byte[] encodedAnnotation;
 
     /**
      * Creates a new uninitialized <code>AnnotationItem</code>
@@ -56,6 +67,7 @@ public class AnnotationItem extends Item<AnnotationItem> {
                            AnnotationEncodedSubValue annotationValue) {
         super(dexFile);
         this.visibility = visibility;
+        this.annotationType = annotationValue.annotationType;
         this.annotationValue = annotationValue;
     }
 
@@ -77,12 +89,19 @@ public class AnnotationItem extends Item<AnnotationItem> {
     /** {@inheritDoc} */
     protected void readItem(Input in, ReadContext readContext) {
         visibility = AnnotationVisibility.fromByte(in.readByte());
-        annotationValue = new AnnotationEncodedSubValue(dexFile, in);
+
+        int start = in.getCursor();
+        annotationType = dexFile.TypeIdsSection.getItemByIndex(in.readUnsignedLeb128());
+        in.setCursor(start);
+        AnnotationEncodedSubValue.skipValue(in);
+        int length = in.getCursor() - start;
+        in.setCursor(start);
+        encodedAnnotation = in.readBytes(length);
     }
 
     /** {@inheritDoc} */
     protected int placeItem(int offset) {
-        return annotationValue.placeValue(offset + 1);
+        return getEncodedAnnotation().placeValue(offset + 1);
     }
 
     /** {@inheritDoc} */
@@ -90,10 +109,10 @@ public class AnnotationItem extends Item<AnnotationItem> {
         if (out.annotates()) {
             out.annotate("visibility: " + visibility.name());
             out.writeByte(visibility.value);
-            annotationValue.writeValue(out);
+            getEncodedAnnotation().writeValue(out);
         }else {
             out.writeByte(visibility.value);
-            annotationValue.writeValue(out);
+            getEncodedAnnotation().writeValue(out);
         }
     }
 
@@ -111,7 +130,7 @@ public class AnnotationItem extends Item<AnnotationItem> {
     public int compareTo(AnnotationItem o) {
         int comp = visibility.value - o.visibility.value;
         if (comp == 0) {
-            comp = annotationValue.compareTo(o.annotationValue);
+            comp = getEncodedAnnotation().compareTo(o.getEncodedAnnotation());
         }
         return comp;
     }
@@ -124,18 +143,78 @@ public class AnnotationItem extends Item<AnnotationItem> {
     }
 
     /**
-     * @return The encoded annotation value of this annotation
+     * @return The type of this annotation. This doesn't decode the annotation
+     */
+    public TypeIdItem getAnnotationType() {
+        return annotationType;
+    }
+
+    /**
+     * @return The encoded annotation value of this annotation. It is decoded the first time this is called, if the
+     * annotation was read from a dex file
      */
     public AnnotationEncodedSubValue getEncodedAnnotation() {
+        AnnotationEncodedSubValue annotationValue = this.annotationValue;
+        if (annotationValue == null) {
+            annotationValue = decodeAnnotation();
+        }
+        return annotationValue;
+    }
+
+    private synchronized AnnotationEncodedSubValue decodeAnnotation() {
+        if (annotationValue == null) {
+            try {
+                annotationValue = new AnnotationEncodedSubValue(dexFile, new ByteArrayInput(encodedAnnotation));
+            } catch (Exception ex) {
+                throw addExceptionContext(ex);
+            }
+            encodedAnnotation = null;
+        }
         return annotationValue;
     }
 
+    /**
+     * Looks up the value of a single element of this annotation. If the annotation hasn't been decoded yet, the
+     * other elements are skipped over, and only the value that is found is decoded
+     * @param elementName The name of the element
+     * @return The value of the element with the given name, or null if this annotation doesn't have one
+     */
+    public EncodedValue getElementValue(String elementName) {
+        //the bytes are only dropped after the decoded value has been set, so if they are gone, it is there
+        byte[] encodedAnnotation = this.encodedAnnotation;
+        if (encodedAnnotation == null) {
+            AnnotationEncodedSubValue annotationValue = getEncodedAnnotation();
+            for (int i=0; i<annotationValue.names.length; i++) {
+                if (annotationValue.names[i].getStringValue().equals(elementName)) {
+                    return annotationValue.values[i];
+                }
+            }
+            return null;
+        }
+
+        try {
+            Input in = new ByteArrayInput(encodedAnnotation);
+            in.skipLeb128();
+            int elementCount = in.readUnsignedLeb128();
+            for (int i=0; i<elementCount; i++) {
+                StringIdItem name = dexFile.StringIdsSection.getItemByIndex(in.readUnsignedLeb128());
+                if (name.getStringValue().equals(elementName)) {
+                    return EncodedValue.readEncodedValue(dexFile, in);
+                }
+                EncodedValue.skipEncodedValue(in);
+            }
+        } catch (Exception ex) {
+            throw addExceptionContext(ex);
+        }
+        return null;
+    }
+
     /**
      * calculate and cache the hashcode
      */
     private void calcHashCode() {
         hashCode = visibility.value;
-        hashCode = hashCode * 31 + annotationValue.hashCode();
+        hashCode = hashCode * 31 + getEncodedAnnotation().hashCode();
     }
 
     @Override
@@ -157,6 +236,6 @@ public class AnnotationItem extends Item<AnnotationItem> {
         }
 
         AnnotationItem other = (AnnotationItem)o;
-        return visibility == other.visibility && annotationValue.equals(other.annotationValue);
+        return visibility == other.visibility && getEncodedAnnotation().equals(other.getEncodedAnnotation());
     }
 }
@@ -79,12 +79,13 @@ public class AnnotationSetItem extends Item<AnnotationSetItem> {
 
     /** {@inheritDoc} */
     protected void readItem(Input in, ReadContext readContext) {
-        annotations = new AnnotationItem[in.readInt()];
-
-        for (int i=0; i<annotations.length; i++) {
-            annotations[i] = (AnnotationItem)readContext.getOffsettedItemByOffset(ItemType.TYPE_ANNOTATION_ITEM,
-                    in.readInt());
+        int[] annotationOffsets = new int[in.readInt()];
+        for (int i=0; i<annotationOffsets.length; i++) {
+            annotationOffsets[i] = in.readInt();
         }
+
+        annotations = new AnnotationItem[annotationOffsets.length];
+        readContext.getOffsettedItemsByOffset(ItemType.TYPE_ANNOTATION_ITEM, annotationOffsets, annotations);
     }
 
     /** {@inheritDoc} */
@@ -96,8 +97,8 @@ public class AnnotationSetItem extends Item<AnnotationSetItem> {
     protected void writeItem(AnnotatedOutput out) {
         Arrays.sort(annotations, new Comparator<AnnotationItem>() {
             public int compare(AnnotationItem annotationItem, AnnotationItem annotationItem2) {
-                int annotationItemIndex = annotationItem.getEncodedAnnotation().annotationType.getIndex();
-                int annotationItemIndex2 = annotationItem2.getEncodedAnnotation().annotationType.getIndex();
+                int annotationItemIndex = annotationItem.getAnnotationType().getIndex();
+                int annotationItemIndex2 = annotationItem2.getAnnotationType().getIndex();
                 if (annotationItemIndex < annotationItemIndex2) {
                     return -1;
                 } else if (annotationItemIndex == annotationItemIndex2) {
@@ -112,7 +113,7 @@ public class AnnotationSetItem extends Item<AnnotationSetItem> {
             out.annotate(4, "size: 0x" + Integer.toHexString(annotations.length) + " (" + annotations.length + ")");
             for (AnnotationItem annotationItem: annotations) {
                 out.annotate(4, "annotation_off: 0x" + Integer.toHexString(annotationItem.getOffset()) + " - " +
-                        annotationItem.getEncodedAnnotation().annotationType.getTypeDescriptor());
+                        annotationItem.getAnnotationType().getTypeDescriptor());
             }
         }
         out.writeInt(annotations.length);
@@ -539,7 +539,7 @@ public class ClassDataItem extends Item<ClassDataItem> {
             method = dexFile.MethodIdsSection.getItemByIndex(in.readUnsignedLeb128() + previousIndex);
             accessFlags = in.readUnsignedLeb128();
             if (dexFile.skipInstructions()) {
-                in.readUnsignedLeb128();
+                in.skipLeb128();
                 codeItem = null;
             } else {
                 codeItem = (CodeItem)readContext.getOptionalOffsettedItemByOffset(ItemType.TYPE_CODE_ITEM,
@@ -48,14 +48,11 @@ public class AnalyzedInstruction implements Comparable<AnalyzedInstruction> {
     protected final int instructionIndex;
 
     /**
-     * Instructions that can pass on execution to this one during normal execution
+     * The predecessors and successors of all of the instructions in the method. The predecessors are the instructions
+     * that can pass on execution to this one during normal execution, and the successors are the instructions that
+     * execution could pass on to next. This is set by MethodAnalyzer once all of the edges are known
      */
-    protected final TreeSet<AnalyzedInstruction> predecessors = new TreeSet<AnalyzedInstruction>();
-
-    /**
-     * Instructions that can execution could pass on to next during normal execution
-     */
-    protected final LinkedList<AnalyzedInstruction> successors = new LinkedList<AnalyzedInstruction>();
+    protected InstructionEdges edges;
 
     /**
      * This contains the register types *before* the instruction has executed
@@ -98,19 +95,24 @@ public class AnalyzedInstruction implements Comparable<AnalyzedInstruction> {
     }
 
     public int getPredecessorCount() {
-        return predecessors.size();
-    }
-
-    public SortedSet<AnalyzedInstruction> getPredecessors() {
-        return Collections.unmodifiableSortedSet(predecessors);
+        if (edges == null) {
+            return 0;
+        }
+        return edges.getPredecessorCount(instructionIndex + 1);
     }
 
-    protected boolean addPredecessor(AnalyzedInstruction predecessor) {
-        return predecessors.add(predecessor);
+    public AnalyzedInstruction getPredecessor(int index) {
+        return edges.getPredecessor(instructionIndex + 1, index);
     }
 
-    protected void addSuccessor(AnalyzedInstruction successor) {
-        successors.add(successor);
+    /**
+     * @return the predecessors of this instruction, sorted by instruction index
+     */
+    public List<AnalyzedInstruction> getPredecessors() {
+        if (edges == null) {
+            return Collections.emptyList();
+        }
+        return edges.getPredecessors(instructionIndex + 1);
     }
 
     protected void setDeodexedInstruction(Instruction instruction) {
@@ -124,11 +126,21 @@ public class AnalyzedInstruction implements Comparable<AnalyzedInstruction> {
     }
 
     public int getSuccessorCount() {
-        return successors.size();
+        if (edges == null) {
+            return 0;
+        }
+        return edges.getSuccessorCount(instructionIndex + 1);
+    }
+
+    public AnalyzedInstruction getSuccessor(int index) {
+        return edges.getSuccessor(instructionIndex + 1, index);
     }
 
     public List<AnalyzedInstruction> getSuccesors() {
-        return Collections.unmodifiableList(successors);
+        if (edges == null) {
+            return Collections.emptyList();
+        }
+        return edges.getSuccessors(instructionIndex + 1);
     }
 
     public Instruction getInstruction() {
@@ -158,11 +170,11 @@ public class AnalyzedInstruction implements Comparable<AnalyzedInstruction> {
     public boolean isBeginningInstruction() {
         //if this instruction has no predecessors, it is either the fake "StartOfMethod" instruction or it is an
         //unreachable instruction.
-        if (predecessors.size() == 0) {
+        if (getPredecessorCount() == 0) {
             return false;
         }
 
-        if (predecessors.first().instructionIndex == -1) {
+        if (getPredecessor(0).instructionIndex == -1) {
             return true;
         }
         return false;
@@ -207,8 +219,8 @@ public class AnalyzedInstruction implements Comparable<AnalyzedInstruction> {
      */
     protected RegisterType mergePreRegisterTypeFromPredecessors(int registerNumber) {
         RegisterType mergedRegisterType = null;
-        for (AnalyzedInstruction predecessor: predecessors) {
-            RegisterType predecessorRegisterType = predecessor.postRegisterMap[registerNumber];
+        for (int i=0; i<getPredecessorCount(); i++) {
+            RegisterType predecessorRegisterType = getPredecessor(i).postRegisterMap[registerNumber];
             assert predecessorRegisterType != null;
             mergedRegisterType = predecessorRegisterType.merge(mergedRegisterType);
         }
@@ -0,0 +1,127 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2010 Ben Gruver (JesusFreke)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.jf.dexlib.Code.Analysis;
+
+import org.jf.dexlib.DexFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Boot class path files that have been read in, so that a long running process can reuse them for each class path
+ * it initializes, rather than reading the same files for every dex file that it analyzes. A file is read again if its
+ * modification time or length has changed since it was read.
+ *
+ * The cache is bounded by the total length of the files in it. Once that is exceeded, the files that were used the
+ * longest time ago are dropped, although the file that was just read is always kept. A single cache can be shared by
+ * any number of threads. Two threads that need the same file at the same time read it only once, while different
+ * files are read at the same time.
+ */
+public class BootClassPathCache {
+    private final long maxTotalLength;
+
+    //the cached files, keyed by their absolute path, from the least to the most recently used
+    private final LinkedHashMap<String, CachedFile> files = new LinkedHashMap<String, CachedFile>(16, 0.75f, true);
+    private long totalLength = 0;
+
+    /**
+     * @param maxTotalLength the total length of the files to keep in the cache, in bytes
+     */
+    public BootClassPathCache(long maxTotalLength) {
+        this.maxTotalLength = maxTotalLength;
+    }
+
+    /**
+     * @return the boot class path file read in from the given file, read from the cache if it hasn't changed since
+     * it was read
+     * @throws DexFile.NoClassesDexException if the file is a zip file without a classes.dex entry
+     */
+    public DexFile getDexFile(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        CachedFile cachedFile;
+        synchronized (files) {
+            cachedFile = files.get(path);
+            if (cachedFile == null) {
+                cachedFile = new CachedFile();
+                files.put(path, cachedFile);
+            }
+        }
+
+        DexFile dexFile;
+        long length;
+        synchronized (cachedFile) {
+            long lastModified = file.lastModified();
+            length = file.length();
+            if (cachedFile.dexFile != null && cachedFile.lastModified == lastModified &&
+                    cachedFile.length == length) {
+                return cachedFile.dexFile;
+            }
+
+            dexFile = readDexFile(file);
+            cachedFile.dexFile = dexFile;
+            cachedFile.lastModified = lastModified;
+            cachedFile.length = length;
+        }
+
+        synchronized (files) {
+            //the file may have been dropped from the cache while it was being read
+            if (files.get(path) == cachedFile) {
+                totalLength += length - cachedFile.countedLength;
+                cachedFile.countedLength = length;
+
+                Iterator<CachedFile> iterator = files.values().iterator();
+                while (totalLength > maxTotalLength && iterator.hasNext()) {
+                    CachedFile leastRecentlyUsed = iterator.next();
+                    if (leastRecentlyUsed != cachedFile) {
+                        totalLength -= leastRecentlyUsed.countedLength;
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+        return dexFile;
+    }
+
+    static DexFile readDexFile(File file) throws IOException {
+        return new DexFile(file, false, true);
+    }
+
+    private static class CachedFile {
+        //these are guarded by the CachedFile itself
+        public DexFile dexFile;
+        public long lastModified;
+        public long length;
+
+        //the length that this file is counted as in the total length of the cache, guarded by the cache's map
+        public long countedLength;
+    }
+}
@@ -34,7 +34,9 @@ import org.jf.dexlib.Util.ExceptionWithContext;
 import org.jf.dexlib.Util.SparseArray;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,13 +44,18 @@ import static org.jf.dexlib.ClassDataItem.EncodedField;
 import static org.jf.dexlib.ClassDataItem.EncodedMethod;
 
 public class ClassPath {
-    private static ClassPath theClassPath = null;
+    //the class path for each thread. Threads can share a class path, see setClassPath
+    private static final ThreadLocal<ClassPath> theClassPath = new ThreadLocal<ClassPath>();
 
-    private final HashMap<String, ClassDef> classDefs;
+    //this is read without a lock, but classes are only added to it while holding the lock on the ClassPath
+    private final ConcurrentHashMap<String, ClassDef> classDefs;
     protected ClassDef javaLangObjectClassDef; //Ljava/lang/Object;
 
-    //This is only used while initialing the class path. It is set to null after initialization has finished.
+    //This is only used while initialing the class path. It is set to null after initialization has finished, unless
+    //the classes are being loaded lazily, in which case it holds the classes that haven't been loaded yet
     private LinkedHashMap<String, TempClassInfo> tempClasses;
+    private ClassPathErrorHandler errorHandler;
+    private BootClassPathCache bootClassPathCache;
 
 
     private static final Pattern dalvikCacheOdexPattern = Pattern.compile("@([^@]+)@classes.dex$");
@@ -71,11 +78,32 @@ public class ClassPath {
     public static void InitializeClassPathFromOdex(String[] classPathDirs, String[] extraBootClassPathEntries,
                                                    String dexFilePath, DexFile dexFile,
                                                    ClassPathErrorHandler errorHandler) {
+        InitializeClassPathFromOdex(classPathDirs, extraBootClassPathEntries, dexFilePath, dexFile, errorHandler,
+                false, null);
+    }
+
+    /**
+     * Initialize the class path using the dependencies from an odex file
+     * @param classPathDirs The directories to search for boot class path files
+     * @param extraBootClassPathEntries any extra entries that should be added after the entries that are read
+     * from the odex file
+     * @param dexFilePath The path of the dex file (used for error reporting purposes only)
+     * @param dexFile The DexFile to load - it must represents an odex file
+     * @param errorHandler a ClassPathErrorHandler object to receive and handle any errors that occur while loading
+     * classes
+     * @param loadClassesLazily if true, each class is only loaded the first time it is looked up, instead of all of
+     * the classes being loaded up front. See InitializeClassPath
+     * @param bootClassPathCache the cache to read the boot class path files from, or null to read them directly
+     */
+    public static void InitializeClassPathFromOdex(String[] classPathDirs, String[] extraBootClassPathEntries,
+                                                   String dexFilePath, DexFile dexFile,
+                                                   ClassPathErrorHandler errorHandler, boolean loadClassesLazily,
+                                                   BootClassPathCache bootClassPathCache) {
         if (!dexFile.isOdex()) {
             throw new ExceptionWithContext("Cannot use InitialiazeClassPathFromOdex with a non-odex DexFile");
         }
 
-        if (theClassPath != null) {
+        if (theClassPath.get() != null) {
             throw new ExceptionWithContext("Cannot initialize ClassPath multiple times");
         }
 
@@ -106,9 +134,10 @@ public class ClassPath {
             bootClassPath[i] = dependency;
         }
 
-        theClassPath = new ClassPath();
-        theClassPath.initClassPath(classPathDirs, bootClassPath, extraBootClassPathEntries, dexFilePath, dexFile,
-                errorHandler);
+        ClassPath classPath = new ClassPath();
+        theClassPath.set(classPath);
+        classPath.initClassPath(classPathDirs, bootClassPath, extraBootClassPathEntries, dexFilePath, dexFile,
+                errorHandler, loadClassesLazily, bootClassPathCache);
     }
 
     /**
@@ -123,22 +152,74 @@ public class ClassPath {
     public static void InitializeClassPath(String[] classPathDirs, String[] bootClassPath,
                                            String[] extraBootClassPathEntries, String dexFilePath, DexFile dexFile,
                                            ClassPathErrorHandler errorHandler) {
-        if (theClassPath != null) {
+        InitializeClassPath(classPathDirs, bootClassPath, extraBootClassPathEntries, dexFilePath, dexFile,
+                errorHandler, false, null);
+    }
+
+    /**
+     * Initialize the class path using the given boot class path entries.
+     *
+     * Normally every class in the boot class path and the dex file is loaded up front. When only some of the classes
+     * in the dex file are going to be analyzed, they can instead be loaded lazily, so that only those classes and the
+     * classes they reference (and their superclasses and interfaces) are ever loaded. An error while loading a class
+     * lazily is passed to the error handler when the class is first looked up, and the class is then treated as
+     * if it weren't in the class path. Without an error handler, the error is thrown from the lookup.
+     * @param classPathDirs The directories to search for boot class path files
+     * @param bootClassPath A list of the boot class path entries to search for and load
+     * @param dexFilePath The path of the dex file (used for error reporting purposes only)
+     * @param dexFile the DexFile to load
+     * @param errorHandler a ClassPathErrorHandler object to receive and handle any errors that occur while loading
+     * classes
+     * @param loadClassesLazily if true, each class is only loaded the first time it is looked up, instead of all of
+     * the classes being loaded up front
+     * @param bootClassPathCache the cache to read the boot class path files from, or null to read them directly
+     */
+    public static void InitializeClassPath(String[] classPathDirs, String[] bootClassPath,
+                                           String[] extraBootClassPathEntries, String dexFilePath, DexFile dexFile,
+                                           ClassPathErrorHandler errorHandler, boolean loadClassesLazily,
+                                           BootClassPathCache bootClassPathCache) {
+        if (theClassPath.get() != null) {
             throw new ExceptionWithContext("Cannot initialize ClassPath multiple times");
         }
 
-        theClassPath = new ClassPath();
-        theClassPath.initClassPath(classPathDirs, bootClassPath, extraBootClassPathEntries, dexFilePath, dexFile,
-                errorHandler);
+        ClassPath classPath = new ClassPath();
+        theClassPath.set(classPath);
+        classPath.initClassPath(classPathDirs, bootClassPath, extraBootClassPathEntries, dexFilePath, dexFile,
+                errorHandler, loadClassesLazily, bootClassPathCache);
+    }
+
+    /**
+     * Discards the current thread's class path, so that it can be initialized again for a different dex file
+     */
+    public static void clearClassPath() {
+        theClassPath.remove();
+    }
+
+    /**
+     * @return the current thread's class path, or null if it hasn't been initialized
+     */
+    public static ClassPath getClassPath() {
+        return theClassPath.get();
+    }
+
+    /**
+     * Makes the given class path the current thread's class path, so that several threads that are analyzing the
+     * same dex file can share one class path, instead of each of them initializing its own. A class path can be
+     * shared by any number of threads, although classes that are loaded lazily are loaded by one thread at a time
+     */
+    public static void setClassPath(ClassPath classPath) {
+        theClassPath.set(classPath);
     }
 
     private ClassPath() {
-        classDefs = new HashMap<String, ClassDef>();
+        classDefs = new ConcurrentHashMap<String, ClassDef>();
     }
 
     private void initClassPath(String[] classPathDirs, String[] bootClassPath, String[] extraBootClassPathEntries,
-                               String dexFilePath, DexFile dexFile, ClassPathErrorHandler errorHandler) {
+                               String dexFilePath, DexFile dexFile, ClassPathErrorHandler errorHandler,
+                               boolean loadClassesLazily, BootClassPathCache bootClassPathCache) {
         tempClasses = new LinkedHashMap<String, TempClassInfo>();
+        this.bootClassPathCache = bootClassPathCache;
 
         if (bootClassPath != null) {
             for (String bootClassPathEntry: bootClassPath) {
@@ -156,6 +237,16 @@ public class ClassPath {
             loadDexFile(dexFilePath, dexFile);
         }
 
+        for (String primitiveType: new String[]{"Z", "B", "S", "C", "I", "J", "F", "D"}) {
+            ClassDef classDef = new PrimitiveClassDef(primitiveType);
+            classDefs.put(primitiveType, classDef);
+        }
+
+        if (loadClassesLazily) {
+            this.errorHandler = errorHandler;
+            this.javaLangObjectClassDef = loadClassDefLazily("Ljava/lang/Object;");
+            return;
+        }
 
         for (String classType: tempClasses.keySet()) {
             ClassDef classDef = null;
@@ -176,11 +267,6 @@ public class ClassPath {
             }
         }
 
-        for (String primitiveType: new String[]{"Z", "B", "S", "C", "I", "J", "F", "D"}) {
-            ClassDef classDef = new PrimitiveClassDef(primitiveType);
-            classDefs.put(primitiveType, classDef);
-        }
-
         tempClasses = null;
     }
 
@@ -213,7 +299,7 @@ public class ClassPath {
                     }
 
                     try {
-                        dexFile = new DexFile(file, false, true);
+                        dexFile = readBootClassPathFile(file);
                     } catch (DexFile.NoClassesDexException ex) {
                         continue;
                     } catch (Exception ex) {
@@ -237,6 +323,13 @@ public class ClassPath {
         throw new ExceptionWithContext(String.format("Cannot locate boot class path file %s", bootClassPathEntry));
     }
 
+    private DexFile readBootClassPathFile(File file) throws IOException {
+        if (bootClassPathCache == null) {
+            return BootClassPathCache.readDexFile(file);
+        }
+        return bootClassPathCache.getDexFile(file);
+    }
+
     private void loadDexFile(String dexFilePath, DexFile dexFile) {
         for (ClassDefItem classDefItem: dexFile.ClassDefsSection.getItems()) {
             try {
@@ -251,6 +344,28 @@ public class ClassPath {
         }
     }
 
+    /**
+     * Loads the given class, when the classes are being loaded lazily
+     * @return the loaded ClassDef, or null if the class isn't in the class path, or couldn't be loaded
+     */
+    private ClassDef loadClassDefLazily(String classType) {
+        if (!tempClasses.containsKey(classType)) {
+            return null;
+        }
+        try {
+            return loadClassDef(classType);
+        } catch (Exception ex) {
+            if (errorHandler == null) {
+                throw ExceptionWithContext.withContext(ex,
+                        String.format("Error while loading ClassPath class %s", classType));
+            }
+            //report the error only once, and treat the class as missing from then on
+            tempClasses.remove(classType);
+            errorHandler.ClassPathError(classType, ex);
+            return null;
+        }
+    }
+
     private static class ClassNotFoundException extends ExceptionWithContext {
         public ClassNotFoundException(String message) {
             super(message);
@@ -268,17 +383,18 @@ public class ClassPath {
      * @return the existing or newly loaded ClassDef object for the given class, or null if the class cannot be found
      */
     private static ClassDef loadClassDef(String classType) {
-        ClassDef classDef = getClassDef(classType, false);
+        ClassPath classPath = theClassPath.get();
+        ClassDef classDef = classPath.classDefs.get(classType);
 
         if (classDef == null) {
-            TempClassInfo classInfo = theClassPath.tempClasses.get(classType);
+            TempClassInfo classInfo = classPath.tempClasses.get(classType);
             if (classInfo == null) {
                 return null;
             }
 
             try {
                 classDef = new ClassDef(classInfo);
-                theClassPath.classDefs.put(classDef.classType, classDef);
+                classPath.classDefs.put(classDef.classType, classDef);
             } catch (Exception ex) {
                 throw ExceptionWithContext.withContext(ex, String.format("Error while loading class %s from file %s",
                         classInfo.classType, classInfo.dexFilePath));
@@ -288,21 +404,33 @@ public class ClassPath {
     }
 
     public static ClassDef getClassDef(String classType, boolean createUnresolvedClassDef)  {
-        ClassDef classDef = theClassPath.classDefs.get(classType);
-        if (classDef == null) {
-            //if it's an array class, try to create it
-            if (classType.charAt(0) == '[') {
-                return theClassPath.createArrayClassDef(classType);
-            } else {
-                if (createUnresolvedClassDef) {
-                    //TODO: we should output a warning
-                    return theClassPath.createUnresolvedClassDef(classType);
+        ClassPath classPath = theClassPath.get();
+        ClassDef classDef = classPath.classDefs.get(classType);
+        if (classDef != null) {
+            return classDef;
+        }
+
+        synchronized (classPath) {
+            //another thread may have added the class while this one was waiting
+            classDef = classPath.classDefs.get(classType);
+            if (classDef == null && classPath.tempClasses != null) {
+                classDef = classPath.loadClassDefLazily(classType);
+            }
+            if (classDef == null) {
+                //if it's an array class, try to create it
+                if (classType.charAt(0) == '[') {
+                    return classPath.createArrayClassDef(classType);
                 } else {
-                    return null;
+                    if (createUnresolvedClassDef) {
+                        //TODO: we should output a warning
+                        return classPath.createUnresolvedClassDef(classType);
+                    } else {
+                        return null;
+                    }
                 }
             }
+            return classDef;
         }
-        return classDef;
     }
 
     public static ClassDef getClassDef(TypeIdItem classType) {
@@ -361,14 +489,14 @@ public class ClassPath {
             if (class1.implementsInterface(class2)) {
                 return class2;
             }
-            return theClassPath.javaLangObjectClassDef;
+            return theClassPath.get().javaLangObjectClassDef;
         }
 
         if (class1.isInterface) {
             if (class2.implementsInterface(class1)) {
                 return class1;
             }
-            return theClassPath.javaLangObjectClassDef;
+            return theClassPath.get().javaLangObjectClassDef;
         }
 
         if (class1 instanceof ArrayClassDef && class2 instanceof ArrayClassDef) {
@@ -412,7 +540,7 @@ public class ClassPath {
         //If one of the arrays is a primitive array, then the only option is to return java.lang.Object
         //TODO: might it be possible to merge something like int[] and short[] into int[]? (I don't think so..)
         if (class1.elementClass instanceof PrimitiveClassDef || class2.elementClass instanceof PrimitiveClassDef) {
-            return theClassPath.javaLangObjectClassDef;
+            return theClassPath.get().javaLangObjectClassDef;
         }
 
         //if the two arrays have the same number of dimensions, then we should return an array class with the
@@ -425,7 +553,7 @@ public class ClassPath {
         //something like String[][][] and String[][] should be merged to Object[][]
         //this also holds when the element classes aren't the same (but are both reference types)
         int dimensions = Math.min(class1.arrayDimensions, class2.arrayDimensions);
-        return getArrayClassDefByElementClassAndDimension(theClassPath.javaLangObjectClassDef, dimensions);
+        return getArrayClassDefByElementClassAndDimension(theClassPath.get().javaLangObjectClassDef, dimensions);
     }
 
     public static class ArrayClassDef extends ClassDef {
@@ -486,7 +614,7 @@ public class ClassPath {
         @Override
         public boolean extendsClass(ClassDef superclassDef) {
             if (!(superclassDef instanceof ArrayClassDef)) {
-                if (superclassDef == ClassPath.theClassPath.javaLangObjectClassDef) {
+                if (superclassDef == ClassPath.theClassPath.get().javaLangObjectClassDef) {
                     return true;
                 } else if (superclassDef.isInterface) {
                     return this.implementsInterface(superclassDef);
@@ -509,7 +637,7 @@ public class ClassPath {
                     return true;
                 }
 
-                if (baseElementClass == ClassPath.theClassPath.javaLangObjectClassDef) {
+                if (baseElementClass == ClassPath.theClassPath.get().javaLangObjectClassDef) {
                     return true;
                 }
                 return false;
@@ -548,7 +676,7 @@ public class ClassPath {
         }
 
          public boolean extendsClass(ClassDef superclassDef) {
-            if (superclassDef != theClassPath.javaLangObjectClassDef && superclassDef != this) {
+            if (superclassDef != theClassPath.get().javaLangObjectClassDef && superclassDef != this) {
                 throw unresolvedValidationException();
             }
             return true;
@@ -620,6 +748,9 @@ public class ClassPath {
         //interfaces. It is generated in such a way that it is ordered in the same way as dalvik's ClassObject.iftable,
         private LinkedHashMap<String, ClassDef> interfaceTable;
 
+        //the register types for this class, by category, once they've been asked for. See RegisterType.getRegisterType
+        volatile RegisterType[] registerTypes;
+
         /**
          * This constructor is used for the ArrayClassDef, PrimitiveClassDef and UnresolvedClassDef subclasses
          * @param classType the class type
@@ -629,7 +760,7 @@ public class ClassPath {
             if (classFlavor == ArrayClassDef) {
                 assert classType.charAt(0) == '[';
                 this.classType = classType;
-                this.superclass = ClassPath.theClassPath.javaLangObjectClassDef;
+                this.superclass = ClassPath.theClassPath.get().javaLangObjectClassDef;
                 implementedInterfaces = new TreeSet<ClassDef>();
                 implementedInterfaces.add(ClassPath.getClassDef("Ljava/lang/Cloneable;"));
                 implementedInterfaces.add(ClassPath.getClassDef("Ljava/io/Serializable;"));
@@ -661,7 +792,7 @@ public class ClassPath {
             } else /*if (classFlavor == UnresolvedClassDef)*/ {
                 assert classType.charAt(0) == 'L';
                 this.classType = classType;
-                this.superclass = ClassPath.theClassPath.javaLangObjectClassDef;
+                this.superclass = ClassPath.theClassPath.get().javaLangObjectClassDef;
                 implementedInterfaces = new TreeSet<ClassDef>();
                 isInterface = false;
 
@@ -835,7 +966,7 @@ public class ClassPath {
                             " as its superclass");
                 }
                 if (isInterface && !superclass.isInterface && superclass !=
-                        ClassPath.theClassPath.javaLangObjectClassDef) {
+                        ClassPath.theClassPath.get().javaLangObjectClassDef) {
                     throw new ValidationException("Interface " + classType + " has the non-interface class " +
                             superclass.classType + " as its superclass");
                 }
@@ -0,0 +1,130 @@
+package org.jf.dexlib.Code.Analysis;
+
+import org.jf.dexlib.Code.Instruction;
+import org.jf.dexlib.Code.OffsetInstruction;
+import org.jf.dexlib.Code.Opcode;
+import org.jf.dexlib.Util.SparseIntArray;
+
+/**
+ * Information about the instructions of a code item that is derived from them, and is needed by several of the
+ * passes over a method: where each instruction is, which switch instruction each switch data block belongs to, and
+ * whether the method looks like a synthetic accessor.
+ *
+ * This is worked out in a single pass over the instructions, and never changes afterwards, so it can be shared by
+ * any number of threads. A code item keeps its info until its instructions are changed or released, see
+ * <code>CodeItem.getCodeItemInfo()</code>
+ */
+public class CodeItemInfo {
+    //used in place of a null accessed member, once the code has been found to not be a synthetic accessor
+    private static final SyntheticAccessorResolver.AccessedMember NOT_AN_ACCESSOR =
+            new SyntheticAccessorResolver.AccessedMember(-1, null);
+
+    private final Instruction[] instructions;
+    //the address of each instruction, followed by the address just past the end of the last instruction
+    private final int[] instructionAddresses;
+    private final SparseIntArray instructionIndexByAddress;
+    private final SparseIntArray packedSwitchAddressByDataAddress;
+    private final SparseIntArray sparseSwitchAddressByDataAddress;
+
+    private volatile SyntheticAccessorResolver.AccessedMember accessedMember;
+
+    public CodeItemInfo(Instruction[] instructions) {
+        this.instructions = instructions;
+        instructionAddresses = new int[instructions.length + 1];
+        instructionIndexByAddress = new SparseIntArray(instructions.length);
+
+        //the switch data targets aren't necessarily in ascending order, so collect them and sort once
+        SparseIntArray.Builder packedSwitchMapBuilder = new SparseIntArray.Builder(1);
+        SparseIntArray.Builder sparseSwitchMapBuilder = new SparseIntArray.Builder(1);
+
+        int currentCodeAddress = 0;
+        for (int i=0; i<instructions.length; i++) {
+            Instruction instruction = instructions[i];
+
+            if (instruction.opcode == Opcode.PACKED_SWITCH) {
+                packedSwitchMapBuilder.add(
+                        currentCodeAddress + ((OffsetInstruction)instruction).getTargetAddressOffset(),
+                        currentCodeAddress);
+            } else if (instruction.opcode == Opcode.SPARSE_SWITCH) {
+                sparseSwitchMapBuilder.add(
+                        currentCodeAddress + ((OffsetInstruction)instruction).getTargetAddressOffset(),
+                        currentCodeAddress);
+            }
+
+            instructionAddresses[i] = currentCodeAddress;
+            instructionIndexByAddress.append(currentCodeAddress, i);
+            currentCodeAddress += instruction.getSize(currentCodeAddress);
+        }
+        instructionAddresses[instructions.length] = currentCodeAddress;
+
+        packedSwitchAddressByDataAddress = packedSwitchMapBuilder.build();
+        sparseSwitchAddressByDataAddress = sparseSwitchMapBuilder.build();
+    }
+
+    /**
+     * @return the instructions that this info was worked out from. These must not be changed
+     */
+    public Instruction[] getInstructions() {
+        return instructions;
+    }
+
+    public int getInstructionCount() {
+        return instructions.length;
+    }
+
+    /**
+     * @param instructionIndex The index of an instruction. The instruction count can also be given, to get the
+     * address just past the end of the last instruction
+     * @return the code address of the instruction with the given index
+     */
+    public int getInstructionAddress(int instructionIndex) {
+        return instructionAddresses[instructionIndex];
+    }
+
+    /**
+     * @return the index of the instruction that starts at the given code address, or -1 if no instruction starts
+     * there
+     */
+    public int getInstructionIndex(int codeAddress) {
+        return instructionIndexByAddress.get(codeAddress, -1);
+    }
+
+    /**
+     * @return The length of the instructions, in 2-byte code blocks
+     */
+    public int getCodeLength() {
+        return instructionAddresses[instructions.length];
+    }
+
+    /**
+     * @return the address of the packed-switch instruction that refers to the packed switch data at the given
+     * address, or -1 if there isn't one
+     */
+    public int getPackedSwitchAddress(int packedSwitchDataAddress) {
+        return packedSwitchAddressByDataAddress.get(packedSwitchDataAddress, -1);
+    }
+
+    /**
+     * @return the address of the sparse-switch instruction that refers to the sparse switch data at the given
+     * address, or -1 if there isn't one
+     */
+    public int getSparseSwitchAddress(int sparseSwitchDataAddress) {
+        return sparseSwitchAddressByDataAddress.get(sparseSwitchDataAddress, -1);
+    }
+
+    /**
+     * @return the member that this code accesses, if it has the form of a synthetic accessor, or null if it doesn't.
+     * This only looks at the instructions, so it is up to the caller to check that the method is actually synthetic
+     */
+    public SyntheticAccessorResolver.AccessedMember getAccessedMember() {
+        SyntheticAccessorResolver.AccessedMember accessedMember = this.accessedMember;
+        if (accessedMember == null) {
+            accessedMember = SyntheticAccessorResolver.classifyAccessor(instructions);
+            if (accessedMember == null) {
+                accessedMember = NOT_AN_ACCESSOR;
+            }
+            this.accessedMember = accessedMember;
+        }
+        return accessedMember == NOT_AN_ACCESSOR ? null : accessedMember;
+    }
+}
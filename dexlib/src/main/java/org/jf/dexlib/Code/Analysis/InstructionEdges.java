@@ -0,0 +1,176 @@
+package org.jf.dexlib.Code.Analysis;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The predecessors and successors of every instruction in a method, stored as int arrays in compressed sparse row
+ * form. Each instruction is a node numbered by its instruction index + 1, so the fake "StartOfMethod" instruction is
+ * node 0. The edges of node n are at [starts[n], starts[n+1]) in the edge array. Successors are kept in the order they
+ * were added, and predecessors are sorted by instruction index.
+ */
+class InstructionEdges {
+    private final AnalyzedInstruction[] nodes;
+    private final int[] successorStarts;
+    private final int[] successors;
+    private final int[] predecessorStarts;
+    private final int[] predecessors;
+
+    private InstructionEdges(AnalyzedInstruction[] nodes, int[] successorStarts, int[] successors,
+                             int[] predecessorStarts, int[] predecessors) {
+        this.nodes = nodes;
+        this.successorStarts = successorStarts;
+        this.successors = successors;
+        this.predecessorStarts = predecessorStarts;
+        this.predecessors = predecessors;
+    }
+
+    public int getSuccessorCount(int node) {
+        return successorStarts[node + 1] - successorStarts[node];
+    }
+
+    public AnalyzedInstruction getSuccessor(int node, int index) {
+        return nodes[successors[successorStarts[node] + index]];
+    }
+
+    public List<AnalyzedInstruction> getSuccessors(int node) {
+        return new EdgeList(successors, successorStarts[node], successorStarts[node + 1]);
+    }
+
+    public int getPredecessorCount(int node) {
+        return predecessorStarts[node + 1] - predecessorStarts[node];
+    }
+
+    public AnalyzedInstruction getPredecessor(int node, int index) {
+        return nodes[predecessors[predecessorStarts[node] + index]];
+    }
+
+    public List<AnalyzedInstruction> getPredecessors(int node) {
+        return new EdgeList(predecessors, predecessorStarts[node], predecessorStarts[node + 1]);
+    }
+
+    private class EdgeList extends AbstractList<AnalyzedInstruction> implements RandomAccess {
+        private final int[] edges;
+        private final int start;
+        private final int end;
+
+        public EdgeList(int[] edges, int start, int end) {
+            this.edges = edges;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public AnalyzedInstruction get(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+            return nodes[edges[start + index]];
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Collects the edges as they are found, and then lays them out into an <code>InstructionEdges</code>
+     */
+    public static class Builder {
+        //the edges added so far, as an open addressing hash set of (from << 32 | to) + 1, where 0 is an empty slot
+        private long[] edgeSet = new long[32];
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private int edgeCount = 0;
+
+        /**
+         * @return false if the edge had already been added
+         */
+        public boolean add(AnalyzedInstruction predecessor, AnalyzedInstruction successor) {
+            int fromNode = predecessor.instructionIndex + 1;
+            int toNode = successor.instructionIndex + 1;
+            if (!addToEdgeSet((((long)fromNode << 32) | toNode) + 1)) {
+                return false;
+            }
+            if (edgeCount == from.length) {
+                from = Arrays.copyOf(from, edgeCount * 2);
+                to = Arrays.copyOf(to, edgeCount * 2);
+            }
+            from[edgeCount] = fromNode;
+            to[edgeCount] = toNode;
+            edgeCount++;
+            return true;
+        }
+
+        /**
+         * @return false if the key was already in the edge set
+         */
+        private boolean addToEdgeSet(long key) {
+            long[] edgeSet = this.edgeSet;
+            int mask = edgeSet.length - 1;
+            int slot = hash(key) & mask;
+            while (edgeSet[slot] != 0) {
+                if (edgeSet[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            edgeSet[slot] = key;
+
+            //keep the set at most half full, counting the edge that is about to be added
+            if ((edgeCount + 1) * 2 > edgeSet.length) {
+                long[] newEdgeSet = new long[edgeSet.length * 2];
+                int newMask = newEdgeSet.length - 1;
+                for (long existingKey: edgeSet) {
+                    if (existingKey != 0) {
+                        int newSlot = hash(existingKey) & newMask;
+                        while (newEdgeSet[newSlot] != 0) {
+                            newSlot = (newSlot + 1) & newMask;
+                        }
+                        newEdgeSet[newSlot] = existingKey;
+                    }
+                }
+                this.edgeSet = newEdgeSet;
+            }
+            return true;
+        }
+
+        private static int hash(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int)(hash >>> 32);
+        }
+
+        /**
+         * @param nodes the instructions, indexed by node
+         */
+        public InstructionEdges build(AnalyzedInstruction[] nodes) {
+            int[] successorStarts = new int[nodes.length + 1];
+            int[] predecessorStarts = new int[nodes.length + 1];
+            for (int i=0; i<edgeCount; i++) {
+                successorStarts[from[i] + 1]++;
+                predecessorStarts[to[i] + 1]++;
+            }
+            for (int i=0; i<nodes.length; i++) {
+                successorStarts[i + 1] += successorStarts[i];
+                predecessorStarts[i + 1] += predecessorStarts[i];
+            }
+
+            int[] successors = new int[edgeCount];
+            int[] predecessors = new int[edgeCount];
+            int[] successorPositions = Arrays.copyOf(successorStarts, nodes.length);
+            int[] predecessorPositions = Arrays.copyOf(predecessorStarts, nodes.length);
+            for (int i=0; i<edgeCount; i++) {
+                successors[successorPositions[from[i]]++] = to[i];
+                predecessors[predecessorPositions[to[i]]++] = from[i];
+            }
+            for (int i=0; i<nodes.length; i++) {
+                Arrays.sort(predecessors, predecessorStarts[i], predecessorStarts[i + 1]);
+            }
+
+            return new InstructionEdges(nodes, successorStarts, successors, predecessorStarts, predecessors);
+        }
+    }
+}
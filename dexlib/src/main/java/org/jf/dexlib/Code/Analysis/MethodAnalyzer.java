@@ -185,7 +185,8 @@ public class MethodAnalyzer {
         BitSet instructionsToAnalyze = new BitSet(instructions.size());
 
         //make sure all of the "first instructions" are marked for processing
-        for (AnalyzedInstruction successor: startOfMethod.successors) {
+        for (int j=0; j<startOfMethod.getSuccessorCount(); j++) {
+            AnalyzedInstruction successor = startOfMethod.getSuccessor(j);
             instructionsToAnalyze.set(successor.instructionIndex);
         }
 
@@ -229,7 +230,8 @@ public class MethodAnalyzer {
 
                     analyzedInstructions.set(instructionToAnalyze.getInstructionIndex());
 
-                    for (AnalyzedInstruction successor: instructionToAnalyze.successors) {
+                    for (int j=0; j<instructionToAnalyze.getSuccessorCount(); j++) {
+                        AnalyzedInstruction successor = instructionToAnalyze.getSuccessor(j);
                         instructionsToAnalyze.set(successor.getInstructionIndex());
                     }
                 }
@@ -290,7 +292,8 @@ public class MethodAnalyzer {
         BitSet verifiedInstructions = new BitSet(instructions.size());
 
         //make sure all of the "first instructions" are marked for processing
-        for (AnalyzedInstruction successor: startOfMethod.successors) {
+        for (int j=0; j<startOfMethod.getSuccessorCount(); j++) {
+            AnalyzedInstruction successor = startOfMethod.getSuccessor(j);
             instructionsToVerify.set(successor.instructionIndex);
         }
 
@@ -315,7 +318,8 @@ public class MethodAnalyzer {
 
                 verifiedInstructions.set(instructionToVerify.getInstructionIndex());
 
-                for (AnalyzedInstruction successor: instructionToVerify.successors) {
+                for (int j=0; j<instructionToVerify.getSuccessorCount(); j++) {
+                    AnalyzedInstruction successor = instructionToVerify.getSuccessor(j);
                     instructionsToVerify.set(successor.getInstructionIndex());
                 }
             }
@@ -447,7 +451,8 @@ public class MethodAnalyzer {
     private void propagateRegisterToSuccessors(AnalyzedInstruction instruction, int registerNumber,
                                                BitSet changedInstructions) {
         RegisterType postRegisterType = instruction.getPostInstructionRegisterType(registerNumber);
-        for (AnalyzedInstruction successor: instruction.successors) {
+        for (int j=0; j<instruction.getSuccessorCount(); j++) {
+            AnalyzedInstruction successor = instruction.getSuccessor(j);
             if (successor.mergeRegister(registerNumber, postRegisterType, analyzedInstructions)) {
                 changedInstructions.set(successor.instructionIndex);
             }
@@ -459,16 +464,18 @@ public class MethodAnalyzer {
         assert encodedMethod.codeItem != null;
         int registerCount = encodedMethod.codeItem.getRegisterCount();
 
-        Instruction[] insns = encodedMethod.codeItem.getInstructions();
+        //the addresses were already worked out for the code item, so there's no need to size each instruction again
+        CodeItemInfo codeItemInfo = encodedMethod.codeItem.getCodeItemInfo();
+        Instruction[] insns = codeItemInfo.getInstructions();
 
         instructions = new SparseArray<AnalyzedInstruction>(insns.length);
 
         //first, create all the instructions and populate the instructionAddresses array
-        int currentCodeAddress = 0;
+        int currentCodeAddress;
         for (int i=0; i<insns.length; i++) {
+            currentCodeAddress = codeItemInfo.getInstructionAddress(i);
             instructions.append(currentCodeAddress, new AnalyzedInstruction(insns[i], i, registerCount));
             assert instructions.indexOfKey(currentCodeAddress) == i;
-            currentCodeAddress += insns[i].getSize(currentCodeAddress);
         }
 
         //next, populate the exceptionHandlers array. The array item for each instruction that can throw an exception
@@ -519,8 +526,10 @@ public class MethodAnalyzer {
         //and no reachable code will have an unreachable predessor or successor
         assert instructions.size() > 0;
         BitSet instructionsToProcess = new BitSet(insns.length);
+        InstructionEdges.Builder edges = new InstructionEdges.Builder();
 
-        addPredecessorSuccessor(startOfMethod, instructions.valueAt(0), exceptionHandlers, instructionsToProcess);
+        addPredecessorSuccessor(startOfMethod, instructions.valueAt(0), exceptionHandlers, instructionsToProcess,
+                edges);
         while (!instructionsToProcess.isEmpty()) {
             int currentInstructionIndex = instructionsToProcess.nextSetBit(0);
             instructionsToProcess.clear(currentInstructionIndex);
@@ -538,7 +547,8 @@ public class MethodAnalyzer {
                     }
 
                     AnalyzedInstruction nextInstruction = instructions.valueAt(currentInstructionIndex+1);
-                    addPredecessorSuccessor(instruction, nextInstruction, exceptionHandlers, instructionsToProcess);
+                    addPredecessorSuccessor(instruction, nextInstruction, exceptionHandlers, instructionsToProcess,
+                            edges);
                 }
             }
 
@@ -554,27 +564,40 @@ public class MethodAnalyzer {
                                 targetAddressOffset);
 
                         addPredecessorSuccessor(instruction, targetInstruction, exceptionHandlers,
-                                instructionsToProcess);
+                                instructionsToProcess, edges);
                     }
                 } else {
                     int targetAddressOffset = offsetInstruction.getTargetAddressOffset();
                     AnalyzedInstruction targetInstruction = instructions.get(instructionCodeAddress +
                             targetAddressOffset);
-                    addPredecessorSuccessor(instruction, targetInstruction, exceptionHandlers, instructionsToProcess);
+                    addPredecessorSuccessor(instruction, targetInstruction, exceptionHandlers, instructionsToProcess,
+                            edges);
                 }
             }
         }
+
+        //lay out the edges now that all of them are known, and share them between all of the instructions
+        AnalyzedInstruction[] nodes = new AnalyzedInstruction[instructions.size() + 1];
+        nodes[0] = startOfMethod;
+        for (int i=0; i<instructions.size(); i++) {
+            nodes[i + 1] = instructions.valueAt(i);
+        }
+        InstructionEdges instructionEdges = edges.build(nodes);
+        for (AnalyzedInstruction node: nodes) {
+            node.edges = instructionEdges;
+        }
     }
 
     private void addPredecessorSuccessor(AnalyzedInstruction predecessor, AnalyzedInstruction successor,
                                                 AnalyzedInstruction[][] exceptionHandlers,
-                                                BitSet instructionsToProcess) {
-        addPredecessorSuccessor(predecessor, successor, exceptionHandlers, instructionsToProcess, false);
+                                                BitSet instructionsToProcess, InstructionEdges.Builder edges) {
+        addPredecessorSuccessor(predecessor, successor, exceptionHandlers, instructionsToProcess, edges, false);
     }
 
     private void addPredecessorSuccessor(AnalyzedInstruction predecessor, AnalyzedInstruction successor,
                                                 AnalyzedInstruction[][] exceptionHandlers,
-                                                BitSet instructionsToProcess, boolean allowMoveException) {
+                                                BitSet instructionsToProcess, InstructionEdges.Builder edges,
+                                                boolean allowMoveException) {
 
         if (!allowMoveException && successor.instruction.opcode == Opcode.MOVE_EXCEPTION) {
             throw new ValidationException("Execution can pass from the " + predecessor.instruction.opcode.name +
@@ -583,11 +606,10 @@ public class MethodAnalyzer {
                     Integer.toHexString(getInstructionAddress(successor)));
         }
 
-        if (!successor.addPredecessor(predecessor)) {
+        if (!edges.add(predecessor, successor)) {
             return;
         }
 
-        predecessor.addSuccessor(successor);
         instructionsToProcess.set(successor.getInstructionIndex());
 
 
@@ -603,7 +625,8 @@ public class MethodAnalyzer {
             assert successor.instruction.opcode.canThrow();
 
             for (AnalyzedInstruction exceptionHandler: exceptionHandlersForSuccessor) {
-                addPredecessorSuccessor(predecessor, exceptionHandler, exceptionHandlers, instructionsToProcess, true);
+                addPredecessorSuccessor(predecessor, exceptionHandler, exceptionHandlers, instructionsToProcess, edges,
+                        true);
             }
         }
     }
@@ -32,13 +32,23 @@ import org.jf.dexlib.TypeIdItem;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.HashMap;
 
 import static org.jf.dexlib.Code.Analysis.ClassPath.ClassDef;
 
 public class RegisterType {
-    private final static HashMap<RegisterType, RegisterType> internedRegisterTypes =
-            new HashMap<RegisterType, RegisterType>();
+    //the register types that don't have a class, by category. The register types for a class are interned on the
+    //ClassDef instead, so that they are discarded along with the ClassPath that they belong to
+    private final static RegisterType[] untypedRegisterTypes;
+    static {
+        Category[] categories = Category.values();
+        untypedRegisterTypes = new RegisterType[categories.length];
+        for (Category category: categories) {
+            if (category != Category.Reference && category != Category.UninitRef &&
+                    category != Category.UninitThis) {
+                untypedRegisterTypes[category.ordinal()] = new RegisterType(category, null);
+            }
+        }
+    }
 
     public final Category category;
     public final ClassDef type;
@@ -307,12 +317,33 @@ public class RegisterType {
     }
 
     public static RegisterType getRegisterType(Category category, ClassDef classType) {
-        RegisterType newRegisterType = new RegisterType(category, classType);
-        RegisterType internedRegisterType = internedRegisterTypes.get(newRegisterType);
-        if (internedRegisterType == null) {
-            internedRegisterTypes.put(newRegisterType, newRegisterType);
-            return newRegisterType;
+        if (classType == null) {
+            RegisterType registerType = untypedRegisterTypes[category.ordinal()];
+            if (registerType == null) {
+                return new RegisterType(category, null);
+            }
+            return registerType;
+        }
+
+        //the same ClassDef can be analyzed on several threads at once, when they share a ClassPath. A register type
+        //only has final fields, so one that is found without the lock is complete
+        RegisterType[] registerTypes = classType.registerTypes;
+        if (registerTypes != null) {
+            RegisterType registerType = registerTypes[category.ordinal()];
+            if (registerType != null) {
+                return registerType;
+            }
+        }
+        synchronized (classType) {
+            if (classType.registerTypes == null) {
+                classType.registerTypes = new RegisterType[untypedRegisterTypes.length];
+            }
+            RegisterType registerType = classType.registerTypes[category.ordinal()];
+            if (registerType == null) {
+                registerType = new RegisterType(category, classType);
+                classType.registerTypes[category.ordinal()] = registerType;
+            }
+            return registerType;
         }
-        return internedRegisterType;
     }
 }
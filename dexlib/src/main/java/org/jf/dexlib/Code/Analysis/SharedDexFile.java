@@ -0,0 +1,72 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2010 Ben Gruver (JesusFreke)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.jf.dexlib.Code.Analysis;
+
+import org.jf.dexlib.DexFile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A dex file and its class path, loaded once and then shared by several threads that each disassemble some of the
+ * dex file's classes, like the partitions of an input in a batch. Whichever thread needs the dex file first reads
+ * it, and the others wait for it and then use the same one. The class path is handed around the same way, see
+ * getClassPath.
+ *
+ * All of the threads must read the same file with the same options. A shared dex file must not be changed, by
+ * DexFile.place for example, since other threads may be reading it.
+ */
+public class SharedDexFile {
+    private DexFile dexFile;
+    private ClassPath classPath;
+
+    /**
+     * @return the dex file, read from the given file with the given options if it hasn't been read yet
+     */
+    public synchronized DexFile getDexFile(File file, DexFile.Options options) throws IOException {
+        if (dexFile == null) {
+            dexFile = new DexFile(file, options);
+        }
+        return dexFile;
+    }
+
+    /**
+     * @return the class path for the dex file, or null if it hasn't been initialized yet. The first thread to get null
+     * should initialize the class path while it holds the lock on this SharedDexFile, and pass it to setClassPath, so
+     * that the other threads wait for it instead of initializing their own
+     */
+    public synchronized ClassPath getClassPath() {
+        return classPath;
+    }
+
+    public synchronized void setClassPath(ClassPath classPath) {
+        this.classPath = classPath;
+    }
+}
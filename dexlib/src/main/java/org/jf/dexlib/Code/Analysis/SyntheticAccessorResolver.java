@@ -76,8 +76,20 @@ public class SyntheticAccessorResolver {
             return null;
         }
 
-        Instruction[] instructions = encodedMethod.codeItem.getInstructions();
+        //the classification only depends on the instructions, so it is kept with the code item, and is worked out
+        //once for each accessor rather than once for each call to it
+        accessedMember = encodedMethod.codeItem.getCodeItemInfo().getAccessedMember();
+        if (accessedMember != null) {
+            resolvedAccessors.put(methodIdItem, accessedMember);
+        }
+        return accessedMember;
+    }
 
+    /**
+     * @param instructions The instructions of a synthetic method
+     * @return the member that the instructions access, or null if they don't look like a synthetic accessor
+     */
+    static AccessedMember classifyAccessor(Instruction[] instructions) {
         //TODO: add support for odexed formats
         switch (instructions[0].opcode.format) {
             case Format35c:
@@ -90,14 +102,13 @@ public class SyntheticAccessorResolver {
                 InstructionWithReference instruction = (InstructionWithReference) instructions[0];
                 MethodIdItem referencedMethodIdItem = (MethodIdItem) instruction.getReferencedItem();
 
-                accessedMember = new AccessedMember(METHOD, referencedMethodIdItem);
-                resolvedAccessors.put(methodIdItem, accessedMember);
-                return accessedMember;
+                return new AccessedMember(METHOD, referencedMethodIdItem);
             }
             case Format21c:
             case Format22c: {
                 InstructionWithReference instruction = (InstructionWithReference) instructions[0];
                 FieldIdItem referencedFieldIdItem = (FieldIdItem) instruction.getReferencedItem();
+                AccessedMember accessedMember = null;
 
                 if (instructions.length == 2) {
                     //a synthetic field access should be exactly 2 instructions. The set/put, and then the return
@@ -121,7 +132,6 @@ public class SyntheticAccessorResolver {
                     return null;
                 }
 
-                resolvedAccessors.put(methodIdItem, accessedMember);
                 return accessedMember;
             }
             default:
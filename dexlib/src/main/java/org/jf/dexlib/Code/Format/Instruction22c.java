@@ -64,9 +64,10 @@ public class Instruction22c extends InstructionWithReference implements TwoRegis
 
     protected void writeInstruction(AnnotatedOutput out, int currentCodeAddress) {
         if(getReferencedItem().getIndex() > 0xFFFF) {
-            if (opcode.hasJumboOpcode()) {
+            Opcode jumboOpcode = getOpcodeTable().getJumboOpcode(opcode);
+            if (jumboOpcode != null) {
                 throw new RuntimeException(String.format("%s index is too large. Use the %s instruction instead.",
-                        opcode.referenceType.name(), opcode.getJumboOpcode().name));
+                        opcode.referenceType.name(), jumboOpcode.name));
             } else {
                 throw new RuntimeException(String.format("%s index is too large.", opcode.referenceType.name()));
             }
@@ -90,7 +91,7 @@ public class Instruction22c extends InstructionWithReference implements TwoRegis
     }
 
     public Instruction makeJumbo() {
-        Opcode jumboOpcode = opcode.getJumboOpcode();
+        Opcode jumboOpcode = getOpcodeTable().getJumboOpcode(opcode);
         if (jumboOpcode == null) {
             return null;
         }
@@ -95,9 +95,10 @@ public class Instruction35c extends InstructionWithReference implements FiveRegi
 
     protected void writeInstruction(AnnotatedOutput out, int currentCodeAddress) {
         if(getReferencedItem().getIndex() > 0xFFFF) {
-            if (opcode.hasJumboOpcode()) {
+            Opcode jumboOpcode = getOpcodeTable().getJumboOpcode(opcode);
+            if (jumboOpcode != null) {
                 throw new RuntimeException(String.format("%s index is too large. Use the %s instruction instead.",
-                        opcode.referenceType.name(), opcode.getJumboOpcode().name));
+                        opcode.referenceType.name(), jumboOpcode.name));
             } else {
                 throw new RuntimeException(String.format("%s index is too large.", opcode.referenceType.name()));
             }
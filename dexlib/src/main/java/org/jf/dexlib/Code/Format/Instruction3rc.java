@@ -81,9 +81,10 @@ public class Instruction3rc extends InstructionWithReference implements Register
 
     protected void writeInstruction(AnnotatedOutput out, int currentCodeAddress) {
         if(getReferencedItem().getIndex() > 0xFFFF) {
-            if (opcode.hasJumboOpcode()) {
+            Opcode jumboOpcode = getOpcodeTable().getJumboOpcode(opcode);
+            if (jumboOpcode != null) {
                 throw new RuntimeException(String.format("%s index is too large. Use the %s instruction instead.",
-                        opcode.referenceType.name(), opcode.getJumboOpcode().name));
+                        opcode.referenceType.name(), jumboOpcode.name));
             } else {
                 throw new RuntimeException(String.format("%s index is too large.", opcode.referenceType.name()));
             }
@@ -132,7 +133,7 @@ public class Instruction3rc extends InstructionWithReference implements Register
     }
 
     public Instruction makeJumbo() {
-        Opcode jumboOpcode = opcode.getJumboOpcode();
+        Opcode jumboOpcode = getOpcodeTable().getJumboOpcode(opcode);
         if (jumboOpcode == null) {
             return null;
         }
@@ -38,6 +38,14 @@ import org.jf.dexlib.Util.Hex;
 
 public class InstructionIterator {
     public static void IterateInstructions(DexFile dexFile, byte[] insns, ProcessInstructionDelegate delegate) {
+        IterateInstructions(dexFile, dexFile.getOpcodeTable(), insns, delegate);
+    }
+
+    /**
+     * Decodes the given instructions, looking up their opcodes in the given opcode table
+     */
+    public static void IterateInstructions(DexFile dexFile, OpcodeTable opcodeTable, byte[] insns,
+                                           ProcessInstructionDelegate delegate) {
         int insnsPosition = 0;
 
         while (insnsPosition < insns.length) {
@@ -48,7 +56,7 @@ public class InstructionIterator {
                     opcodeValue = (short)((0xFF << 8) | insns[insnsPosition+1]);
                 }
 
-                Opcode opcode = Opcode.getOpcodeByValue(opcodeValue);
+                Opcode opcode = opcodeTable.getOpcodeByValue(opcodeValue);
 
                 Instruction instruction = null;
 
@@ -69,6 +69,14 @@ public abstract class InstructionWithReference extends Instruction {
         return referencedItem;
     }
 
+    /**
+     * @return the opcode table of the dex file that the referenced item belongs to. This is the table that the
+     * instruction was decoded with, or that it will be written with
+     */
+    protected OpcodeTable getOpcodeTable() {
+        return referencedItem.getDexFile().getOpcodeTable();
+    }
+
     protected ReferenceType readReferenceType(Opcode opcode, byte[] buffer, int bufferIndex) {
         return opcode.referenceType;
     }
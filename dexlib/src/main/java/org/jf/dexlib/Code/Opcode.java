@@ -30,8 +30,6 @@ package org.jf.dexlib.Code;
 
 import org.jf.dexlib.Code.Format.Format;
 
-import java.util.HashMap;
-
 public enum Opcode
 {
     NOP((short)0x00, "nop", ReferenceType.none, Format.Format10x, Opcode.CAN_CONTINUE),
@@ -338,9 +336,10 @@ public enum Opcode
     SPUT_WIDE_VOLATILE_JUMBO((short)0xfffd, "sput-wide-volatile/jumbo", ReferenceType.field, Format.Format41c, Opcode.ODEX_ONLY | Opcode.ODEXED_STATIC_VOLATILE | Opcode.CAN_THROW | Opcode.CAN_CONTINUE | Opcode.JUMBO_OPCODE),
     SPUT_OBJECT_VOLATILE_JUMBO((short)0xfffe, "sput-object-volatile/jumbo", ReferenceType.field, Format.Format41c, Opcode.ODEX_ONLY | Opcode.ODEXED_STATIC_VOLATILE | Opcode.CAN_THROW | Opcode.CAN_CONTINUE | Opcode.JUMBO_OPCODE);
 
-    private static Opcode[] opcodesByValue;
-    private static Opcode[] expandedOpcodesByValue;
-    private static HashMap<Integer, Opcode> opcodesByName;
+    //the api level used by the static lookups, unless a different one is set with updateMapsForApiLevel
+    public static final int DEFAULT_API_LEVEL = 14;
+
+    private static volatile OpcodeTable defaultOpcodeTable;
 
     //if the instruction can throw an exception
     public static final int CAN_THROW = 0x1;
@@ -365,98 +364,35 @@ public enum Opcode
     //if the instruction can initialize an uninitialized object reference
     public static final int CAN_INITIALIZE_REFERENCE = 0x400;
 
-    static {
-        opcodesByValue = new Opcode[256];
-        expandedOpcodesByValue = new Opcode[256];
-        opcodesByName = new HashMap<Integer, Opcode>();
-
-        for (Opcode opcode: Opcode.values()) {
-            //INVOKE_DIRECT_EMPTY was changed to INVOKE_OBJECT_INIT_RANGE in ICS
-            if (opcode != INVOKE_DIRECT_EMPTY) {
-                if (((opcode.value >> 8) & 0xFF) == 0x00) {
-                    opcodesByValue[opcode.value & 0xFF] = opcode;
-                } else {
-                    assert ((opcode.value >> 8) & 0xFF) == 0xFF;
-                    expandedOpcodesByValue[opcode.value & 0xFF] = opcode;
-                }
-                opcodesByName.put(opcode.name.hashCode(), opcode);
-            }
+    /**
+     * @return the opcode table used by the static lookups in this class. This is the table for DEFAULT_API_LEVEL,
+     * unless a different api level has been set with <code>updateMapsForApiLevel</code>
+     */
+    public static OpcodeTable getDefaultOpcodeTable() {
+        OpcodeTable opcodeTable = defaultOpcodeTable;
+        if (opcodeTable == null) {
+            opcodeTable = OpcodeTable.forApiLevel(DEFAULT_API_LEVEL);
+            defaultOpcodeTable = opcodeTable;
         }
+        return opcodeTable;
     }
 
     public static Opcode getOpcodeByName(String opcodeName) {
-        return opcodesByName.get(opcodeName.toLowerCase().hashCode());
+        return getDefaultOpcodeTable().getOpcodeByName(opcodeName);
     }
 
     public static Opcode getOpcodeByValue(short opcodeValue) {
-        if (((opcodeValue >> 8) & 0xFF) == 0x00) {
-            return opcodesByValue[opcodeValue & 0xFF];
-        } else {
-            assert ((opcodeValue >> 8) & 0xFF) == 0xFF;
-            return expandedOpcodesByValue[opcodeValue & 0xFF];
-        }
-    }
-
-    private static void removeOpcodes(Opcode... toRemove) {
-        for (Opcode opcode: toRemove) {
-            opcodesByName.remove(opcode.name.toLowerCase().hashCode());
-
-            if (((opcode.value >> 8) & 0xFF) == 0x00) {
-                opcodesByValue[opcode.value] = null;
-            } else {
-                expandedOpcodesByValue[opcode.value & 0xFF] = null;
-            }
-        }
-    }
-
-    private static void addOpcodes(Opcode... toAdd) {
-        for (Opcode opcode: toAdd) {
-            if (((opcode.value >> 8) & 0xFF) == 0x00) {
-                opcodesByValue[opcode.value & 0xFF] = opcode;
-            } else {
-                assert ((opcode.value >> 8) & 0xFF) == 0xFF;
-                expandedOpcodesByValue[opcode.value & 0xFF] = opcode;
-            }
-            opcodesByName.put(opcode.name.hashCode(), opcode);
-        }
+        return getDefaultOpcodeTable().getOpcodeByValue(opcodeValue);
     }
 
     /**
-     * This will add/remove/replace various opcodes in the value/name maps as needed,
-     * based on the idiosyncrasies of that api level
+     * Switches the static lookups in this class to the opcode table for the given api level, with the opcodes that
+     * are added, removed or replaced at that api level. This doesn't change any opcode tables, so anything that was
+     * given a table explicitly, like a <code>DexFile</code>, keeps using its own table
      * @param apiLevel
      */
     public static void updateMapsForApiLevel(int apiLevel) {
-        if (apiLevel < 5) {
-            removeOpcodes(THROW_VERIFICATION_ERROR);
-        }
-        if (apiLevel < 8) {
-            removeOpcodes(EXECUTE_INLINE_RANGE);
-        }
-        if (apiLevel < 9) {
-            removeOpcodes(IGET_VOLATILE, IPUT_VOLATILE, SGET_VOLATILE, SPUT_VOLATILE, IGET_OBJECT_VOLATILE,
-                    IGET_WIDE_VOLATILE, IPUT_WIDE_VOLATILE, SGET_WIDE_VOLATILE, SPUT_WIDE_VOLATILE,
-                    IPUT_OBJECT_VOLATILE, SGET_OBJECT_VOLATILE, SPUT_OBJECT_VOLATILE);
-        }
-        if (apiLevel < 11) {
-            removeOpcodes(RETURN_VOID_BARRIER);
-        }
-        if (apiLevel < 14) {
-            removeOpcodes(CONST_CLASS_JUMBO, CHECK_CAST_JUMBO, INSTANCE_OF_JUMBO, NEW_INSTANCE_JUMBO,
-                    NEW_ARRAY_JUMBO, FILLED_NEW_ARRAY_JUMBO, IGET_JUMBO, IGET_WIDE_JUMBO, IGET_OBJECT_JUMBO,
-                    IGET_BOOLEAN_JUMBO, IGET_BYTE_JUMBO, IGET_CHAR_JUMBO, IGET_SHORT_JUMBO, IPUT_JUMBO, IPUT_WIDE_JUMBO,
-                    IPUT_OBJECT_JUMBO, IPUT_BOOLEAN_JUMBO, IPUT_BYTE_JUMBO, IPUT_CHAR_JUMBO, IPUT_SHORT_JUMBO,
-                    SGET_JUMBO, SGET_WIDE_JUMBO, SGET_OBJECT_JUMBO, SGET_BOOLEAN_JUMBO, SGET_BYTE_JUMBO,
-                    SGET_CHAR_JUMBO, SGET_SHORT_JUMBO, SPUT_JUMBO, SPUT_WIDE_JUMBO, SPUT_OBJECT_JUMBO,
-                    SPUT_BOOLEAN_JUMBO, SPUT_BYTE_JUMBO, SPUT_CHAR_JUMBO, SPUT_SHORT_JUMBO, INVOKE_VIRTUAL_JUMBO,
-                    INVOKE_SUPER_JUMBO, INVOKE_DIRECT_JUMBO, INVOKE_STATIC_JUMBO, INVOKE_INTERFACE_JUMBO,
-                    INVOKE_OBJECT_INIT_RANGE, INVOKE_OBJECT_INIT_JUMBO, IGET_VOLATILE_JUMBO, IGET_WIDE_VOLATILE_JUMBO,
-                    IGET_OBJECT_VOLATILE_JUMBO, IPUT_VOLATILE_JUMBO, IPUT_WIDE_VOLATILE_JUMBO,
-                    IPUT_OBJECT_VOLATILE_JUMBO, SGET_VOLATILE_JUMBO, SGET_WIDE_VOLATILE_JUMBO,
-                    SGET_OBJECT_VOLATILE_JUMBO, SPUT_VOLATILE_JUMBO, SPUT_WIDE_VOLATILE_JUMBO,
-                    SPUT_OBJECT_VOLATILE_JUMBO);
-            addOpcodes(INVOKE_DIRECT_EMPTY);
-        }
+        defaultOpcodeTable = OpcodeTable.forApiLevel(apiLevel);
     }
 
     public final short value;
@@ -528,10 +464,17 @@ public enum Opcode
     }
 
     public final boolean hasJumboOpcode() {
-        return jumboOpcode != -1 && Opcode.getOpcodeByValue(jumboOpcode) != null;
+        return getDefaultOpcodeTable().hasJumboOpcode(this);
     }
 
     public final Opcode getJumboOpcode() {
-        return Opcode.getOpcodeByValue(jumboOpcode);
+        return getDefaultOpcodeTable().getJumboOpcode(this);
+    }
+
+    /**
+     * @return the value of the jumbo variant of this opcode, or -1 if it doesn't have one
+     */
+    short getJumboOpcodeValue() {
+        return jumboOpcode;
     }
 }
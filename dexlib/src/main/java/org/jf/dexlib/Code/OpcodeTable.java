@@ -0,0 +1,134 @@
+package org.jf.dexlib.Code;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The opcodes that are valid at a given api level, looked up by their value or name.
+ *
+ * A table never changes once it is created, and there is a single table for each set of api levels that have the
+ * same opcodes, which is shared by everything that uses those levels. Dex files for different api levels can be read
+ * at the same time, each with its own table.
+ *
+ * The opcodes are kept in an array indexed by the whole 16 bit opcode value, so that looking one up is a single array
+ * access for both normal and expanded (0xff prefixed) opcodes.
+ */
+public class OpcodeTable {
+    //the api levels at which the opcodes changed, from newest to oldest. An api level has the same opcodes as the
+    //newest of these that it is at or above, or the oldest opcodes if it is below all of them
+    private static final int[] OPCODE_CHANGES = {14, 11, 9, 8, 5};
+
+    private static final ConcurrentHashMap<Integer, OpcodeTable> tablesByApiLevel =
+            new ConcurrentHashMap<Integer, OpcodeTable>();
+
+    private final Opcode[] opcodesByValue = new Opcode[0x10000];
+    private final HashMap<String, Opcode> opcodesByName = new HashMap<String, Opcode>();
+
+    /**
+     * @param apiLevel The api level
+     * @return the table of the opcodes that are valid at the given api level
+     */
+    public static OpcodeTable forApiLevel(int apiLevel) {
+        int tableApiLevel = 0;
+        for (int opcodeChange: OPCODE_CHANGES) {
+            if (apiLevel >= opcodeChange) {
+                tableApiLevel = opcodeChange;
+                break;
+            }
+        }
+
+        OpcodeTable opcodeTable = tablesByApiLevel.get(tableApiLevel);
+        if (opcodeTable == null) {
+            opcodeTable = new OpcodeTable(tableApiLevel);
+            OpcodeTable existing = tablesByApiLevel.putIfAbsent(tableApiLevel, opcodeTable);
+            if (existing != null) {
+                opcodeTable = existing;
+            }
+        }
+        return opcodeTable;
+    }
+
+    private OpcodeTable(int apiLevel) {
+        for (Opcode opcode: Opcode.values()) {
+            //INVOKE_DIRECT_EMPTY was changed to INVOKE_OBJECT_INIT_RANGE in ICS
+            if (opcode != Opcode.INVOKE_DIRECT_EMPTY) {
+                addOpcodes(opcode);
+            }
+        }
+
+        if (apiLevel < 5) {
+            removeOpcodes(Opcode.THROW_VERIFICATION_ERROR);
+        }
+        if (apiLevel < 8) {
+            removeOpcodes(Opcode.EXECUTE_INLINE_RANGE);
+        }
+        if (apiLevel < 9) {
+            removeOpcodes(Opcode.IGET_VOLATILE, Opcode.IPUT_VOLATILE, Opcode.SGET_VOLATILE, Opcode.SPUT_VOLATILE,
+                    Opcode.IGET_OBJECT_VOLATILE, Opcode.IGET_WIDE_VOLATILE, Opcode.IPUT_WIDE_VOLATILE,
+                    Opcode.SGET_WIDE_VOLATILE, Opcode.SPUT_WIDE_VOLATILE, Opcode.IPUT_OBJECT_VOLATILE,
+                    Opcode.SGET_OBJECT_VOLATILE, Opcode.SPUT_OBJECT_VOLATILE);
+        }
+        if (apiLevel < 11) {
+            removeOpcodes(Opcode.RETURN_VOID_BARRIER);
+        }
+        if (apiLevel < 14) {
+            for (Opcode opcode: Opcode.values()) {
+                if (opcode.isJumboOpcode()) {
+                    removeOpcodes(opcode);
+                }
+            }
+            removeOpcodes(Opcode.INVOKE_OBJECT_INIT_RANGE);
+            addOpcodes(Opcode.INVOKE_DIRECT_EMPTY);
+        }
+    }
+
+    private void removeOpcodes(Opcode... toRemove) {
+        for (Opcode opcode: toRemove) {
+            opcodesByName.remove(opcode.name);
+            opcodesByValue[opcode.value & 0xFFFF] = null;
+        }
+    }
+
+    private void addOpcodes(Opcode... toAdd) {
+        for (Opcode opcode: toAdd) {
+            assert ((opcode.value >> 8) & 0xFF) == 0x00 || ((opcode.value >> 8) & 0xFF) == 0xFF;
+            opcodesByValue[opcode.value & 0xFFFF] = opcode;
+            opcodesByName.put(opcode.name, opcode);
+        }
+    }
+
+    /**
+     * @param opcodeValue The value of the opcode. This is either a single byte value, or an expanded opcode value,
+     * with 0xff in the high byte
+     * @return the opcode with the given value, or null if there isn't one at this api level
+     */
+    public Opcode getOpcodeByValue(short opcodeValue) {
+        return opcodesByValue[opcodeValue & 0xFFFF];
+    }
+
+    /**
+     * @param opcodeName The name of the opcode, like "invoke-virtual"
+     * @return the opcode with the given name, or null if there isn't one at this api level
+     */
+    public Opcode getOpcodeByName(String opcodeName) {
+        return opcodesByName.get(opcodeName.toLowerCase());
+    }
+
+    /**
+     * @return whether the given opcode has a jumbo variant at this api level
+     */
+    public boolean hasJumboOpcode(Opcode opcode) {
+        return getJumboOpcode(opcode) != null;
+    }
+
+    /**
+     * @return the jumbo variant of the given opcode, or null if it doesn't have one at this api level
+     */
+    public Opcode getJumboOpcode(Opcode opcode) {
+        short jumboOpcodeValue = opcode.getJumboOpcodeValue();
+        if (jumboOpcodeValue == -1) {
+            return null;
+        }
+        return getOpcodeByValue(jumboOpcodeValue);
+    }
+}
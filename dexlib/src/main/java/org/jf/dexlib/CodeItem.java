@@ -30,6 +30,7 @@ package org.jf.dexlib;
 
 import org.jf.dexlib.Code.Format.*;
 import org.jf.dexlib.Code.*;
+import org.jf.dexlib.Code.Analysis.CodeItemInfo;
 import org.jf.dexlib.Debug.DebugInstructionIterator;
 import org.jf.dexlib.Debug.DebugOpcode;
 import org.jf.dexlib.Util.*;
@@ -42,7 +43,12 @@ public class CodeItem extends Item<CodeItem> {
     private int inWords;
     private int outWords;
     private DebugInfoItem debugInfo;
-    private Instruction[] instructions;
+    private volatile Instruction[] instructions;
+    //the encoded instructions, when the dex file decodes them lazily. The decoded instructions can be released and
+    //decoded again from these, up until they are changed
+    private byte[] encodedInstructions;
+    //derived from the instructions, and dropped whenever they are changed or released
+    private volatile CodeItemInfo codeItemInfo;
     private TryItem[] tries;
     private EncodedCatchHandler[] encodedCatchHandlers;
 
@@ -148,18 +154,12 @@ public class CodeItem extends Item<CodeItem> {
 
         int instructionCount = in.readInt();
 
-        final ArrayList<Instruction> instructionList = new ArrayList<Instruction>();
-
         byte[] encodedInstructions = in.readBytes(instructionCount * 2);
-        InstructionIterator.IterateInstructions(dexFile, encodedInstructions,
-                new InstructionIterator.ProcessInstructionDelegate() {
-                    public void ProcessInstruction(int codeAddress, Instruction instruction) {
-                        instructionList.add(instruction);
-                    }
-                });
-
-        this.instructions = new Instruction[instructionList.size()];
-        instructionList.toArray(instructions);
+        if (dexFile.decodesInstructionsLazily()) {
+            this.encodedInstructions = encodedInstructions;
+        } else {
+            this.instructions = decodeInstructions(encodedInstructions);
+        }
 
         if (triesCount > 0) {
             in.alignTo(4);
@@ -254,7 +254,7 @@ public class CodeItem extends Item<CodeItem> {
         out.writeInt(instructionsLength);
 
         int currentCodeAddress = 0;
-        for (Instruction instruction: instructions) {
+        for (Instruction instruction: getInstructions()) {
             currentCodeAddress = instruction.write(out, currentCodeAddress);
         }
 
@@ -336,13 +336,87 @@ public class CodeItem extends Item<CodeItem> {
         return registerCount;
     }
 
+    private Instruction[] decodeInstructions(byte[] encodedInstructions) {
+        final ArrayList<Instruction> instructionList = new ArrayList<Instruction>();
+
+        InstructionIterator.IterateInstructions(dexFile, dexFile.getOpcodeTable(), encodedInstructions,
+                new InstructionIterator.ProcessInstructionDelegate() {
+                    public void ProcessInstruction(int codeAddress, Instruction instruction) {
+                        instructionList.add(instruction);
+                    }
+                });
+
+        Instruction[] instructions = new Instruction[instructionList.size()];
+        instructionList.toArray(instructions);
+        return instructions;
+    }
+
     /**
-     * @return an array of the instructions in this code item
+     * @return an array of the instructions in this code item. If the dex file decodes instructions lazily, they are
+     * decoded the first time this is called, and kept until they are released
      */
     public Instruction[] getInstructions() {
+        Instruction[] instructions = this.instructions;
+        if (instructions == null && encodedInstructions != null) {
+            try {
+                instructions = decodeInstructions(encodedInstructions);
+            } catch (Exception ex) {
+                throw addExceptionContext(ex);
+            }
+            this.instructions = instructions;
+        }
         return instructions;
     }
 
+    /**
+     * Drops the decoded instructions, if the dex file decodes instructions lazily and they haven't been changed since
+     * they were decoded. They are decoded again the next time they are asked for. Anything that holds on to the
+     * previously decoded instructions will no longer see the same instruction objects as new callers. The
+     * <code>CodeItemInfo</code> is always dropped, even if the instructions are kept
+     */
+    public void releaseInstructions() {
+        codeItemInfo = null;
+        if (encodedInstructions != null) {
+            instructions = null;
+        }
+    }
+
+    /**
+     * Makes sure the instructions are decoded, and keeps them from being released, before they are changed
+     */
+    private void pinInstructions() {
+        instructions = getInstructions();
+        encodedInstructions = null;
+        codeItemInfo = null;
+    }
+
+    /**
+     * Gets the information that is derived from the instructions, like the address of each instruction and the
+     * targets of the switches. This is worked out the first time it is asked for, and then kept until the
+     * instructions are changed (by <code>updateCode</code> or <code>fixInstructions</code>) or released (by
+     * <code>releaseInstructions</code>), after which it is worked out again the next time it is asked for. An info
+     * that was handed out before that still describes the instructions it was worked out from
+     * @return the <code>CodeItemInfo</code> for the current instructions of this code item
+     */
+    public CodeItemInfo getCodeItemInfo() {
+        CodeItemInfo codeItemInfo = this.codeItemInfo;
+        if (codeItemInfo == null) {
+            codeItemInfo = buildCodeItemInfo();
+        }
+        return codeItemInfo;
+    }
+
+    private synchronized CodeItemInfo buildCodeItemInfo() {
+        if (codeItemInfo == null) {
+            try {
+                codeItemInfo = new CodeItemInfo(getInstructions());
+            } catch (Exception ex) {
+                throw addExceptionContext(ex);
+            }
+        }
+        return codeItemInfo;
+    }
+
     /**
      * @return an array of the <code>TryItem</code> objects in this <code>CodeItem</code>
      */
@@ -386,6 +460,8 @@ public class CodeItem extends Item<CodeItem> {
      */
     public void updateCode(Instruction[] newInstructions) {
         this.instructions = newInstructions;
+        this.encodedInstructions = null;
+        this.codeItemInfo = null;
     }
 
     /**
@@ -393,7 +469,7 @@ public class CodeItem extends Item<CodeItem> {
      */
     private int getInstructionsLength() {
         int currentCodeAddress = 0;
-        for (Instruction instruction: instructions) {
+        for (Instruction instruction: getInstructions()) {
             currentCodeAddress += instruction.getSize(currentCodeAddress);
         }
         return currentCodeAddress;
@@ -411,6 +487,7 @@ public class CodeItem extends Item<CodeItem> {
      */
     public void fixInstructions(boolean fixJumbo, boolean fixGoto) {
         try {
+            pinInstructions();
             boolean didSomething = false;
 
             do
@@ -451,7 +528,7 @@ public class CodeItem extends Item<CodeItem> {
                                 didSomething = true;
                                 break;
                             }
-                        } else if (fixJumbo && instruction.opcode.hasJumboOpcode()) {
+                        } else if (fixJumbo && dexFile.getOpcodeTable().hasJumboOpcode(instruction.opcode)) {
                             InstructionWithReference referenceInstruction = (InstructionWithReference)instruction;
                             if (referenceInstruction.getReferencedItem().getIndex() > 0xFFFF) {
 
@@ -518,6 +595,7 @@ public class CodeItem extends Item<CodeItem> {
         }
 
         instructions[instructionIndex] = replacementInstruction;
+        codeItemInfo = null;
 
         //if we're replacing the instruction with one of the same size, we don't have to worry about fixing
         //up any address
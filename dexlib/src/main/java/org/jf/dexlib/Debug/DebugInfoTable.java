@@ -0,0 +1,245 @@
+package org.jf.dexlib.Debug;
+
+import org.jf.dexlib.DebugInfoItem;
+import org.jf.dexlib.DexFile;
+import org.jf.dexlib.StringIdItem;
+import org.jf.dexlib.TypeIdItem;
+import org.jf.dexlib.Util.ByteArrayInput;
+import org.jf.dexlib.Util.Input;
+
+import java.util.Arrays;
+
+/**
+ * The debug info of a method, decoded into parallel arrays with one entry per local start, end or restart and per
+ * line emitted. Each entry has the code address and line it applies at, and for locals the register along with the
+ * indexes of the name, type and signature of the local (-1 if there isn't one). The entry for an end or restart has
+ * the name, type and signature the local was started with.
+ *
+ * A table is built once per <code>DebugInfoItem</code>, see <code>DebugInfoItem.getDebugInfoTable</code>
+ */
+public class DebugInfoTable {
+    private final DexFile dexFile;
+
+    private int count;
+    private byte[] opcodes;
+    private int[] addresses;
+    private int[] lines;
+    private int[] registers;
+    private int[] names;
+    private int[] types;
+    private int[] signatures;
+
+    private DebugInfoTable(DexFile dexFile, int capacity) {
+        this.dexFile = dexFile;
+        opcodes = new byte[capacity];
+        addresses = new int[capacity];
+        lines = new int[capacity];
+        registers = new int[capacity];
+        names = new int[capacity];
+        types = new int[capacity];
+        signatures = new int[capacity];
+    }
+
+    /**
+     * Decodes the debug instructions of the given <code>DebugInfoItem</code>
+     * @param debugInfoItem the <code>DebugInfoItem</code> to decode
+     * @return the decoded table
+     */
+    public static DebugInfoTable decode(DebugInfoItem debugInfoItem) {
+        byte[] encodedDebugInfo = debugInfoItem.getEncodedDebugInfo();
+        //every entry takes at least one byte
+        DebugInfoTable table = new DebugInfoTable(debugInfoItem.getDexFile(), encodedDebugInfo.length);
+
+        int currentCodeAddress = 0;
+        int line = debugInfoItem.getLineStart();
+        Input in = new ByteArrayInput(encodedDebugInfo);
+
+        //the entry that started the local in each register, or -1
+        int[] localStarts = new int[16];
+        Arrays.fill(localStarts, -1);
+
+        while (true) {
+            byte debugOpcode = in.readByte();
+
+            switch (DebugOpcode.getDebugOpcodeByValue(debugOpcode)) {
+                case DBG_END_SEQUENCE:
+                {
+                    table.trim();
+                    return table;
+                }
+                case DBG_ADVANCE_PC:
+                {
+                    currentCodeAddress += in.readUnsignedLeb128();
+                    break;
+                }
+                case DBG_ADVANCE_LINE:
+                {
+                    line += in.readSignedLeb128();
+                    break;
+                }
+                case DBG_START_LOCAL:
+                case DBG_START_LOCAL_EXTENDED:
+                {
+                    int registerNum = in.readUnsignedLeb128();
+                    int nameIndex = in.readUnsignedLeb128() - 1;
+                    int typeIndex = in.readUnsignedLeb128() - 1;
+                    int signatureIndex = -1;
+                    if (debugOpcode == DebugOpcode.DBG_START_LOCAL_EXTENDED.value) {
+                        signatureIndex = in.readUnsignedLeb128() - 1;
+                    }
+                    if (registerNum >= localStarts.length) {
+                        int oldLength = localStarts.length;
+                        localStarts = Arrays.copyOf(localStarts, Math.max(registerNum + 1, oldLength * 2));
+                        Arrays.fill(localStarts, oldLength, localStarts.length, -1);
+                    }
+                    localStarts[registerNum] = table.count;
+                    table.add(debugOpcode, currentCodeAddress, line, registerNum, nameIndex, typeIndex,
+                            signatureIndex);
+                    break;
+                }
+                case DBG_END_LOCAL:
+                case DBG_RESTART_LOCAL:
+                {
+                    int registerNum = in.readUnsignedLeb128();
+                    int start = registerNum < localStarts.length ? localStarts[registerNum] : -1;
+                    if (start == -1) {
+                        table.add(debugOpcode, currentCodeAddress, line, registerNum, -1, -1, -1);
+                    } else {
+                        table.add(debugOpcode, currentCodeAddress, line, registerNum, table.names[start],
+                                table.types[start], table.signatures[start]);
+                    }
+                    break;
+                }
+                case DBG_SET_PROLOGUE_END:
+                case DBG_SET_EPILOGUE_BEGIN:
+                {
+                    break;
+                }
+                case DBG_SET_FILE:
+                {
+                    in.skipLeb128();
+                    break;
+                }
+                case DBG_SPECIAL_OPCODE:
+                {
+                    int base = ((debugOpcode & 0xFF) - 0x0A);
+                    currentCodeAddress += base / 15;
+                    line += (base % 15) - 4;
+                    table.add(DebugOpcode.DBG_SPECIAL_OPCODE.value, currentCodeAddress, line, -1, -1, -1, -1);
+                }
+            }
+        }
+    }
+
+    private void add(byte opcode, int address, int line, int register, int name, int type, int signature) {
+        opcodes[count] = opcode;
+        addresses[count] = address;
+        lines[count] = line;
+        registers[count] = register;
+        names[count] = name;
+        types[count] = type;
+        signatures[count] = signature;
+        count++;
+    }
+
+    private void trim() {
+        if (count == opcodes.length) {
+            return;
+        }
+        opcodes = Arrays.copyOf(opcodes, count);
+        addresses = Arrays.copyOf(addresses, count);
+        lines = Arrays.copyOf(lines, count);
+        registers = Arrays.copyOf(registers, count);
+        names = Arrays.copyOf(names, count);
+        types = Arrays.copyOf(types, count);
+        signatures = Arrays.copyOf(signatures, count);
+    }
+
+    /**
+     * @return the number of entries in the table
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the opcode of the entry. This is one of DBG_START_LOCAL, DBG_START_LOCAL_EXTENDED, DBG_END_LOCAL,
+     * DBG_RESTART_LOCAL, or DBG_SPECIAL_OPCODE for a line being emitted
+     */
+    public DebugOpcode getOpcode(int entry) {
+        return DebugOpcode.getDebugOpcodeByValue(opcodes[entry]);
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the code address that the entry applies at
+     */
+    public int getCodeAddress(int entry) {
+        return addresses[entry];
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the line number at the entry
+     */
+    public int getLine(int entry) {
+        return lines[entry];
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the register of the local, or -1 for a line
+     */
+    public int getRegister(int entry) {
+        return registers[entry];
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the index of the name of the local, or -1 if it has none
+     */
+    public int getNameIndex(int entry) {
+        return names[entry];
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the index of the type of the local, or -1 if it has none
+     */
+    public int getTypeIndex(int entry) {
+        return types[entry];
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the index of the generic signature of the local, or -1 if it has none
+     */
+    public int getSignatureIndex(int entry) {
+        return signatures[entry];
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the name of the local, or null if it has none
+     */
+    public StringIdItem getName(int entry) {
+        return dexFile.StringIdsSection.getOptionalItemByIndex(names[entry]);
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the type of the local, or null if it has none
+     */
+    public TypeIdItem getType(int entry) {
+        return dexFile.TypeIdsSection.getOptionalItemByIndex(types[entry]);
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the generic signature of the local, or null if it has none
+     */
+    public StringIdItem getSignature(int entry) {
+        return dexFile.StringIdsSection.getOptionalItemByIndex(signatures[entry]);
+    }
+}
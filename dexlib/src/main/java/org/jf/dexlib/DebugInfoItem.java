@@ -28,6 +28,7 @@
 
 package org.jf.dexlib;
 
+import org.jf.dexlib.Debug.DebugInfoTable;
 import org.jf.dexlib.Debug.DebugInstructionIterator;
 import org.jf.dexlib.Debug.DebugOpcode;
 import org.jf.dexlib.Util.AnnotatedOutput;
@@ -43,6 +44,7 @@ public class DebugInfoItem extends Item<DebugInfoItem> {
     private StringIdItem[] parameterNames;
     private byte[] encodedDebugInfo;
     private Item[] referencedItems;
+    private volatile DebugInfoTable debugInfoTable;
 
     private CodeItem parent = null;
 
@@ -107,42 +109,44 @@ public class DebugInfoItem extends Item<DebugInfoItem> {
         }
 
         int start = in.getCursor();
-        final List<Item> referencedItemsList = new ArrayList<Item>(50);
-        DebugInstructionIterator.IterateInstructions(in,
-                new DebugInstructionIterator.ProcessRawDebugInstructionDelegate() {
-                    @Override
-                    public void ProcessStartLocal(int startDebugOffset, int length, int registerNum, int nameIndex,
-                                                  int typeIndex, boolean registerIsSigned) {
-                        if (nameIndex != -1) {
-                            referencedItemsList.add(dexFile.StringIdsSection.getItemByIndex(nameIndex));
-                        }
-                        if (typeIndex != -1) {
-                            referencedItemsList.add(dexFile.TypeIdsSection.getItemByIndex(typeIndex));
-                        }
+        List<Item> referencedItemsList = new ArrayList<Item>(50);
+        //only the items that the debug instructions reference are needed here, so the rest is skipped over. This
+        //reads the operands the same way that DebugInstructionIterator.IterateInstructions does
+        boolean endSequence = false;
+        while (!endSequence) {
+            byte debugOpcode = in.readByte();
+            switch (debugOpcode) {
+                case 0x00: //DBG_END_SEQUENCE
+                    endSequence = true;
+                    break;
+                case 0x01: //DBG_ADVANCE_PC
+                case 0x02: //DBG_ADVANCE_LINE
+                case 0x05: //DBG_END_LOCAL
+                case 0x06: //DBG_RESTART_LOCAL
+                    in.skipLeb128();
+                    break;
+                case 0x03: //DBG_START_LOCAL
+                case 0x04: //DBG_START_LOCAL_EXTENDED
+                {
+                    in.skipLeb128();
+                    addReferencedString(referencedItemsList, in.readUnsignedLeb128() - 1);
+                    int typeIndex = in.readUnsignedLeb128() - 1;
+                    if (typeIndex != -1) {
+                        referencedItemsList.add(dexFile.TypeIdsSection.getItemByIndex(typeIndex));
                     }
-
-                    @Override
-                    public void ProcessStartLocalExtended(int startDebugOffset, int length, int registerNume,
-                                                          int nameIndex, int typeIndex, int signatureIndex,
-                                                          boolean registerIsSigned) {
-                        if (nameIndex != -1) {
-                            referencedItemsList.add(dexFile.StringIdsSection.getItemByIndex(nameIndex));
-                        }
-                        if (typeIndex != -1) {
-                            referencedItemsList.add(dexFile.TypeIdsSection.getItemByIndex(typeIndex));
-                        }
-                        if (signatureIndex != -1) {
-                            referencedItemsList.add(dexFile.StringIdsSection.getItemByIndex(signatureIndex));
-                        }
+                    if (debugOpcode == 0x04) {
+                        addReferencedString(referencedItemsList, in.readUnsignedLeb128() - 1);
                     }
-
-                    @Override
-                    public void ProcessSetFile(int startDebugOffset, int length, int nameIndex) {
-                        if (nameIndex != -1) {
-                            referencedItemsList.add(dexFile.StringIdsSection.getItemByIndex(nameIndex));
-                        }
-                    }
-                });
+                    break;
+                }
+                case 0x09: //DBG_SET_FILE
+                    addReferencedString(referencedItemsList, in.readUnsignedLeb128());
+                    break;
+                default:
+                    //DBG_SET_PROLOGUE_END, DBG_SET_EPILOGUE_BEGIN and the special opcodes have no operands
+                    break;
+            }
+        }
 
         referencedItems = new Item[referencedItemsList.size()];
         referencedItemsList.toArray(referencedItems);
@@ -152,6 +156,12 @@ public class DebugInfoItem extends Item<DebugInfoItem> {
         encodedDebugInfo = in.readBytes(length);
     }
 
+    private void addReferencedString(List<Item> referencedItemsList, int stringIndex) {
+        if (stringIndex != -1) {
+            referencedItemsList.add(dexFile.StringIdsSection.getItemByIndex(stringIndex));
+        }
+    }
+
 
 
     /** {@inheritDoc} */
@@ -272,6 +282,7 @@ public class DebugInfoItem extends Item<DebugInfoItem> {
         //TODO: I would rather replace this method with some way of saying "The (code) instruction at address changed from A bytes to B bytes. Fixup the debug info accordingly"
 
         this.encodedDebugInfo = encodedDebugInfo;
+        this.debugInfoTable = null;
     }
 
     /**
@@ -603,6 +614,26 @@ public class DebugInfoItem extends Item<DebugInfoItem> {
         return encodedDebugInfo;
     }
 
+    /**
+     * @return the debug info, decoded into a table. The table is decoded the first time this is called, and kept
+     * until the encoded debug info is replaced
+     */
+    public DebugInfoTable getDebugInfoTable() {
+        DebugInfoTable debugInfoTable = this.debugInfoTable;
+        if (debugInfoTable == null) {
+            debugInfoTable = DebugInfoTable.decode(this);
+            this.debugInfoTable = debugInfoTable;
+        }
+        return debugInfoTable;
+    }
+
+    /**
+     * Drops the decoded debug info table, if it has been decoded. It is decoded again the next time it is asked for
+     */
+    public void releaseDebugInfoTable() {
+        debugInfoTable = null;
+    }
+
     /**
      * @return an array of the items referenced by instructions, in order of occurance in the encoded debug info
      */
@@ -28,6 +28,8 @@
 
 package org.jf.dexlib;
 
+import org.jf.dexlib.Code.Opcode;
+import org.jf.dexlib.Code.OpcodeTable;
 import org.jf.dexlib.Util.*;
 
 import java.io.*;
@@ -141,6 +143,19 @@ public class DexFile
      */
     private final boolean skipInstructions;
 
+    /**
+     * When true, the instructions in a code item are kept in their encoded form when the dex file is read in, and
+     * are only decoded the first time they are asked for. The decoded instructions can then be released once they are
+     * no longer needed, see <code>CodeItem.releaseInstructions()</code>. This is useful when each method is only
+     * looked at once, so that the decoded instructions of every method don't all have to be in memory at once
+     */
+    private final boolean decodeInstructionsLazily;
+
+    /**
+     * The opcodes that the instructions in this dex file are decoded with, for the api level it targets
+     */
+    private final OpcodeTable opcodeTable;
+
     /**
      * When true, this prevents any sorting of the items during placement of the dex file. This
      * should *only* be set to true when this dex file was read in from an existing (valid) dex file,
@@ -178,6 +193,11 @@ public class DexFile
     private OdexHeader odexHeader;
     private OdexDependencies odexDependencies;
 
+    /**
+     * The format version of the offset index files read and written by this class
+     */
+    private static final int OFFSET_INDEX_VERSION = 1;
+
     private int dataOffset;
     private int dataSize;
     private int fileSize;
@@ -188,10 +208,15 @@ public class DexFile
      * @param skipInstructions If true, skip the instructions in any code item.
      * that are signed, so they will be written in the same format. See
      * <code>getPreserveSignedRegisters()</code>
+     * @param decodeInstructionsLazily If true, only decode the instructions in a code item when they are asked for
+     * @param opcodeTable The opcodes to decode instructions with
      */
-    private DexFile(boolean preserveSignedRegisters, boolean skipInstructions) {
+    private DexFile(boolean preserveSignedRegisters, boolean skipInstructions, boolean decodeInstructionsLazily,
+                    OpcodeTable opcodeTable) {
         this.preserveSignedRegisters = preserveSignedRegisters;
         this.skipInstructions = skipInstructions;
+        this.decodeInstructionsLazily = decodeInstructionsLazily;
+        this.opcodeTable = opcodeTable;
 
         sectionsByType = new Section[] {
                 StringIdsSection,
@@ -287,7 +312,23 @@ public class DexFile
      */
     public DexFile(File file, boolean preserveSignedRegisters, boolean skipInstructions)
             throws IOException {
-        this(preserveSignedRegisters, skipInstructions);
+        this(file, new Options().setPreserveSignedRegisters(preserveSignedRegisters)
+                .setSkipInstructions(skipInstructions));
+    }
+
+    /**
+     * Construct a new DexFile instance by reading in the given dex file, with the given options. See
+     * <code>DexFile.Options</code> for what each of them does
+     * @param file The dex file to read in
+     * @param options The options to read the dex file with
+     * @throws IOException if an IOException occurs
+     */
+    public DexFile(File file, Options options)
+            throws IOException {
+        this(options.preserveSignedRegisters, options.skipInstructions, options.decodeInstructionsLazily,
+                options.opcodeTable != null ? options.opcodeTable : Opcode.getDefaultOpcodeTable());
+
+        File offsetIndexFile = options.offsetIndexFile;
 
         long fileLength;
         byte[] magic = FileUtils.readFile(file, 0, 8);
@@ -387,6 +428,32 @@ public class DexFile
 
         ReadContext readContext = new ReadContext();
 
+        int[] offsetIndexHeader = null;
+        boolean offsetIndexLoaded = false;
+        if (offsetIndexFile != null) {
+            //identify the dex file by its checksum and size, along with the options that affect which sections
+            //are read in
+            in.setCursor(8);
+            int checksum = in.readInt();
+            in.setCursor(32);
+            int dexFileSize = in.readInt();
+            in.setCursor(0);
+
+            offsetIndexHeader = new int[] {OFFSET_INDEX_VERSION, checksum, dexFileSize, skipInstructions ? 1 : 0};
+            int[][] prebuiltOffsets = null;
+            try {
+                prebuiltOffsets = OffsetIndex.readOffsets(offsetIndexFile, offsetIndexHeader);
+            } catch (IOException ex) {
+                //the index is only an optimization, so the offsets are collected as usual if it can't be read
+                System.err.println(String.format("warning: cannot read the offset index %s: %s",
+                        offsetIndexFile.getPath(), ex.getMessage()));
+            }
+            if (prebuiltOffsets != null) {
+                readContext.setPrebuiltOffsets(prebuiltOffsets);
+                offsetIndexLoaded = true;
+            }
+        }
+
         HeaderItem.readFrom(in, 0, readContext);
 
         //the map offset was set while reading in the header item
@@ -431,6 +498,16 @@ public class DexFile
                 section.readFrom(sectionSize, in, readContext);
             }
         }
+
+        if (offsetIndexFile != null && !offsetIndexLoaded) {
+            try {
+                OffsetIndex.writeOffsets(offsetIndexFile, offsetIndexHeader, readContext.getOffsetArrays());
+            } catch (IOException ex) {
+                //the dex file has been read in fine, the next read just won't be able to use the index
+                System.err.println(String.format("warning: cannot write the offset index %s: %s",
+                        offsetIndexFile.getPath(), ex.getMessage()));
+            }
+        }
     }
 
     /**
@@ -438,7 +515,7 @@ public class DexFile
      * the <code>Section.intern()</code> method of <code>ClassDefsSection</code>
      */
     public DexFile() {
-        this(true, false);
+        this(true, false, false, Opcode.getDefaultOpcodeTable());
     }
 
     /**
@@ -490,6 +567,23 @@ public class DexFile
         return skipInstructions;
     }
 
+    /**
+     * Get a boolean value indicating whether the instructions in a code item are kept encoded when the dex file is
+     * read in, and only decoded when they are first asked for. When they are, the decoded instructions of a code item
+     * can be released with <code>CodeItem.releaseInstructions()</code>, and are decoded again if they are needed again
+     * @return a boolean value indicating whether the instructions in a code item are decoded lazily
+     */
+    public boolean decodesInstructionsLazily() {
+        return decodeInstructionsLazily;
+    }
+
+    /**
+     * @return the opcode table that the instructions in this dex file are decoded with
+     */
+    public OpcodeTable getOpcodeTable() {
+        return opcodeTable;
+    }
+
     /**
      * Get a boolean value indicating whether all items should be placed into a
      * (possibly arbitrary) "canonical" ordering. If false, then only the items
@@ -894,6 +988,68 @@ public class DexFile
         bytes[11] = (byte) (sum >> 24);
     }
 
+    /**
+     * The options that a dex file is read in with, see <code>DexFile(File, Options)</code>. Each setter returns the
+     * options, so that they can be chained. Any option that isn't set keeps its default
+     */
+    public static class Options {
+        private OpcodeTable opcodeTable = null;
+        private boolean preserveSignedRegisters = true;
+        private boolean skipInstructions = false;
+        private boolean decodeInstructionsLazily = false;
+        private File offsetIndexFile = null;
+
+        /**
+         * @param opcodeTable The opcodes of the api level that the dex file targets. Defaults to
+         * <code>Opcode.getDefaultOpcodeTable()</code>
+         */
+        public Options setOpcodeTable(OpcodeTable opcodeTable) {
+            this.opcodeTable = opcodeTable;
+            return this;
+        }
+
+        /**
+         * @param preserveSignedRegisters If true, keep track of any registers in the debug information that are
+         * signed, so they will be written in the same format. Defaults to true. See
+         * <code>getPreserveSignedRegisters()</code>
+         */
+        public Options setPreserveSignedRegisters(boolean preserveSignedRegisters) {
+            this.preserveSignedRegisters = preserveSignedRegisters;
+            return this;
+        }
+
+        /**
+         * @param skipInstructions If true, skip the instructions in any code item. Defaults to false
+         */
+        public Options setSkipInstructions(boolean skipInstructions) {
+            this.skipInstructions = skipInstructions;
+            return this;
+        }
+
+        /**
+         * @param decodeInstructionsLazily If true, keep the instructions in each code item encoded until they are
+         * asked for, so that they can be released again afterwards. Defaults to false. See
+         * <code>decodesInstructionsLazily()</code>
+         */
+        public Options setDecodeInstructionsLazily(boolean decodeInstructionsLazily) {
+            this.decodeInstructionsLazily = decodeInstructionsLazily;
+            return this;
+        }
+
+        /**
+         * The offset index holds the sorted item offsets of each offsetted section. If the file exists and was saved
+         * from the same dex file, the offsets are read from it instead of being collected from the items as each
+         * section is read in. Otherwise, the offsets are saved to it once the dex file has been read, so that the next
+         * read of this dex file can use them. Failing to read or save the index is only reported as a warning
+         * @param offsetIndexFile The file to read the offset index from or save it to, or null to not use one.
+         * Defaults to null
+         */
+        public Options setOffsetIndexFile(File offsetIndexFile) {
+            this.offsetIndexFile = offsetIndexFile;
+            return this;
+        }
+    }
+
     public static class NoClassesDexException extends ExceptionWithContext {
         public NoClassesDexException(String message) {
             super(message);
@@ -63,6 +63,19 @@ public class AnnotationEncodedSubValue extends EncodedValue {
         }
     }
 
+    /**
+     * Steps over an annotation value in the given <code>Input</code> object, without creating any objects for it
+     * @param in The <code>Input</code> object to read from
+     */
+    public static void skipValue(Input in) {
+        in.skipLeb128();
+        int count = in.readUnsignedLeb128();
+        for (int i=0; i<count; i++) {
+            in.skipLeb128();
+            EncodedValue.skipEncodedValue(in);
+        }
+    }
+
     /**
      * Constructs a new <code>AnnotationEncodedValue</code> with the given values. names and values must be the same
      * length, and must be sorted according to the name
@@ -56,6 +56,18 @@ public class ArrayEncodedSubValue extends EncodedValue {
         }
     }
 
+    /**
+     * Steps over an array value in the given <code>Input</code> object, without creating any objects for it. The
+     * <code>Input</code>'s cursor should be set to the 2nd byte of the encoded value
+     * @param in The <code>Input</code> object to read from
+     */
+    public static void skipValue(Input in) {
+        int count = in.readUnsignedLeb128();
+        for (int i=0; i<count; i++) {
+            EncodedValue.skipEncodedValue(in);
+        }
+    }
+
     /**
      * Constructs a new <code>ArrayEncodedSubValue</code> with the given values
      * @param values The array values
@@ -89,6 +89,31 @@ public abstract class EncodedValue implements Comparable<EncodedValue> {
         return null;
     }
 
+    /**
+     * Steps over an encoded value in the given <code>Input</code> object, without creating any objects for it
+     * @param in The <code>Input</code> object to read from
+     */
+    public static void skipEncodedValue(Input in) {
+        byte b = in.readByte();
+        ValueType valueType = ValueType.fromByte((byte)(b & 0x1f));
+        int valueArg = (b & 0xFF) >> 5;
+
+        switch (valueType) {
+            case VALUE_ARRAY:
+                ArrayEncodedSubValue.skipValue(in);
+                return;
+            case VALUE_ANNOTATION:
+                AnnotationEncodedSubValue.skipValue(in);
+                return;
+            case VALUE_NULL:
+            case VALUE_BOOLEAN:
+                return;
+            default:
+                //all of the other value types are stored in valueArg+1 bytes
+                in.skipBytes(valueArg + 1);
+        }
+    }
+
     /** {@inheritDoc} */
     public int compareTo(EncodedValue o) {
         int comp = getValueType().compareTo(o.getValueType());
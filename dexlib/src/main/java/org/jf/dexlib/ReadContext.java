@@ -29,7 +29,7 @@
 package org.jf.dexlib;
 
 import org.jf.dexlib.Util.ExceptionWithContext;
-import org.jf.dexlib.Util.SparseArray;
+import org.jf.dexlib.Util.OffsetIndex;
 
 import java.util.List;
 
@@ -41,38 +41,18 @@ import java.util.List;
  * for the pre-created items uses them, instead of creating new items
  */
 public class ReadContext {
-    private SparseArray<TypeListItem> typeListItems = new SparseArray<TypeListItem>(0);
-    private SparseArray<AnnotationSetRefList> annotationSetRefLists = new SparseArray<AnnotationSetRefList>(0);
-    private SparseArray<AnnotationSetItem> annotationSetItems = new SparseArray<AnnotationSetItem>(0);
-    private SparseArray<ClassDataItem> classDataItems = new SparseArray<ClassDataItem>(0);
-    private SparseArray<CodeItem> codeItems = new SparseArray<CodeItem>(0);
-    private SparseArray<StringDataItem> stringDataItems = new SparseArray<StringDataItem>(0);
-    private SparseArray<DebugInfoItem> debugInfoItems = new SparseArray<DebugInfoItem>(0);
-    private SparseArray<AnnotationItem> annotationItems = new SparseArray<AnnotationItem>(0);
-    private SparseArray<EncodedArrayItem> encodedArrayItems = new SparseArray<EncodedArrayItem>(0);
-    private SparseArray<AnnotationDirectoryItem> annotationDirectoryItems = new SparseArray<AnnotationDirectoryItem>(0);
-
-    private SparseArray[] itemsByType = new SparseArray[] {
-            null, //string_id_item
-            null, //type_id_item
-            null, //proto_id_item
-            null, //field_id_item
-            null, //method_id_item
-            null, //class_def_item
-            typeListItems,
-            annotationSetRefLists,
-            annotationSetItems,
-            classDataItems,
-            codeItems,
-            stringDataItems,
-            debugInfoItems,
-            annotationItems,
-            encodedArrayItems,
-            annotationDirectoryItems,
-            null, //map_list
-            null //header_item
-    };
+    /**
+     * The offset indexes for each offsetted section, indexed by ItemType.SectionIndex. These are populated via
+     * setItemsForSection, after each section is read in. Indexed item types are always null
+     */
+    @SuppressWarnings("unchecked")
+    private OffsetIndex<Item>[] itemsByType = (OffsetIndex<Item>[])new OffsetIndex[18];
 
+    /**
+     * Offsets that were built during a previous read of the same dex file, indexed by ItemType.SectionIndex, or
+     * null if there are none
+     */
+    private int[][] prebuiltOffsets = null;
 
     /**
      * The section sizes that are passed in while reading HeaderItem/MapItem, via the
@@ -107,8 +87,7 @@ public class ReadContext {
     public Item getOffsettedItemByOffset(ItemType itemType, int offset) {
         assert !itemType.isIndexedItem();
 
-        SparseArray<Item> sa = itemsByType[itemType.SectionIndex];
-        Item item = sa.get(offset);
+        Item item = getItem(itemType, offset);
         if (item == null) {
             throw new ExceptionWithContext(String.format("Could not find the %s item at offset %#x",
                     itemType.TypeName, offset));
@@ -116,6 +95,29 @@ public class ReadContext {
         return item;
     }
 
+    /**
+     * Gets the offsetted items of the specified type for each of the given offsets. This is equivalent to calling
+     * getOffsettedItemByOffset for each offset, but is cheaper when the offsets are mostly in ascending order.
+     *
+     * @param itemType The type of item to get
+     * @param offsets The offsets of the items
+     * @param items The array to store the items in. It must be at least as long as <code>offsets</code>
+     */
+    public void getOffsettedItemsByOffset(ItemType itemType, int[] offsets, Item[] items) {
+        assert !itemType.isIndexedItem();
+
+        OffsetIndex<Item> index = itemsByType[itemType.SectionIndex];
+        if (index != null) {
+            index.getAll(offsets, items);
+        }
+        for (int i=0; i<offsets.length; i++) {
+            if (items[i] == null) {
+                throw new ExceptionWithContext(String.format("Could not find the %s item at offset %#x",
+                        itemType.TypeName, offsets[i]));
+            }
+        }
+    }
+
     /**
      * Gets the optional offsetted item of the specified type for the given offset
      *
@@ -126,17 +128,26 @@ public class ReadContext {
     public Item getOptionalOffsettedItemByOffset(ItemType itemType, int offset) {
         assert !itemType.isIndexedItem();
 
-        assert !itemType.isIndexedItem();
+        if (offset == 0) {
+            return null;
+        }
 
-        SparseArray<Item> sa = itemsByType[itemType.SectionIndex];
-        Item item = sa.get(offset);
-        if (item == null && offset != 0) {
+        Item item = getItem(itemType, offset);
+        if (item == null) {
             throw new ExceptionWithContext(String.format("Could not find the %s item at offset %#x",
                     itemType.TypeName, offset));
         }
         return item;
     }
 
+    private Item getItem(ItemType itemType, int offset) {
+        OffsetIndex<Item> index = itemsByType[itemType.SectionIndex];
+        if (index == null) {
+            return null;
+        }
+        return index.get(offset);
+    }
+
     /**
      * Adds the size and offset information for the given offset
      * @param itemType the item type of the section
@@ -174,12 +185,47 @@ public class ReadContext {
     public void setItemsForSection(ItemType itemType, List<? extends Item> items) {
         assert !itemType.isIndexedItem();
 
-        SparseArray<Item> sa = itemsByType[itemType.SectionIndex];
+        int[] offsets = null;
+        if (prebuiltOffsets != null && itemType.SectionIndex < prebuiltOffsets.length) {
+            offsets = prebuiltOffsets[itemType.SectionIndex];
+            if (offsets != null && offsets.length != items.size()) {
+                offsets = null;
+            }
+        }
 
-        sa.ensureCapacity(items.size());
-        for (Item item: items) {
-            sa.append(item.getOffset(), item);
+        if (offsets == null) {
+            //the items in an offsetted section are read in sequentially, so the offsets are already in order
+            offsets = new int[items.size()];
+            for (int i=0; i<offsets.length; i++) {
+                offsets[i] = items.get(i).getOffset();
+            }
+        }
+
+        itemsByType[itemType.SectionIndex] = new OffsetIndex<Item>(offsets, items);
+    }
+
+    /**
+     * Supplies offset arrays that were saved from a previous read of the same dex file via getOffsetArrays, so
+     * that setItemsForSection can use them as-is instead of collecting the offsets from the items. This must be
+     * called before any sections are read.
+     * @param prebuiltOffsets the offset arrays, indexed by ItemType.SectionIndex
+     */
+    public void setPrebuiltOffsets(int[][] prebuiltOffsets) {
+        this.prebuiltOffsets = prebuiltOffsets;
+    }
+
+    /**
+     * @return the sorted offset arrays for each offsetted section that has been read in, indexed by
+     * ItemType.SectionIndex, suitable for passing to setPrebuiltOffsets when the same dex file is read again
+     */
+    public int[][] getOffsetArrays() {
+        int[][] offsetArrays = new int[itemsByType.length][];
+        for (int i=0; i<itemsByType.length; i++) {
+            if (itemsByType[i] != null) {
+                offsetArrays[i] = itemsByType[i].getOffsets();
+            }
         }
+        return offsetArrays;
     }
 
     /**
@@ -85,7 +85,7 @@ public class StringDataItem extends Item<StringDataItem> {
 
     /** {@inheritDoc} */
     protected void readItem(Input in, ReadContext readContext) {
-        in.readUnsignedLeb128(); //string length
+        in.skipLeb128(); //string length
         stringValue = in.realNullTerminatedUtf8String();
     }
 
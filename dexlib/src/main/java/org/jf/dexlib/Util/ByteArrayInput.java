@@ -24,6 +24,8 @@
 
 package org.jf.dexlib.Util;
 
+import java.nio.charset.Charset;
+
 /**
  * Implementation of {@link Input} which reads the data from a
  * <code>byte[]</code> instance.
@@ -34,6 +36,8 @@ package org.jf.dexlib.Util;
 public class ByteArrayInput
     implements Input {
 
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
     /** non-null; the data itself */
     private byte[] data;
 
@@ -128,73 +132,40 @@ public class ByteArrayInput
 
     /** {@inheritDoc} */
     public int readUnsignedOrSignedLeb128() {
-        int end = cursor;
-        int currentByteValue;
-        int result;
-
-        result = data[end++] & 0xff;
-        if (result > 0x7f) {
-            currentByteValue = data[end++] & 0xff;
-            result = (result & 0x7f) | ((currentByteValue & 0x7f) << 7);
-            if (currentByteValue > 0x7f) {
-                currentByteValue = data[end++] & 0xff;
-                result |= (currentByteValue & 0x7f) << 14;
-                if (currentByteValue > 0x7f) {
-                    currentByteValue = data[end++] & 0xff;
-                    result |= (currentByteValue & 0x7f) << 21;
-                    if (currentByteValue > 0x7f) {
-                        currentByteValue = data[end++] & 0xff;
-                        if (currentByteValue > 0x0f) {
-                            throwInvalidLeb();
-                        }
-                        result |= currentByteValue << 28;
-                    }
-                }
-            }
-        } else {
-            cursor = end;
-            return result;
-        }
-
-        cursor = end;
+        int start = cursor;
+        int result = readUnsignedLeb128();
 
         //If the last byte is 0, then this was an unsigned value (incorrectly) written in a signed format
         //The caller wants to know if this is the case, so we'll return the negated value instead
-        //If there was only a single byte that had a value of 0, then we would have returned in the above
-        //"else"
-        if (data[end-1] == 0) {
+        //If there was only a single byte that had a value of 0, then it's just a 0
+        if (cursor - start > 1 && data[cursor - 1] == 0) {
             return ~result;
         }
         return result;
     }
 
-
-
-
     /** {@inheritDoc} */
     public int readUnsignedLeb128() {
+        //Each byte is sign extended when it is read, so the continuation bit of a byte is also set in all of the bits
+        //above it. Each byte is xored into the result, which flips those bits back, so that the sign of the result
+        //tells whether the byte that was just added was the last one, and the bits left over from the sign extension
+        //are then cleared with a single xor at the end
+        byte[] data = this.data;
         int end = cursor;
-        int currentByteValue;
-        int result;
-
-        result = data[end++] & 0xff;
-        if (result > 0x7f) {
-            currentByteValue = data[end++] & 0xff;
-            result = (result & 0x7f) | ((currentByteValue & 0x7f) << 7);
-            if (currentByteValue > 0x7f) {
-                currentByteValue = data[end++] & 0xff;
-                result |= (currentByteValue & 0x7f) << 14;
-                if (currentByteValue > 0x7f) {
-                    currentByteValue = data[end++] & 0xff;
-                    result |= (currentByteValue & 0x7f) << 21;
-                    if (currentByteValue > 0x7f) {
-                        currentByteValue = data[end++] & 0xff;
-                        if (currentByteValue > 0x0f) {
-                            throwInvalidLeb();
-                        }
-                        result |= currentByteValue << 28;
-                    }
+        int result = data[end++];
+        if (result < 0) {
+            if ((result ^= data[end++] << 7) < 0) {
+                result ^= (~0 << 7);
+            } else if ((result ^= data[end++] << 14) >= 0) {
+                result ^= (~0 << 7) ^ (~0 << 14);
+            } else if ((result ^= data[end++] << 21) < 0) {
+                result ^= (~0 << 7) ^ (~0 << 14) ^ (~0 << 21);
+            } else {
+                int lastByte = data[end++];
+                if ((lastByte & 0xff) > 0x0f) {
+                    throwInvalidLeb();
                 }
+                result ^= (lastByte << 28) ^ (~0 << 7) ^ (~0 << 14) ^ (~0 << 21) ^ (~0 << 28);
             }
         }
 
@@ -204,41 +175,27 @@ public class ByteArrayInput
 
     /** {@inheritDoc} */
     public int readSignedLeb128() {
-        int end = cursor;
-        int currentByteValue;
-        int result;
-
-        result = data[end++] & 0xff;
-        if (result <= 0x7f) {
-            result = (result << 25) >> 25;
-        } else {
-            currentByteValue = data[end++] & 0xff;
-            result = (result & 0x7f) | ((currentByteValue & 0x7f) << 7);
-            if (currentByteValue <= 0x7f) {
-                result = (result << 18) >> 18;
-            } else {
-                currentByteValue = data[end++] & 0xff;
-                result |= (currentByteValue & 0x7f) << 14;
-                if (currentByteValue <= 0x7f) {
-                    result = (result << 11) >> 11;
-                } else {
-                    currentByteValue = data[end++] & 0xff;
-                    result |= (currentByteValue & 0x7f) << 21;
-                    if (currentByteValue <= 0x7f) {
-                        result = (result << 4) >> 4;
-                    } else {
-                        currentByteValue = data[end++] & 0xff;
-                        if (currentByteValue > 0x0f) {
-                            throwInvalidLeb();
-                        }
-                        result |= currentByteValue << 28;
-                    }
-                }
-            }
+        int start = cursor;
+        int result = readUnsignedLeb128();
+
+        //sign extend from the highest bit that was read, unless all 32 bits were
+        int shift = 32 - 7 * (cursor - start);
+        if (shift > 0) {
+            result = (result << shift) >> shift;
         }
+        return result;
+    }
 
+    /** {@inheritDoc} */
+    public void skipLeb128() {
+        byte[] data = this.data;
+        int end = cursor;
+        //the 5th byte can only hold the top 4 bits, as in readUnsignedLeb128
+        if (data[end++] < 0 && data[end++] < 0 && data[end++] < 0 && data[end++] < 0 &&
+                (data[end++] & 0xff) > 0x0f) {
+            throwInvalidLeb();
+        }
         cursor = end;
-        return result;
     }
 
     /** {@inheritDoc} */
@@ -282,15 +239,25 @@ public class ByteArrayInput
 
     /** {@inheritDoc} */
     public String realNullTerminatedUtf8String() {
+        byte[] data = this.data;
         int startPosition = cursor;
-        while (data[cursor] != 0) {
-            cursor++;
+        int end = startPosition;
+        //the bytes or'd together, which is negative if any of them has its high bit set
+        int allBytes = 0;
+        byte currentByte;
+        while ((currentByte = data[end]) != 0) {
+            allBytes |= currentByte;
+            end++;
         }
-        int byteCount = cursor - startPosition;
+        int byteCount = end - startPosition;
 
         //skip the terminating null
-        cursor++;
+        cursor = end + 1;
 
+        if (allBytes >= 0) {
+            //every character is a single byte, with the same value as in latin-1, which can simply be copied
+            return new String(data, startPosition, byteCount, LATIN_1);
+        }
         return Utf8Utils.utf8BytesToString(data, startPosition, byteCount);
     }
 
@@ -112,6 +112,13 @@ public interface Input {
      */
     public int readUnsignedOrSignedLeb128();
 
+    /**
+     * Skips over a DWARFv3-style LEB128 integer, signed or unsigned, without
+     * decoding it. An integer that <code>readUnsignedLeb128()</code> would
+     * reject is rejected here too.
+     */
+    public void skipLeb128();
+
     /**
      * reads a <code>byte[]</code> from this instance.
      *
@@ -0,0 +1,256 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2010 Ben Gruver (JesusFreke)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jf.dexlib.Util;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Maps the offsets of the items in an offsetted section to the items themselves. The offsets are kept in a sorted
+ * primitive array with the items in a parallel array, so a lookup doesn't touch any boxed or per-entry objects.
+ *
+ * Item offsets within a section are spread fairly evenly, so lookups use an interpolation search, which typically
+ * finds an offset in a couple of probes. Every other probe is a plain bisection, so a skewed section can't make a
+ * lookup worse than about twice the cost of a binary search.
+ */
+public class OffsetIndex<E> {
+    private final int[] offsets;
+    private final Object[] items;
+
+    /**
+     * Creates a new OffsetIndex
+     * @param offsets the offsets of the items, in ascending order. The array is used directly and not copied
+     * @param items the items, in the same order as <code>offsets</code>
+     */
+    public OffsetIndex(int[] offsets, List<? extends E> items) {
+        if (offsets.length != items.size()) {
+            throw new IllegalArgumentException("The number of offsets does not match the number of items");
+        }
+        this.offsets = offsets;
+        this.items = items.toArray();
+    }
+
+    /**
+     * @return the number of items in this index
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * @return the sorted offsets in this index. The returned array must not be modified
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Gets the item at the specified offset, or <code>null</code> if there is no item at that offset
+     */
+    public E get(int offset) {
+        int i = indexOf(offsets, 0, offsets.length, offset);
+        if (i < 0) {
+            return null;
+        }
+        return getItem(i);
+    }
+
+    /**
+     * Gets the items at each of the specified offsets, storing them in the corresponding position of
+     * <code>dest</code>. A position is set to <code>null</code> if there is no item at that offset.
+     *
+     * When the offsets are in ascending order, each search only considers the portion of the index after the
+     * previous match.
+     * @param keys the offsets to look up
+     * @param dest the array to store the items in. It must be at least as long as <code>keys</code>
+     */
+    public void getAll(int[] keys, E[] dest) {
+        int low = 0;
+        int previousKey = Integer.MIN_VALUE;
+        for (int k = 0; k < keys.length; k++) {
+            int key = keys[k];
+            if (key < previousKey) {
+                low = 0;
+            }
+            previousKey = key;
+
+            int i = indexOf(offsets, low, offsets.length, key);
+            if (i < 0) {
+                dest[k] = null;
+            } else {
+                low = i;
+                dest[k] = getItem(i);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private E getItem(int index) {
+        //the items all came from a List<? extends E> in the constructor
+        return (E)items[index];
+    }
+
+    private static int indexOf(int[] a, int start, int end, int key) {
+        int low = start;
+        int high = end - 1;
+        boolean interpolate = true;
+
+        while (low <= high) {
+            int lowKey = a[low];
+            int highKey = a[high];
+            if (key < lowKey || key > highKey) {
+                return -1;
+            }
+
+            int guess;
+            if (interpolate && highKey != lowKey) {
+                guess = low + (int)(((long)key - lowKey) * (high - low) / ((long)highKey - lowKey));
+            } else {
+                guess = (low + high) >>> 1;
+            }
+            interpolate = !interpolate;
+
+            int guessKey = a[guess];
+            if (guessKey < key) {
+                low = guess + 1;
+            } else if (guessKey > key) {
+                high = guess - 1;
+            } else {
+                return guess;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a set of offset arrays to the given file. Each array is written as a little-endian int count followed
+     * by the offsets, so that the file can be mapped and read back without any parsing
+     * @param file the file to write to
+     * @param header arbitrary values that identify the source of the offsets, which must be matched when reading
+     * @param offsetArrays the arrays to write. Null entries are written as empty arrays
+     * @throws IOException if an IOException occurs
+     */
+    public static void writeOffsets(File file, int[] header, int[][] offsetArrays) throws IOException {
+        int totalInts = 2 + header.length;
+        for (int[] offsetArray: offsetArrays) {
+            totalInts += 1 + (offsetArray == null ? 0 : offsetArray.length);
+        }
+
+        ByteArrayOutput out = new ByteArrayOutput(new byte[totalInts * 4]);
+        out.writeInt(header.length);
+        for (int value: header) {
+            out.writeInt(value);
+        }
+        out.writeInt(offsetArrays.length);
+        for (int[] offsetArray: offsetArrays) {
+            if (offsetArray == null) {
+                out.writeInt(0);
+                continue;
+            }
+            out.writeInt(offsetArray.length);
+            for (int offset: offsetArray) {
+                out.writeInt(offset);
+            }
+        }
+
+        //the index is written to a temporary file and then moved into place, so that another process reading the
+        //same dex file never sees a partly written index
+        File parent = file.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            FileOutputStream fos = new FileOutputStream(tempFile);
+            try {
+                fos.write(out.getArray(), 0, out.getCursor());
+            } finally {
+                fos.close();
+            }
+            if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+                throw new IOException("Can't replace " + file);
+            }
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads a set of offset arrays that was written by writeOffsets
+     * @param file the file to read from
+     * @param header the values that were passed to writeOffsets when the file was written
+     * @return the offset arrays, or null if the file doesn't exist, is malformed or doesn't match the given header
+     * @throws IOException if an IOException occurs
+     */
+    public static int[][] readOffsets(File file, int[] header) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer ints = buffer.asIntBuffer();
+
+            if (ints.remaining() < 1 || ints.get() != header.length || ints.remaining() < header.length + 1) {
+                return null;
+            }
+            for (int value: header) {
+                if (ints.get() != value) {
+                    return null;
+                }
+            }
+
+            int count = ints.get();
+            if (count < 0) {
+                return null;
+            }
+            int[][] offsetArrays = new int[count][];
+            for (int i=0; i<count; i++) {
+                if (ints.remaining() < 1) {
+                    return null;
+                }
+                int length = ints.get();
+                if (length < 0 || ints.remaining() < length) {
+                    return null;
+                }
+                offsetArrays[i] = new int[length];
+                ints.get(offsetArrays[i]);
+            }
+            return offsetArrays;
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -77,6 +77,40 @@ public class SparseArray<E> {
         }
     }
 
+    /**
+     * Gets the Objects mapped from each of the specified keys, storing them in the corresponding position of
+     * <code>values</code>. A position is set to <code>null</code> if no such mapping has been made.
+     *
+     * When the keys are in ascending order, each search only considers the portion of the array after the
+     * previous match, so resolving a sorted batch costs little more than a single linear pass.
+     * @param keys the keys to look up
+     * @param values the array to store the values in. It must be at least as long as <code>keys</code>
+     */
+    public void getAll(int[] keys, E[] values) {
+        if (mGarbage) {
+            gc();
+        }
+
+        int low = 0;
+        int previousKey = Integer.MIN_VALUE;
+        for (int k = 0; k < keys.length; k++) {
+            int key = keys[k];
+            if (key < previousKey) {
+                low = 0;
+            }
+            previousKey = key;
+
+            int i = binarySearch(mKeys, low, mSize - low, key);
+            if (i < 0) {
+                low = ~i;
+                values[k] = null;
+            } else {
+                low = i;
+                values[k] = (E) mValues[i];
+            }
+        }
+    }
+
     /**
      * Removes the mapping from the specified key, if there was any.
      */
@@ -363,4 +397,97 @@ public class SparseArray<E> {
     private int[] mKeys;
     private Object[] mValues;
     private int mSize;
+
+    /**
+     * Collects key/value pairs in any order, and then builds a <code>SparseArray</code> from them with a single sort.
+     * This avoids the insertion shift that {@link SparseArray#put} performs for every out-of-order key. If the keys
+     * were added in ascending order, no sort is performed at all.
+     *
+     * If a key is added more than once, the last value added for that key is used, as with <code>put</code>
+     */
+    public static class Builder<E> {
+        private int[] keys;
+        private Object[] values;
+        private int size = 0;
+        private boolean sorted = true;
+
+        public Builder() {
+            this(10);
+        }
+
+        public Builder(int initialCapacity) {
+            keys = new int[initialCapacity];
+            values = new Object[initialCapacity];
+        }
+
+        public Builder<E> add(int key, E value) {
+            if (size >= keys.length) {
+                int n = Math.max(size + 1, keys.length * 2);
+
+                int[] nkeys = new int[n];
+                Object[] nvalues = new Object[n];
+
+                System.arraycopy(keys, 0, nkeys, 0, size);
+                System.arraycopy(values, 0, nvalues, 0, size);
+
+                keys = nkeys;
+                values = nvalues;
+            }
+
+            if (size != 0 && key <= keys[size - 1]) {
+                sorted = false;
+            }
+
+            keys[size] = key;
+            values[size] = value;
+            size++;
+            return this;
+        }
+
+        /**
+         * @return a new <code>SparseArray</code> containing the added mappings. The builder should not be used
+         * after this is called
+         */
+        public SparseArray<E> build() {
+            if (!sorted) {
+                sort();
+            }
+
+            SparseArray<E> sparseArray = new SparseArray<E>(0);
+            sparseArray.mKeys = keys;
+            sparseArray.mValues = values;
+            sparseArray.mSize = size;
+            return sparseArray;
+        }
+
+        private void sort() {
+            //pack each key with its insertion index, so that a primitive sort orders by key and then by insertion
+            //order, which lets us keep the last value for a duplicated key
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = ((long)keys[i] << 32) | i;
+            }
+            Arrays.sort(packed);
+
+            int[] nkeys = new int[size];
+            Object[] nvalues = new Object[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int key = (int)(packed[i] >> 32);
+                Object value = values[(int)packed[i]];
+                if (n != 0 && nkeys[n - 1] == key) {
+                    nvalues[n - 1] = value;
+                } else {
+                    nkeys[n] = key;
+                    nvalues[n] = value;
+                    n++;
+                }
+            }
+
+            keys = nkeys;
+            values = nvalues;
+            size = n;
+            sorted = true;
+        }
+    }
 }
@@ -24,6 +24,8 @@
 
 package org.jf.dexlib.Util;
 
+import java.util.Arrays;
+
 /**
  * SparseIntArrays map integers to integers.  Unlike a normal array of integers,
  * there can be gaps in the indices.  It is intended to be more efficient
@@ -70,6 +72,37 @@ public class SparseIntArray {
         }
     }
 
+    /**
+     * Gets the ints mapped from each of the specified keys, storing them in the corresponding position of
+     * <code>values</code>. A position is set to <code>valueIfKeyNotFound</code> if no such mapping has been made.
+     *
+     * When the keys are in ascending order, each search only considers the portion of the array after the
+     * previous match, so resolving a sorted batch costs little more than a single linear pass.
+     * @param keys the keys to look up
+     * @param values the array to store the values in. It must be at least as long as <code>keys</code>
+     * @param valueIfKeyNotFound the value to use for keys that aren't mapped
+     */
+    public void getAll(int[] keys, int[] values, int valueIfKeyNotFound) {
+        int low = 0;
+        int previousKey = Integer.MIN_VALUE;
+        for (int k = 0; k < keys.length; k++) {
+            int key = keys[k];
+            if (key < previousKey) {
+                low = 0;
+            }
+            previousKey = key;
+
+            int i = binarySearch(mKeys, low, mSize - low, key);
+            if (i < 0) {
+                low = ~i;
+                values[k] = valueIfKeyNotFound;
+            } else {
+                low = i;
+                values[k] = mValues[i];
+            }
+        }
+    }
+
     /**
      * Removes the mapping from the specified key, if there was any.
      */
@@ -240,4 +273,97 @@ public class SparseIntArray {
     private int[] mKeys;
     private int[] mValues;
     private int mSize;
+
+    /**
+     * Collects key/value pairs in any order, and then builds a <code>SparseIntArray</code> from them with a single
+     * sort. This avoids the insertion shift that {@link SparseIntArray#put} performs for every out-of-order key. If
+     * the keys were added in ascending order, no sort is performed at all.
+     *
+     * If a key is added more than once, the last value added for that key is used, as with <code>put</code>
+     */
+    public static class Builder {
+        private int[] keys;
+        private int[] values;
+        private int size = 0;
+        private boolean sorted = true;
+
+        public Builder() {
+            this(10);
+        }
+
+        public Builder(int initialCapacity) {
+            keys = new int[initialCapacity];
+            values = new int[initialCapacity];
+        }
+
+        public Builder add(int key, int value) {
+            if (size >= keys.length) {
+                int n = Math.max(size + 1, keys.length * 2);
+
+                int[] nkeys = new int[n];
+                int[] nvalues = new int[n];
+
+                System.arraycopy(keys, 0, nkeys, 0, size);
+                System.arraycopy(values, 0, nvalues, 0, size);
+
+                keys = nkeys;
+                values = nvalues;
+            }
+
+            if (size != 0 && key <= keys[size - 1]) {
+                sorted = false;
+            }
+
+            keys[size] = key;
+            values[size] = value;
+            size++;
+            return this;
+        }
+
+        /**
+         * @return a new <code>SparseIntArray</code> containing the added mappings. The builder should not be used
+         * after this is called
+         */
+        public SparseIntArray build() {
+            if (!sorted) {
+                sort();
+            }
+
+            SparseIntArray sparseIntArray = new SparseIntArray(0);
+            sparseIntArray.mKeys = keys;
+            sparseIntArray.mValues = values;
+            sparseIntArray.mSize = size;
+            return sparseIntArray;
+        }
+
+        private void sort() {
+            //pack each key with its insertion index, so that a primitive sort orders by key and then by insertion
+            //order, which lets us keep the last value for a duplicated key
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = ((long)keys[i] << 32) | i;
+            }
+            Arrays.sort(packed);
+
+            int[] nkeys = new int[size];
+            int[] nvalues = new int[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int key = (int)(packed[i] >> 32);
+                int value = values[(int)packed[i]];
+                if (n != 0 && nkeys[n - 1] == key) {
+                    nvalues[n - 1] = value;
+                } else {
+                    nkeys[n] = key;
+                    nvalues[n] = value;
+                    n++;
+                }
+            }
+
+            keys = nkeys;
+            values = nvalues;
+            size = n;
+            sorted = true;
+        }
+    }
 }
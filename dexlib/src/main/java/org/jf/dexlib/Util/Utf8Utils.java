@@ -68,12 +68,12 @@ public final class Utf8Utils {
         return result;
     }
 
-    private static char[] tempBuffer = null;
+    private static final ThreadLocal<char[]> tempBuffer = new ThreadLocal<char[]>();
 
     /**
      * Converts an array of UTF-8 bytes into a string.
      *
-     * This method uses a global buffer to avoid having to allocate one every time, so it is *not* thread-safe
+     * This method uses a buffer for each thread to avoid having to allocate one every time
      *
      * @param bytes non-null; the bytes to convert
      * @param start the start index of the utf8 string to convert
@@ -81,10 +81,11 @@ public final class Utf8Utils {
      * @return non-null; the converted string
      */
     public static String utf8BytesToString(byte[] bytes, int start, int length) {
-        if (tempBuffer == null || tempBuffer.length < length) {
-            tempBuffer = new char[length];
+        char[] chars = tempBuffer.get();
+        if (chars == null || chars.length < length) {
+            chars = new char[length];
+            tempBuffer.set(chars);
         }
-        char[] chars = tempBuffer;
         int outAt = 0;
 
         for (int at = start; length > 0; /*at*/) {
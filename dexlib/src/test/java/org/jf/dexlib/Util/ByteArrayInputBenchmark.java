@@ -0,0 +1,376 @@
+package org.jf.dexlib.Util;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares the LEB128 and MUTF-8 decoding in ByteArrayInput against the previous implementations, which are kept
+ * below as the baseline. The values are generated with the distribution they have in a typical dex file: mostly one
+ * and two byte LEB128 values, and strings that are mostly ASCII type descriptors and identifiers.
+ *
+ * Before timing anything, the new decoders are checked against the previous ones, for a range of edge cases and
+ * a large number of random values.
+ *
+ * Run with: java -cp dexlib/build/classes/java/main:dexlib/build/classes/java/test
+ *      org.jf.dexlib.Util.ByteArrayInputBenchmark
+ */
+public class ByteArrayInputBenchmark {
+    private static final int VALUE_COUNT = 1000000;
+    private static final int STRING_COUNT = 200000;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        checkLeb128(random);
+
+        int[] values = new int[VALUE_COUNT];
+        for (int i=0; i<values.length; i++) {
+            values[i] = randomValue(random);
+        }
+        final byte[] unsigned = encode(values, false);
+        //about half of the signed values are negative, like the line and address deltas in debug info
+        for (int i=0; i<values.length; i++) {
+            if (random.nextBoolean()) {
+                values[i] = -values[i];
+            }
+        }
+        final byte[] signed = encode(values, true);
+
+        ArrayList<String> strings = new ArrayList<String>(STRING_COUNT);
+        for (int i=0; i<STRING_COUNT; i++) {
+            strings.add(randomString(random));
+        }
+        final byte[] encodedStrings = encodeStrings(strings);
+        checkStrings(encodedStrings, STRING_COUNT);
+
+        System.out.println(VALUE_COUNT + " LEB128 values (" + unsigned.length + " bytes unsigned, " + signed.length +
+                " bytes signed), " + STRING_COUNT + " strings (" + encodedStrings.length + " bytes)");
+
+        time("unsigned LEB128, previous", new Benchmark() {
+            public int run() {
+                int sum = 0;
+                int[] cursor = new int[1];
+                for (int i=0; i<VALUE_COUNT; i++) {
+                    sum += previousReadUnsignedLeb128(unsigned, cursor);
+                }
+                return sum;
+            }
+        });
+        time("unsigned LEB128, current", new Benchmark() {
+            public int run() {
+                int sum = 0;
+                ByteArrayInput in = new ByteArrayInput(unsigned);
+                for (int i=0; i<VALUE_COUNT; i++) {
+                    sum += in.readUnsignedLeb128();
+                }
+                return sum;
+            }
+        });
+        time("unsigned LEB128, skipped", new Benchmark() {
+            public int run() {
+                ByteArrayInput in = new ByteArrayInput(unsigned);
+                for (int i=0; i<VALUE_COUNT; i++) {
+                    in.skipLeb128();
+                }
+                return in.getCursor();
+            }
+        });
+        time("signed LEB128, previous", new Benchmark() {
+            public int run() {
+                int sum = 0;
+                int[] cursor = new int[1];
+                for (int i=0; i<VALUE_COUNT; i++) {
+                    sum += previousReadSignedLeb128(signed, cursor);
+                }
+                return sum;
+            }
+        });
+        time("signed LEB128, current", new Benchmark() {
+            public int run() {
+                int sum = 0;
+                ByteArrayInput in = new ByteArrayInput(signed);
+                for (int i=0; i<VALUE_COUNT; i++) {
+                    sum += in.readSignedLeb128();
+                }
+                return sum;
+            }
+        });
+        time("MUTF-8 strings, previous", new Benchmark() {
+            public int run() {
+                int sum = 0;
+                int cursor = 0;
+                for (int i=0; i<STRING_COUNT; i++) {
+                    int start = cursor;
+                    while (encodedStrings[cursor] != 0) {
+                        cursor++;
+                    }
+                    sum += Utf8Utils.utf8BytesToString(encodedStrings, start, cursor - start).length();
+                    cursor++;
+                }
+                return sum;
+            }
+        });
+        time("MUTF-8 strings, current", new Benchmark() {
+            public int run() {
+                int sum = 0;
+                ByteArrayInput in = new ByteArrayInput(encodedStrings);
+                for (int i=0; i<STRING_COUNT; i++) {
+                    sum += in.realNullTerminatedUtf8String().length();
+                }
+                return sum;
+            }
+        });
+    }
+
+    private interface Benchmark {
+        /**
+         * @return something calculated from the decoded values, so that the decoding can't be optimized away
+         */
+        int run();
+    }
+
+    private static int blackHole;
+
+    private static void time(String name, Benchmark benchmark) {
+        for (int i=0; i<WARMUP_ROUNDS; i++) {
+            blackHole += benchmark.run();
+        }
+        long start = System.nanoTime();
+        for (int i=0; i<ROUNDS; i++) {
+            blackHole += benchmark.run();
+        }
+        long time = System.nanoTime() - start;
+        System.out.println(String.format("%-28s %7.2f ms", name, time / (ROUNDS * 1e6)));
+    }
+
+    private static void checkLeb128(Random random) {
+        ArrayList<Integer> values = new ArrayList<Integer>();
+        int[] edges = {0, 1, 0x3f, 0x40, 0x7f, 0x80, 0x1fff, 0x2000, 0x3fff, 0x4000, 0xfffff, 0x100000, 0x1fffff,
+                0x200000, 0x7ffffff, 0x8000000, 0xfffffff, 0x10000000, Integer.MAX_VALUE};
+        for (int edge: edges) {
+            values.add(edge);
+            values.add(-edge);
+            values.add(~edge);
+        }
+        for (int i=0; i<VALUE_COUNT; i++) {
+            values.add(random.nextInt() >> random.nextInt(32));
+        }
+
+        for (int value: values) {
+            for (boolean isSigned: new boolean[] {false, true}) {
+                byte[] encoded = encode(new int[] {value}, isSigned);
+                int[] cursor = new int[1];
+                ByteArrayInput in = new ByteArrayInput(encoded);
+                int expected;
+                try {
+                    expected = isSigned ? previousReadSignedLeb128(encoded, cursor) :
+                            previousReadUnsignedLeb128(encoded, cursor);
+                } catch (RuntimeException ex) {
+                    //the 5th byte of a negative signed value has more than 4 bits set, which both readers reject
+                    try {
+                        in.readSignedLeb128();
+                    } catch (RuntimeException ex2) {
+                        continue;
+                    }
+                    throw new AssertionError("Decoded the invalid " + value + " (signed: " + isSigned + ")");
+                }
+                int actual = isSigned ? in.readSignedLeb128() : in.readUnsignedLeb128();
+                if (actual != expected || in.getCursor() != cursor[0]) {
+                    throw new AssertionError("Decoded " + value + " (signed: " + isSigned + ") as " + actual);
+                }
+
+                in = new ByteArrayInput(encoded);
+                in.skipLeb128();
+                if (in.getCursor() != encoded.length) {
+                    throw new AssertionError("Skipped " + value + " (signed: " + isSigned + ") wrongly");
+                }
+
+                cursor[0] = 0;
+                expected = previousReadUnsignedOrSignedLeb128(encoded, cursor);
+                in = new ByteArrayInput(encoded);
+                actual = in.readUnsignedOrSignedLeb128();
+                if (actual != expected || in.getCursor() != cursor[0]) {
+                    throw new AssertionError("Decoded " + value + " (signed: " + isSigned + ") as unsigned or " +
+                            "signed " + actual);
+                }
+            }
+        }
+    }
+
+    private static void checkStrings(byte[] encodedStrings, int count) {
+        ByteArrayInput in = new ByteArrayInput(encodedStrings);
+        int cursor = 0;
+        for (int i=0; i<count; i++) {
+            int start = cursor;
+            while (encodedStrings[cursor] != 0) {
+                cursor++;
+            }
+            String expected = Utf8Utils.utf8BytesToString(encodedStrings, start, cursor - start);
+            cursor++;
+            if (!in.realNullTerminatedUtf8String().equals(expected) || in.getCursor() != cursor) {
+                throw new AssertionError("Decoded " + expected + " wrongly");
+            }
+        }
+    }
+
+    /**
+     * @return a value with about the distribution of the LEB128 values in a dex file, where most are indexes and
+     * offset deltas that fit in 1 or 2 bytes. They all fit in 4 bytes, so that they can be negated and still be read
+     * by the previous signed reader
+     */
+    private static int randomValue(Random random) {
+        int kind = random.nextInt(100);
+        if (kind < 60) {
+            return random.nextInt(0x40);
+        } else if (kind < 90) {
+            return random.nextInt(0x2000);
+        } else if (kind < 98) {
+            return random.nextInt(0x100000);
+        }
+        return random.nextInt(0x8000000);
+    }
+
+    private static final String[] WORDS = {"java", "lang", "Object", "String", "util", "List", "android", "view",
+            "View", "get", "set", "Value", "init", "<init>", "this$0", "access$000", "Landroid/os/Bundle;"};
+
+    private static String randomString(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int wordCount = 1 + random.nextInt(4);
+        for (int i=0; i<wordCount; i++) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextInt(20) == 0) {
+            //a few strings with characters that take 2 or 3 bytes
+            sb.append(random.nextBoolean() ? "\u00e9t\u00e9" : "\u65e5\u672c");
+        }
+        return sb.toString();
+    }
+
+    private static byte[] encodeStrings(ArrayList<String> strings) {
+        ByteArrayOutput out = new ByteArrayOutput();
+        for (String string: strings) {
+            out.write(Utf8Utils.stringToUtf8Bytes(string));
+            out.writeByte(0);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encode(int[] values, boolean isSigned) {
+        ByteArrayOutput out = new ByteArrayOutput();
+        for (int value: values) {
+            if (isSigned) {
+                out.writeSignedLeb128(value);
+            } else {
+                out.writeUnsignedLeb128(value);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    //The previous implementations, from before the fast paths were added
+
+    private static int previousReadUnsignedOrSignedLeb128(byte[] data, int[] cursor) {
+        int end = cursor[0];
+        int currentByteValue;
+        int result;
+
+        result = data[end++] & 0xff;
+        if (result > 0x7f) {
+            currentByteValue = data[end++] & 0xff;
+            result = (result & 0x7f) | ((currentByteValue & 0x7f) << 7);
+            if (currentByteValue > 0x7f) {
+                currentByteValue = data[end++] & 0xff;
+                result |= (currentByteValue & 0x7f) << 14;
+                if (currentByteValue > 0x7f) {
+                    currentByteValue = data[end++] & 0xff;
+                    result |= (currentByteValue & 0x7f) << 21;
+                    if (currentByteValue > 0x7f) {
+                        currentByteValue = data[end++] & 0xff;
+                        if (currentByteValue > 0x0f) {
+                            throw new RuntimeException("invalid LEB128 integer encountered");
+                        }
+                        result |= currentByteValue << 28;
+                    }
+                }
+            }
+        } else {
+            cursor[0] = end;
+            return result;
+        }
+
+        cursor[0] = end;
+        if (data[end-1] == 0) {
+            return ~result;
+        }
+        return result;
+    }
+
+    private static int previousReadUnsignedLeb128(byte[] data, int[] cursor) {
+        int end = cursor[0];
+        int currentByteValue;
+        int result;
+
+        result = data[end++] & 0xff;
+        if (result > 0x7f) {
+            currentByteValue = data[end++] & 0xff;
+            result = (result & 0x7f) | ((currentByteValue & 0x7f) << 7);
+            if (currentByteValue > 0x7f) {
+                currentByteValue = data[end++] & 0xff;
+                result |= (currentByteValue & 0x7f) << 14;
+                if (currentByteValue > 0x7f) {
+                    currentByteValue = data[end++] & 0xff;
+                    result |= (currentByteValue & 0x7f) << 21;
+                    if (currentByteValue > 0x7f) {
+                        currentByteValue = data[end++] & 0xff;
+                        if (currentByteValue > 0x0f) {
+                            throw new RuntimeException("invalid LEB128 integer encountered");
+                        }
+                        result |= currentByteValue << 28;
+                    }
+                }
+            }
+        }
+
+        cursor[0] = end;
+        return result;
+    }
+
+    private static int previousReadSignedLeb128(byte[] data, int[] cursor) {
+        int end = cursor[0];
+        int currentByteValue;
+        int result;
+
+        result = data[end++] & 0xff;
+        if (result <= 0x7f) {
+            result = (result << 25) >> 25;
+        } else {
+            currentByteValue = data[end++] & 0xff;
+            result = (result & 0x7f) | ((currentByteValue & 0x7f) << 7);
+            if (currentByteValue <= 0x7f) {
+                result = (result << 18) >> 18;
+            } else {
+                currentByteValue = data[end++] & 0xff;
+                result |= (currentByteValue & 0x7f) << 14;
+                if (currentByteValue <= 0x7f) {
+                    result = (result << 11) >> 11;
+                } else {
+                    currentByteValue = data[end++] & 0xff;
+                    result |= (currentByteValue & 0x7f) << 21;
+                    if (currentByteValue <= 0x7f) {
+                        result = (result << 4) >> 4;
+                    } else {
+                        currentByteValue = data[end++] & 0xff;
+                        if (currentByteValue > 0x0f) {
+                            throw new RuntimeException("invalid LEB128 integer encountered");
+                        }
+                        result |= currentByteValue << 28;
+                    }
+                }
+            }
+        }
+
+        cursor[0] = end;
+        return result;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2010 Ben Gruver
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jf.dexlib.Util;
+
+import org.junit.*;
+
+import java.util.Random;
+
+public class ByteArrayInputTest {
+
+    @Test
+    public void unsignedLeb128Test() {
+        checkUnsignedLeb128(0, 0x00);
+        checkUnsignedLeb128(1, 0x01);
+        checkUnsignedLeb128(0x7f, 0x7f);
+        checkUnsignedLeb128(0x80, 0x80, 0x01);
+        checkUnsignedLeb128(0x3fff, 0xff, 0x7f);
+        checkUnsignedLeb128(0x4000, 0x80, 0x80, 0x01);
+        checkUnsignedLeb128(0x1fffff, 0xff, 0xff, 0x7f);
+        checkUnsignedLeb128(0x200000, 0x80, 0x80, 0x80, 0x01);
+        checkUnsignedLeb128(0xfffffff, 0xff, 0xff, 0xff, 0x7f);
+    }
+
+    @Test
+    public void fiveByteUnsignedLeb128Test() {
+        checkUnsignedLeb128(0x10000000, 0x80, 0x80, 0x80, 0x80, 0x01);
+        checkUnsignedLeb128(0x12345678, 0xf8, 0xac, 0xd1, 0x91, 0x01);
+        checkUnsignedLeb128(Integer.MAX_VALUE, 0xff, 0xff, 0xff, 0xff, 0x07);
+        //the top 4 bits of the 5th byte are the top 4 bits of the value, so values above 2^31 come out negative
+        checkUnsignedLeb128(Integer.MIN_VALUE, 0x80, 0x80, 0x80, 0x80, 0x08);
+        checkUnsignedLeb128(0xffffffff, 0xff, 0xff, 0xff, 0xff, 0x0f);
+    }
+
+    @Test
+    public void overlongUnsignedLeb128Test() {
+        //a value can be padded out with continuation bytes
+        checkUnsignedLeb128(0, 0x80, 0x00);
+        checkUnsignedLeb128(1, 0x81, 0x80, 0x80, 0x80, 0x00);
+    }
+
+    @Test
+    public void signedLeb128Test() {
+        checkSignedLeb128(0, 0x00);
+        checkSignedLeb128(1, 0x01);
+        checkSignedLeb128(63, 0x3f);
+        checkSignedLeb128(64, 0xc0, 0x00);
+        checkSignedLeb128(-1, 0x7f);
+        checkSignedLeb128(-64, 0x40);
+        checkSignedLeb128(-65, 0xbf, 0x7f);
+        checkSignedLeb128(-128, 0x80, 0x7f);
+        checkSignedLeb128(-8192, 0x80, 0x40);
+        checkSignedLeb128(-8193, 0xff, 0xbf, 0x7f);
+        checkSignedLeb128(-1048576, 0x80, 0x80, 0x40);
+        checkSignedLeb128(-134217728, 0x80, 0x80, 0x80, 0x40);
+    }
+
+    @Test
+    public void fiveByteSignedLeb128Test() {
+        //all 32 bits come from the bytes, so the 5th byte only holds the top 4 bits, even for a negative value
+        checkSignedLeb128(-134217729, 0xff, 0xff, 0xff, 0xbf, 0x0f);
+        checkSignedLeb128(134217728, 0x80, 0x80, 0x80, 0xc0, 0x00);
+        checkSignedLeb128(Integer.MAX_VALUE, 0xff, 0xff, 0xff, 0xff, 0x07);
+        checkSignedLeb128(Integer.MIN_VALUE, 0x80, 0x80, 0x80, 0x80, 0x08);
+        checkSignedLeb128(-1, 0xff, 0xff, 0xff, 0xff, 0x0f);
+    }
+
+    @Test
+    public void unsignedOrSignedLeb128Test() {
+        ByteArrayInput in = input(0x00, 0x05, 0x80, 0x01, 0x80, 0x00, 0x81, 0x00, 0xff, 0xff, 0xff, 0xff, 0x0f);
+        Assert.assertEquals(0, in.readUnsignedOrSignedLeb128());
+        Assert.assertEquals(5, in.readUnsignedOrSignedLeb128());
+        Assert.assertEquals(0x80, in.readUnsignedOrSignedLeb128());
+        //an unsigned value written with a trailing zero byte comes back negated
+        Assert.assertEquals(~0, in.readUnsignedOrSignedLeb128());
+        Assert.assertEquals(~1, in.readUnsignedOrSignedLeb128());
+        Assert.assertEquals(0xffffffff, in.readUnsignedOrSignedLeb128());
+        Assert.assertEquals(13, in.getCursor());
+    }
+
+    @Test
+    public void invalidFifthByteTest() {
+        checkInvalidLeb128(0xff, 0xff, 0xff, 0xff, 0x10);
+        checkInvalidLeb128(0x80, 0x80, 0x80, 0x80, 0x80);
+        checkInvalidLeb128(0x80, 0x80, 0x80, 0x80, 0xff);
+        //a 5th byte with the sign extended into its unused bits is rejected as well
+        checkInvalidLeb128(0x80, 0x80, 0x80, 0x80, 0x78);
+        checkInvalidLeb128(0xff, 0xff, 0xff, 0xff, 0x7f);
+    }
+
+    @Test
+    public void leb128SequenceTest() {
+        ByteArrayInput in = input(0x80, 0x01, 0x7f, 0xff, 0xff, 0xff, 0xff, 0x0f, 0x01, 0xbf, 0x7f, 0x2a);
+        Assert.assertEquals(0x80, in.readUnsignedLeb128());
+        Assert.assertEquals(-1, in.readSignedLeb128());
+        in.skipLeb128();
+        Assert.assertEquals(8, in.getCursor());
+        Assert.assertEquals(1, in.readUnsignedLeb128());
+        in.skipLeb128();
+        Assert.assertEquals(11, in.getCursor());
+        Assert.assertEquals(0x2a, in.readByte());
+    }
+
+    @Test
+    public void randomLeb128Test() {
+        Random random = new Random(1234);
+        for (int i=0; i<100000; i++) {
+            //spread the values out over all of the encoded lengths
+            int value = random.nextInt() >> random.nextInt(32);
+
+            byte[] unsigned = encodeUnsignedLeb128(value);
+            ByteArrayInput in = new ByteArrayInput(unsigned);
+            Assert.assertEquals(value, in.readUnsignedLeb128());
+            Assert.assertEquals(unsigned.length, in.getCursor());
+            Assert.assertEquals(Leb128Utils.unsignedLeb128Size(value), unsigned.length);
+
+            byte[] signed = encodeSignedLeb128(value);
+            in = new ByteArrayInput(signed);
+            Assert.assertEquals(value, in.readSignedLeb128());
+            Assert.assertEquals(signed.length, in.getCursor());
+            Assert.assertEquals(Leb128Utils.signedLeb128Size(value), signed.length);
+            in.setCursor(0);
+            in.skipLeb128();
+            Assert.assertEquals(signed.length, in.getCursor());
+        }
+    }
+
+    @Test
+    public void asciiStringTest() {
+        ByteArrayInput in = input('a', 'b', 'c', 0, 0, 'L', 'x', '/', 'Y', ';', 0x7f, 0);
+        Assert.assertEquals("abc", in.realNullTerminatedUtf8String());
+        Assert.assertEquals(4, in.getCursor());
+        Assert.assertEquals("", in.realNullTerminatedUtf8String());
+        Assert.assertEquals("Lx/Y;\u007f", in.realNullTerminatedUtf8String());
+        Assert.assertEquals(12, in.getCursor());
+    }
+
+    @Test
+    public void multiByteStringTest() {
+        //e with an acute accent takes 2 bytes, and the euro sign takes 3
+        ByteArrayInput in = input('c', 'a', 'f', 0xc3, 0xa9, 0, 0xe2, 0x82, 0xac, '5', 0);
+        Assert.assertEquals("caf\u00e9", in.realNullTerminatedUtf8String());
+        Assert.assertEquals(6, in.getCursor());
+        Assert.assertEquals("\u20ac5", in.realNullTerminatedUtf8String());
+        Assert.assertEquals(11, in.getCursor());
+    }
+
+    @Test
+    public void modifiedUtf8StringTest() {
+        //a null character is written as 2 bytes, and a supplementary character as a 3 byte encoding of each of its
+        //surrogates, rather than as 4 bytes
+        ByteArrayInput in = input('a', 0xc0, 0x80, 'b', 0, 0xed, 0xa0, 0xbd, 0xed, 0xb8, 0x80, 0);
+        Assert.assertEquals("a\u0000b", in.realNullTerminatedUtf8String());
+        Assert.assertEquals("\ud83d\ude00", in.realNullTerminatedUtf8String());
+        Assert.assertEquals(12, in.getCursor());
+    }
+
+    @Test
+    public void stringRoundTripTest() {
+        String[] strings = new String[] {"", "simple", "\u0000", "\u00ff\u0100", "\u07ff\u0800\uffff",
+                "mixed \u00e9\u4e2d\u6587 \ud83d\ude00 text", "Ljava/lang/String;"};
+        for (String string: strings) {
+            byte[] bytes = Utf8Utils.stringToUtf8Bytes(string);
+            byte[] terminated = new byte[bytes.length + 1];
+            System.arraycopy(bytes, 0, terminated, 0, bytes.length);
+
+            ByteArrayInput in = new ByteArrayInput(terminated);
+            Assert.assertEquals(string, in.realNullTerminatedUtf8String());
+            Assert.assertEquals(terminated.length, in.getCursor());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidUtf8StringTest() {
+        input('a', 0xff, 'b', 0).realNullTerminatedUtf8String();
+    }
+
+    private static void checkUnsignedLeb128(int expected, int... bytes) {
+        ByteArrayInput in = input(bytes);
+        Assert.assertEquals(expected, in.readUnsignedLeb128());
+        Assert.assertEquals(bytes.length, in.getCursor());
+
+        in.setCursor(0);
+        in.skipLeb128();
+        Assert.assertEquals(bytes.length, in.getCursor());
+    }
+
+    private static void checkSignedLeb128(int expected, int... bytes) {
+        ByteArrayInput in = input(bytes);
+        Assert.assertEquals(expected, in.readSignedLeb128());
+        Assert.assertEquals(bytes.length, in.getCursor());
+
+        in.setCursor(0);
+        in.skipLeb128();
+        Assert.assertEquals(bytes.length, in.getCursor());
+    }
+
+    private static void checkInvalidLeb128(int... bytes) {
+        ByteArrayInput in = input(bytes);
+        try {
+            in.readUnsignedLeb128();
+            Assert.fail("expected an exception for an invalid LEB128 value");
+        } catch (RuntimeException ex) {
+            Assert.assertEquals("invalid LEB128 integer encountered", ex.getMessage());
+        }
+
+        in.setCursor(0);
+        try {
+            in.readSignedLeb128();
+            Assert.fail("expected an exception for an invalid LEB128 value");
+        } catch (RuntimeException ex) {
+            Assert.assertEquals("invalid LEB128 integer encountered", ex.getMessage());
+        }
+
+        in.setCursor(0);
+        try {
+            in.skipLeb128();
+            Assert.fail("expected an exception for an invalid LEB128 value");
+        } catch (RuntimeException ex) {
+            Assert.assertEquals("invalid LEB128 integer encountered", ex.getMessage());
+        }
+    }
+
+    private static ByteArrayInput input(int... bytes) {
+        byte[] data = new byte[bytes.length];
+        for (int i=0; i<bytes.length; i++) {
+            data[i] = (byte)bytes[i];
+        }
+        return new ByteArrayInput(data);
+    }
+
+    private static byte[] encodeUnsignedLeb128(int value) {
+        byte[] buffer = new byte[5];
+        int length = 0;
+        while ((value & ~0x7f) != 0) {
+            buffer[length++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte)value;
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
+    }
+
+    private static byte[] encodeSignedLeb128(int value) {
+        byte[] buffer = new byte[5];
+        int length = 0;
+        while (true) {
+            int currentByte = value & 0x7f;
+            value >>= 7;
+            if ((value == 0 && (currentByte & 0x40) == 0) || (value == -1 && (currentByte & 0x40) != 0)) {
+                if (length == 4) {
+                    //the 5th byte only holds the top 4 bits
+                    currentByte &= 0x0f;
+                }
+                buffer[length++] = (byte)currentByte;
+                break;
+            }
+            buffer[length++] = (byte)(currentByte | 0x80);
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
+    }
+}
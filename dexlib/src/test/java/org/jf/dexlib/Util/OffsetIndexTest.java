@@ -0,0 +1,187 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2010 Ben Gruver
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jf.dexlib.Util;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class OffsetIndexTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static OffsetIndex<String> makeIndex(int... offsets) {
+        List<String> items = new ArrayList<String>();
+        for (int offset: offsets) {
+            items.add("item" + offset);
+        }
+        return new OffsetIndex<String>(offsets, items);
+    }
+
+    @Test
+    public void getEvenlySpacedOffsets() {
+        int[] offsets = new int[1000];
+        for (int i=0; i<offsets.length; i++) {
+            offsets[i] = 0x70 + i * 12;
+        }
+        OffsetIndex<String> index = makeIndex(offsets);
+
+        Assert.assertEquals(1000, index.size());
+        for (int offset: offsets) {
+            Assert.assertEquals("item" + offset, index.get(offset));
+            Assert.assertNull(index.get(offset + 1));
+        }
+        Assert.assertNull(index.get(0));
+        Assert.assertNull(index.get(0x70 + 1000 * 12));
+    }
+
+    @Test
+    public void getSkewedOffsets() {
+        //most of the offsets are bunched up at the start, which is the worst case for an interpolation search
+        int[] offsets = new int[101];
+        for (int i=0; i<100; i++) {
+            offsets[i] = i;
+        }
+        offsets[100] = 100000000;
+        OffsetIndex<String> index = makeIndex(offsets);
+
+        for (int offset: offsets) {
+            Assert.assertEquals("item" + offset, index.get(offset));
+        }
+        Assert.assertNull(index.get(100));
+        Assert.assertNull(index.get(99999999));
+    }
+
+    @Test
+    public void getExtremeOffsets() {
+        OffsetIndex<String> index = makeIndex(Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE);
+
+        Assert.assertEquals("item" + Integer.MIN_VALUE, index.get(Integer.MIN_VALUE));
+        Assert.assertEquals("item-1", index.get(-1));
+        Assert.assertEquals("item0", index.get(0));
+        Assert.assertEquals("item" + Integer.MAX_VALUE, index.get(Integer.MAX_VALUE));
+        Assert.assertNull(index.get(1));
+        Assert.assertNull(index.get(Integer.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void getFromEmptyIndex() {
+        OffsetIndex<String> index = makeIndex();
+
+        Assert.assertEquals(0, index.size());
+        Assert.assertNull(index.get(0));
+    }
+
+    @Test
+    public void getAll() {
+        OffsetIndex<String> index = makeIndex(10, 20, 30, 40);
+
+        String[] items = new String[8];
+        index.getAll(new int[] {5, 10, 25, 30, 40, 45, 20, 10}, items);
+
+        Assert.assertArrayEquals(new String[] {null, "item10", null, "item30", "item40", null, "item20", "item10"},
+                items);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void mismatchedItems() {
+        new OffsetIndex<String>(new int[] {1, 2}, Arrays.asList("one"));
+    }
+
+    @Test
+    public void writeAndReadOffsets() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "offsets");
+        int[] header = new int[] {0x12345678, -1};
+        int[][] offsetArrays = new int[][] {new int[] {1, 2, 3}, null, new int[0], new int[] {Integer.MAX_VALUE}};
+
+        OffsetIndex.writeOffsets(file, header, offsetArrays);
+        int[][] readOffsetArrays = OffsetIndex.readOffsets(file, header);
+
+        Assert.assertNotNull(readOffsetArrays);
+        Assert.assertEquals(4, readOffsetArrays.length);
+        Assert.assertArrayEquals(new int[] {1, 2, 3}, readOffsetArrays[0]);
+        Assert.assertArrayEquals(new int[0], readOffsetArrays[1]);
+        Assert.assertArrayEquals(new int[0], readOffsetArrays[2]);
+        Assert.assertArrayEquals(new int[] {Integer.MAX_VALUE}, readOffsetArrays[3]);
+        //the temporary file that the index was written to is gone
+        Assert.assertArrayEquals(new String[] {"offsets"}, temporaryFolder.getRoot().list());
+    }
+
+    @Test
+    public void writeOffsetsReplacesExistingFile() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "offsets");
+        int[] header = new int[] {1};
+
+        OffsetIndex.writeOffsets(file, header, new int[][] {new int[] {1, 2, 3}});
+        OffsetIndex.writeOffsets(file, header, new int[][] {new int[] {4}});
+
+        int[][] readOffsetArrays = OffsetIndex.readOffsets(file, header);
+        Assert.assertEquals(1, readOffsetArrays.length);
+        Assert.assertArrayEquals(new int[] {4}, readOffsetArrays[0]);
+    }
+
+    @Test
+    public void readOffsetsWithDifferentHeader() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "offsets");
+        OffsetIndex.writeOffsets(file, new int[] {1, 2}, new int[][] {new int[] {1}});
+
+        Assert.assertNull(OffsetIndex.readOffsets(file, new int[] {1, 3}));
+        Assert.assertNull(OffsetIndex.readOffsets(file, new int[] {1}));
+    }
+
+    @Test
+    public void readMissingOffsets() throws IOException {
+        Assert.assertNull(OffsetIndex.readOffsets(new File(temporaryFolder.getRoot(), "missing"), new int[0]));
+    }
+
+    @Test
+    public void readTruncatedOffsets() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "offsets");
+        int[] header = new int[] {7};
+        OffsetIndex.writeOffsets(file, header, new int[][] {new int[] {1, 2, 3, 4}});
+
+        //drop the last offset
+        byte[] truncated = new byte[(int)file.length() - 4];
+        System.arraycopy(FileUtils.readFile(file), 0, truncated, 0, truncated.length);
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(truncated);
+        } finally {
+            fos.close();
+        }
+
+        Assert.assertNull(OffsetIndex.readOffsets(file, header));
+    }
+}
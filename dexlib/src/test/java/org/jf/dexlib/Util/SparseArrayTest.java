@@ -0,0 +1,152 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2010 Ben Gruver
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jf.dexlib.Util;
+
+import org.junit.*;
+
+public class SparseArrayTest {
+
+    @Test
+    public void builderSortsKeys() {
+        SparseArray<String> sparseArray = new SparseArray.Builder<String>(2)
+                .add(30, "c")
+                .add(-5, "a")
+                .add(10, "b")
+                .add(Integer.MAX_VALUE, "e")
+                .add(Integer.MIN_VALUE, "z")
+                .build();
+
+        Assert.assertEquals(5, sparseArray.size());
+        int[] expectedKeys = new int[] {Integer.MIN_VALUE, -5, 10, 30, Integer.MAX_VALUE};
+        String[] expectedValues = new String[] {"z", "a", "b", "c", "e"};
+        for (int i=0; i<expectedKeys.length; i++) {
+            Assert.assertEquals(expectedKeys[i], sparseArray.keyAt(i));
+            Assert.assertEquals(expectedValues[i], sparseArray.valueAt(i));
+        }
+        Assert.assertNull(sparseArray.get(0));
+    }
+
+    @Test
+    public void builderKeepsLastValueForDuplicateKey() {
+        SparseArray<String> sparseArray = new SparseArray.Builder<String>()
+                .add(2, "first")
+                .add(1, "one")
+                .add(2, "second")
+                .add(2, "third")
+                .build();
+
+        Assert.assertEquals(2, sparseArray.size());
+        Assert.assertEquals("one", sparseArray.get(1));
+        Assert.assertEquals("third", sparseArray.get(2));
+    }
+
+    @Test
+    public void builderWithAscendingKeys() {
+        SparseArray.Builder<Integer> builder = new SparseArray.Builder<Integer>(1);
+        for (int i=0; i<100; i++) {
+            builder.add(i * 3, i);
+        }
+        SparseArray<Integer> sparseArray = builder.build();
+
+        Assert.assertEquals(100, sparseArray.size());
+        for (int i=0; i<100; i++) {
+            Assert.assertEquals(Integer.valueOf(i), sparseArray.get(i * 3));
+            Assert.assertNull(sparseArray.get(i * 3 + 1));
+        }
+    }
+
+    @Test
+    public void emptyBuilder() {
+        SparseArray<String> sparseArray = new SparseArray.Builder<String>().build();
+
+        Assert.assertEquals(0, sparseArray.size());
+        Assert.assertNull(sparseArray.get(0));
+    }
+
+    @Test
+    public void builtArrayCanBeChanged() {
+        SparseArray<String> sparseArray = new SparseArray.Builder<String>(0)
+                .add(20, "b")
+                .add(10, "a")
+                .build();
+
+        sparseArray.put(15, "c");
+        sparseArray.put(5, "d");
+        sparseArray.delete(20);
+
+        Assert.assertEquals(3, sparseArray.size());
+        Assert.assertEquals("d", sparseArray.get(5));
+        Assert.assertEquals("a", sparseArray.get(10));
+        Assert.assertEquals("c", sparseArray.get(15));
+        Assert.assertNull(sparseArray.get(20));
+    }
+
+    @Test
+    public void getAllWithAscendingKeys() {
+        SparseArray<String> sparseArray = new SparseArray.Builder<String>()
+                .add(10, "a")
+                .add(20, "b")
+                .add(30, "c")
+                .build();
+
+        String[] values = new String[6];
+        sparseArray.getAll(new int[] {5, 10, 15, 20, 30, 35}, values);
+
+        Assert.assertArrayEquals(new String[] {null, "a", null, "b", "c", null}, values);
+    }
+
+    @Test
+    public void getAllWithUnorderedKeys() {
+        SparseArray<String> sparseArray = new SparseArray.Builder<String>()
+                .add(10, "a")
+                .add(20, "b")
+                .add(30, "c")
+                .build();
+
+        String[] values = new String[5];
+        sparseArray.getAll(new int[] {30, 10, 20, 20, 10}, values);
+
+        Assert.assertArrayEquals(new String[] {"c", "a", "b", "b", "a"}, values);
+    }
+
+    @Test
+    public void getAllAfterDelete() {
+        SparseArray<String> sparseArray = new SparseArray.Builder<String>()
+                .add(10, "a")
+                .add(20, "b")
+                .add(30, "c")
+                .build();
+        sparseArray.delete(20);
+
+        String[] values = new String[3];
+        sparseArray.getAll(new int[] {10, 20, 30}, values);
+
+        Assert.assertArrayEquals(new String[] {"a", null, "c"}, values);
+    }
+}
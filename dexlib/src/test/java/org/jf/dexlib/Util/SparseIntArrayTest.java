@@ -0,0 +1,96 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2010 Ben Gruver
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jf.dexlib.Util;
+
+import org.junit.*;
+
+public class SparseIntArrayTest {
+
+    @Test
+    public void builderSortsKeys() {
+        SparseIntArray sparseIntArray = new SparseIntArray.Builder(2)
+                .add(30, 3)
+                .add(-5, 1)
+                .add(10, 2)
+                .add(Integer.MIN_VALUE, 0)
+                .build();
+
+        Assert.assertEquals(4, sparseIntArray.size());
+        int[] expectedKeys = new int[] {Integer.MIN_VALUE, -5, 10, 30};
+        for (int i=0; i<expectedKeys.length; i++) {
+            Assert.assertEquals(expectedKeys[i], sparseIntArray.keyAt(i));
+            Assert.assertEquals(i, sparseIntArray.valueAt(i));
+        }
+        Assert.assertEquals(-1, sparseIntArray.get(0, -1));
+    }
+
+    @Test
+    public void builderKeepsLastValueForDuplicateKey() {
+        SparseIntArray sparseIntArray = new SparseIntArray.Builder()
+                .add(2, 100)
+                .add(1, 1)
+                .add(2, 200)
+                .build();
+
+        Assert.assertEquals(2, sparseIntArray.size());
+        Assert.assertEquals(1, sparseIntArray.get(1));
+        Assert.assertEquals(200, sparseIntArray.get(2));
+    }
+
+    @Test
+    public void builtArrayCanBeAppendedTo() {
+        SparseIntArray sparseIntArray = new SparseIntArray.Builder(0)
+                .add(20, 2)
+                .add(10, 1)
+                .build();
+
+        sparseIntArray.append(30, 3);
+        sparseIntArray.put(5, 0);
+
+        Assert.assertEquals(4, sparseIntArray.size());
+        Assert.assertEquals(0, sparseIntArray.get(5));
+        Assert.assertEquals(1, sparseIntArray.get(10));
+        Assert.assertEquals(2, sparseIntArray.get(20));
+        Assert.assertEquals(3, sparseIntArray.get(30));
+    }
+
+    @Test
+    public void getAll() {
+        SparseIntArray sparseIntArray = new SparseIntArray.Builder()
+                .add(10, 1)
+                .add(20, 2)
+                .add(30, 3)
+                .build();
+
+        int[] values = new int[7];
+        sparseIntArray.getAll(new int[] {5, 10, 20, 35, 30, 10, 15}, values, -1);
+
+        Assert.assertArrayEquals(new int[] {-1, 1, 2, -1, 3, 1, -1}, values);
+    }
+}
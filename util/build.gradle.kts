@@ -4,4 +4,5 @@ plugins {
 dependencies {
     compile("commons-cli:commons-cli:1.2")
     compile(kotlin("stdlib"))
+    testCompile("junit:junit:4.12")
 }
\ No newline at end of file
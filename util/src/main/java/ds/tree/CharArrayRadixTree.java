@@ -0,0 +1,336 @@
+package ds.tree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A {@link RadixTree} that keeps the label of each node as a char array, and looks up keys by comparing their
+ * characters against the labels in place, so that find, contains and replace don't allocate anything.
+ *
+ * The children of a node are kept in an array sorted by the first character of their labels, along with a parallel
+ * array of those first characters, so finding the child to follow is a binary search over a char array. Nodes only
+ * hold their label, value and the two child arrays, which are left empty for leaves.
+ */
+public class CharArrayRadixTree<T> implements RadixTree<T> {
+    private static final char[] EMPTY_LABEL = new char[0];
+
+    private final Node<T> root = new Node<T>(EMPTY_LABEL, null, false);
+    private long size = 0;
+
+    public T find(String key) {
+        Node<T> node = findNode(key);
+        if (node == null) {
+            return null;
+        }
+        return node.value;
+    }
+
+    public boolean contains(String key) {
+        Node<T> node = findNode(key);
+        return node != null && node.real;
+    }
+
+    public boolean replace(String key, T value) {
+        Node<T> node = findNode(key);
+        if (node == null || !node.real) {
+            return false;
+        }
+        node.value = value;
+        return true;
+    }
+
+    /**
+     * @return the node whose key is exactly the given key, whether or not it has a value, or null if there isn't one
+     */
+    private Node<T> findNode(String key) {
+        Node<T> node = root;
+        int position = 0;
+        int length = key.length();
+        while (position < length) {
+            Node<T> child = node.getChild(key.charAt(position));
+            if (child == null) {
+                return null;
+            }
+            char[] label = child.label;
+            if (length - position < label.length) {
+                return null;
+            }
+            for (int i=1; i<label.length; i++) {
+                if (key.charAt(position + i) != label[i]) {
+                    return null;
+                }
+            }
+            position += label.length;
+            node = child;
+        }
+        return node;
+    }
+
+    public void insert(String key, T value) throws DuplicateKeyException {
+        Node<T> node = root;
+        int position = 0;
+        int length = key.length();
+        while (true) {
+            if (position == length) {
+                if (node.real) {
+                    throw new DuplicateKeyException("Duplicate key: '" + key + "'");
+                }
+                node.real = true;
+                node.value = value;
+                size++;
+                return;
+            }
+
+            int index = node.indexOf(key.charAt(position));
+            if (index < 0) {
+                char[] label = new char[length - position];
+                key.getChars(position, length, label, 0);
+                node.addChild(-index - 1, new Node<T>(label, value, true));
+                size++;
+                return;
+            }
+
+            Node<T> child = node.children[index];
+            char[] label = child.label;
+            int matched = 1;
+            int maxMatched = Math.min(label.length, length - position);
+            while (matched < maxMatched && label[matched] == key.charAt(position + matched)) {
+                matched++;
+            }
+
+            if (matched < label.length) {
+                //the key leaves the label part way through, so split the child where it does
+                Node<T> split = new Node<T>(Arrays.copyOf(label, matched), null, false);
+                child.label = Arrays.copyOfRange(label, matched, label.length);
+                split.addChild(0, child);
+                node.children[index] = split;
+                child = split;
+            }
+
+            node = child;
+            position += matched;
+        }
+    }
+
+    /**
+     * Inserts all of the entries of the given map. The keys are inserted in sorted order, so that each new child is
+     * added at the end of its parent's children, and the child arrays are trimmed to size afterwards
+     * @throws DuplicateKeyException if any of the keys is already in the tree
+     */
+    public void insertAll(Map<String, ? extends T> entries) throws DuplicateKeyException {
+        String[] keys = entries.keySet().toArray(new String[entries.size()]);
+        Arrays.sort(keys);
+        for (String key: keys) {
+            insert(key, entries.get(key));
+        }
+        root.trimToSize();
+    }
+
+    public boolean delete(String key) {
+        Node<T> parent = null;
+        Node<T> node = root;
+        int position = 0;
+        int length = key.length();
+        while (position < length) {
+            Node<T> child = node.getChild(key.charAt(position));
+            if (child == null || length - position < child.label.length) {
+                return false;
+            }
+            for (int i=1; i<child.label.length; i++) {
+                if (key.charAt(position + i) != child.label[i]) {
+                    return false;
+                }
+            }
+            position += child.label.length;
+            parent = node;
+            node = child;
+        }
+
+        if (!node.real) {
+            return false;
+        }
+
+        if (node.childCount == 0 && parent != null) {
+            parent.removeChild(parent.indexOf(node.label[0]));
+            if (parent.childCount == 1 && !parent.real && parent != root) {
+                parent.mergeWithChild();
+            }
+        } else if (node.childCount == 1 && node != root) {
+            node.mergeWithChild();
+        } else {
+            node.real = false;
+            node.value = null;
+        }
+        size--;
+        return true;
+    }
+
+    public ArrayList<T> searchPrefix(String prefix, int recordLimit) {
+        ArrayList<T> values = new ArrayList<T>();
+
+        Node<T> node = root;
+        int position = 0;
+        int length = prefix.length();
+        while (position < length) {
+            Node<T> child = node.getChild(prefix.charAt(position));
+            if (child == null) {
+                return values;
+            }
+            char[] label = child.label;
+            for (int i=1; i<label.length && position + i < length; i++) {
+                if (prefix.charAt(position + i) != label[i]) {
+                    return values;
+                }
+            }
+            position += label.length;
+            node = child;
+        }
+
+        if (node.real) {
+            values.add(node.value);
+        }
+
+        ArrayDeque<Node<T>> queue = new ArrayDeque<Node<T>>();
+        node.addChildrenTo(queue);
+        while (!queue.isEmpty()) {
+            node = queue.remove();
+            if (node.real) {
+                values.add(node.value);
+            }
+            if (values.size() == recordLimit) {
+                break;
+            }
+            node.addChildrenTo(queue);
+        }
+        return values;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String complete(String prefix) {
+        Node<T> node = root;
+        int position = 0;
+        int length = prefix.length();
+        while (position < length) {
+            Node<T> child = node.getChild(prefix.charAt(position));
+            if (child == null) {
+                return "";
+            }
+            char[] label = child.label;
+            int i = 1;
+            while (i < label.length && position + i < length) {
+                if (prefix.charAt(position + i) != label[i]) {
+                    return "";
+                }
+                i++;
+            }
+            if (position + i == length) {
+                return prefix.substring(0, position) + new String(label);
+            }
+            position += label.length;
+            node = child;
+        }
+        return "";
+    }
+
+    private static class Node<T> {
+        private static final char[] NO_FIRST_CHARS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        public char[] label;
+        public T value;
+        public boolean real;
+
+        //the first character of each child's label, in sorted order, followed by unused space
+        public char[] firstChars = NO_FIRST_CHARS;
+        public Node<T>[] children = noChildren();
+        public int childCount = 0;
+
+        public Node(char[] label, T value, boolean real) {
+            this.label = label;
+            this.value = value;
+            this.real = real;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] noChildren() {
+            return (Node<T>[])NO_CHILDREN;
+        }
+
+        /**
+         * @return the index of the child whose label starts with the given character, or (-(insertion point) - 1) if
+         * there isn't one
+         */
+        public int indexOf(char firstChar) {
+            return Arrays.binarySearch(firstChars, 0, childCount, firstChar);
+        }
+
+        public Node<T> getChild(char firstChar) {
+            int index = indexOf(firstChar);
+            if (index < 0) {
+                return null;
+            }
+            return children[index];
+        }
+
+        public void addChild(int index, Node<T> child) {
+            if (childCount == children.length) {
+                int capacity = Math.max(2, childCount * 2);
+                firstChars = Arrays.copyOf(firstChars, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(firstChars, index, firstChars, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            firstChars[index] = child.label[0];
+            children[index] = child;
+            childCount++;
+        }
+
+        public void removeChild(int index) {
+            childCount--;
+            System.arraycopy(firstChars, index + 1, firstChars, index, childCount - index);
+            System.arraycopy(children, index + 1, children, index, childCount - index);
+            children[childCount] = null;
+        }
+
+        /**
+         * Merges the only child of this node into it
+         */
+        public void mergeWithChild() {
+            Node<T> child = children[0];
+            char[] mergedLabel = Arrays.copyOf(label, label.length + child.label.length);
+            System.arraycopy(child.label, 0, mergedLabel, label.length, child.label.length);
+            label = mergedLabel;
+            value = child.value;
+            real = child.real;
+            firstChars = child.firstChars;
+            children = child.children;
+            childCount = child.childCount;
+        }
+
+        public void addChildrenTo(ArrayDeque<Node<T>> queue) {
+            for (int i=0; i<childCount; i++) {
+                queue.add(children[i]);
+            }
+        }
+
+        public void trimToSize() {
+            if (childCount == 0) {
+                firstChars = NO_FIRST_CHARS;
+                children = noChildren();
+                return;
+            }
+            if (childCount != children.length) {
+                firstChars = Arrays.copyOf(firstChars, childCount);
+                children = Arrays.copyOf(children, childCount);
+            }
+            for (int i=0; i<childCount; i++) {
+                children[i].trimToSize();
+            }
+        }
+    }
+}
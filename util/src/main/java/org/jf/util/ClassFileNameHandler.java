@@ -28,30 +28,90 @@
 
 package org.jf.util;
 
+import ds.tree.CharArrayRadixTree;
 import ds.tree.RadixTree;
-import ds.tree.RadixTreeImpl;
 
 import java.io.*;
 import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
  * This class checks for case-insensitive file systems, and generates file names based on a given class name, that are
  * guaranteed to be unique. When "colliding" class names are found, it appends a numeric identifier to the end of the
  * class name to distinguish it from another class with a name that differes only by case. i.e. a.smali and a_2.smali
+ *
+ * Which of the colliding classes gets which name depends on the order the classes are named in. To get the same names
+ * no matter what order the classes are disassembled in, or how many threads they are disassembled on, pass all of the
+ * classes to nameClasses first, which names them in sorted order.
  */
 public class ClassFileNameHandler {
     private PackageNameEntry top;
     private String fileExtension;
     private boolean modifyWindowsReservedFilenames;
+    private boolean probeFileSystem;
+
+    //the names that have been handed out so far, by class name
+    private final ConcurrentHashMap<String, File> classFiles = new ConcurrentHashMap<String, File>();
 
     public ClassFileNameHandler(File path, String fileExtension) {
         this.top = new PackageNameEntry(path);
         this.fileExtension = fileExtension;
         this.modifyWindowsReservedFilenames = testForWindowsReservedFileNames(path);
+        this.probeFileSystem = true;
+    }
+
+    /**
+     * Creates a handler for files that aren't created on the file system under the given path, such as the entries
+     * of an archive. Nothing is checked for or created on disk, and names that differ only by case are always made
+     * unique, as if the files were going to a case-insensitive file system
+     */
+    public ClassFileNameHandler(File path, String fileExtension, boolean modifyWindowsReservedFilenames) {
+        this.top = new PackageNameEntry(path);
+        this.fileExtension = fileExtension;
+        this.modifyWindowsReservedFilenames = modifyWindowsReservedFilenames;
+        this.probeFileSystem = false;
+    }
+
+    /**
+     * Names the files for all of the given classes, in sorted order. Afterwards, getUniqueFilenameForClass can be
+     * called for these classes from any number of threads at once, and returns the same names regardless of the order
+     * it's called in
+     * @param classNames the class names, in the normal dalvik style
+     */
+    public synchronized void nameClasses(Collection<String> classNames) {
+        String[] sortedClassNames = classNames.toArray(new String[classNames.size()]);
+        Arrays.sort(sortedClassNames);
+        for (String className: sortedClassNames) {
+            if (!classFiles.containsKey(className)) {
+                classFiles.put(className, nameClass(className));
+            }
+        }
     }
 
+    /**
+     * @param className the class name, in the normal dalvik style
+     * @return the file for the given class. A class that wasn't passed to nameClasses is named now, after all of the
+     * classes that have been named so far
+     */
     public File getUniqueFilenameForClass(String className) {
+        File file = classFiles.get(className);
+        if (file != null) {
+            return file;
+        }
+        synchronized (this) {
+            file = classFiles.get(className);
+            if (file == null) {
+                file = nameClass(className);
+                classFiles.put(className, file);
+            }
+            return file;
+        }
+    }
+
+    private File nameClass(String className) {
         //class names should be passed in the normal dalvik style, with a leading L, a trailing ;, and using
         //'/' as a separator.
         if (className.charAt(0) != 'L' || className.charAt(className.length()-1) != ';') {
@@ -153,7 +213,7 @@ public class ClassFileNameHandler {
     private class PackageNameEntry extends FileSystemEntry {
         //this contains the FileSystemEntries for all of this package's children
         //the associated keys are all lowercase
-        private RadixTree<FileSystemEntry> children = new RadixTreeImpl<FileSystemEntry>();
+        private RadixTree<FileSystemEntry> children = new CharArrayRadixTree<FileSystemEntry>();
 
         public PackageNameEntry(File parent, String name) {
             super(new File(parent, name));
@@ -221,7 +281,7 @@ public class ClassFileNameHandler {
     private class VirtualGroupEntry extends FileSystemEntry {
         //this contains the FileSystemEntries for all of the files/directories in this group
         //the key is the unmodified name of the entry, before it is modified to be made unique (if needed).
-        private RadixTree<FileSystemEntry> groupEntries = new RadixTreeImpl<FileSystemEntry>();
+        private RadixTree<FileSystemEntry> groupEntries = new CharArrayRadixTree<FileSystemEntry>();
 
         //whether the containing directory is case sensitive or not.
         //-1 = unset
@@ -284,6 +344,11 @@ public class ClassFileNameHandler {
                 return isCaseSensitive == 1;
             }
 
+            if (!probeFileSystem) {
+                isCaseSensitive = 0;
+                return false;
+            }
+
             File path = file;
 
             if (path.exists() && path.isFile()) {
@@ -0,0 +1,281 @@
+package ds.tree;
+
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class CharArrayRadixTreeTest {
+
+    @Test
+    public void emptyTreeTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+
+        Assert.assertEquals(0, tree.getSize());
+        Assert.assertNull(tree.find("abc"));
+        Assert.assertFalse(tree.contains("abc"));
+        Assert.assertFalse(tree.contains(""));
+        Assert.assertFalse(tree.replace("abc", "x"));
+        Assert.assertFalse(tree.delete("abc"));
+        Assert.assertFalse(tree.delete(""));
+        Assert.assertEquals(0, tree.searchPrefix("", 10).size());
+        Assert.assertEquals("", tree.complete("a"));
+    }
+
+    @Test
+    public void emptyKeyTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("", "empty");
+        tree.insert("a", "a");
+
+        Assert.assertEquals(2, tree.getSize());
+        Assert.assertTrue(tree.contains(""));
+        Assert.assertEquals("empty", tree.find(""));
+        Assert.assertTrue(tree.replace("", "replaced"));
+        Assert.assertEquals("replaced", tree.find(""));
+
+        //the empty key is a prefix of every key
+        Assert.assertEquals(set("replaced", "a"), set(tree.searchPrefix("", 10)));
+
+        Assert.assertTrue(tree.delete(""));
+        Assert.assertFalse(tree.contains(""));
+        Assert.assertNull(tree.find(""));
+        Assert.assertTrue(tree.contains("a"));
+        Assert.assertEquals(1, tree.getSize());
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void duplicateEmptyKeyTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("", "1");
+        tree.insert("", "2");
+    }
+
+    @Test
+    public void sharedPrefixTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("test", "test");
+        tree.insert("team", "team");
+        tree.insert("toast", "toast");
+        tree.insert("te", "te");
+
+        Assert.assertEquals(4, tree.getSize());
+        Assert.assertEquals("test", tree.find("test"));
+        Assert.assertEquals("team", tree.find("team"));
+        Assert.assertEquals("toast", tree.find("toast"));
+        Assert.assertEquals("te", tree.find("te"));
+
+        //the nodes made by splitting a label don't have a value of their own
+        Assert.assertFalse(tree.contains("t"));
+        Assert.assertNull(tree.find("t"));
+        Assert.assertFalse(tree.replace("t", "x"));
+        Assert.assertFalse(tree.delete("t"));
+
+        //keys that leave a label part way through, or run past the end of one
+        Assert.assertFalse(tree.contains("tes"));
+        Assert.assertFalse(tree.contains("tests"));
+        Assert.assertFalse(tree.contains("tx"));
+        Assert.assertFalse(tree.contains("toasted"));
+        Assert.assertEquals(4, tree.getSize());
+    }
+
+    @Test
+    public void prefixOfExistingKeyTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("abcdef", "abcdef");
+        tree.insert("abc", "abc");
+        tree.insert("a", "a");
+
+        Assert.assertEquals("abcdef", tree.find("abcdef"));
+        Assert.assertEquals("abc", tree.find("abc"));
+        Assert.assertEquals("a", tree.find("a"));
+        Assert.assertFalse(tree.contains("ab"));
+        Assert.assertEquals(3, tree.getSize());
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void duplicateKeyTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("test", "1");
+        tree.insert("team", "2");
+        tree.insert("test", "3");
+    }
+
+    @Test
+    public void insertAtSplitNodeTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("test", "test");
+        tree.insert("team", "team");
+
+        //"te" is already a node, made when "team" split "test", but it doesn't have a value yet
+        tree.insert("te", "te");
+        Assert.assertEquals("te", tree.find("te"));
+        Assert.assertEquals(3, tree.getSize());
+    }
+
+    @Test
+    public void replaceTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("apple", "1");
+        tree.insert("apply", "2");
+
+        Assert.assertTrue(tree.replace("apple", "3"));
+        Assert.assertEquals("3", tree.find("apple"));
+        Assert.assertEquals("2", tree.find("apply"));
+        Assert.assertFalse(tree.replace("appl", "4"));
+        Assert.assertFalse(tree.replace("apples", "4"));
+        Assert.assertEquals(2, tree.getSize());
+    }
+
+    @Test
+    public void deleteTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("test", "test");
+        tree.insert("team", "team");
+        tree.insert("toast", "toast");
+
+        Assert.assertFalse(tree.delete("tea"));
+        Assert.assertFalse(tree.delete("teams"));
+
+        //deleting "team" leaves "te" with a single child, which is merged into it
+        Assert.assertTrue(tree.delete("team"));
+        Assert.assertFalse(tree.contains("team"));
+        Assert.assertEquals("test", tree.find("test"));
+        Assert.assertEquals("toast", tree.find("toast"));
+        Assert.assertEquals(2, tree.getSize());
+        Assert.assertFalse(tree.delete("team"));
+
+        //the merged node can still be split again
+        tree.insert("tee", "tee");
+        Assert.assertEquals("tee", tree.find("tee"));
+        Assert.assertEquals("test", tree.find("test"));
+
+        Assert.assertTrue(tree.delete("test"));
+        Assert.assertTrue(tree.delete("tee"));
+        Assert.assertTrue(tree.delete("toast"));
+        Assert.assertEquals(0, tree.getSize());
+        Assert.assertEquals(0, tree.searchPrefix("", 10).size());
+    }
+
+    @Test
+    public void deleteInnerNodeTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("ab", "ab");
+        tree.insert("abcd", "abcd");
+        tree.insert("abce", "abce");
+
+        //"ab" has children, so it stays as a node without a value
+        Assert.assertTrue(tree.delete("ab"));
+        Assert.assertFalse(tree.contains("ab"));
+        Assert.assertEquals("abcd", tree.find("abcd"));
+        Assert.assertEquals("abce", tree.find("abce"));
+
+        //"abcd" has a single child, so it is merged with it
+        tree.insert("abcdx", "abcdx");
+        Assert.assertTrue(tree.delete("abcd"));
+        Assert.assertFalse(tree.contains("abcd"));
+        Assert.assertEquals("abcdx", tree.find("abcdx"));
+        Assert.assertEquals(2, tree.getSize());
+    }
+
+    @Test
+    public void insertAllTest() {
+        Map<String, String> entries = new HashMap<String, String>();
+        for (String key: new String[] {"romane", "romanus", "romulus", "rubens", "ruber", "rubicon", "rubicundus"}) {
+            entries.put(key, key.toUpperCase());
+        }
+
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("r", "R");
+        tree.insertAll(entries);
+
+        Assert.assertEquals(8, tree.getSize());
+        for (String key: entries.keySet()) {
+            Assert.assertEquals(key.toUpperCase(), tree.find(key));
+        }
+        Assert.assertEquals("R", tree.find("r"));
+
+        //the tree can still be changed after its children have been trimmed
+        tree.insert("rubicons", "RUBICONS");
+        Assert.assertEquals("RUBICONS", tree.find("rubicons"));
+        Assert.assertTrue(tree.delete("romane"));
+        Assert.assertEquals("ROMANUS", tree.find("romanus"));
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void insertAllDuplicateTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("b", "b");
+        tree.insertAll(Collections.singletonMap("b", "c"));
+    }
+
+    @Test
+    public void searchPrefixTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        for (String key: new String[] {"apple", "applet", "application", "apply", "banana", "band"}) {
+            tree.insert(key, key);
+        }
+
+        Assert.assertEquals(set("apple", "applet", "application", "apply"), set(tree.searchPrefix("app", 10)));
+        Assert.assertEquals(set("apple", "applet"), set(tree.searchPrefix("apple", 10)));
+        //a prefix that ends part way through a label
+        Assert.assertEquals(set("banana", "band"), set(tree.searchPrefix("ba", 10)));
+        Assert.assertEquals(set("banana"), set(tree.searchPrefix("banan", 10)));
+        Assert.assertEquals(6, tree.searchPrefix("", 10).size());
+
+        Assert.assertEquals(0, tree.searchPrefix("apples", 10).size());
+        Assert.assertEquals(0, tree.searchPrefix("c", 10).size());
+        Assert.assertEquals(0, tree.searchPrefix("bx", 10).size());
+
+        Assert.assertEquals(2, tree.searchPrefix("app", 2).size());
+        Assert.assertEquals(1, tree.searchPrefix("", 1).size());
+    }
+
+    @Test
+    public void completeTest() {
+        CharArrayRadixTree<String> tree = new CharArrayRadixTree<String>();
+        tree.insert("jones", "jones");
+        tree.insert("jonathan", "jonathan");
+        tree.insert("jon", "jon");
+
+        Assert.assertEquals("jones", tree.complete("jone"));
+        Assert.assertEquals("jonathan", tree.complete("jona"));
+        Assert.assertEquals("jon", tree.complete("jo"));
+        Assert.assertEquals("", tree.complete("jx"));
+        Assert.assertEquals("", tree.complete("k"));
+    }
+
+    @Test
+    public void manyKeysTest() {
+        CharArrayRadixTree<Integer> tree = new CharArrayRadixTree<Integer>();
+        for (int i=0; i<2000; i++) {
+            tree.insert(Integer.toString(i, 7), i);
+        }
+        Assert.assertEquals(2000, tree.getSize());
+        for (int i=0; i<2000; i++) {
+            Assert.assertEquals(Integer.valueOf(i), tree.find(Integer.toString(i, 7)));
+        }
+        for (int i=0; i<2000; i+=2) {
+            Assert.assertTrue(tree.delete(Integer.toString(i, 7)));
+        }
+        Assert.assertEquals(1000, tree.getSize());
+        for (int i=0; i<2000; i++) {
+            Assert.assertEquals(i % 2 != 0, tree.contains(Integer.toString(i, 7)));
+        }
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+    private static Set<String> set(ArrayList<String> values) {
+        Set<String> set = new HashSet<String>(values);
+        Assert.assertEquals(values.size(), set.size());
+        return set;
+    }
+}
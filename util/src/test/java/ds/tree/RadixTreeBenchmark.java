@@ -0,0 +1,281 @@
+package ds.tree;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compares CharArrayRadixTree against RadixTreeImpl, using them the way ClassFileNameHandler does: one tree per
+ * package, keyed by the lowercased name of each package or class file in it.
+ *
+ * The class names are read from the jar/zip/apk files (from their .class entries) or text files (one class name per
+ * line) given as arguments. With no arguments, 150,000 class names are generated, with package sizes and depths
+ * skewed the way they are in large apps: a few big packages and a long tail of small ones.
+ *
+ * Run with: java -cp util/build/classes/java/main:util/build/classes/java/test ds.tree.RadixTreeBenchmark [files]
+ */
+public class RadixTreeBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private interface TreeFactory {
+        RadixTree<Object> create();
+    }
+
+    private static final TreeFactory RADIX_TREE_IMPL = new TreeFactory() {
+        public RadixTree<Object> create() {
+            return new RadixTreeImpl<Object>();
+        }
+
+        @Override
+        public String toString() {
+            return "RadixTreeImpl";
+        }
+    };
+
+    private static final TreeFactory CHAR_ARRAY_RADIX_TREE = new TreeFactory() {
+        public RadixTree<Object> create() {
+            return new CharArrayRadixTree<Object>();
+        }
+
+        @Override
+        public String toString() {
+            return "CharArrayRadixTree";
+        }
+    };
+
+    public static void main(String[] args) throws IOException {
+        List<String[]> classes = args.length == 0 ? generateClasses(150000, new Random(42)) : readClasses(args);
+        int elementCount = 0;
+        for (String[] pathElements: classes) {
+            elementCount += pathElements.length;
+        }
+        System.out.println(classes.size() + " classes, " + elementCount + " path elements");
+
+        //make sure both trees find the same things before timing them
+        if (!buildPackageTree(CHAR_ARRAY_RADIX_TREE, classes).equals(buildPackageTree(RADIX_TREE_IMPL, classes))) {
+            throw new AssertionError("The trees don't match");
+        }
+
+        for (TreeFactory factory: new TreeFactory[] {RADIX_TREE_IMPL, CHAR_ARRAY_RADIX_TREE}) {
+            for (int i=0; i<WARMUP_ROUNDS; i++) {
+                lookUpAll(buildPackageTree(factory, classes), classes);
+            }
+
+            long buildTime = 0;
+            long findTime = 0;
+            for (int i=0; i<ROUNDS; i++) {
+                long start = System.nanoTime();
+                Package top = buildPackageTree(factory, classes);
+                buildTime += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                lookUpAll(top, classes);
+                findTime += System.nanoTime() - start;
+            }
+
+            System.gc();
+            long memoryBefore = usedMemory();
+            Package top = buildPackageTree(factory, classes);
+            long memory = usedMemory() - memoryBefore;
+
+            System.out.println(String.format("%-20s build %7.1f ms  find %7.1f ms (%5.1f ns/element)  memory %6d KB",
+                    factory, buildTime / (ROUNDS * 1e6), findTime / (ROUNDS * 1e6),
+                    findTime / ((double)ROUNDS * elementCount), memory / 1024));
+            //keep the tree reachable until it has been measured
+            if (top.children.getSize() == 0) {
+                System.out.println();
+            }
+        }
+    }
+
+    private static class Package {
+        public final RadixTree<Object> children;
+
+        public Package(TreeFactory factory) {
+            children = factory.create();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Package)) {
+                return false;
+            }
+            //compare by listing everything under each package
+            return describe().equals(((Package)o).describe());
+        }
+
+        @Override
+        public int hashCode() {
+            return describe().hashCode();
+        }
+
+        private List<String> describe() {
+            ArrayList<String> description = new ArrayList<String>();
+            ArrayList<Object> children = this.children.searchPrefix("", Integer.MAX_VALUE);
+            for (Object child: children) {
+                if (child instanceof Package) {
+                    description.add(((Package)child).describe().toString());
+                } else {
+                    description.add((String)child);
+                }
+            }
+            Collections.sort(description);
+            return description;
+        }
+    }
+
+    private static Package buildPackageTree(TreeFactory factory, List<String[]> classes) {
+        Package top = new Package(factory);
+        for (String[] pathElements: classes) {
+            Package parent = top;
+            for (int i=0; i<pathElements.length; i++) {
+                String key = getKey(pathElements, i);
+                Object child = parent.children.find(key);
+                if (i == pathElements.length - 1) {
+                    if (child == null) {
+                        parent.children.insert(key, pathElements[i]);
+                    }
+                } else {
+                    if (child == null) {
+                        child = new Package(factory);
+                        parent.children.insert(key, child);
+                    }
+                    parent = (Package)child;
+                }
+            }
+        }
+        return top;
+    }
+
+    private static void lookUpAll(Package top, List<String[]> classes) {
+        for (String[] pathElements: classes) {
+            Object node = top;
+            for (int i=0; i<pathElements.length; i++) {
+                node = ((Package)node).children.find(getKey(pathElements, i));
+            }
+            if (node == null) {
+                throw new AssertionError();
+            }
+        }
+    }
+
+    private static String getKey(String[] pathElements, int index) {
+        if (index == pathElements.length - 1) {
+            return (pathElements[index] + ".java").toLowerCase();
+        }
+        return pathElements[index].toLowerCase();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i=0; i<3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<String[]> readClasses(String[] files) throws IOException {
+        LinkedHashSet<String> classNames = new LinkedHashSet<String>();
+        for (String file: files) {
+            if (file.endsWith(".txt")) {
+                BufferedReader reader = new BufferedReader(new FileReader(file));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (line.startsWith("L") && line.endsWith(";")) {
+                            line = line.substring(1, line.length() - 1);
+                        }
+                        if (line.length() > 0) {
+                            classNames.add(line.replace('.', '/'));
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } else {
+                ZipFile zipFile = new ZipFile(file);
+                try {
+                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                    while (entries.hasMoreElements()) {
+                        String name = entries.nextElement().getName();
+                        if (name.endsWith(".class")) {
+                            classNames.add(name.substring(0, name.length() - ".class".length()));
+                        }
+                    }
+                } finally {
+                    zipFile.close();
+                }
+            }
+        }
+
+        ArrayList<String[]> classes = new ArrayList<String[]>(classNames.size());
+        for (String className: classNames) {
+            classes.add(className.split("/"));
+        }
+        return classes;
+    }
+
+    private static final String[] TOP_LEVEL_PACKAGES = {"com", "org", "android", "androidx", "net", "io", "kotlin"};
+    private static final String[] SYLLABLES = {"an", "ba", "cor", "de", "ex", "fa", "go", "ha", "in", "jo", "ka",
+            "lo", "ma", "ne", "op", "pra", "qui", "ro", "sa", "te", "u", "vi", "wa", "xe", "yo", "ze"};
+
+    private static List<String[]> generateClasses(int classCount, Random random) {
+        //a few hundred organizations, each with a tree of packages of varying depth
+        ArrayList<String[]> packages = new ArrayList<String[]>();
+        for (int i=0; i<600; i++) {
+            String[] organization = {TOP_LEVEL_PACKAGES[skewed(random, TOP_LEVEL_PACKAGES.length)],
+                    makeName(random, 2 + random.nextInt(2), false)};
+            int packageCount = 1 + skewed(random, 60);
+            for (int j=0; j<packageCount; j++) {
+                int depth = random.nextInt(4);
+                String[] pkg = Arrays.copyOf(organization, organization.length + depth);
+                for (int k=0; k<depth; k++) {
+                    pkg[organization.length + k] = makeName(random, 1 + random.nextInt(3), false);
+                }
+                packages.add(pkg);
+            }
+        }
+
+        LinkedHashSet<String> seen = new LinkedHashSet<String>();
+        ArrayList<String[]> classes = new ArrayList<String[]>(classCount);
+        while (classes.size() < classCount) {
+            String[] pkg = packages.get(skewed(random, packages.size()));
+            String className = makeName(random, 2 + random.nextInt(3), true);
+            //inner classes
+            if (random.nextInt(4) == 0) {
+                className += "$" + (random.nextBoolean() ? Integer.toString(1 + random.nextInt(9)) :
+                        makeName(random, 2, true));
+            }
+            String[] pathElements = Arrays.copyOf(pkg, pkg.length + 1);
+            pathElements[pkg.length] = className;
+            if (seen.add(Arrays.toString(pathElements))) {
+                classes.add(pathElements);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * @return a number from 0 to n - 1, where smaller numbers are much more likely
+     */
+    private static int skewed(Random random, int n) {
+        double x = random.nextDouble();
+        return (int)(n * x * x * x);
+    }
+
+    private static String makeName(Random random, int syllableCount, boolean capitalize) {
+        StringBuilder name = new StringBuilder();
+        for (int i=0; i<syllableCount; i++) {
+            String syllable = SYLLABLES[random.nextInt(SYLLABLES.length)];
+            if (capitalize && (i == 0 || random.nextInt(3) == 0)) {
+                name.append(Character.toUpperCase(syllable.charAt(0))).append(syllable, 1, syllable.length());
+            } else {
+                name.append(syllable);
+            }
+        }
+        return name.toString();
+    }
+}